@@ -162,7 +162,8 @@ private void saveEventStatusInStore(ActivityEventStatus eventStatus) throws Acti
         try {
             hibernateStore.beginTransaction(context);
             Session session = hibernateStore.getSession(context);
-            session.save(eventStatus);
+            // The status might already exist (e.g. an unread status stored in the inbox of the user)
+            session.saveOrUpdate(eventStatus);
             hibernateStore.endTransaction(context, true);
         } catch (XWikiException e) {
             hibernateStore.endTransaction(context, false);
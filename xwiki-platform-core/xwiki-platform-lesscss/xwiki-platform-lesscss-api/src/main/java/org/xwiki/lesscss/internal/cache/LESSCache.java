@@ -42,6 +42,18 @@
      */
     T get(LESSResourceReference lessResourceReference, SkinReference skin, ColorThemeReference colorTheme);
 
+    /**
+     * Get the last object which has been removed from the cache (because one of the resources it's computed from
+     * changed), to have something to return while the new object is being computed.
+     *
+     * @param lessResourceReference reference of the code to compile
+     * @param skin reference of the skin
+     * @param colorTheme reference of the color theme
+     * @return the previous object, or null if there is none
+     * @since 9.12RC1
+     */
+    T getPrevious(LESSResourceReference lessResourceReference, SkinReference skin, ColorThemeReference colorTheme);
+
     /**
      * Add an object in the cache.
      *
@@ -53,6 +65,19 @@
     void set(LESSResourceReference lessResourceReference, SkinReference skin, ColorThemeReference colorThemeName,
         T object);
 
+    /**
+     * Add the object computed from a failed compilation in the cache. Unlike {@link #set}, the object is only kept in
+     * memory so that the error is not returned anymore after a restart.
+     *
+     * @param lessResourceReference reference of the code to compile
+     * @param skin reference of the skin
+     * @param colorTheme reference of the color theme
+     * @param object the object to cache
+     * @since 9.12RC1
+     */
+    void setFailure(LESSResourceReference lessResourceReference, SkinReference skin, ColorThemeReference colorTheme,
+        T object);
+
     /**
      * Clear the cache.
      */
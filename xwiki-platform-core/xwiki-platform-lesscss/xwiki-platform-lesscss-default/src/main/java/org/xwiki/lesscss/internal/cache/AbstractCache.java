@@ -23,6 +23,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -42,6 +43,11 @@
  */
 public abstract class AbstractCache<T> implements LESSCache<T>
 {
+    /**
+     * The maximum number of previous objects kept in memory.
+     */
+    private static final int MAX_PREVIOUS = 1000;
+
     @Inject
     protected CacheManager cacheManager;
 
@@ -78,24 +84,116 @@
 
     private Map<String, String> mutexList = new HashMap<>();
 
+    /**
+     * The objects removed from the cache, until they are replaced by a new version.
+     */
+    private Map<String, T> previousObjects = new ConcurrentHashMap<>();
+
     @Override
     public T get(LESSResourceReference lessResourceReference, SkinReference skin, ColorThemeReference colorTheme)
     {
         return cache.get(cacheKeyFactory.getCacheKey(lessResourceReference, skin, colorTheme, isContextHandled));
     }
 
+    @Override
+    public T getPrevious(LESSResourceReference lessResourceReference, SkinReference skin,
+        ColorThemeReference colorTheme)
+    {
+        String cacheKey = cacheKeyFactory.getCacheKey(lessResourceReference, skin, colorTheme, isContextHandled);
+
+        T previous = previousObjects.get(cacheKey);
+        if (previous == null) {
+            previous = load(cacheKey);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Store an object which has been put in the cache so that it can be used as previous object after a restart. Does
+     * nothing by default.
+     *
+     * @param cacheKey the key of the object
+     * @param content the object to store
+     * @since 9.12RC1
+     */
+    protected void store(String cacheKey, T content)
+    {
+        // Not stored by default
+    }
+
+    /**
+     * @param cacheKey the key of the object
+     * @return the object stored with {@link #store(String, Object)}, null if there is none
+     * @since 9.12RC1
+     */
+    protected T load(String cacheKey)
+    {
+        return null;
+    }
+
+    /**
+     * Delete the object stored with {@link #store(String, Object)}, if any. Does nothing by default.
+     *
+     * @param cacheKey the key of the object
+     * @since 9.12RC1
+     */
+    protected void delete(String cacheKey)
+    {
+        // Not stored by default
+    }
+
+    /**
+     * Delete all the objects stored with {@link #store(String, Object)}. Does nothing by default.
+     *
+     * @since 9.12RC1
+     */
+    protected void deleteAll()
+    {
+        // Not stored by default
+    }
+
+    private void keepPrevious(String cacheKey)
+    {
+        T previous = cache.get(cacheKey);
+        if (previous != null) {
+            if (previousObjects.size() >= MAX_PREVIOUS) {
+                previousObjects.clear();
+            }
+            previousObjects.put(cacheKey, previous);
+        }
+    }
+
     @Override
     public void set(LESSResourceReference lessResourceReference, SkinReference skin,
         ColorThemeReference colorTheme, T content)
+    {
+        String cacheKey = setInMemory(lessResourceReference, skin, colorTheme, content);
+        store(cacheKey, content);
+    }
+
+    @Override
+    public void setFailure(LESSResourceReference lessResourceReference, SkinReference skin,
+        ColorThemeReference colorTheme, T content)
+    {
+        // Don't store the error, it would be returned as previous object after a restart
+        setInMemory(lessResourceReference, skin, colorTheme, content);
+    }
+
+    private String setInMemory(LESSResourceReference lessResourceReference, SkinReference skin,
+        ColorThemeReference colorTheme, T content)
     {
         // Store the content in the cache
         String cacheKey = cacheKeyFactory.getCacheKey(lessResourceReference, skin, colorTheme, isContextHandled);
         cache.set(cacheKey, content);
+        previousObjects.remove(cacheKey);
 
         // Add the new key to maps
         registerCacheKey(cachedFilesKeysMapPerSkin, cacheKey, skin);
         registerCacheKey(cachedFilesKeysMapPerColorTheme, cacheKey, colorTheme);
         registerCacheKey(cachedFilesKeysMapPerLESSResource, cacheKey, lessResourceReference);
+
+        return cacheKey;
     }
 
     /**
@@ -122,7 +220,14 @@ private void registerCacheKey(Map<Object, List<String>> cachedFilesKeysMap, Stri
     @Override
     public void clear()
     {
+        for (List<String> cachedFilesKeys : cachedFilesKeysMapPerLESSResource.values()) {
+            for (String cachedFileKey : cachedFilesKeys) {
+                keepPrevious(cachedFileKey);
+            }
+        }
+
         cache.removeAll();
+        deleteAll();
         cachedFilesKeysMapPerSkin.clear();
         cachedFilesKeysMapPerColorTheme.clear();
         cachedFilesKeysMapPerLESSResource.clear();
@@ -137,7 +242,9 @@ private void clearFromCriteria(Map<Object, List<String>> cachedFilesKeysMap, Obj
         }
         // Remove all the cached files corresponding to the cached keys
         for (String cachedFileKey : cachedFilesKeys) {
+            keepPrevious(cachedFileKey);
             cache.remove(cachedFileKey);
+            delete(cachedFileKey);
         }
         // Remove the list of cached keys corresponding to the criteria
         cachedFilesKeysMap.remove(criteria);
@@ -19,6 +19,9 @@
  */
 package org.xwiki.lesscss.internal.cache;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.inject.Inject;
 import javax.inject.Provider;
 
@@ -67,6 +70,11 @@
     @Inject
     protected Logger logger;
 
+    /**
+     * The mutexes of the results currently being computed.
+     */
+    private final Set<Object> computing = ConcurrentHashMap.newKeySet();
+
     /**
      * Get the result of the compilation.
      * @param lessResourceReference reference to the LESS content
@@ -113,6 +121,18 @@ public T getResult(LESSResourceReference lessResourceReference, boolean includeS
         // Only one computation is allowed in the same time per color theme, then the waiting threads will be able to
         // use the last result stored in the cache.
         Object mutex = cache.getMutex(lessResourceReference, skinReference, colorThemeReference);
+
+        // Don't wait for the computation in progress: return the result it is going to replace if there is one
+        if (!force && !lessContext.isHtmlExport() && computing.contains(mutex)) {
+            result = cache.get(lessResourceReference, skinReference, colorThemeReference);
+            if (result == null) {
+                result = cache.getPrevious(lessResourceReference, skinReference, colorThemeReference);
+            }
+            if (result != null) {
+                return cloneResult(result);
+            }
+        }
+
         synchronized (mutex) {
 
             // Check if the result is in the cache
@@ -133,16 +153,20 @@ public T getResult(LESSResourceReference lessResourceReference, boolean includeS
             }
 
             // Either the result was in the cache or the force flag is set to true, we need to compile
+            computing.add(mutex);
             try {
                 result = compiler.compute(lessResourceReference, includeSkinStyle, useVelocity, true, skin);
+
+                // Put the result in the cache
+                cache.set(lessResourceReference, skinReference, colorThemeReference, result);
             } catch (LESSCompilerException e) {
                 logger.error("Error during the compilation of the resource [{}].", lessResourceReference, e);
                 // We must cache the result, even if the compilation have failed, to prevent re-compiling again and
                 // again (the compilation will still fail until the LESS resource is updated so it useless to retry).
                 result = exceptionAsResult(e);
+                cache.setFailure(lessResourceReference, skinReference, colorThemeReference, result);
             } finally {
-                // Put the result in the cache
-                cache.set(lessResourceReference, skinReference, colorThemeReference, result);
+                computing.remove(mutex);
             }
         }
 
@@ -19,9 +19,16 @@
  */
 package org.xwiki.lesscss.internal.cache;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheFactory;
 import org.xwiki.cache.CacheManager;
@@ -30,6 +37,7 @@
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
 
 /**
  * Default implementation for {@link org.xwiki.lesscss.internal.cache.LESSResourcesCache}.
@@ -46,9 +54,21 @@ public class DefaultLESSResourcesCache extends AbstractCache<String> implements
      */
     public static final String LESS_FILES_CACHE_ID = "lesscss.skinfiles.cache";
 
+    /**
+     * The directory, relative to the permanent directory, where the generated CSS are stored to be used as previous
+     * result after a restart.
+     */
+    private static final String STORE_PATH = "cache/lesscss/";
+
     @Inject
     private CacheManager cacheManager;
 
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -61,4 +81,58 @@ public void initialize() throws InitializationException
                     String.format("Failed to initialize LESS skin files cache [%s].", LESS_FILES_CACHE_ID), e);
         }
     }
+
+    private File getStoreDirectory()
+    {
+        File permanentDirectory = this.environment.getPermanentDirectory();
+
+        return permanentDirectory != null ? new File(permanentDirectory, STORE_PATH) : null;
+    }
+
+    private File getStoreFile(String cacheKey)
+    {
+        File storeDirectory = getStoreDirectory();
+
+        return storeDirectory != null ? new File(storeDirectory, DigestUtils.md5Hex(cacheKey) + ".css") : null;
+    }
+
+    @Override
+    protected void store(String cacheKey, String content)
+    {
+        File file = getStoreFile(cacheKey);
+        if (file != null) {
+            try {
+                FileUtils.write(file, content, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                this.logger.warn("Failed to store the generated CSS for key [{}]: {}", cacheKey, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected String load(String cacheKey)
+    {
+        File file = getStoreFile(cacheKey);
+        if (file != null && file.exists()) {
+            try {
+                return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                this.logger.warn("Failed to load the stored CSS for key [{}]: {}", cacheKey, e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void delete(String cacheKey)
+    {
+        FileUtils.deleteQuietly(getStoreFile(cacheKey));
+    }
+
+    @Override
+    protected void deleteAll()
+    {
+        FileUtils.deleteQuietly(getStoreDirectory());
+    }
 }
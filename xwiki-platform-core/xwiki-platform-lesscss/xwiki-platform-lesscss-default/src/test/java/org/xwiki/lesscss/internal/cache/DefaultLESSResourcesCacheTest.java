@@ -19,19 +19,25 @@
  */
 package org.xwiki.lesscss.internal.cache;
 
+import java.io.File;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheFactory;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.environment.Environment;
 import org.xwiki.lesscss.internal.colortheme.NamedColorThemeReference;
 import org.xwiki.lesscss.internal.resources.LESSSkinFileResourceReference;
 import org.xwiki.lesscss.internal.skin.FSSkinReference;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -51,6 +57,9 @@
     public MockitoComponentMockingRule<DefaultLESSResourcesCache> mocker =
             new MockitoComponentMockingRule<>(DefaultLESSResourcesCache.class);
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private CacheManager cacheManager;
 
     private Cache<String> cache;
@@ -218,4 +227,73 @@ public void clearFromLESSResource() throws Exception
         verify(cache, never()).remove("k3");
     }
 
+    @Test
+    public void getPrevious() throws Exception
+    {
+        LESSSkinFileResourceReference file = createLESSSkinFileResourceReference("lessResource");
+
+        mocker.getComponentUnderTest().set(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme"), "css");
+        when(cache.get("12_lessResource_4_skin_10_colorTheme")).thenReturn("css");
+
+        // Nothing was removed yet
+        assertNull(mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+
+        mocker.getComponentUnderTest().clearFromColorTheme(new NamedColorThemeReference("colorTheme"));
+
+        assertEquals("css", mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+
+        // The previous object is forgotten when a new one is computed
+        mocker.getComponentUnderTest().set(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme"), "new css");
+
+        assertNull(mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+    }
+
+    @Test
+    public void getPreviousFromStore() throws Exception
+    {
+        Environment environment = mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        LESSSkinFileResourceReference file = createLESSSkinFileResourceReference("lessResource");
+
+        mocker.getComponentUnderTest().set(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme"), "css");
+
+        // Nothing in memory (as after a restart), the CSS stored on disk is used
+        assertEquals("css", mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+
+        // The stored CSS is deleted when it's invalidated
+        mocker.getComponentUnderTest().clearFromColorTheme(new NamedColorThemeReference("colorTheme"));
+
+        assertNull(mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+
+        mocker.getComponentUnderTest().set(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme"), "css");
+        mocker.getComponentUnderTest().clear();
+
+        assertFalse(new File(this.folder.getRoot(), "cache/lesscss").exists());
+    }
+
+    @Test
+    public void setFailureIsNotStored() throws Exception
+    {
+        Environment environment = mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        LESSSkinFileResourceReference file = createLESSSkinFileResourceReference("lessResource");
+
+        mocker.getComponentUnderTest().setFailure(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme"), "/* error */");
+
+        verify(cache).set("12_lessResource_4_skin_10_colorTheme", "/* error */");
+        assertNull(mocker.getComponentUnderTest().getPrevious(file, new FSSkinReference("skin"),
+            new NamedColorThemeReference("colorTheme")));
+    }
 }
@@ -19,6 +19,11 @@
  */
 package org.xwiki.lesscss.internal.compiler;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import javax.inject.Provider;
 
 import org.apache.commons.lang3.StringUtils;
@@ -212,9 +217,52 @@ public void compileWhenError() throws Exception
         // Asserts
         assertTrue(StringUtils.startsWith(result, "/* org.xwiki.lesscss.compiler.LESSCompilerException: an exception"));
         assertTrue(StringUtils.endsWith(result, "*/"));
-        verify(cache).set(eq(lessResourceReference), eq(skinReference), eq(colorThemeReference), eq(result));
+        verify(cache).setFailure(eq(lessResourceReference), eq(skinReference), eq(colorThemeReference),
+            eq(result));
+        verify(cache, never()).set(any(LESSResourceReference.class), any(SkinReference.class),
+            any(ColorThemeReference.class), any());
         verify(mocker.getMockedLogger()).error(eq("Error during the compilation of the resource [{}]."),
                 eq(lessResourceReference), eq(expectedException));
     }
 
+    @Test
+    public void compileWhenAlreadyCompiling() throws Exception
+    {
+        // Mocks
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        when(cachedLESSCompiler.compute(eq(lessResourceReference), eq(false), eq(false), eq(true), eq("skin")))
+            .thenAnswer(invocation -> {
+                computing.countDown();
+                finish.await();
+
+                return "compiled output";
+            });
+        when(cache.getPrevious(eq(lessResourceReference), eq(skinReference), eq(colorThemeReference)))
+            .thenReturn("previous output");
+
+        DefaultLESSCompiler compiler = mocker.getComponentUnderTest();
+
+        // Test
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> future =
+                executor.submit(() -> compiler.compile(lessResourceReference, false, false, false));
+
+            computing.await();
+
+            // The previous result is returned without waiting for the compilation in progress
+            assertEquals("previous output", compiler.compile(lessResourceReference, false, false, false));
+
+            finish.countDown();
+
+            assertEquals("compiled output", future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Verify
+        verify(cachedLESSCompiler, times(1)).compute(eq(lessResourceReference), eq(false), eq(false), eq(true),
+            eq("skin"));
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.event;
+
+import org.xwiki.observation.event.Event;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Event sent when the translations provided by a {@link org.xwiki.localization.TranslationBundle} changed (for example
+ * when the document containing them has been modified), so that the cached translations are forgotten.
+ * <p>
+ * The event also send the following parameters:
+ * </p>
+ * <ul>
+ * <li>source: the {@link org.xwiki.localization.TranslationBundle} which changed</li>
+ * <li>data: null</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Unstable
+public class TranslationBundleUpdatedEvent implements Event
+{
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof TranslationBundleUpdatedEvent;
+    }
+}
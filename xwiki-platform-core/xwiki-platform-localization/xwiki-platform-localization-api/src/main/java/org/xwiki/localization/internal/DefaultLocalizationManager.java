@@ -19,6 +19,7 @@
  */
 package org.xwiki.localization.internal;
 
+import java.util.Collection;
 import java.util.Locale;
 
 import javax.inject.Inject;
@@ -68,18 +69,24 @@ public class DefaultLocalizationManager implements LocalizationManager
     @Inject
     private Logger logger;
 
+    /**
+     * Used to find the translations without asking each bundle every time.
+     */
+    @Inject
+    private TranslationIndexManager indexManager;
+
     @Override
     public Translation getTranslation(String key, Locale locale)
     {
-        for (TranslationBundle bundle : this.bundleContext.getBundles()) {
-            try {
-                Translation translation = bundle.getTranslation(key, locale);
-                if (translation != null && translation.getLocale().equals(locale)) {
-                    return translation;
-                }
-            } catch (Exception e) {
-                this.logger.error("Failed to get translation", e);
-            }
+        Collection<TranslationBundle> bundles = this.bundleContext.getBundles();
+
+        if (bundles instanceof TranslationBundleSet && key != null && locale != null) {
+            return this.indexManager.getIndex((TranslationBundleSet) bundles).getTranslation(key, locale);
+        }
+
+        Translation translation = TranslationIndex.getTranslation(bundles, key, locale, this.logger);
+        if (translation != null) {
+            return translation;
         }
 
         // Try parent locale
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.TreeSet;
+
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * The bundles of a wiki, ordered by priority, associated with the index of their translations (see
+ * {@link TranslationIndexManager}).
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class TranslationBundleSet extends TreeSet<TranslationBundle>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String wiki;
+
+    private transient volatile TranslationIndex index;
+
+    /**
+     * @param wiki the wiki of the bundles
+     */
+    public TranslationBundleSet(String wiki)
+    {
+        this.wiki = wiki;
+    }
+
+    /**
+     * @return the wiki of the bundles
+     */
+    public String getWiki()
+    {
+        return this.wiki;
+    }
+
+    /**
+     * @return the index of the translations of the bundles, null if unknown
+     */
+    public TranslationIndex getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * @param index the index of the translations of the bundles
+     */
+    public void setIndex(TranslationIndex index)
+    {
+        this.index = index;
+    }
+
+    @Override
+    public boolean add(TranslationBundle bundle)
+    {
+        boolean added = super.add(bundle);
+
+        if (added) {
+            this.index = null;
+        }
+
+        return added;
+    }
+
+    @Override
+    public boolean remove(Object bundle)
+    {
+        boolean removed = super.remove(bundle);
+
+        if (removed) {
+            this.index = null;
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+
+        this.index = null;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.xwiki.localization.LocaleUtils;
+import org.xwiki.localization.Translation;
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * The translations found in a list of bundles, for each locale. Each key is searched in the bundles (and their parent
+ * locales) only the first time it's asked, including the keys which don't have any translation.
+ * <p>
+ * An index is never modified once a key is resolved: it's dropped and a new one is created when one of its bundles
+ * changes.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class TranslationIndex
+{
+    /**
+     * The maximum number of keys indexed for each locale, to not fill the memory with unknown keys.
+     */
+    private static final int MAX_KEYS = 100000;
+
+    private final List<TranslationBundle> bundles;
+
+    private final Logger logger;
+
+    private final Map<Locale, Map<String, Optional<Translation>>> translations = new ConcurrentHashMap<>();
+
+    private volatile boolean disposed;
+
+    /**
+     * @param bundles the bundles, ordered by priority
+     * @param logger the logger used to log errors from the bundles
+     */
+    public TranslationIndex(List<TranslationBundle> bundles, Logger logger)
+    {
+        this.bundles = bundles;
+        this.logger = logger;
+    }
+
+    /**
+     * @param bundle a bundle
+     * @return true if the passed bundle is one of the bundles of this index
+     */
+    public boolean contains(TranslationBundle bundle)
+    {
+        return this.bundles.contains(bundle);
+    }
+
+    /**
+     * Indicate that this index should not be used anymore.
+     */
+    public void dispose()
+    {
+        this.disposed = true;
+    }
+
+    /**
+     * @return true if this index should not be used anymore
+     */
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    /**
+     * Find a translation in the bundles of this index, falling back on the parent locales.
+     *
+     * @param key the key of the translation
+     * @param locale the locale of the translation
+     * @return the translation, null if none could be found
+     */
+    public Translation getTranslation(String key, Locale locale)
+    {
+        Map<String, Optional<Translation>> localeTranslations =
+            this.translations.computeIfAbsent(locale, k -> new ConcurrentHashMap<>());
+
+        Optional<Translation> translation = localeTranslations.get(key);
+
+        if (translation == null) {
+            translation = Optional.ofNullable(resolve(key, locale));
+
+            if (!this.disposed && localeTranslations.size() < MAX_KEYS) {
+                localeTranslations.put(key, translation);
+            }
+        }
+
+        return translation.orElse(null);
+    }
+
+    private Translation resolve(String key, Locale locale)
+    {
+        Translation translation = getTranslation(this.bundles, key, locale, this.logger);
+
+        if (translation == null) {
+            // Try parent locale
+            Locale parentLocale = LocaleUtils.getParentLocale(locale);
+            if (parentLocale != null) {
+                translation = getTranslation(key, parentLocale);
+            }
+        }
+
+        return translation;
+    }
+
+    /**
+     * Find a translation for the exact passed locale in a list of bundles.
+     *
+     * @param bundles the bundles, ordered by priority
+     * @param key the key of the translation
+     * @param locale the locale of the translation
+     * @param logger the logger used to log errors from the bundles
+     * @return the translation found in the first bundle having one for the passed locale, null if none could be found
+     */
+    public static Translation getTranslation(Collection<TranslationBundle> bundles, String key, Locale locale,
+        Logger logger)
+    {
+        for (TranslationBundle bundle : bundles) {
+            try {
+                Translation translation = bundle.getTranslation(key, locale);
+                if (translation != null && translation.getLocale().equals(locale)) {
+                    return translation;
+                }
+            } catch (Exception e) {
+                logger.error("Failed to get translation", e);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.localization.event.TranslationBundleUpdatedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Forget the indexed translations when the bundles change.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@Named(TranslationIndexListener.NAME)
+@Singleton
+public class TranslationIndexListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.localization.internal.TranslationIndexListener";
+
+    @Inject
+    private TranslationIndexManager indexManager;
+
+    /**
+     * The default constructor.
+     */
+    public TranslationIndexListener()
+    {
+        super(NAME, new ComponentDescriptorAddedEvent(TranslationBundle.class),
+            new ComponentDescriptorRemovedEvent(TranslationBundle.class), new TranslationBundleUpdatedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof TranslationBundleUpdatedEvent && source instanceof TranslationBundle) {
+            this.indexManager.invalidate((TranslationBundle) source);
+        } else {
+            this.indexManager.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * Share the indexes of the translations between all the bundle sets (one for each wiki and execution context) having
+ * the same bundles.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = TranslationIndexManager.class)
+@Singleton
+public class TranslationIndexManager
+{
+    /**
+     * The maximum number of indexes kept (each on demand bundle combination creates a new index).
+     */
+    private static final int MAX_INDEXES = 1000;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<List<Object>, TranslationIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * @param bundles the bundles of a wiki
+     * @return the index of the translations of the passed bundles
+     */
+    public TranslationIndex getIndex(TranslationBundleSet bundles)
+    {
+        TranslationIndex index = bundles.getIndex();
+
+        if (index == null || index.isDisposed()) {
+            List<TranslationBundle> bundleList = new ArrayList<>(bundles);
+            List<Object> key = Arrays.asList(bundles.getWiki(), bundleList);
+
+            index = this.indexes.get(key);
+
+            if (index == null) {
+                if (this.indexes.size() >= MAX_INDEXES) {
+                    invalidateAll();
+                }
+
+                index = this.indexes.computeIfAbsent(key, k -> new TranslationIndex(bundleList, this.logger));
+            }
+
+            bundles.setIndex(index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Forget the indexes containing the passed bundle.
+     *
+     * @param bundle the bundle which changed
+     */
+    public void invalidate(TranslationBundle bundle)
+    {
+        boolean found = false;
+
+        for (Iterator<TranslationIndex> it = this.indexes.values().iterator(); it.hasNext();) {
+            TranslationIndex index = it.next();
+
+            if (index.contains(bundle)) {
+                it.remove();
+                index.dispose();
+
+                found = true;
+            }
+        }
+
+        // The bundle might be used through another bundle (for example the wiki bundle contains the bundles of each
+        // wiki translation documents)
+        if (!found) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Forget all the indexes.
+     */
+    public void invalidateAll()
+    {
+        for (Iterator<TranslationIndex> it = this.indexes.values().iterator(); it.hasNext();) {
+            TranslationIndex index = it.next();
+
+            it.remove();
+            index.dispose();
+        }
+    }
+}
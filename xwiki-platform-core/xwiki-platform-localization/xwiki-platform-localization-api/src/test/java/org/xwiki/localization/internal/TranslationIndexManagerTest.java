@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.localization.Translation;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link TranslationIndexManager} and {@link TranslationIndex}.
+ *
+ * @version $Id$
+ */
+public class TranslationIndexManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<TranslationIndexManager> mocker =
+        new MockitoComponentMockingRule<>(TranslationIndexManager.class);
+
+    private TranslationBundle bundle1;
+
+    private TranslationBundle bundle2;
+
+    private Translation translation1;
+
+    private Translation translation2;
+
+    private TranslationBundleSet bundles;
+
+    @Before
+    public void before()
+    {
+        this.bundle1 = mockBundle("bundle1", 1);
+        this.bundle2 = mockBundle("bundle2", 2);
+
+        this.translation1 = mock(Translation.class, "translation1");
+        when(this.translation1.getLocale()).thenReturn(Locale.ROOT);
+        this.translation2 = mock(Translation.class, "translation2");
+        when(this.translation2.getLocale()).thenReturn(Locale.ENGLISH);
+
+        when(this.bundle1.getTranslation("key", Locale.ROOT)).thenReturn(this.translation1);
+        when(this.bundle1.getTranslation("key", Locale.ENGLISH)).thenReturn(this.translation1);
+        when(this.bundle2.getTranslation("key", Locale.ENGLISH)).thenReturn(this.translation2);
+
+        this.bundles = new TranslationBundleSet("wiki");
+        this.bundles.add(this.bundle2);
+        this.bundles.add(this.bundle1);
+    }
+
+    private TranslationBundle mockBundle(String name, int priority)
+    {
+        TranslationBundle bundle = mock(TranslationBundle.class, name);
+
+        when(bundle.getPriority()).thenReturn(priority);
+        when(bundle.compareTo(any())).thenAnswer(
+            invocation -> Integer.compare(priority, ((TranslationBundle) invocation.getArgument(0)).getPriority()));
+
+        return bundle;
+    }
+
+    @Test
+    public void getTranslation() throws Exception
+    {
+        TranslationIndex index = this.mocker.getComponentUnderTest().getIndex(this.bundles);
+
+        // The translation of the first bundle is not in the asked locale
+        assertSame(this.translation2, index.getTranslation("key", Locale.ENGLISH));
+        assertSame(this.translation1, index.getTranslation("key", Locale.US));
+        assertSame(this.translation1, index.getTranslation("key", Locale.FRENCH));
+        assertNull(index.getTranslation("unknown", Locale.ENGLISH));
+
+        assertSame(this.translation2, index.getTranslation("key", Locale.ENGLISH));
+        assertNull(index.getTranslation("unknown", Locale.ENGLISH));
+
+        // Each bundle is asked only once for each key and locale
+        verify(this.bundle1, times(1)).getTranslation("key", Locale.ENGLISH);
+        verify(this.bundle2, times(1)).getTranslation("key", Locale.ENGLISH);
+        verify(this.bundle1, times(1)).getTranslation("unknown", Locale.ENGLISH);
+        verify(this.bundle1, times(1)).getTranslation("key", Locale.ROOT);
+    }
+
+    @Test
+    public void getIndexIsShared() throws Exception
+    {
+        TranslationIndex index = this.mocker.getComponentUnderTest().getIndex(this.bundles);
+
+        TranslationBundleSet otherBundles = new TranslationBundleSet("wiki");
+        otherBundles.add(this.bundle1);
+        otherBundles.add(this.bundle2);
+
+        assertSame(index, this.mocker.getComponentUnderTest().getIndex(otherBundles));
+
+        // Adding a bundle produces a new index
+        otherBundles.add(mockBundle("bundle3", 3));
+
+        assertNotSame(index, this.mocker.getComponentUnderTest().getIndex(otherBundles));
+
+        // Another wiki produces a new index
+        TranslationBundleSet otherWikiBundles = new TranslationBundleSet("otherwiki");
+        otherWikiBundles.add(this.bundle1);
+        otherWikiBundles.add(this.bundle2);
+
+        assertNotSame(index, this.mocker.getComponentUnderTest().getIndex(otherWikiBundles));
+    }
+
+    @Test
+    public void invalidate() throws Exception
+    {
+        TranslationIndex index = this.mocker.getComponentUnderTest().getIndex(this.bundles);
+
+        assertSame(this.translation2, index.getTranslation("key", Locale.ENGLISH));
+
+        Translation newTranslation = mock(Translation.class, "newTranslation");
+        when(newTranslation.getLocale()).thenReturn(Locale.ENGLISH);
+        when(this.bundle2.getTranslation("key", Locale.ENGLISH)).thenReturn(newTranslation);
+
+        this.mocker.getComponentUnderTest().invalidate(this.bundle2);
+
+        TranslationIndex newIndex = this.mocker.getComponentUnderTest().getIndex(this.bundles);
+
+        assertNotSame(index, newIndex);
+        assertSame(newTranslation, newIndex.getTranslation("key", Locale.ENGLISH));
+    }
+}
@@ -49,6 +49,8 @@
 import org.xwiki.localization.TranslationBundleFactoryDoesNotExistsException;
 import org.xwiki.localization.internal.DefaultLocalizationManager;
 import org.xwiki.localization.internal.DefaultTranslationBundleContext;
+import org.xwiki.localization.internal.TranslationIndexListener;
+import org.xwiki.localization.internal.TranslationIndexManager;
 import org.xwiki.localization.messagetool.internal.MessageToolTranslationMessageParser;
 import org.xwiki.model.internal.DefaultModelContext;
 import org.xwiki.observation.EventListener;
@@ -60,7 +62,8 @@
 
 @ComponentList({JARTranslationBundleFactory.class, MessageToolTranslationMessageParser.class,
 PlainTextBlockParser.class, ContextComponentManagerProvider.class, DefaultLocalizationManager.class,
-DefaultTranslationBundleContext.class, DefaultModelContext.class, DefaultExecution.class,
+DefaultTranslationBundleContext.class, TranslationIndexManager.class, TranslationIndexListener.class,
+DefaultModelContext.class, DefaultExecution.class,
 DefaultObservationManager.class, JARTranslationBundleFactoryListener.class, DefaultComponentManagerManager.class,
 EmbeddableComponentManagerFactory.class})
 public class JARTranslationBundleFactoryTest
@@ -35,6 +35,7 @@
 import org.xwiki.localization.LocaleUtils;
 import org.xwiki.localization.Translation;
 import org.xwiki.localization.TranslationBundle;
+import org.xwiki.localization.event.TranslationBundleUpdatedEvent;
 import org.xwiki.localization.internal.AbstractTranslationBundle;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
@@ -161,6 +162,8 @@ public List<Event> getEvents()
     public void onEvent(Event arg0, Object arg1, Object arg2)
     {
         intializeBundles();
+
+        this.observation.notify(new TranslationBundleUpdatedEvent(), this);
     }
 
     // Bundle
@@ -40,6 +40,7 @@
 import org.xwiki.localization.Translation;
 import org.xwiki.localization.TranslationBundle;
 import org.xwiki.localization.TranslationBundleContext;
+import org.xwiki.localization.event.TranslationBundleUpdatedEvent;
 import org.xwiki.localization.internal.AbstractCachedTranslationBundle;
 import org.xwiki.localization.internal.DefaultLocalizedTranslationBundle;
 import org.xwiki.localization.internal.DefaultTranslation;
@@ -239,6 +240,9 @@ public void onEvent(Event event, Object source, Object data)
                 this.bundleCache.remove(document.getDefaultLocale());
             }
         }
+
+        // Make sure the translations coming from this bundle are not remembered anywhere else
+        this.observation.notify(new TranslationBundleUpdatedEvent(), this);
     }
 
     @Override
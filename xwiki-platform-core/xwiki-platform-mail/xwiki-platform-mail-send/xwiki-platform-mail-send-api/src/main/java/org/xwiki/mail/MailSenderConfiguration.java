@@ -23,6 +23,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Represents all XWiki configuration options for the Mail Sending feature.
@@ -101,4 +102,25 @@
      * @since 6.4RC1
      */
     long getSendWaitTime();
+
+    /**
+     * @return the number of threads sending mails in parallel, each with its own connection to the SMTP server
+     * @since 9.12RC1
+     */
+    @Unstable
+    default int getSendThreadCount()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the maximum number of prepared mails waiting to be sent, after which the preparation of the next mails
+     *         waits for some mails to be sent (0 or less means no limit, the default is 1000)
+     * @since 9.12RC1
+     */
+    @Unstable
+    default int getSendQueueCapacity()
+    {
+        return 1000;
+    }
 }
@@ -19,17 +19,22 @@
  */
 package org.xwiki.mail.internal;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.mail.MessagingException;
 import javax.mail.Session;
+import javax.mail.util.SharedFileInputStream;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
@@ -41,6 +46,9 @@
 
 /**
  * Stores mail content on the file system.
+ * <p>
+ * Loaded messages are {@link FileSystemMimeMessage}s which read their content from the file only when needed: they
+ * should be closed once they're not needed anymore.
  *
  * @version $Id$
  * @since 6.4M3
@@ -79,7 +87,11 @@ public void save(String batchId, ExtendedMimeMessage message) throws MailStoreEx
                 uniqueMessageId = message.getUniqueMessageId();
                 messageFile = getMessageFile(batchId, uniqueMessageId);
             }
-            message.writeTo(new FileOutputStream(messageFile));
+            if (isStoredIn(message, messageFile)) {
+                // The message content is already in the store (e.g. the message is being resent)
+                return;
+            }
+            write(message, messageFile);
         } catch (Exception e) {
             throw new MailStoreException(String.format(
                 "Failed to save message (id [%s], batch id [%s]) into file [%s]",
@@ -93,8 +105,13 @@ public ExtendedMimeMessage load(Session session, String batchId, String uniqueMe
         File messageFile = null;
         try {
             messageFile = getMessageFile(batchId, uniqueMessageId);
-            InputStream is = new FileInputStream(messageFile);
-            return new ExtendedMimeMessage(session, is);
+            SharedFileInputStream stream = new SharedFileInputStream(messageFile);
+            try {
+                return new FileSystemMimeMessage(session, messageFile, stream);
+            } catch (Exception e) {
+                stream.close();
+                throw e;
+            }
         } catch (Exception e) {
             throw new MailStoreException(String.format(
                 "Failed to load message (id [%s], batch id [%s]) from file [%s]",
@@ -118,6 +135,27 @@ public void delete(String batchId, String uniqueMessageId) throws MailStoreExcep
         }
     }
 
+    private boolean isStoredIn(ExtendedMimeMessage message, File messageFile)
+    {
+        return message instanceof FileSystemMimeMessage && ((FileSystemMimeMessage) message).isUnmodified()
+            && messageFile.equals(((FileSystemMimeMessage) message).getFile());
+    }
+
+    private void write(ExtendedMimeMessage message, File messageFile) throws IOException, MessagingException
+    {
+        // Write the message in a temporary file first so that the message file is never partially written, and that
+        // the messages being read from the previous version of the file are not affected.
+        File temporaryFile = File.createTempFile("mail", ".tmp", messageFile.getParentFile());
+        try {
+            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(temporaryFile))) {
+                message.writeTo(stream);
+            }
+            Files.move(temporaryFile.toPath(), messageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
     private File getBatchDirectory(String batchId)
     {
         File batchDirectory = new File(rootDirectory, getURLEncoded(batchId));
@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.util.SharedFileInputStream;
+
+import org.xwiki.mail.ExtendedMimeMessage;
+
+/**
+ * A message loaded from a file of the {@link FileSystemMailContentStore}. Its content is not loaded in memory but read
+ * from the file when needed (e.g. when sending it), so the message must be closed once it's not needed anymore.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class FileSystemMimeMessage extends ExtendedMimeMessage implements Closeable
+{
+    private final File file;
+
+    private final SharedFileInputStream stream;
+
+    /**
+     * @param session the Session object for this message
+     * @param file the file containing the message
+     * @param stream the stream opened on the file, closed when this message is closed
+     * @throws MessagingException when failing to parse the message
+     */
+    public FileSystemMimeMessage(Session session, File file, SharedFileInputStream stream) throws MessagingException
+    {
+        super(session, stream);
+
+        this.file = file;
+        this.stream = stream;
+    }
+
+    /**
+     * @return the file from which the message has been loaded
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * @return true if the message has not been modified since it has been loaded, i.e. the file is still up to date
+     */
+    public boolean isUnmodified()
+    {
+        return !this.modified;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.stream.close();
+    }
+}
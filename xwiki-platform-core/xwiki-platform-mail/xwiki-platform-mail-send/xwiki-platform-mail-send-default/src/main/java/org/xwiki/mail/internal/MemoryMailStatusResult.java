@@ -19,6 +19,7 @@
  */
 package org.xwiki.mail.internal;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -31,16 +32,25 @@
  * Implementation that saves all mail statuses in a Map in memory.
  *
  * This implementation is not meant for scalability. Don't use it if you're sending a large number of emails. Instead
- * use a Database Mail Listener for example.
+ * use a Database Mail Listener for example. To limit the memory used by large batches anyway, the statuses of the mails
+ * sent successfully are only kept while there are less than {@link #DEFAULT_MAX_STATUSES} statuses: after that,
+ * successfully sent mails are only counted (see {@link #getProcessedMailCount()}) while the errors are still all kept.
  *
  * @version $Id$
  * @since 6.4M3
  */
 public class MemoryMailStatusResult extends AbstractMailStatusResult
 {
+    /**
+     * The default maximum number of statuses kept before the statuses of the mails sent successfully are discarded.
+     *
+     * @since 9.12RC1
+     */
+    public static final int DEFAULT_MAX_STATUSES = 10000;
+
     private abstract class AbstractMailStatusIterator implements Iterator<MailStatus>
     {
-        private final Iterator<MailStatus> it = statusMap.values().iterator();
+        private final Iterator<MailStatus> it = getAll();
         private MailStatus nextStatus;
 
         abstract boolean match(MailStatus status);
@@ -86,13 +96,33 @@ public void remove()
      */
     private Map<String, MailStatus> statusMap = new LinkedHashMap<>();
 
+    private final int maxStatuses;
+
+    /**
+     * Keep at most {@link #DEFAULT_MAX_STATUSES} statuses of mails sent successfully.
+     */
+    public MemoryMailStatusResult()
+    {
+        this(DEFAULT_MAX_STATUSES);
+    }
+
+    /**
+     * @param maxStatuses the maximum number of statuses kept before the statuses of the mails sent successfully are
+     *            discarded
+     * @since 9.12RC1
+     */
+    public MemoryMailStatusResult(int maxStatuses)
+    {
+        this.maxStatuses = maxStatuses;
+    }
+
     /**
      * Retrieve the status for the given message identifier.
      *
      * @param uniqueMessageId the unique id of the message.
      * @return the mail status for the given message, or null if none were found.
      */
-    public MailStatus getStatus(String uniqueMessageId)
+    public synchronized MailStatus getStatus(String uniqueMessageId)
     {
         return this.statusMap.get(uniqueMessageId);
     }
@@ -102,15 +132,22 @@ public MailStatus getStatus(String uniqueMessageId)
      *
      * @param status the new status. Also contains the message id representing the target message
      */
-    public void setStatus(MailStatus status)
+    public synchronized void setStatus(MailStatus status)
     {
-        this.statusMap.put(status.getMessageId(), status);
+        if (this.statusMap.size() >= this.maxStatuses
+            && MailState.parse(status.getState()) == MailState.SEND_SUCCESS) {
+            // Too many statuses: the mail is only counted
+            this.statusMap.remove(status.getMessageId());
+        } else {
+            this.statusMap.put(status.getMessageId(), status);
+        }
     }
 
     @Override
-    public Iterator<MailStatus> getAll()
+    public synchronized Iterator<MailStatus> getAll()
     {
-        return this.statusMap.values().iterator();
+        // Return a copy since the mails of the batch can be sent while the statuses are being iterated
+        return new ArrayList<>(this.statusMap.values()).iterator();
     }
 
     @Override
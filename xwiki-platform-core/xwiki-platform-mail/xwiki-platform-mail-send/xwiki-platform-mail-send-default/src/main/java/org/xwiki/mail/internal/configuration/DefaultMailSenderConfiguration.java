@@ -103,6 +103,8 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
     private static final String PASSWORD_PROPERTY = "password";
     private static final String PROPERTIES_PROPERTY = "properties";
     private static final String SEND_WAIT_TIME = "sendWaitTime";
+    private static final String SEND_THREADS = "sendThreads";
+    private static final String SEND_QUEUE_CAPACITY = "sendQueueCapacity";
 
     @Inject
     private Logger logger;
@@ -318,4 +320,17 @@ public long getSendWaitTime()
 
         return waitTime;
     }
+
+    @Override
+    public int getSendThreadCount()
+    {
+        return Math.max(1, this.xwikiPropertiesSource.getProperty(PREFIX + SEND_THREADS, 1));
+    }
+
+    @Override
+    public int getSendQueueCapacity()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + SEND_QUEUE_CAPACITY,
+            MailSenderConfiguration.super.getSendQueueCapacity());
+    }
 }
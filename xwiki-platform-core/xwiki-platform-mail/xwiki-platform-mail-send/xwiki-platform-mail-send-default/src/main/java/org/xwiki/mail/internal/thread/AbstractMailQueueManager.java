@@ -19,8 +19,11 @@
  */
 package org.xwiki.mail.internal.thread;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles all operations on the Mail Queues.
@@ -35,12 +38,28 @@
      * The Mail queue that the mail sender thread will use to send mails. We use a separate thread to allow sending
      * mail asynchronously.
      */
-    private Queue<T> mailQueue = new ConcurrentLinkedQueue<>();
+    private BlockingQueue<T> mailQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * The mails given by {@link #pollMessage(long, TimeUnit)} which are not yet removed.
+     */
+    private Set<T> processedMails = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Limit the number of mails waiting in the queue. Should be called before the queue is used.
+     *
+     * @param capacity the maximum number of mails waiting in the queue, 0 or less for no limit
+     * @since 9.12RC1
+     */
+    protected void setCapacity(int capacity)
+    {
+        this.mailQueue = capacity > 0 ? new LinkedBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+    }
 
     /**
      * @return the mail queue containing all pending mails to be sent
      */
-    private Queue<T> getMailQueue()
+    private BlockingQueue<T> getMailQueue()
     {
         return this.mailQueue;
     }
@@ -51,6 +70,12 @@ public void addToQueue(T mailQueueItem)
         getMailQueue().add(mailQueueItem);
     }
 
+    @Override
+    public void putMessage(T mailQueueItem) throws InterruptedException
+    {
+        getMailQueue().put(mailQueueItem);
+    }
+
     @Override
     public boolean hasMessage()
     {
@@ -63,9 +88,21 @@ public T peekMessage()
         return getMailQueue().peek();
     }
 
+    @Override
+    public T pollMessage(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        T mailQueueItem = getMailQueue().poll(timeout, unit);
+
+        if (mailQueueItem != null) {
+            this.processedMails.add(mailQueueItem);
+        }
+
+        return mailQueueItem;
+    }
+
     @Override
     public boolean removeMessageFromQueue(T mailQueueItem)
     {
-        return getMailQueue().remove(mailQueueItem);
+        return this.processedMails.remove(mailQueueItem) || getMailQueue().remove(mailQueueItem);
     }
 }
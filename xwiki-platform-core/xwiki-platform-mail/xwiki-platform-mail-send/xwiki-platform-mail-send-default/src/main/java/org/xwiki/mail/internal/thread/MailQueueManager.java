@@ -19,6 +19,8 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.util.concurrent.TimeUnit;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -38,6 +40,15 @@
      */
     void addToQueue(T mailQueueItem);
 
+    /**
+     * Add a mail on the queue for processing, waiting for some mails to be processed if the queue is full.
+     *
+     * @param mailQueueItem the object representing the mail item to add to the queue
+     * @throws InterruptedException if interrupted while waiting
+     * @since 9.12RC1
+     */
+    void putMessage(T mailQueueItem) throws InterruptedException;
+
     /**
      * @return true if the queue has messages waiting for processing
      */
@@ -48,6 +59,19 @@
      */
     T peekMessage();
 
+    /**
+     * Wait for the next mail on the queue and give it to the caller only (several threads can process the queue in
+     * parallel). As with {@link #peekMessage()}, {@link #removeMessageFromQueue(MailQueueItem)} must be called once the
+     * mail has been processed.
+     *
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit the unit of the {@code timeout} parameter
+     * @return the next mail on the queue, or null if the timeout elapsed before a mail was available
+     * @throws InterruptedException if interrupted while waiting
+     * @since 9.12RC1
+     */
+    T pollMessage(long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * Removes the next mail on the queue.
      *
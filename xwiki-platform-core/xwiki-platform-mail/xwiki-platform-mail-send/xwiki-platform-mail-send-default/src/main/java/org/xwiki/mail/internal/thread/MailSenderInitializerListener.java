@@ -33,6 +33,7 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.phase.Disposable;
+import org.xwiki.mail.MailSenderConfiguration;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
 
@@ -72,9 +73,12 @@ public class MailSenderInitializerListener implements EventListener, Disposable
     @Named("send")
     private MailRunnable sendMailRunnable;
 
+    @Inject
+    private MailSenderConfiguration configuration;
+
     private Thread prepareMailThread;
 
-    private Thread sendMailThread;
+    private List<Thread> sendMailThreads = new ArrayList<>();
 
     @Override
     public String getName()
@@ -97,12 +101,15 @@ public void onEvent(Event event, Object o, Object o1)
         this.prepareMailThread.setDaemon(true);
         this.prepareMailThread.start();
 
-        // Step 2: Start the Mail Sender Thread
-        this.sendMailThread = new Thread(this.sendMailRunnable);
-        this.sendMailThread.setName("Mail Sender Thread");
-        this.sendMailThread.setDaemon(true);
-        this.sendMailThread.start();
-
+        // Step 2: Start the Mail Sender Threads, each one using its own connection to the SMTP server
+        int sendThreadCount = this.configuration.getSendThreadCount();
+        for (int i = 0; i < sendThreadCount; i++) {
+            Thread sendMailThread = new Thread(this.sendMailRunnable);
+            sendMailThread.setName(sendThreadCount > 1 ? "Mail Sender Thread #" + (i + 1) : "Mail Sender Thread");
+            sendMailThread.setDaemon(true);
+            sendMailThread.start();
+            this.sendMailThreads.add(sendMailThread);
+        }
     }
 
     /**
@@ -112,15 +119,19 @@ public void onEvent(Event event, Object o, Object o1)
      */
     private void stopMailThreads() throws InterruptedException
     {
-        // Step 1: Stop the Mail Sender Thread
+        // Step 1: Stop the Mail Sender Threads
 
-        if (this.sendMailThread != null) {
+        if (!this.sendMailThreads.isEmpty()) {
             this.sendMailRunnable.stopProcessing();
-            // Make sure the Thread goes out of sleep if it's sleeping so that it stops immediately.
-            this.sendMailThread.interrupt();
-            // Wait till the thread goes away
-            this.sendMailThread.join();
-            SHUTDOWN_LOGGER.debug(String.format("Mail Prepare Thread has been stopped"));
+            for (Thread sendMailThread : this.sendMailThreads) {
+                // Make sure the Thread goes out of sleep if it's sleeping so that it stops immediately.
+                sendMailThread.interrupt();
+            }
+            for (Thread sendMailThread : this.sendMailThreads) {
+                // Wait till the thread goes away
+                sendMailThread.join();
+            }
+            SHUTDOWN_LOGGER.debug(String.format("Mail Sender Threads have been stopped"));
         }
 
         // Step 2: Stop the Mail Prepare Thread
@@ -131,7 +142,7 @@ private void stopMailThreads() throws InterruptedException
             this.prepareMailThread.interrupt();
             // Wait till the thread goes away
             this.prepareMailThread.join();
-            SHUTDOWN_LOGGER.debug(String.format("Mail Sender Thread has been stopped"));
+            SHUTDOWN_LOGGER.debug(String.format("Mail Prepare Thread has been stopped"));
         }
     }
 
@@ -21,6 +21,7 @@
 
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,8 +44,9 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mail items on a Prepare Queue, and for each mail item there, generate the message
- * to send and persist it and put that reference on the Send Queue for sending.
+ * Runnable that waits for mail items on a Prepare Queue, and for each mail item there, generate the message to send
+ * and persist it and put that reference on the Send Queue for sending. The messages of a mail item are generated one
+ * at a time, while there's room for them on the Send Queue.
  *
  * @version $Id$
  * @since 6.4
@@ -54,6 +56,11 @@
 @Singleton
 public class PrepareMailRunnable extends AbstractMailRunnable
 {
+    /**
+     * How long to wait for a new mail item before checking if the thread should stop.
+     */
+    private static final long POLL_TIMEOUT = 1000L;
+
     @Inject
     private MailQueueManager<PrepareMailQueueItem> prepareMailQueueManager;
 
@@ -69,19 +76,18 @@ public void run()
     {
         do {
             try {
-                // Handle next message in the queue
-                if (this.prepareMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item after the message has been created and put on the sender
-                    // queue.
-                    PrepareMailQueueItem mailItem = this.prepareMailQueueManager.peekMessage();
+                // Wait for the next message in the queue
+                // Important: only remove the mail item after the message has been created and put on the sender
+                // queue.
+                PrepareMailQueueItem mailItem =
+                    this.prepareMailQueueManager.pollMessage(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (mailItem != null) {
                     try {
                         prepareMail(mailItem);
                     } finally {
                         this.prepareMailQueueManager.removeMessageFromQueue(mailItem);
                     }
                 }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(100L);
             } catch (InterruptedException e) {
                 // Thread has been stopped, exit
                 this.logger.debug("Mail Prepare Thread was forcefully stopped", e);
@@ -133,6 +139,11 @@ protected void prepareMail(PrepareMailQueueItem item) throws ExecutionContextExc
             if (listener != null) {
                 listener.onPrepareFatalError(e, Collections.<String, Object>emptyMap());
             }
+
+            if (e instanceof InterruptedException) {
+                // The thread is being stopped while waiting for room on the send queue
+                Thread.currentThread().interrupt();
+            }
         } finally {
             if (listener != null) {
                 MailStatusResult result = listener.getMailStatusResult();
@@ -158,7 +169,7 @@ protected void prepareContext(ExecutionContext executionContext) throws Executio
         }
     }
 
-    private void prepareSingleMail(MimeMessage mimeMessage, PrepareMailQueueItem item)
+    private void prepareSingleMail(MimeMessage mimeMessage, PrepareMailQueueItem item) throws InterruptedException
     {
         MailListener listener = item.getListener();
 
@@ -187,7 +198,9 @@ private void prepareSingleMail(MimeMessage mimeMessage, PrepareMailQueueItem ite
 
         // Step 4: Put the MimeMessage id on the Mail Send Queue for sending
         // Extract the wiki id from the context
-        this.sendMailQueueManager.addToQueue(new SendMailQueueItem(message.getUniqueMessageId(),
+        // Note: this waits when the send queue is full, so that the next messages are only generated once they can be
+        // sent soon.
+        this.sendMailQueueManager.putMessage(new SendMailQueueItem(message.getUniqueMessageId(),
             item.getSession(), listener, item.getBatchId(), extractWikiId(item)));
 
     }
@@ -19,9 +19,13 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.mail.MailSenderConfiguration;
 
 /**
  * Handles all operations on the Send Mail Queue.
@@ -32,6 +36,15 @@
 @Component
 @Singleton
 public class SendMailQueueManager extends AbstractMailQueueManager<SendMailQueueItem>
-    implements MailQueueManager<SendMailQueueItem>
+    implements MailQueueManager<SendMailQueueItem>, Initializable
 {
+    @Inject
+    private MailSenderConfiguration configuration;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Don't let the preparation of large batches get too far ahead of the sending
+        setCapacity(this.configuration.getSendQueueCapacity());
+    }
 }
@@ -19,16 +19,27 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.mail.Address;
 import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.context.ExecutionContext;
@@ -41,7 +52,8 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mails on a Queue, and for each mail tries to send it.
+ * Runnable that waits for mails on a Queue, and for each mail tries to send it. Several threads can run it in parallel,
+ * each one with its own connection to the SMTP server.
  *
  * @version $Id$
  * @since 6.4
@@ -51,6 +63,16 @@
 @Singleton
 public class SendMailRunnable extends AbstractMailRunnable
 {
+    /**
+     * How long to wait for a new mail before checking if the thread should stop.
+     */
+    private static final long POLL_TIMEOUT = 1000L;
+
+    /**
+     * The maximum number of recipient domains for which the next send time is remembered.
+     */
+    private static final int MAX_DOMAINS = 10000;
+
     @Inject
     private MailQueueManager<SendMailQueueItem> sendMailQueueManager;
 
@@ -64,25 +86,63 @@ public class SendMailRunnable extends AbstractMailRunnable
     @Inject
     private Provider<XWikiContext> contextProvider;
 
-    private Transport currentTransport;
+    /**
+     * The time before which no mail should be sent to each recipient domain.
+     */
+    private final Map<String, Long> nextSendTimes = new ConcurrentHashMap<>();
+
+    /**
+     * The throughput of a mail sender thread, logged in debug mode.
+     */
+    private static final class SendStatistics
+    {
+        private long sentCount;
 
-    private Session currentSession;
+        private long errorCount;
 
-    private int count;
+        /**
+         * The total time spent sending mails (not including the throttling), in milliseconds.
+         */
+        private long sendTime;
+
+        @Override
+        public String toString()
+        {
+            double throughput = this.sendTime > 0 ? (this.sentCount + this.errorCount) * 1000D / this.sendTime : 0;
+
+            return String.format("%d sent, %d errors, %.2f mails/s", this.sentCount, this.errorCount, throughput);
+        }
+    }
+
+    /**
+     * The state of a thread running this runnable.
+     */
+    private static final class Sender
+    {
+        private Transport currentTransport;
+
+        private Session currentSession;
+
+        private int count;
+
+        private final SendStatistics statistics = new SendStatistics();
+    }
 
     @Override
     public void run()
     {
+        Sender sender = new Sender();
+
         try {
             // Make sure we initialize an execution context.
             prepareContext();
 
-            runInternal();
+            runInternal(sender);
         } catch (ExecutionContextException e) {
             // Not much to do but log.
             logger.error("Failed to initialize the send mail thread's execution context", e);
         } finally {
-            closeTransport();
+            closeTransport(sender);
         }
     }
 
@@ -101,28 +161,22 @@ private void prepareContextForQueueItem(SendMailQueueItem mailItem)
         xcontext.setWikiId(mailItem.getWikiId());
     }
 
-    private void runInternal()
+    private void runInternal(Sender sender)
     {
         do {
             try {
-                // Handle next message in the queue
-                if (this.sendMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item from the queue after the mail has been sent as
-                    // otherwise, MailSender.waitTillSent() may return before the mail is actually sent!
-                    SendMailQueueItem mailItem = this.sendMailQueueManager.peekMessage();
+                // Wait for the next message in the queue
+                // Important: only remove the mail item from the queue after the mail has been sent as
+                // otherwise, MailSender.waitTillSent() may return before the mail is actually sent!
+                SendMailQueueItem mailItem =
+                    this.sendMailQueueManager.pollMessage(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (mailItem != null) {
                     try {
-                        sendMail(mailItem);
+                        sendMail(mailItem, sender);
                     } finally {
                         this.sendMailQueueManager.removeMessageFromQueue(mailItem);
                     }
-                    // Email throttling: Wait before processing the next mail queue item
-                    // Note: it's important that we wait after the previous item has been removed from the queue in
-                    // order to let users know as soon as possible that their mail has been sent (otherwise when sending
-                    // a synchronous mail, the user would have to wait the send wait time!).
-                    waitSendWaitTime();
                 }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(50L);
             } catch (InterruptedException e) {
                 // Thread has been stopped, exit
                 this.logger.debug("Mail Sender Thread was forcefully stopped", e);
@@ -138,8 +192,10 @@ private void runInternal()
      * Send the mail.
      *
      * @param item the queue item containing all the data for sending the mail
+     * @param sender the state of the current thread
+     * @throws InterruptedException if interrupted while waiting to send the mail
      */
-    protected void sendMail(SendMailQueueItem item)
+    private void sendMail(SendMailQueueItem item, Sender sender) throws InterruptedException
     {
         prepareContextForQueueItem(item);
 
@@ -156,49 +212,134 @@ protected void sendMail(SendMailQueueItem item)
             return;
         }
 
+        Exception error;
+        try {
+            // Email throttling: Wait for the send wait time to be elapsed since the previous mail sent to the same
+            // domains.
+            waitSendWaitTime(message);
+
+            error = sendMessage(message, item, sender);
+        } finally {
+            // The content of the message (read from the store while sending) is not needed anymore.
+            closeMessage(message);
+        }
+
+        // Step 4: Notify the user of the success or of the error if a listener has been provided
+        if (listener != null) {
+            if (error == null) {
+                listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
+            } else {
+                listener.onSendMessageError(message, error, Collections.<String, Object>emptyMap());
+            }
+        }
+    }
+
+    private Exception sendMessage(ExtendedMimeMessage message, SendMailQueueItem item, Sender sender)
+    {
+        long startTime = System.currentTimeMillis();
         try {
             // Step 2: If the current Session in use is different from the one passed then close
             // the current Transport, get a new one and reconnect.
             // Also do that every 100 mails sent.
             // TODO: explain why!
-            if (item.getSession() != this.currentSession || (this.count % 100) == 0) {
-                closeTransport();
-                this.currentSession = item.getSession();
-                this.currentTransport = this.currentSession.getTransport("smtp");
-                this.currentTransport.connect();
-            } else if (!this.currentTransport.isConnected()) {
-                this.currentTransport.connect();
+            if (item.getSession() != sender.currentSession || (sender.count % 100) == 0) {
+                closeTransport(sender);
+                sender.currentSession = item.getSession();
+                sender.currentTransport = sender.currentSession.getTransport("smtp");
+                sender.currentTransport.connect();
+            } else if (!sender.currentTransport.isConnected()) {
+                sender.currentTransport.connect();
             }
 
             // Step 3: Send the mail
             // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
             // message; this prevent the MessageID header to be changed.
-            this.currentTransport.sendMessage(message, message.getAllRecipients());
-            this.count++;
-
-            // Step 4: Notify the user of the success if a listener has been provided
-            if (listener != null) {
-                listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
+            sender.currentTransport.sendMessage(message, message.getAllRecipients());
+            sender.count++;
+            sender.statistics.sentCount++;
+            if ((sender.count % 100) == 0) {
+                this.logger.debug("[{}] {}", Thread.currentThread().getName(), sender.statistics);
             }
+
+            return null;
         } catch (Exception e) {
-            // An error occurred, notify the user if a listener has been provided.
-            if (listener != null) {
-                listener.onSendMessageError(message, e, Collections.<String, Object>emptyMap());
+            sender.statistics.errorCount++;
+
+            return e;
+        } finally {
+            sender.statistics.sendTime += System.currentTimeMillis() - startTime;
+        }
+    }
+
+    private void closeMessage(ExtendedMimeMessage message)
+    {
+        if (message instanceof Closeable) {
+            try {
+                ((Closeable) message).close();
+            } catch (IOException e) {
+                this.logger.warn("Failed to close the message [{}]. Reason [{}]", message.getUniqueMessageId(),
+                    ExceptionUtils.getRootCauseMessage(e));
             }
         }
     }
 
-    private void waitSendWaitTime() throws InterruptedException
+    private void waitSendWaitTime(ExtendedMimeMessage message) throws InterruptedException
     {
         long sendWaitTime = this.configuration.getSendWaitTime();
-        Thread.sleep(sendWaitTime);
+
+        if (sendWaitTime > 0) {
+            long now = System.currentTimeMillis();
+            long sendTime = now;
+
+            Set<String> domains = getRecipientDomains(message);
+            synchronized (this.nextSendTimes) {
+                if (this.nextSendTimes.size() > MAX_DOMAINS) {
+                    this.nextSendTimes.values().removeIf(time -> time < now);
+                }
+
+                for (String domain : domains) {
+                    sendTime = Math.max(sendTime, this.nextSendTimes.getOrDefault(domain, now));
+                }
+                for (String domain : domains) {
+                    this.nextSendTimes.put(domain, sendTime + sendWaitTime);
+                }
+            }
+
+            if (sendTime > now) {
+                Thread.sleep(sendTime - now);
+            }
+        }
+    }
+
+    private Set<String> getRecipientDomains(ExtendedMimeMessage message)
+    {
+        Set<String> domains = new LinkedHashSet<>();
+
+        try {
+            Address[] recipients = message.getAllRecipients();
+            if (recipients != null) {
+                for (Address recipient : recipients) {
+                    String address = null;
+                    if (recipient instanceof InternetAddress) {
+                        address = ((InternetAddress) recipient).getAddress();
+                    }
+                    domains.add(StringUtils.substringAfterLast(StringUtils.defaultString(address), "@")
+                        .toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (MessagingException e) {
+            // Throttle the mail as if it was sent to an unknown domain
+            domains.add("");
+        }
+
+        return domains;
     }
 
-    private void closeTransport()
+    private void closeTransport(Sender sender)
     {
-        if (this.currentTransport != null) {
+        if (sender.currentTransport != null) {
             try {
-                this.currentTransport.close();
+                sender.currentTransport.close();
             } catch (MessagingException e) {
                 this.logger.warn("Failed to close JavaMail Transport connection. Reason [{}]",
                     ExceptionUtils.getRootCauseMessage(e));
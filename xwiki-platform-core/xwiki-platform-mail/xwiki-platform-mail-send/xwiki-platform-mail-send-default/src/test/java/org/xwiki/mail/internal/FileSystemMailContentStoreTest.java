@@ -211,6 +211,34 @@ public void loadMessage() throws Exception
         assertEquals("Lorem ipsum dolor sit amet, consectetur adipiscing elit", message.getContent());
     }
 
+    @Test
+    public void saveLoadedMessage() throws Exception
+    {
+        Environment environment = this.mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(new File(TEMPORARY_DIRECTORY));
+
+        String batchId = UUID.randomUUID().toString();
+
+        ExtendedMimeMessage message = new ExtendedMimeMessage();
+        message.setText("Lorem ipsum dolor sit amet, consectetur adipiscing elit");
+        this.mocker.getComponentUnderTest().save(batchId, message);
+
+        Session session = Session.getInstance(new Properties());
+        try (FileSystemMimeMessage loadedMessage = (FileSystemMimeMessage) this.mocker.getComponentUnderTest()
+            .load(session, batchId, message.getUniqueMessageId())) {
+            loadedMessage.getFile().setLastModified(1000000000000L);
+
+            // The message is already stored: the file is left untouched
+            this.mocker.getComponentUnderTest().save(batchId, loadedMessage);
+            assertEquals(1000000000000L, loadedMessage.getFile().lastModified());
+
+            // The modified message is stored again, and the content of the loaded message can still be read
+            loadedMessage.setHeader("X-MailType", "test");
+            this.mocker.getComponentUnderTest().save(batchId, loadedMessage);
+            assertEquals("Lorem ipsum dolor sit amet, consectetur adipiscing elit", loadedMessage.getContent());
+        }
+    }
+
     @Test
     public void loadMessageThrowsMailStoreExceptionWhenError() throws Exception
     {
@@ -30,6 +30,8 @@
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -79,4 +81,35 @@ public void getAllErrorTest() throws Exception
         assertThat(allErrorIds, containsInAnyOrder(UNIQUE_MESSAGE_ID2, UNIQUE_MESSAGE_ID4, UNIQUE_MESSAGE_ID5));
         assertThat(allErrorIds.size(), equalTo(3));
     }
+
+    @Test
+    public void setStatusWhenTooManyStatuses() throws Exception
+    {
+        MemoryMailStatusResult statusResult = new MemoryMailStatusResult(2);
+        ExtendedMimeMessage message1 = mock(ExtendedMimeMessage.class);
+        when(message1.getUniqueMessageId()).thenReturn(UNIQUE_MESSAGE_ID1);
+        ExtendedMimeMessage message2 = mock(ExtendedMimeMessage.class);
+        when(message2.getUniqueMessageId()).thenReturn(UNIQUE_MESSAGE_ID2);
+        ExtendedMimeMessage message3 = mock(ExtendedMimeMessage.class);
+        when(message3.getUniqueMessageId()).thenReturn(UNIQUE_MESSAGE_ID3);
+
+        statusResult.setStatus(new MailStatus(BATCH_ID, message1, MailState.PREPARE_SUCCESS));
+        statusResult.setStatus(new MailStatus(BATCH_ID, message2, MailState.PREPARE_SUCCESS));
+        statusResult.setStatus(new MailStatus(BATCH_ID, message3, MailState.PREPARE_SUCCESS));
+
+        // Successfully sent mails are forgotten
+        statusResult.setStatus(new MailStatus(BATCH_ID, message1, MailState.SEND_SUCCESS));
+        assertNull(statusResult.getStatus(UNIQUE_MESSAGE_ID1));
+
+        // Errors are kept
+        statusResult.setStatus(new MailStatus(BATCH_ID, message2, MailState.SEND_ERROR));
+        assertEquals(MailState.SEND_ERROR.toString(), statusResult.getStatus(UNIQUE_MESSAGE_ID2).getState());
+
+        List<String> allIds = new ArrayList<>();
+        Iterator<MailStatus> it = statusResult.getAll();
+        while (it.hasNext()) {
+            allIds.add(it.next().getMessageId());
+        }
+        assertThat(allIds, containsInAnyOrder(UNIQUE_MESSAGE_ID2, UNIQUE_MESSAGE_ID3));
+    }
 }
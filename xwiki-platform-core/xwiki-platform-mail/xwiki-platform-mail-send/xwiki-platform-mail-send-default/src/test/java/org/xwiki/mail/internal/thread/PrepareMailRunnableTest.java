@@ -250,7 +250,7 @@ public Object answer(InvocationOnMock invocationOnMock) throws Throwable
                 ((UpdateableMailStatusResult)item.getListener().getMailStatusResult()).incrementCurrentSize();
                 return null;
             }
-        }).when(sendMailQueueManager).addToQueue(any(SendMailQueueItem.class));
+        }).when(sendMailQueueManager).putMessage(any(SendMailQueueItem.class));
 
 
         // Prepare 2 mails. Both will fail but we want to verify that the second one is processed even though the first
@@ -25,7 +25,9 @@
 import java.util.UUID;
 
 import javax.inject.Provider;
+import javax.mail.Message;
 import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
 import org.junit.Before;
@@ -36,6 +38,7 @@
 import org.xwiki.mail.ExtendedMimeMessage;
 import org.xwiki.mail.MailContentStore;
 import org.xwiki.mail.MailListener;
+import org.xwiki.mail.MailSenderConfiguration;
 import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStoreException;
@@ -206,4 +209,64 @@ public void sendMailWhenMailRetrievalFails() throws Exception
         }
         assertEquals(2, errorCount);
     }
+
+    @Test
+    public void sendMailWhenSendWaitTimeOnlyThrottlesSameDomain() throws Exception
+    {
+        // Create a Session with an invalid host so that it generates an error
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", "xwiki-unknown");
+        Session session = Session.getDefaultInstance(properties);
+
+        MimeMessage msg1 = new MimeMessage(session);
+        msg1.setRecipient(Message.RecipientType.TO, new InternetAddress("john@domain1.org"));
+        msg1.setText("Content1");
+        ExtendedMimeMessage message1 = new ExtendedMimeMessage(msg1);
+        String id1 = message1.getUniqueMessageId();
+        MimeMessage msg2 = new MimeMessage(session);
+        msg2.setRecipient(Message.RecipientType.TO, new InternetAddress("jane@domain2.org"));
+        msg2.setText("Content2");
+        ExtendedMimeMessage message2 = new ExtendedMimeMessage(msg2);
+        String id2 = message2.getUniqueMessageId();
+
+        MemoryMailListener listener = this.mocker.getInstance(MailListener.class, "memory");
+        String batchId = UUID.randomUUID().toString();
+        listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
+        ((UpdateableMailStatusResult) listener.getMailStatusResult()).setTotalSize(2);
+
+        SendMailQueueItem item1 = new SendMailQueueItem(id1, session, listener, batchId, "xwiki");
+        SendMailQueueItem item2 = new SendMailQueueItem(id2, session, listener, batchId, "xwiki");
+
+        MailQueueManager mailQueueManager = this.mocker.getInstance(
+            new DefaultParameterizedType(null, MailQueueManager.class, SendMailQueueItem.class));
+
+        MailContentStore contentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
+        when(contentStore.load(session, batchId, id1)).thenReturn(message1);
+        when(contentStore.load(session, batchId, id2)).thenReturn(message2);
+
+        // A very long wait time: the second mail would never be processed in time if it had to wait after the first
+        // one.
+        MailSenderConfiguration configuration = this.mocker.getInstance(MailSenderConfiguration.class);
+        when(configuration.getSendWaitTime()).thenReturn(60000L);
+
+        mailQueueManager.addToQueue(item1);
+        mailQueueManager.addToQueue(item2);
+
+        MailRunnable runnable = this.mocker.getComponentUnderTest();
+        Thread thread = new Thread(runnable);
+        thread.start();
+
+        // Wait for the mails to have been processed.
+        try {
+            listener.getMailStatusResult().waitTillProcessed(30000L);
+        } finally {
+            runnable.stopProcessing();
+            thread.interrupt();
+            thread.join();
+        }
+
+        // The mails are sent to different domains so none of them should have been throttled.
+        assertTrue(listener.getMailStatusResult().isProcessed());
+        assertEquals(2, listener.getMailStatusResult().getProcessedMailCount());
+    }
 }
@@ -51,4 +51,16 @@
      * @since 9.6RC1
      */
     int liveNotificationsGraceTime();
+
+    /**
+     * @return true if the matching events should be stored in the inbox of each user when they are added to the event
+     *         stream, so that the alerts of a user can be read without evaluating the preferences and the filters of
+     *         the user on the whole event stream
+     * @since 9.12RC1
+     */
+    @Unstable
+    default boolean isInboxEnabled()
+    {
+        return false;
+    }
 }
@@ -20,6 +20,8 @@
 package org.xwiki.notifications.filters.internal;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -58,14 +60,14 @@ public class CachedModelBridge implements ModelBridge
     @Override
     public Set<NotificationFilterPreference> getFilterPreferences(DocumentReference user) throws NotificationException
     {
-        ExecutionContext context = execution.getContext();
-        Object cachedPreferences = context.getProperty(USER_FILTER_PREFERENCES);
-        if (cachedPreferences != null && cachedPreferences instanceof Set) {
-            return (Set<NotificationFilterPreference>) cachedPreferences;
-        }
+        // The preferences of several users can be needed during the same request (e.g. when dispatching an event)
+        Map<DocumentReference, Set<NotificationFilterPreference>> cache = getCache(USER_FILTER_PREFERENCES);
 
-        Set<NotificationFilterPreference> preferences = modelBridge.getFilterPreferences(user);
-        context.setProperty(USER_FILTER_PREFERENCES, preferences);
+        Set<NotificationFilterPreference> preferences = cache.get(user);
+        if (preferences == null) {
+            preferences = modelBridge.getFilterPreferences(user);
+            cache.put(user, preferences);
+        }
 
         return preferences;
     }
@@ -74,16 +76,14 @@ public Set<NotificationFilterPreference> getFilterPreferences(DocumentReference
     public Set<String> getDisabledNotificationFiltersHints(DocumentReference user)
             throws NotificationException
     {
-        final String contextEntry = USER_TOGGLEABLE_FILTER_PREFERENCES;
+        Map<DocumentReference, Set<String>> cache = getCache(USER_TOGGLEABLE_FILTER_PREFERENCES);
 
-        ExecutionContext context = execution.getContext();
-        if (context.hasProperty(contextEntry)) {
-            return (Set<String>) context.getProperty(contextEntry);
+        Set<String> disabledFiltersHints = cache.get(user);
+        if (disabledFiltersHints == null) {
+            disabledFiltersHints = modelBridge.getDisabledNotificationFiltersHints(user);
+            cache.put(user, disabledFiltersHints);
         }
 
-        Set<String> disabledFiltersHints = modelBridge.getDisabledNotificationFiltersHints(user);
-        context.setProperty(contextEntry, disabledFiltersHints);
-
         return disabledFiltersHints;
     }
 
@@ -91,7 +91,7 @@ public Set<String> getDisabledNotificationFiltersHints(DocumentReference user)
     public void deleteFilterPreference(DocumentReference user, String filterPreferenceName) throws NotificationException
     {
         modelBridge.deleteFilterPreference(user, filterPreferenceName);
-        clearCache();
+        clearCache(user);
     }
 
     @Override
@@ -99,7 +99,7 @@ public void setFilterPreferenceEnabled(DocumentReference user, String filterPref
             throws NotificationException
     {
         modelBridge.setFilterPreferenceEnabled(user, filterPreferenceName, enabled);
-        clearCache();
+        clearCache(user);
     }
 
     @Override
@@ -107,13 +107,25 @@ public void saveFilterPreferences(DocumentReference user,
             Collection<NotificationFilterPreference> filterPreferences) throws NotificationException
     {
         modelBridge.saveFilterPreferences(user, filterPreferences);
-        clearCache();
+        clearCache(user);
     }
 
-    private void clearCache()
+    private <T> Map<DocumentReference, T> getCache(String contextEntry)
     {
         ExecutionContext context = execution.getContext();
-        context.removeProperty(USER_FILTER_PREFERENCES);
-        context.removeProperty(USER_TOGGLEABLE_FILTER_PREFERENCES);
+
+        Map<DocumentReference, T> cache = (Map<DocumentReference, T>) context.getProperty(contextEntry);
+        if (cache == null) {
+            cache = new HashMap<>();
+            context.setProperty(contextEntry, cache);
+        }
+
+        return cache;
+    }
+
+    private void clearCache(DocumentReference user)
+    {
+        getCache(USER_FILTER_PREFERENCES).remove(user);
+        getCache(USER_TOGGLEABLE_FILTER_PREFERENCES).remove(user);
     }
 }
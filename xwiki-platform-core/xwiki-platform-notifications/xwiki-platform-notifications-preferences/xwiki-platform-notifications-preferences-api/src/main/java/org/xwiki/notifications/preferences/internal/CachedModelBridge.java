@@ -20,7 +20,9 @@
 package org.xwiki.notifications.preferences.internal;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -57,23 +59,39 @@ public class CachedModelBridge implements ModelBridge
     public List<NotificationPreference> getNotificationsPreferences(DocumentReference userReference)
             throws NotificationException
     {
-        ExecutionContext context = execution.getContext();
-        if (context.hasProperty(USER_NOTIFICATIONS_PREFERENCES)) {
-            return (List<NotificationPreference>) context.getProperty(USER_NOTIFICATIONS_PREFERENCES);
-        }
+        // The preferences of several users can be needed during the same request (e.g. when dispatching an event)
+        Map<DocumentReference, List<NotificationPreference>> cache = getCache();
 
-        List<NotificationPreference> preferences = modelBridge.getNotificationsPreferences(userReference);
-        context.setProperty(USER_NOTIFICATIONS_PREFERENCES, preferences);
+        List<NotificationPreference> preferences = cache.get(userReference);
+        if (preferences == null) {
+            preferences = modelBridge.getNotificationsPreferences(userReference);
+            cache.put(userReference, preferences);
+        }
 
         return preferences;
     }
 
+    private Map<DocumentReference, List<NotificationPreference>> getCache()
+    {
+        ExecutionContext context = execution.getContext();
+
+        Map<DocumentReference, List<NotificationPreference>> cache =
+            (Map<DocumentReference, List<NotificationPreference>>) context.getProperty(USER_NOTIFICATIONS_PREFERENCES);
+        if (cache == null) {
+            cache = new HashMap<>();
+            context.setProperty(USER_NOTIFICATIONS_PREFERENCES, cache);
+        }
+
+        return cache;
+    }
+
     @Override
     public void setStartDateForUser(DocumentReference userReference, Date startDate)
             throws NotificationException
     {
         // Obviously, there is no possible cache here
         modelBridge.setStartDateForUser(userReference, startDate);
+        getCache().remove(userReference);
     }
 
     @Override
@@ -82,5 +100,6 @@ public void saveNotificationsPreferences(DocumentReference userReference,
     {
         // Obviously there is nothing to cache
         modelBridge.saveNotificationsPreferences(userReference, notificationPreferences);
+        getCache().remove(userReference);
     }
 }
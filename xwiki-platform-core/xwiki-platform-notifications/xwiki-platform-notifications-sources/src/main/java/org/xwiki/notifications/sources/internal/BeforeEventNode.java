@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Date;
+
+import org.xwiki.notifications.filters.expression.generics.AbstractOperatorNode;
+
+/**
+ * Special node to filter on events that come after the given event when ordering them by descending date and
+ * identifier, which allows to get the next events without excluding the previous ones one by one.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class BeforeEventNode extends AbstractOperatorNode
+{
+    private Date date;
+
+    private String id;
+
+    /**
+     * Construct a BeforeEventNode.
+     * @param date the date of the event
+     * @param id the identifier of the event
+     */
+    public BeforeEventNode(Date date, String id)
+    {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * @return the date of the event
+     */
+    public Date getDate()
+    {
+        return date;
+    }
+
+    /**
+     * @return the identifier of the event
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("BEFORE_EVENT(%s)", id);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.xwiki.eventstream.Event;
+import org.xwiki.notifications.CompositeEvent;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.internal.SimilarityCalculator;
+
+/**
+ * Index the events of a list of {@link CompositeEvent}s on the properties used to compute the similarity between two
+ * events (see {@link SimilarityCalculator#computeSimilarity(Event, Event)}): the document, the type and the group id.
+ * It's used to find the composite events containing events similar to a new event without comparing the new event
+ * with all the events already grouped.
+ * <p>
+ * The composite events must be modified through the index so that it's kept up to date.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class CompositeEventIndex
+{
+    private static final String DOCUMENT_TYPE = "documentType";
+
+    private static final String DOCUMENT_GROUP = "documentGroup";
+
+    private static final String DOCUMENT_GROUP_TYPE = "documentGroupType";
+
+    private static final String TYPE = "type";
+
+    private final List<CompositeEvent> compositeEvents;
+
+    /**
+     * The position of each composite event in the list.
+     */
+    private final Map<CompositeEvent, Integer> positions = new HashMap<>();
+
+    /**
+     * The number of events of each composite event having the properties of the key.
+     */
+    private final Map<List<Object>, Map<CompositeEvent, Integer>> counts = new HashMap<>();
+
+    /**
+     * @param compositeEvents the composite events to index, new composite events are added to this list
+     */
+    public CompositeEventIndex(List<CompositeEvent> compositeEvents)
+    {
+        this.compositeEvents = compositeEvents;
+
+        for (CompositeEvent compositeEvent : compositeEvents) {
+            index(compositeEvent);
+        }
+    }
+
+    private void index(CompositeEvent compositeEvent)
+    {
+        this.positions.put(compositeEvent, this.positions.size());
+
+        for (Event event : compositeEvent.getEvents()) {
+            index(compositeEvent, event, 1);
+        }
+    }
+
+    private void index(CompositeEvent compositeEvent, Event event, int delta)
+    {
+        if (event.getDocument() != null) {
+            if (event.getType() != null) {
+                count(Arrays.asList(DOCUMENT_TYPE, event.getDocument(), event.getType()), compositeEvent, delta);
+            }
+            if (event.getGroupId() != null) {
+                count(Arrays.asList(DOCUMENT_GROUP, event.getDocument(), event.getGroupId()), compositeEvent, delta);
+                count(Arrays.asList(DOCUMENT_GROUP_TYPE, event.getDocument(), event.getGroupId(), event.getType()),
+                    compositeEvent, delta);
+            }
+        }
+        if (event.getType() != null) {
+            count(Arrays.asList(TYPE, event.getType()), compositeEvent, delta);
+        }
+    }
+
+    private void count(List<Object> key, CompositeEvent compositeEvent, int delta)
+    {
+        Map<CompositeEvent, Integer> keyCounts = this.counts.computeIfAbsent(key, k -> new HashMap<>());
+        keyCounts.compute(compositeEvent, (k, v) -> {
+            int count = (v != null ? v : 0) + delta;
+            return count > 0 ? count : null;
+        });
+        if (keyCounts.isEmpty()) {
+            this.counts.remove(key);
+        }
+    }
+
+    private int getCount(List<Object> key, CompositeEvent compositeEvent)
+    {
+        return this.counts.getOrDefault(key, Collections.emptyMap()).getOrDefault(compositeEvent, 0);
+    }
+
+    private Set<CompositeEvent> getCompositeEvents(List<Object> key)
+    {
+        return this.counts.getOrDefault(key, Collections.emptyMap()).keySet();
+    }
+
+    /**
+     * @return the indexed composite events
+     */
+    public List<CompositeEvent> getCompositeEvents()
+    {
+        return this.compositeEvents;
+    }
+
+    /**
+     * @param compositeEvent the new composite event to add at the end of the list
+     */
+    public void addCompositeEvent(CompositeEvent compositeEvent)
+    {
+        this.compositeEvents.add(compositeEvent);
+
+        index(compositeEvent);
+    }
+
+    /**
+     * Add an event to an indexed composite event.
+     *
+     * @param compositeEvent the composite event
+     * @param event the event to add
+     * @param similarity the similarity between the event to add and the events of the composite events
+     * @throws NotificationException if the addition is illegal (lower similarity for example)
+     * @see CompositeEvent#add(Event, int)
+     */
+    public void add(CompositeEvent compositeEvent, Event event, int similarity) throws NotificationException
+    {
+        compositeEvent.add(event, similarity);
+
+        index(compositeEvent, event, 1);
+    }
+
+    /**
+     * Remove an event from an indexed composite event.
+     *
+     * @param compositeEvent the composite event
+     * @param event the event to remove
+     * @see CompositeEvent#remove(Event)
+     */
+    public void remove(CompositeEvent compositeEvent, Event event)
+    {
+        compositeEvent.remove(event);
+
+        index(compositeEvent, event, -1);
+    }
+
+    /**
+     * @param event the event
+     * @return the composite events containing at least one event similar to the passed event, in the same order as
+     *         the list of composite events
+     */
+    public List<CompositeEvent> getSimilarCompositeEvents(Event event)
+    {
+        Set<CompositeEvent> result = new HashSet<>();
+
+        if (event.getDocument() != null) {
+            if (event.getType() != null) {
+                result.addAll(getCompositeEvents(Arrays.asList(DOCUMENT_TYPE, event.getDocument(), event.getType())));
+            }
+            if (event.getGroupId() != null) {
+                result.addAll(
+                    getCompositeEvents(Arrays.asList(DOCUMENT_GROUP, event.getDocument(), event.getGroupId())));
+            }
+        } else if (event.getType() != null) {
+            result.addAll(getCompositeEvents(Arrays.asList(TYPE, event.getType())));
+        }
+
+        return result.stream().sorted((c1, c2) -> this.positions.get(c1) - this.positions.get(c2))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @param compositeEvent an indexed composite event
+     * @param event the event
+     * @return the greatest similarity between the passed event and the events of the composite event, as computed
+     *         by {@link SimilarityCalculator#computeSimilarity(Event, Event)}
+     */
+    public int getSimilarity(CompositeEvent compositeEvent, Event event)
+    {
+        if (event.getDocument() != null) {
+            if (event.getGroupId() != null) {
+                // The events with the same group id but also the same type are only similar by their type
+                int sameGroup =
+                    getCount(Arrays.asList(DOCUMENT_GROUP, event.getDocument(), event.getGroupId()), compositeEvent);
+                if (event.getType() != null) {
+                    sameGroup -= getCount(
+                        Arrays.asList(DOCUMENT_GROUP_TYPE, event.getDocument(), event.getGroupId(), event.getType()),
+                        compositeEvent);
+                }
+                if (sameGroup > 0) {
+                    return SimilarityCalculator.SAME_GROUP_ID_AND_DOCUMENT_BUT_DIFFERENT_TYPES;
+                }
+            }
+            if (event.getType() != null && getCount(
+                Arrays.asList(DOCUMENT_TYPE, event.getDocument(), event.getType()), compositeEvent) > 0) {
+                return SimilarityCalculator.SAME_DOCUMENT_AND_TYPE;
+            }
+        } else if (event.getType() != null
+            && getCount(Arrays.asList(TYPE, event.getType()), compositeEvent) > 0) {
+            return SimilarityCalculator.SAME_TYPE_BUT_NO_DOCUMENT;
+        }
+
+        return SimilarityCalculator.NO_SIMILARITY;
+    }
+}
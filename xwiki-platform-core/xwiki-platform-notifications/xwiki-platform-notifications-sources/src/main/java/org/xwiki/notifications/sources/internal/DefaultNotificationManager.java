@@ -23,7 +23,6 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -35,6 +34,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.notifications.CompositeEvent;
+import org.xwiki.notifications.NotificationConfiguration;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
@@ -57,6 +57,11 @@
 @Singleton
 public class DefaultNotificationManager implements NotificationManager
 {
+    /**
+     * The maximum number of events to get in a single query.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
     @Inject
     private EventStream eventStream;
 
@@ -81,6 +86,9 @@ public class DefaultNotificationManager implements NotificationManager
     @Inject
     private NotificationFilterManager notificationFilterManager;
 
+    @Inject
+    private NotificationConfiguration configuration;
+
     /**
      * For internal use, avoid to give more than 7 parameters to methods.
      */
@@ -201,45 +209,64 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Parameters
     {
         // Because the user might not be able to see all notifications because of the rights, we take from the database
         // more events than expected and we will filter afterwards.
-        final int batchSize = parameters.expectedCount * 2;
+        int batchSize = parameters.expectedCount * 2;
+        // The inbox only contains the alerts, already filtered according to the preferences of the user
+        boolean inbox = parameters.format == NotificationFormat.ALERT && configuration.isInboxEnabled();
+        CompositeEventIndex index = new CompositeEventIndex(results);
         try {
-            // Create the query
-            Query query = queryGenerator.generateQuery(parameters.userReference, parameters.format,
-                    parameters.onlyUnread, parameters.endDate, parameters.fromDate, parameters.blackList);
-            if (query == null) {
-                return Collections.emptyList();
-            }
-            query.setLimit(batchSize);
-
-            // Get a batch of events
-            List<Event> batch = eventStream.searchEvents(query);
-
-            // Add to the results the events the user has the right to see
-            for (Event event : batch) {
-                DocumentReference document = event.getDocument();
-                // Don't record events concerning a doc the user cannot see
-                if (document != null && !authorizationManager.hasAccess(Right.VIEW, parameters.userReference,
-                        document)) {
-                    continue;
+            // Each batch starts right after the last event of the previous one, instead of excluding all the events
+            // already seen
+            Event lastEvent = null;
+            List<Event> batch;
+            int limit;
+            do {
+                // Create the query
+                Query query;
+                if (inbox) {
+                    query = queryGenerator.generateInboxQuery(parameters.userReference, parameters.onlyUnread,
+                            parameters.endDate, parameters.fromDate, parameters.blackList, lastEvent);
+                } else {
+                    query = queryGenerator.generateQuery(parameters.userReference, parameters.format,
+                            parameters.onlyUnread, parameters.endDate, parameters.fromDate, parameters.blackList,
+                            lastEvent);
                 }
-
-                if (filterEvent(event, parameters.userReference, parameters.format)) {
-                    continue;
+                if (query == null) {
+                    return Collections.emptyList();
                 }
-
-                // Record this event
-                recordEvent(results, event);
-                // If the expected count is reached, stop now
-                if (results.size() >= parameters.expectedCount) {
-                    return results;
+                limit = batchSize;
+                query.setLimit(limit);
+
+                // Get a batch of events
+                batch = eventStream.searchEvents(query);
+
+                // Add to the results the events the user has the right to see
+                for (Event event : batch) {
+                    lastEvent = event;
+
+                    DocumentReference document = event.getDocument();
+                    // Don't record events concerning a doc the user cannot see
+                    if (document != null && !authorizationManager.hasAccess(Right.VIEW, parameters.userReference,
+                            document)) {
+                        continue;
+                    }
+
+                    if (!inbox && filterEvent(event, parameters.userReference, parameters.format)) {
+                        continue;
+                    }
+
+                    // Record this event
+                    recordEvent(index, event);
+                    // If the expected count is reached, stop now
+                    if (results.size() >= parameters.expectedCount) {
+                        return results;
+                    }
                 }
-            }
 
-            // If we haven't get the expected number of events, perform a new batch
-            if (results.size() < parameters.expectedCount && batch.size() == batchSize) {
-                parameters.blackList.addAll(getEventsIds(batch));
-                getEvents(results, parameters);
-            }
+                // Most of the events are not visible, take bigger batches to limit the number of queries
+                if (batchSize < MAX_BATCH_SIZE) {
+                    batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+                }
+            } while (batch.size() == limit);
 
             return results;
         } catch (Exception e) {
@@ -259,16 +286,10 @@ private boolean filterEvent(Event event, DocumentReference user, NotificationFor
         return false;
     }
 
-    private List<String> getEventsIds(List<Event> events)
-    {
-        return events.stream().map(Event::getId).collect(Collectors.toList());
-    }
-
     private class BestSimilarity
     {
         public int value;
         public CompositeEvent compositeEvent;
-        public Event event;
 
         public boolean isCompositeEventCompatibleWith(Event event)
         {
@@ -285,9 +306,9 @@ public boolean isCompositeEventCompatibleWith(Event event)
         }
     }
 
-    private void recordEvent(List<CompositeEvent> results, Event event) throws NotificationException
+    private void recordEvent(CompositeEventIndex index, Event event) throws NotificationException
     {
-        BestSimilarity bestSimilarity = getBestSimilarity(results, event);
+        BestSimilarity bestSimilarity = getBestSimilarity(index, event);
 
         if (bestSimilarity.compositeEvent != null) {
             if (bestSimilarity.value > bestSimilarity.compositeEvent.getSimilarityBetweenEvents()
@@ -297,11 +318,12 @@ private void recordEvent(List<CompositeEvent> results, Event event) throws Notif
                 //
                 // It means we must remove the existing event A from that composite event C1 and create a new composite
                 // event C2 made of A and E.
-                bestSimilarity.compositeEvent.remove(bestSimilarity.event);
+                Event similarEvent = getSimilarEvent(bestSimilarity.compositeEvent, event, bestSimilarity.value);
+                index.remove(bestSimilarity.compositeEvent, similarEvent);
 
                 // Instead of creating a new composite event with A and E, we first look if an other composite event can
                 // match with A and E.
-                BestSimilarity bestSecondChoice = getBestSimilarity(results, event);
+                BestSimilarity bestSecondChoice = getBestSimilarity(index, event);
                 if (bestSecondChoice.compositeEvent != null
                         && bestSecondChoice.isCompositeEventCompatibleWith(event)) {
                     // We have found a composite event C2 made of events (X, Y) which have a greater similarity between
@@ -314,14 +336,14 @@ private void recordEvent(List<CompositeEvent> results, Event event) throws Notif
                     // (or vice versa)
                     // It means the "update" event X has been triggered for technical reason, but the interesting event
                     // is Y, which we can group with the event E.
-                    bestSecondChoice.compositeEvent.add(bestSimilarity.event,
+                    index.add(bestSecondChoice.compositeEvent, similarEvent,
                             bestSecondChoice.compositeEvent.getSimilarityBetweenEvents());
-                    bestSecondChoice.compositeEvent.add(event,
+                    index.add(bestSecondChoice.compositeEvent, event,
                             bestSecondChoice.compositeEvent.getSimilarityBetweenEvents());
                 } else {
                     CompositeEvent newCompositeEvent = new CompositeEvent(event);
-                    newCompositeEvent.add(bestSimilarity.event, bestSimilarity.value);
-                    results.add(newCompositeEvent);
+                    newCompositeEvent.add(similarEvent, bestSimilarity.value);
+                    index.addCompositeEvent(newCompositeEvent);
                 }
 
                 return;
@@ -329,7 +351,7 @@ private void recordEvent(List<CompositeEvent> results, Event event) throws Notif
                 // We have found a composite event C1 made of events (A, B, C) which have the same similarity between
                 // themselves than between A end E.
                 // All we need to do it to add E to C1.
-                bestSimilarity.compositeEvent.add(event, bestSimilarity.value);
+                index.add(bestSimilarity.compositeEvent, event, bestSimilarity.value);
                 return;
             } else if (bestSimilarity.isCompositeEventCompatibleWith(event)) {
                 // We have found a composite event C1 made of events (A, B) which have a greater similarity between
@@ -342,38 +364,50 @@ private void recordEvent(List<CompositeEvent> results, Event event) throws Notif
                 // (or vice versa)
                 // It means the "update" event A has been triggered for technical reason, but the interesting event is
                 // B, which we can group with the event E.
-                bestSimilarity.compositeEvent.add(event,
+                index.add(bestSimilarity.compositeEvent, event,
                         bestSimilarity.compositeEvent.getSimilarityBetweenEvents());
                 return;
             }
         }
         // We haven't found an event that is similar to the current one, so we create a new composite event
-        results.add(new CompositeEvent(event));
+        index.addCompositeEvent(new CompositeEvent(event));
     }
 
-    private BestSimilarity getBestSimilarity(List<CompositeEvent> results, Event event)
+    private BestSimilarity getBestSimilarity(CompositeEventIndex index, Event event)
     {
         BestSimilarity bestSimilarity = new BestSimilarity();
 
-        // Looking for the most similar event inside the existing composite events
-        for (CompositeEvent existingCompositeEvent : results) {
-            for (Event existingEvent : existingCompositeEvent.getEvents()) {
-                int similarity = similarityCalculator.computeSimilarity(event, existingEvent);
-                if (similarity < existingCompositeEvent.getSimilarityBetweenEvents()) {
-                    // Penality
-                    similarity -= 5;
-                }
-                if (similarity > bestSimilarity.value) {
-                    bestSimilarity.value = similarity;
-                    bestSimilarity.event = existingEvent;
-                    bestSimilarity.compositeEvent = existingCompositeEvent;
-                }
+        // Looking for the most similar event inside the existing composite events (only the composite events
+        // containing similar events are looked at, in the order of the results)
+        for (CompositeEvent existingCompositeEvent : index.getSimilarCompositeEvents(event)) {
+            int similarity = index.getSimilarity(existingCompositeEvent, event);
+            if (similarity < existingCompositeEvent.getSimilarityBetweenEvents()) {
+                // Penality
+                similarity -= 5;
+            }
+            if (similarity > bestSimilarity.value) {
+                bestSimilarity.value = similarity;
+                bestSimilarity.compositeEvent = existingCompositeEvent;
             }
         }
 
         return bestSimilarity;
     }
 
+    /**
+     * @return the first event of the composite event having the given similarity with the passed event
+     */
+    private Event getSimilarEvent(CompositeEvent compositeEvent, Event event, int similarity)
+    {
+        for (Event existingEvent : compositeEvent.getEvents()) {
+            if (similarityCalculator.computeSimilarity(event, existingEvent) == similarity) {
+                return existingEvent;
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public List<NotificationPreference> getPreferences() throws NotificationException
     {
@@ -67,6 +67,8 @@
     {
         private String query;
 
+        private String from = StringUtils.EMPTY;
+
         private Map<String, Object> queryParameters = new HashMap<>();
 
         /**
@@ -77,6 +79,16 @@ public String getQuery()
             return query;
         }
 
+        /**
+         * @return the entities to add to the from clause of the query (after the event) followed by a space, empty
+         *     if none
+         * @since 9.12RC1
+         */
+        public String getFrom()
+        {
+            return from;
+        }
+
         /**
          * @return the parameters to bind to the HQL query
          */
@@ -284,7 +296,9 @@ private String parseOtherOperation(AbstractOperatorNode operator, HQLQuery resul
             returnValue = builder.toString();
         } else if (operator instanceof OrderByNode) {
             OrderByNode orderByNode = (OrderByNode) operator;
-            returnValue = String.format("%s ORDER BY %s %s", parseBlock(orderByNode.getQuery(), result),
+            // An ORDER BY applied to an ORDER BY adds a secondary ordering
+            returnValue = String.format(orderByNode.getQuery() instanceof OrderByNode ? "%s, %s %s"
+                    : "%s ORDER BY %s %s", parseBlock(orderByNode.getQuery(), result),
                     parseBlock(orderByNode.getProperty(), result), orderByNode.getOrder().name());
         } else if (operator instanceof InListOfReadEventsNode) {
             InListOfReadEventsNode inList = (InListOfReadEventsNode) operator;
@@ -295,6 +309,28 @@ private String parseOtherOperation(AbstractOperatorNode operator, HQLQuery resul
 
             result.getQueryParameters().put("userStatusRead", serializer.serialize(inList.getUser()));
 
+        } else if (operator instanceof InInboxNode) {
+            InInboxNode inInbox = (InInboxNode) operator;
+
+            // Read the inbox of the user (using the index on the entity id and the read status) instead of checking
+            // the status of each event
+            result.from = ", ActivityEventStatusImpl inboxStatus ";
+            returnValue = "(inboxStatus.activityEvent = event and inboxStatus.entityId = :inboxUser";
+            if (inInbox.isOnlyUnread()) {
+                returnValue += " and inboxStatus.read = false";
+            }
+            returnValue += ")";
+
+            result.getQueryParameters().put("inboxUser", serializer.serialize(inInbox.getUser()));
+
+        } else if (operator instanceof BeforeEventNode) {
+            BeforeEventNode beforeEvent = (BeforeEventNode) operator;
+
+            returnValue = "event.date < :beforeEventDate "
+                    + "OR (event.date = :beforeEventDate AND event.id < :beforeEventId)";
+
+            result.getQueryParameters().put("beforeEventDate", beforeEvent.getDate());
+            result.getQueryParameters().put("beforeEventId", beforeEvent.getId());
         } else {
             returnValue = StringUtils.EMPTY;
         }
@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.notifications.filters.expression.generics.AbstractOperatorNode;
+
+/**
+ * Special node to filter on events that have been stored in the inbox of the given user.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class InInboxNode extends AbstractOperatorNode
+{
+    private DocumentReference user;
+
+    private boolean onlyUnread;
+
+    /**
+     * Construct an InInboxNode.
+     * @param user the user
+     * @param onlyUnread if only the unread events of the inbox should be matched
+     */
+    public InInboxNode(DocumentReference user, boolean onlyUnread)
+    {
+        this.user = user;
+        this.onlyUnread = onlyUnread;
+    }
+
+    /**
+     * @return the user
+     */
+    public DocumentReference getUser()
+    {
+        return user;
+    }
+
+    /**
+     * @return true if only the unread events of the inbox should be matched
+     */
+    public boolean isOnlyUnread()
+    {
+        return onlyUnread;
+    }
+
+    @Override
+    public String toString()
+    {
+        return onlyUnread ? "UNREAD_INBOX" : "INBOX";
+    }
+}
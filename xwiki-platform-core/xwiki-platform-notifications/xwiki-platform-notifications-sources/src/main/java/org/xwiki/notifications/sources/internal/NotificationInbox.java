@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStatusManager;
+import org.xwiki.eventstream.internal.DefaultEventStatus;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterManager;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+/**
+ * Store each event added to the event stream in the inbox of the users interested in it, so that the alerts of a user
+ * can be read with a single query on the inbox instead of evaluating the preferences and the filters of the user on the
+ * whole event stream.
+ * <p>
+ * The inbox of a user is made of the unread statuses of the events for this user (see {@link EventStatusManager}).
+ * The users who enabled the alerts for the type of an event are found in {@link NotificationSubscriberIndex}, then
+ * their rights and filters are evaluated once per event, in background, when the event is added.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = NotificationInbox.class)
+@Singleton
+public class NotificationInbox implements Initializable, Disposable
+{
+    /**
+     * The maximum number of events waiting to be dispatched.
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    @Inject
+    private NotificationSubscriberIndex subscriberIndex;
+
+    @Inject
+    private NotificationFilterManager notificationFilterManager;
+
+    @Inject
+    private AuthorizationManager authorizationManager;
+
+    @Inject
+    private EventStatusManager eventStatusManager;
+
+    @Inject
+    private ModelContext modelContext;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("context")
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    private ThreadPoolExecutor dispatcher;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // A single (daemon) thread so that the events are dispatched in the order they are added. When too many events
+        // are waiting, the new events are rejected (see #dispatch()) instead of accumulating them in memory.
+        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+            .namingPattern("XWiki notification inbox dispatcher").daemon(true).build();
+        this.dispatcher = new ThreadPoolExecutor(0, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+            threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.dispatcher.shutdownNow();
+    }
+
+    /**
+     * Store, in background, the passed event in the inbox of each user interested in it. The event is not stored in
+     * any inbox when too many events are already waiting (the thread adding the event is neither blocked nor slowed
+     * down).
+     *
+     * @param event the event which has been added to the event stream
+     */
+    public void dispatch(Event event)
+    {
+        try {
+            this.dispatcher.execute(new ExecutionContextRunnable(() -> dispatchNow(event), this.componentManager));
+        } catch (RejectedExecutionException e) {
+            this.logger.warn("Too many events are waiting to be stored in the notification inboxes (or the inbox is"
+                + " disposed): the event [{}] won't be displayed in the inboxes.", event.getId());
+        }
+    }
+
+    /**
+     * Store the passed event in the inbox of each user interested in it.
+     *
+     * @param event the event which has been added to the event stream
+     */
+    public void dispatchNow(Event event)
+    {
+        // The statuses are stored in the store of the wiki of the event (when using the local store)
+        EntityReference currentEntityReference = this.modelContext.getCurrentEntityReference();
+        if (event.getWiki() != null) {
+            this.modelContext.setCurrentEntityReference(event.getWiki());
+        }
+
+        try {
+            for (DocumentReference user : this.subscriberIndex.getSubscribers(event)) {
+                if (isInterested(user, event)) {
+                    this.eventStatusManager
+                        .saveEventStatus(new DefaultEventStatus(event, this.serializer.serialize(user), false));
+                }
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to store the event [{}] in the notification inboxes: {}", event.getId(),
+                ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            this.modelContext.setCurrentEntityReference(currentEntityReference);
+        }
+    }
+
+    /**
+     * @param subscriber a user who enabled the alerts for the type of the passed event (see
+     *            {@link NotificationSubscriberIndex})
+     * @param event the event
+     * @return true if the passed user is allowed to see the passed event and didn't filter it
+     * @throws NotificationException if an error happens
+     */
+    public boolean isInterested(DocumentReference subscriber, Event event) throws NotificationException
+    {
+        DocumentReference document = event.getDocument();
+        if (document != null && !this.authorizationManager.hasAccess(Right.VIEW, subscriber, document)) {
+            return false;
+        }
+
+        for (NotificationFilter filter : this.notificationFilterManager.getAllFilters(subscriber)) {
+            if (filter.filterEvent(event, subscriber, NotificationFormat.ALERT)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
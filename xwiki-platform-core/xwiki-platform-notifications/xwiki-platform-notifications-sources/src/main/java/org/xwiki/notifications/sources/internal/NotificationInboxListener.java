@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.events.EventStreamAddedEvent;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Store the events added to the event stream in the inbox of the interested users, when the inbox is enabled.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@Singleton
+@Named(NotificationInboxListener.NAME)
+public class NotificationInboxListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "NotificationInboxListener";
+
+    @Inject
+    private NotificationConfiguration configuration;
+
+    @Inject
+    private NotificationInbox inbox;
+
+    /**
+     * Default constructor.
+     */
+    public NotificationInboxListener()
+    {
+        super(NAME, new EventStreamAddedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.configuration.isEnabled() && this.configuration.isInboxEnabled()) {
+            this.inbox.dispatch((org.xwiki.eventstream.Event) source);
+        }
+    }
+}
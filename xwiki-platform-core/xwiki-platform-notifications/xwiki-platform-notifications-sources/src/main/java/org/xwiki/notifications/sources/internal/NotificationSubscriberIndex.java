@@ -0,0 +1,249 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Index, by type of event, the users who enabled the alerts for this type of event, so that the users interested in an
+ * event are found without evaluating the preferences of all the users for each event.
+ * <p>
+ * The users of a wiki are indexed the first time an event needs them. The users whose document is created, modified or
+ * deleted afterward (see {@link #invalidate(DocumentReference, boolean)}) are indexed again before the next lookup.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = NotificationSubscriberIndex.class)
+@Singleton
+public class NotificationSubscriberIndex
+{
+    private static final String USERS_QUERY =
+        "select distinct doc.fullName from Document doc, doc.object(XWiki.XWikiUsers) objUser";
+
+    private static final String USER_QUERY = USERS_QUERY + " where doc.fullName = :user";
+
+    private static final String USER_PARAMETER = "user";
+
+    @Inject
+    private NotificationPreferenceManager notificationPreferenceManager;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private final Map<String, WikiSubscribers> wikis = new ConcurrentHashMap<>();
+
+    /**
+     * The subscribers of a wiki.
+     *
+     * @version $Id$
+     */
+    private static final class WikiSubscribers
+    {
+        /**
+         * The users of the wiki.
+         */
+        private final Set<DocumentReference> users = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The documents which have been created, modified or deleted since they were indexed.
+         */
+        private final Set<DocumentReference> modified = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The users subscribed to each type of event, with the date of the first event they are interested in.
+         */
+        private final Map<String, Map<DocumentReference, Long>> subscriptions = new HashMap<>();
+
+        private boolean loaded;
+    }
+
+    /**
+     * @param event the event
+     * @return the users who enabled the alerts for the type of the passed event at the time it happened
+     * @throws NotificationException if the users or their preferences cannot be loaded
+     */
+    public List<DocumentReference> getSubscribers(Event event) throws NotificationException
+    {
+        List<DocumentReference> subscribers = new ArrayList<>();
+
+        // Global users are interested in the events of all the wikis, local users only in the events of their wiki
+        String mainWiki = this.wikiDescriptorManager.getMainWikiId();
+        addSubscribers(mainWiki, event, subscribers);
+        if (event.getWiki() != null && !event.getWiki().getName().equals(mainWiki)) {
+            addSubscribers(event.getWiki().getName(), event, subscribers);
+        }
+
+        return subscribers;
+    }
+
+    /**
+     * Index again the passed document before the next lookup if it's (or might have become) a user of an already
+     * indexed wiki.
+     *
+     * @param document the document which has been created, modified or deleted
+     * @param created true if the document has just been created
+     */
+    public void invalidate(DocumentReference document, boolean created)
+    {
+        WikiSubscribers subscribers = this.wikis.get(document.getWikiReference().getName());
+
+        // Only the users have notification preferences but any new document can be a new user
+        if (subscribers != null && (created || subscribers.users.contains(document))) {
+            subscribers.modified.add(document);
+        }
+    }
+
+    /**
+     * Index again all the users of the passed wiki before the next lookup.
+     *
+     * @param wiki the identifier of the deleted wiki or of the wiki whose default preferences have been modified
+     */
+    public void invalidate(String wiki)
+    {
+        this.wikis.remove(wiki);
+    }
+
+    /**
+     * Index again all the users of all the wikis before the next lookup.
+     */
+    public void invalidateAll()
+    {
+        this.wikis.clear();
+    }
+
+    private void addSubscribers(String wiki, Event event, List<DocumentReference> result) throws NotificationException
+    {
+        WikiSubscribers subscribers = this.wikis.computeIfAbsent(wiki, key -> new WikiSubscribers());
+
+        // The modifications happening while the wiki is indexed are kept for the next lookup
+        synchronized (subscribers) {
+            try {
+                if (!subscribers.loaded) {
+                    load(wiki, subscribers);
+                }
+
+                for (Iterator<DocumentReference> it = subscribers.modified.iterator(); it.hasNext();) {
+                    DocumentReference document = it.next();
+                    it.remove();
+
+                    update(document, subscribers);
+                }
+            } catch (QueryException e) {
+                throw new NotificationException(String.format("Failed to get the users of the wiki [%s]", wiki), e);
+            }
+
+            Map<DocumentReference, Long> eventSubscribers = subscribers.subscriptions.get(event.getType());
+            if (eventSubscribers != null) {
+                long date = event.getDate().getTime();
+                for (Map.Entry<DocumentReference, Long> entry : eventSubscribers.entrySet()) {
+                    if (date >= entry.getValue()) {
+                        result.add(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    private void load(String wiki, WikiSubscribers subscribers) throws QueryException, NotificationException
+    {
+        subscribers.users.clear();
+        subscribers.subscriptions.clear();
+
+        Query query = this.queryManager.createQuery(USERS_QUERY, Query.XWQL);
+        query.setWiki(wiki);
+
+        WikiReference wikiReference = new WikiReference(wiki);
+        for (Object name : query.execute()) {
+            add(this.resolver.resolve((String) name, wikiReference), subscribers);
+        }
+
+        subscribers.loaded = true;
+    }
+
+    private void update(DocumentReference document, WikiSubscribers subscribers)
+        throws QueryException, NotificationException
+    {
+        subscribers.users.remove(document);
+        for (Map<DocumentReference, Long> eventSubscribers : subscribers.subscriptions.values()) {
+            eventSubscribers.remove(document);
+        }
+
+        Query query = this.queryManager.createQuery(USER_QUERY, Query.XWQL);
+        query.setWiki(document.getWikiReference().getName());
+        query.bindValue(USER_PARAMETER, this.localSerializer.serialize(document));
+        if (!query.execute().isEmpty()) {
+            add(document, subscribers);
+        }
+    }
+
+    private void add(DocumentReference user, WikiSubscribers subscribers) throws NotificationException
+    {
+        subscribers.users.add(user);
+
+        // Same as QueryGenerator#handleEventPreferences()
+        for (NotificationPreference preference : this.notificationPreferenceManager.getPreferences(user, true,
+            NotificationFormat.ALERT)) {
+            Object eventType = preference.getProperties().get(NotificationPreferenceProperty.EVENT_TYPE);
+            if (eventType instanceof String) {
+                long startDate =
+                    preference.getStartDate() != null ? preference.getStartDate().getTime() : Long.MIN_VALUE;
+                subscribers.subscriptions.computeIfAbsent((String) eventType, key -> new HashMap<>()).merge(user,
+                    startDate, Math::min);
+            }
+        }
+    }
+}
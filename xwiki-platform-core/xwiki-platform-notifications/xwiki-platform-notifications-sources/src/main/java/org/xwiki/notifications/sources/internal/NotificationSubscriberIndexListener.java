@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Keep {@link NotificationSubscriberIndex} up to date when the users (and their notification preferences) change.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@Singleton
+@Named(NotificationSubscriberIndexListener.NAME)
+public class NotificationSubscriberIndexListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "NotificationSubscriberIndexListener";
+
+    /**
+     * The document holding the default notification preferences of a wiki (the ones of the main wiki apply to all the
+     * wikis).
+     */
+    private static final LocalDocumentReference DEFAULT_PREFERENCES =
+        new LocalDocumentReference(Arrays.asList("XWiki", "Notifications", "Code"), "NotificationAdministration");
+
+    @Inject
+    private NotificationSubscriberIndex index;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    /**
+     * Default constructor.
+     */
+    public NotificationSubscriberIndexListener()
+    {
+        super(NAME, Arrays.asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
+            new WikiDeletedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WikiDeletedEvent) {
+            this.index.invalidate(((WikiDeletedEvent) event).getWikiId());
+        } else {
+            DocumentReference document = ((DocumentModelBridge) source).getDocumentReference();
+            if (DEFAULT_PREFERENCES.equals(document.getLocalDocumentReference())) {
+                // The preferences of all the users of the wiki (or of all the wikis) might have changed
+                if (this.wikiDescriptorManager.getMainWikiId().equals(document.getWikiReference().getName())) {
+                    this.index.invalidateAll();
+                } else {
+                    this.index.invalidate(document.getWikiReference().getName());
+                }
+            } else {
+                this.index.invalidate(document, event instanceof DocumentCreatedEvent);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.eventstream.Event;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.NotificationFormat;
@@ -113,14 +114,66 @@ public Query generateQuery(DocumentReference user, NotificationFormat format, bo
             Date endDate,
             Date startDate, List<String> blackList) throws NotificationException, QueryException
     {
-        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(
-                generateQueryExpression(user, format, onlyUnread, endDate, startDate, blackList)
+        return generateQuery(user, format, onlyUnread, endDate, startDate, blackList, null);
+    }
+
+    /**
+     * Generate the query.
+     *
+     * @param user user interested in the notifications
+     * @param format only match notifications enabled for that format
+     * @param onlyUnread if only unread events should be returned
+     * @param endDate do not return events happened after this date
+     * @param startDate do not return events happened before this date
+     * @param blackList list of ids of blacklisted events to not return (to not get already known events again)
+     * @param lastEvent only return the events coming after this one in the result (the last event of the previous
+     * batch), or null to start from the most recent event
+     * @return the query to execute
+     * @throws NotificationException if error happens
+     * @throws QueryException if error happens
+     * @since 9.12RC1
+     */
+    public Query generateQuery(DocumentReference user, NotificationFormat format, boolean onlyUnread,
+            Date endDate, Date startDate, List<String> blackList, Event lastEvent)
+            throws NotificationException, QueryException
+    {
+        return createQuery(
+                generateQueryExpression(user, format, onlyUnread, endDate, startDate, blackList, lastEvent)
+        );
+    }
+
+    /**
+     * Generate the query returning the events stored in the inbox of the user (see {@link NotificationInbox}). The
+     * preferences and the filters of the user have already been applied when the events were stored in the inbox.
+     *
+     * @param user user interested in the notifications
+     * @param onlyUnread if only unread events should be returned
+     * @param endDate do not return events happened after this date
+     * @param startDate do not return events happened before this date
+     * @param blackList list of ids of blacklisted events to not return (to not get already known events again)
+     * @param lastEvent only return the events coming after this one in the result (the last event of the previous
+     * batch), or null to start from the most recent event
+     * @return the query to execute
+     * @throws QueryException if error happens
+     * @since 9.12RC1
+     */
+    public Query generateInboxQuery(DocumentReference user, boolean onlyUnread, Date endDate, Date startDate,
+            List<String> blackList, Event lastEvent) throws QueryException
+    {
+        return createQuery(
+                generateInboxQueryExpression(user, onlyUnread, endDate, startDate, blackList, lastEvent)
         );
+    }
+
+    private Query createQuery(ExpressionNode expression) throws QueryException
+    {
+        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(expression);
         if (result.getQuery().isEmpty()) {
             return null;
         }
 
-        Query query = queryManager.createQuery(String.format("where %s", result.getQuery()), Query.HQL);
+        Query query = queryManager.createQuery(String.format("%swhere %s", result.getFrom(), result.getQuery()),
+                Query.HQL);
         for (Map.Entry<String, Object> queryParameter : result.getQueryParameters().entrySet()) {
             query.bindValue(queryParameter.getKey(), queryParameter.getValue());
         }
@@ -148,6 +201,31 @@ public Query generateQuery(DocumentReference user, NotificationFormat format, bo
      */
     public ExpressionNode generateQueryExpression(DocumentReference user, NotificationFormat format, boolean onlyUnread,
             Date endDate, Date startDate, List<String> blackList) throws NotificationException, QueryException
+    {
+        return generateQueryExpression(user, format, onlyUnread, endDate, startDate, blackList, null);
+    }
+
+    /**
+     * Generate the query.
+     *
+     * @param user user interested in the notifications
+     * @param format only match notifications enabled for that format
+     * @param onlyUnread if only unread events should be returned
+     * @param endDate do not return events happened after this date
+     * @param startDate do not return events happened before this date
+     * @param blackList list of ids of blacklisted events to not return (to not get already known events again)
+     * @param lastEvent only return the events coming after this one in the result (the last event of the previous
+     * batch), or null to start from the most recent event
+     * @return the query to execute
+     *
+     * @throws NotificationException if error happens
+     * @throws QueryException if error happens
+     *
+     * @since 9.12RC1
+     */
+    public ExpressionNode generateQueryExpression(DocumentReference user, NotificationFormat format, boolean onlyUnread,
+            Date endDate, Date startDate, List<String> blackList, Event lastEvent)
+            throws NotificationException, QueryException
     {
         // First: get the active preferences of the given user
         List<NotificationPreference> preferences = notificationPreferenceManager.getPreferences(
@@ -205,6 +283,7 @@ public ExpressionNode generateQueryExpression(DocumentReference user, Notificati
         // Other basic filters
         topNode = handleBlackList(blackList, topNode);
         topNode = handleEndDate(endDate, topNode);
+        topNode = handleLastEvent(lastEvent, topNode);
         topNode = handleHiddenEvents(topNode);
         topNode = handleEventStatus(onlyUnread, user, topNode);
         topNode = handleWiki(user, topNode);
@@ -213,6 +292,43 @@ public ExpressionNode generateQueryExpression(DocumentReference user, Notificati
         return topNode;
     }
 
+    /**
+     * Generate the expression of the query returning the events stored in the inbox of the user.
+     *
+     * @param user user interested in the notifications
+     * @param onlyUnread if only unread events should be returned
+     * @param endDate do not return events happened after this date
+     * @param startDate do not return events happened before this date
+     * @param blackList list of ids of blacklisted events to not return (to not get already known events again)
+     * @param lastEvent only return the events coming after this one in the result (the last event of the previous
+     * batch), or null to start from the most recent event
+     * @return the query to execute
+     * @since 9.12RC1
+     */
+    public ExpressionNode generateInboxQueryExpression(DocumentReference user, boolean onlyUnread, Date endDate,
+            Date startDate, List<String> blackList, Event lastEvent)
+    {
+        // The read status is stored in the inbox itself
+        AbstractOperatorNode topNode = new InInboxNode(user, onlyUnread);
+
+        if (startDate != null) {
+            topNode = topNode.and(
+                    new GreaterThanNode(
+                            new PropertyValueNode(EventProperty.DATE),
+                            new DateValueNode(startDate)
+                    )
+            );
+        }
+
+        topNode = handleBlackList(blackList, topNode);
+        topNode = handleEndDate(endDate, topNode);
+        topNode = handleLastEvent(lastEvent, topNode);
+        topNode = handleHiddenEvents(topNode);
+        topNode = handleOrder(topNode);
+
+        return topNode;
+    }
+
     /**
      * For each notification preference of the given user, add a constraint on the events to
      * - have one of the notification types that have been subscribed by the user;
@@ -335,6 +451,16 @@ private AbstractOperatorNode handleEndDate(Date endDate, AbstractOperatorNode to
         return topNode;
     }
 
+    private AbstractOperatorNode handleLastEvent(Event lastEvent, AbstractOperatorNode topNode)
+    {
+        if (lastEvent != null) {
+            return topNode.and(
+                    new BeforeEventNode(lastEvent.getDate(), lastEvent.getId())
+            );
+        }
+        return topNode;
+    }
+
     private AbstractOperatorNode handleBlackList(List<String> blackList, AbstractOperatorNode topNode)
     {
         if (blackList != null && !blackList.isEmpty()) {
@@ -371,9 +497,15 @@ private AbstractOperatorNode handleWiki(DocumentReference user, AbstractOperator
 
     private AbstractOperatorNode handleOrder(AbstractOperatorNode topNode)
     {
+        // The identifier makes the order stable for events with the same date, which is required to get the next
+        // events after a given one
         return new OrderByNode(
-                topNode,
-                new PropertyValueNode(EventProperty.DATE),
+                new OrderByNode(
+                        topNode,
+                        new PropertyValueNode(EventProperty.DATE),
+                        OrderByNode.Order.DESC
+                ),
+                new PropertyValueNode(EventProperty.ID),
                 OrderByNode.Order.DESC
         );
     }
@@ -19,10 +19,12 @@
  */
 package org.xwiki.notifications.sources.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -33,8 +35,10 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.notifications.CompositeEvent;
+import org.xwiki.notifications.NotificationConfiguration;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilterManager;
 import org.xwiki.notifications.internal.SimilarityCalculator;
 import org.xwiki.notifications.preferences.NotificationPreference;
 import org.xwiki.notifications.preferences.NotificationPreferenceManager;
@@ -54,6 +58,8 @@
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -93,7 +99,7 @@ public void setUp() throws Exception
         query = mock(Query.class);
         when(queryGenerator.generateQuery(any(DocumentReference.class), any(NotificationFormat.class),
                 anyBoolean(), nullable(Date.class),
-                nullable(Date.class), nullable(List.class))).thenReturn(query);
+                nullable(Date.class), nullable(List.class), nullable(Event.class))).thenReturn(query);
 
         NotificationPreference pref1 = mock(NotificationPreference.class);
         when(pref1.getProperties()).thenReturn(Collections.singletonMap(NotificationPreferenceProperty.EVENT_TYPE, "create"));
@@ -141,6 +147,39 @@ public void getEventsWith2Queries() throws Exception
         assertEquals(2, results.size());
         assertEquals(event1, results.get(0).getEvents().get(0));
         assertEquals(event5, results.get(1).getEvents().get(0));
+
+        // The second query starts after the last event of the first one, with a bigger batch
+        verify(queryGenerator).generateQuery(eq(userReference), any(NotificationFormat.class), eq(true), isNull(),
+                isNull(), eq(Collections.emptyList()), eq(event4));
+        verify(query).setLimit(4);
+        verify(query).setLimit(8);
+    }
+
+    @Test
+    public void getEventsFromInbox() throws Exception
+    {
+        NotificationConfiguration configuration = mocker.getInstance(NotificationConfiguration.class);
+        when(configuration.isInboxEnabled()).thenReturn(true);
+
+        Query inboxQuery = mock(Query.class);
+        when(queryGenerator.generateInboxQuery(eq(userReference), eq(true), isNull(), isNull(),
+                eq(Collections.emptyList()), isNull())).thenReturn(inboxQuery);
+
+        Event event1 = createMockedEvent();
+        when(event1.getType()).thenReturn("type1");
+        when(eventStream.searchEvents(inboxQuery)).thenReturn(Arrays.asList(event1));
+
+        // Test
+        List<CompositeEvent> results
+                = mocker.getComponentUnderTest().getEvents("xwiki:XWiki.UserA", true, 2);
+
+        // Verify
+        assertEquals(1, results.size());
+        assertEquals(event1, results.get(0).getEvents().get(0));
+        verify(queryGenerator, never()).generateQuery(any(DocumentReference.class), any(NotificationFormat.class),
+                anyBoolean(), nullable(Date.class), nullable(Date.class), nullable(List.class),
+                nullable(Event.class));
+        verifyZeroInteractions(mocker.<NotificationFilterManager>getInstance(NotificationFilterManager.class));
     }
 
     private Event createMockedEvent()
@@ -174,7 +213,7 @@ public void getEventsWhenException() throws Exception
         NotificationException exception = new NotificationException("Error");
         when(queryGenerator.generateQuery(eq(userReference), any(NotificationFormat.class),
                 eq(true), isNull(),
-                isNull(), any(List.class))).thenThrow(exception);
+                isNull(), any(List.class), isNull())).thenThrow(exception);
 
         // Test
         NotificationException caughtException = null;
@@ -660,4 +699,108 @@ public void getEventsXWIKI14719() throws Exception
         assertEquals(1, results.size());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getEventsGroupedAsWhenComparingAllEvents() throws Exception
+    {
+        DocumentReference userA = new DocumentReference("xwiki", "XWiki", "UserA");
+        List<DocumentReference> documents = Arrays.asList(null, new DocumentReference("xwiki", "Main", "Bike"),
+                new DocumentReference("xwiki", "Main", "Guitar"), new DocumentReference("xwiki", "Main", "Drums"));
+        List<String> types = Arrays.asList("update", "create", "addComment", "addAnnotation");
+        List<String> groupIds = Arrays.asList(null, "g1", "g2", "g3", "g4", "g5");
+
+        // Use few values to get a lot of similar events
+        Random random = new Random(0);
+        List<Event> events = new ArrayList<>();
+        long date = 1510567729000L;
+        for (int i = 0; i < 300; ++i) {
+            date -= random.nextInt(2) * 1000;
+            events.add(createMockedEvent(types.get(random.nextInt(types.size())), userA,
+                    documents.get(random.nextInt(documents.size())), new Date(date),
+                    groupIds.get(random.nextInt(groupIds.size()))));
+        }
+
+        when(authorizationManager.hasAccess(eq(Right.VIEW), eq(userReference), any(DocumentReference.class)))
+                .thenReturn(true);
+        when(eventStream.searchEvents(query)).thenReturn(events);
+
+        // Test
+        List<CompositeEvent> results
+                = mocker.getComponentUnderTest().getEvents("xwiki:XWiki.UserA", true, 1000);
+
+        // Verify
+        List<CompositeEvent> expected = new ArrayList<>();
+        for (Event event : events) {
+            recordEventComparingAllEvents(expected, event);
+        }
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getEvents(), results.get(i).getEvents());
+            assertEquals(expected.get(i).getSimilarityBetweenEvents(), results.get(i).getSimilarityBetweenEvents());
+        }
+    }
+
+    /**
+     * The grouping of the events as it was done before indexing the composite events, comparing the new event with all
+     * the events already grouped.
+     */
+    private void recordEventComparingAllEvents(List<CompositeEvent> results, Event event) throws Exception
+    {
+        Object[] bestSimilarity = getBestSimilarityComparingAllEvents(results, event);
+        int value = (Integer) bestSimilarity[0];
+        CompositeEvent compositeEvent = (CompositeEvent) bestSimilarity[1];
+        Event similarEvent = (Event) bestSimilarity[2];
+
+        if (compositeEvent != null) {
+            if (value > compositeEvent.getSimilarityBetweenEvents() && compositeEvent.getEvents().size() > 1) {
+                compositeEvent.remove(similarEvent);
+
+                CompositeEvent secondChoice = (CompositeEvent) getBestSimilarityComparingAllEvents(results, event)[1];
+                if (secondChoice != null && isCompatible(secondChoice, event)) {
+                    secondChoice.add(similarEvent, secondChoice.getSimilarityBetweenEvents());
+                    secondChoice.add(event, secondChoice.getSimilarityBetweenEvents());
+                } else {
+                    CompositeEvent newCompositeEvent = new CompositeEvent(event);
+                    newCompositeEvent.add(similarEvent, value);
+                    results.add(newCompositeEvent);
+                }
+
+                return;
+            } else if (value >= compositeEvent.getSimilarityBetweenEvents()) {
+                compositeEvent.add(event, value);
+                return;
+            } else if (isCompatible(compositeEvent, event)) {
+                compositeEvent.add(event, compositeEvent.getSimilarityBetweenEvents());
+                return;
+            }
+        }
+        results.add(new CompositeEvent(event));
+    }
+
+    private boolean isCompatible(CompositeEvent compositeEvent, Event event)
+    {
+        return compositeEvent.getSimilarityBetweenEvents()
+                >= SimilarityCalculator.SAME_GROUP_ID_AND_DOCUMENT_BUT_DIFFERENT_TYPES
+                && compositeEvent.getType().equals(event.getType());
+    }
+
+    private Object[] getBestSimilarityComparingAllEvents(List<CompositeEvent> results, Event event)
+    {
+        SimilarityCalculator similarityCalculator = new SimilarityCalculator();
+        Object[] bestSimilarity = new Object[] { 0, null, null };
+
+        for (CompositeEvent existingCompositeEvent : results) {
+            for (Event existingEvent : existingCompositeEvent.getEvents()) {
+                int similarity = similarityCalculator.computeSimilarity(event, existingEvent);
+                if (similarity < existingCompositeEvent.getSimilarityBetweenEvents()) {
+                    similarity -= 5;
+                }
+                if (similarity > (Integer) bestSimilarity[0]) {
+                    bestSimilarity = new Object[] { similarity, existingCompositeEvent, existingEvent };
+                }
+            }
+        }
+
+        return bestSimilarity;
+    }
+}
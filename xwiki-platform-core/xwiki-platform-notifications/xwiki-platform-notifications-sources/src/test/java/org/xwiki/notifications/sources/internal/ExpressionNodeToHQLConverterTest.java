@@ -27,6 +27,7 @@
 import org.junit.Test;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.notifications.filters.expression.AndNode;
 import org.xwiki.notifications.filters.expression.BooleanValueNode;
 import org.xwiki.notifications.filters.expression.DateValueNode;
 import org.xwiki.notifications.filters.expression.EmptyNode;
@@ -258,6 +259,49 @@ public void parseWithOrderBy()
 
     }
 
+    @Test
+    public void parseWithSecondaryOrderBy()
+    {
+        AbstractNode testAST = new OrderByNode(
+                new OrderByNode(
+                        new EqualsNode(
+                                new PropertyValueNode(EventProperty.SPACE),
+                                new PropertyValueNode(EventProperty.PAGE)
+                        ),
+                        new PropertyValueNode(EventProperty.DATE),
+                        OrderByNode.Order.DESC
+                ),
+                new PropertyValueNode(EventProperty.ID),
+                OrderByNode.Order.DESC
+        );
+
+        ExpressionNodeToHQLConverter.HQLQuery result = parser.parse(testAST);
+
+        assertEquals("event.space = event.page ORDER BY event.date DESC, event.id DESC",
+                result.getQuery());
+    }
+
+    @Test
+    public void parseWithBeforeEventNode()
+    {
+        Date date = new Date(42);
+
+        AbstractNode testAST = new AndNode(
+                new EqualsNode(
+                        new PropertyValueNode(EventProperty.SPACE),
+                        new PropertyValueNode(EventProperty.PAGE)
+                ),
+                new BeforeEventNode(date, "event1")
+        );
+
+        ExpressionNodeToHQLConverter.HQLQuery result = parser.parse(testAST);
+
+        assertEquals("(event.space = event.page) AND (event.date < :beforeEventDate "
+                + "OR (event.date = :beforeEventDate AND event.id < :beforeEventId))", result.getQuery());
+        assertEquals(date, result.getQueryParameters().get("beforeEventDate"));
+        assertEquals("event1", result.getQueryParameters().get("beforeEventId"));
+    }
+
     @Test
     public void parseWithInListOfReadEventsNode()
     {
@@ -278,4 +322,35 @@ public void parseWithInListOfReadEventsNode()
                 result.getQuery());
         assertEquals("xwiki:XWiki.UserA", result.getQueryParameters().get("userStatusRead"));
     }
+
+    @Test
+    public void parseWithInInboxNode()
+    {
+        DocumentReference user = new DocumentReference("xwiki", "XWiki", "userA");
+
+        when(serializer.serialize(user)).thenReturn("xwiki:XWiki.UserA");
+
+        ExpressionNodeToHQLConverter.HQLQuery result = parser.parse(new InInboxNode(user, false));
+
+        assertEquals(", ActivityEventStatusImpl inboxStatus ", result.getFrom());
+        assertEquals("(inboxStatus.activityEvent = event and inboxStatus.entityId = :inboxUser)",
+                result.getQuery());
+        assertEquals("xwiki:XWiki.UserA", result.getQueryParameters().get("inboxUser"));
+    }
+
+    @Test
+    public void parseWithUnreadInInboxNode()
+    {
+        DocumentReference user = new DocumentReference("xwiki", "XWiki", "userA");
+
+        when(serializer.serialize(user)).thenReturn("xwiki:XWiki.UserA");
+
+        ExpressionNodeToHQLConverter.HQLQuery result = parser.parse(new InInboxNode(user, true));
+
+        assertEquals(", ActivityEventStatusImpl inboxStatus ", result.getFrom());
+        assertEquals("(inboxStatus.activityEvent = event and inboxStatus.entityId = :inboxUser "
+                        + "and inboxStatus.read = false)",
+                result.getQuery());
+        assertEquals("xwiki:XWiki.UserA", result.getQueryParameters().get("inboxUser"));
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStatus;
+import org.xwiki.eventstream.EventStatusManager;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterManager;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link NotificationInbox}.
+ *
+ * @version $Id$
+ */
+public class NotificationInboxTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<NotificationInbox> mocker =
+            new MockitoComponentMockingRule<>(NotificationInbox.class);
+
+    private DocumentReference userA = new DocumentReference("xwiki", "XWiki", "UserA");
+
+    private DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+
+    private DocumentReference document = new DocumentReference("xwiki", "Main", "WebHome");
+
+    private Event event;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        event = mock(Event.class);
+        when(event.getType()).thenReturn("update");
+        when(event.getDocument()).thenReturn(document);
+        when(event.getWiki()).thenReturn(new WikiReference("xwiki"));
+
+        NotificationSubscriberIndex subscriberIndex = mocker.getInstance(NotificationSubscriberIndex.class);
+        when(subscriberIndex.getSubscribers(event)).thenReturn(Arrays.asList(userA, userB));
+
+        EntityReferenceSerializer<String> serializer = mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(userA)).thenReturn("xwiki:XWiki.UserA");
+
+        AuthorizationManager authorizationManager = mocker.getInstance(AuthorizationManager.class);
+        when(authorizationManager.hasAccess(Right.VIEW, userA, document)).thenReturn(true);
+    }
+
+    @Test
+    public void dispatchNow() throws Exception
+    {
+        ModelContext modelContext = mocker.getInstance(ModelContext.class);
+        DocumentReference currentDocument = new DocumentReference("subwiki", "Space", "Page");
+        when(modelContext.getCurrentEntityReference()).thenReturn(currentDocument);
+
+        mocker.getComponentUnderTest().dispatchNow(event);
+
+        // Only UserA can see the document
+        ArgumentCaptor<EventStatus> statusCaptor = ArgumentCaptor.forClass(EventStatus.class);
+        EventStatusManager eventStatusManager = mocker.getInstance(EventStatusManager.class);
+        verify(eventStatusManager).saveEventStatus(statusCaptor.capture());
+
+        assertSame(event, statusCaptor.getValue().getEvent());
+        assertEquals("xwiki:XWiki.UserA", statusCaptor.getValue().getEntityId());
+        assertFalse(statusCaptor.getValue().isRead());
+
+        // The statuses are saved in the wiki of the event, then the current entity is restored
+        InOrder inOrder = inOrder(modelContext, eventStatusManager);
+        inOrder.verify(modelContext).setCurrentEntityReference(new WikiReference("xwiki"));
+        inOrder.verify(eventStatusManager).saveEventStatus(any());
+        inOrder.verify(modelContext).setCurrentEntityReference(currentDocument);
+    }
+
+    @Test
+    public void isInterested() throws Exception
+    {
+        assertTrue(mocker.getComponentUnderTest().isInterested(userA, event));
+
+        // Not allowed to see the document
+        assertFalse(mocker.getComponentUnderTest().isInterested(userB, event));
+
+        // Filtered event
+        NotificationFilter filter = mock(NotificationFilter.class);
+        when(filter.filterEvent(event, userA, NotificationFormat.ALERT)).thenReturn(true);
+        NotificationFilterManager notificationFilterManager = mocker.getInstance(NotificationFilterManager.class);
+        when(notificationFilterManager.getAllFilters(any(DocumentReference.class)))
+                .thenReturn(Collections.singleton(filter));
+        assertFalse(mocker.getComponentUnderTest().isInterested(userA, event));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link NotificationSubscriberIndex}.
+ *
+ * @version $Id$
+ */
+public class NotificationSubscriberIndexTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<NotificationSubscriberIndex> mocker =
+            new MockitoComponentMockingRule<>(NotificationSubscriberIndex.class);
+
+    private DocumentReference userA = new DocumentReference("xwiki", "XWiki", "UserA");
+
+    private DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+
+    private DocumentReference userC = new DocumentReference("xwiki", "XWiki", "UserC");
+
+    private NotificationPreferenceManager notificationPreferenceManager;
+
+    private Query usersQuery;
+
+    private Query userQuery;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        notificationPreferenceManager = mocker.getInstance(NotificationPreferenceManager.class);
+
+        WikiDescriptorManager wikiDescriptorManager = mocker.getInstance(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.getMainWikiId()).thenReturn("xwiki");
+
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        usersQuery = mock(Query.class, "users");
+        when(usersQuery.execute()).thenReturn(Arrays.asList("XWiki.UserA", "XWiki.UserB"));
+        when(queryManager.createQuery(any(), eq(Query.XWQL))).thenReturn(usersQuery);
+        userQuery = mock(Query.class, "user");
+        when(userQuery.bindValue(any(), any())).thenReturn(userQuery);
+        when(userQuery.execute()).thenReturn(Collections.singletonList("XWiki.User"));
+        when(queryManager.createQuery(contains("where"), eq(Query.XWQL))).thenReturn(userQuery);
+
+        DocumentReferenceResolver<String> resolver = mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(resolver.resolve("XWiki.UserA", new WikiReference("xwiki"))).thenReturn(userA);
+        when(resolver.resolve("XWiki.UserB", new WikiReference("xwiki"))).thenReturn(userB);
+
+        EntityReferenceSerializer<String> serializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(serializer.serialize(any())).thenReturn("XWiki.User");
+
+        setPreferences(userA, preference("update", new Date(1000)));
+        setPreferences(userB, preference("create", null));
+    }
+
+    private NotificationPreference preference(String eventType, Date startDate)
+    {
+        NotificationPreference preference = mock(NotificationPreference.class);
+        when(preference.getProperties())
+            .thenReturn(Collections.singletonMap(NotificationPreferenceProperty.EVENT_TYPE, eventType));
+        when(preference.getStartDate()).thenReturn(startDate);
+
+        return preference;
+    }
+
+    private void setPreferences(DocumentReference user, NotificationPreference... preferences) throws Exception
+    {
+        when(notificationPreferenceManager.getPreferences(user, true, NotificationFormat.ALERT))
+            .thenReturn(Arrays.asList(preferences));
+    }
+
+    private Event event(String type, long date)
+    {
+        Event event = mock(Event.class);
+        when(event.getType()).thenReturn(type);
+        when(event.getDate()).thenReturn(new Date(date));
+        when(event.getWiki()).thenReturn(new WikiReference("xwiki"));
+
+        return event;
+    }
+
+    private List<DocumentReference> getSubscribers(String type, long date) throws Exception
+    {
+        return mocker.getComponentUnderTest().getSubscribers(event(type, date));
+    }
+
+    @Test
+    public void getSubscribers() throws Exception
+    {
+        assertEquals(Arrays.asList(userA), getSubscribers("update", 2000));
+        assertEquals(Arrays.asList(userB), getSubscribers("create", 0));
+        assertEquals(Collections.emptyList(), getSubscribers("delete", 2000));
+
+        // Event older than the preference
+        assertEquals(Collections.emptyList(), getSubscribers("update", 500));
+
+        // Event happening when the preference starts (same as the query generator)
+        assertEquals(Arrays.asList(userA), getSubscribers("update", 1000));
+
+        // The users and their preferences are loaded only once
+        verify(usersQuery).execute();
+        verify(notificationPreferenceManager).getPreferences(userA, true, NotificationFormat.ALERT);
+        verify(notificationPreferenceManager).getPreferences(userB, true, NotificationFormat.ALERT);
+    }
+
+    @Test
+    public void invalidate() throws Exception
+    {
+        assertEquals(Arrays.asList(userA), getSubscribers("update", 2000));
+
+        // Modified user
+        setPreferences(userB, preference("update", new Date(500)));
+        mocker.getComponentUnderTest().invalidate(userB, false);
+
+        // New user
+        setPreferences(userC, preference("update", null));
+        mocker.getComponentUnderTest().invalidate(userC, true);
+
+        // Modified document which is not a known user
+        DocumentReference document = new DocumentReference("xwiki", "Main", "WebHome");
+        mocker.getComponentUnderTest().invalidate(document, false);
+
+        assertEquals(new HashSet<>(Arrays.asList(userA, userB, userC)),
+            new HashSet<>(getSubscribers("update", 2000)));
+        assertEquals(new HashSet<>(Arrays.asList(userB, userC)), new HashSet<>(getSubscribers("update", 800)));
+        assertEquals(Collections.emptyList(), getSubscribers("create", 0));
+        verify(userQuery, times(2)).execute();
+        verify(notificationPreferenceManager, never()).getPreferences(document, true, NotificationFormat.ALERT);
+
+        // Deleted user
+        when(userQuery.execute()).thenReturn(Collections.emptyList());
+        mocker.getComponentUnderTest().invalidate(userB, false);
+
+        assertEquals(new HashSet<>(Arrays.asList(userA, userC)), new HashSet<>(getSubscribers("update", 2000)));
+    }
+
+    @Test
+    public void invalidateAll() throws Exception
+    {
+        assertEquals(Arrays.asList(userA), getSubscribers("update", 2000));
+
+        // Modified default preferences
+        setPreferences(userB, preference("update", null));
+        mocker.getComponentUnderTest().invalidateAll();
+
+        assertEquals(new HashSet<>(Arrays.asList(userA, userB)), new HashSet<>(getSubscribers("update", 2000)));
+        verify(usersQuery, times(2)).execute();
+    }
+}
@@ -28,6 +28,7 @@
 import org.junit.Test;
 import org.mockito.internal.util.collections.Sets;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.eventstream.Event;
 import org.xwiki.model.internal.reference.DefaultStringEntityReferenceSerializer;
 import org.xwiki.model.internal.reference.DefaultSymbolScheme;
 import org.xwiki.model.reference.DocumentReference;
@@ -58,6 +59,7 @@
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -135,7 +137,7 @@ public void generateQueryExpression() throws Exception
         // Verify
         assertEquals("(((DATE >= \"Thu Jan 01 01:00:00 CET 1970\" " +
                 "AND (TYPE = \"create\" AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\")) AND HIDDEN <> true) " +
-                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC",
+                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC, ID DESC",
                 node.toString());
 
         // Test 2
@@ -154,7 +156,7 @@ public void generateQueryExpression() throws Exception
                         "AND ( NOT (event IN (select status.activityEvent from ActivityEventStatusImpl status " +
                         "where status.activityEvent = event and status.entityId = :userStatusRead " +
                         "and status.read = true))) " +
-                        "ORDER BY event.date DESC", Query.HQL);
+                        "ORDER BY event.date DESC, event.id DESC", Query.HQL);
         verify(query).bindValue("date_688218ea2b05763819a1e155109e4bf1e8921dd72e8b43d4c89c89133d4a5357", startDate);
         verify(query).bindValue("date_25db83d7521312b07fa98ca0023df696d1b94ee4fb7c49578c807f5aeb634f7a", pref1StartDate);
         verify(query).bindValue(eq("value_fa8847b0c33183273f5945508b31c3208a9e4ece58ca47233a05628d8dba3799"),
@@ -178,7 +180,7 @@ public void generateQueryWhenHiddenDocsAreEnabled() throws Exception
         // Verify
         assertEquals("((DATE >= \"Thu Jan 01 01:00:00 CET 1970\" " +
                 "AND (TYPE = \"create\" AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\")) " +
-                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC", node.toString());
+                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC, ID DESC", node.toString());
 
         // Test 2
         mocker.getComponentUnderTest().generateQuery(
@@ -196,7 +198,7 @@ public void generateQueryWhenHiddenDocsAreEnabled() throws Exception
                         "select status.activityEvent from ActivityEventStatusImpl status " +
                         "where status.activityEvent = event " +
                         "and status.entityId = :userStatusRead and status.read = true))) " +
-                        "ORDER BY event.date DESC", Query.HQL);
+                        "ORDER BY event.date DESC, event.id DESC", Query.HQL);
         verify(query).bindValue(eq("date_688218ea2b05763819a1e155109e4bf1e8921dd72e8b43d4c89c89133d4a5357"),
                 eq(startDate));
         verify(query).bindValue(eq("value_fa8847b0c33183273f5945508b31c3208a9e4ece58ca47233a05628d8dba3799"),
@@ -217,7 +219,7 @@ public void generateQueryWithNotOnlyUnread() throws Exception
         // Verify
         assertEquals("((DATE >= \"Thu Jan 01 01:00:00 CET 1970\" " +
                 "AND (TYPE = \"create\" AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\")) AND HIDDEN <> true) " +
-                "ORDER BY DATE DESC", node.toString());
+                "ORDER BY DATE DESC, ID DESC", node.toString());
 
         // Test 2
         mocker.getComponentUnderTest().generateQuery(
@@ -231,7 +233,7 @@ public void generateQueryWithNotOnlyUnread() throws Exception
                         "AND ((event.type = :value_fa8847b0c33183273f5945508b31c3208a9e4ece58ca47233a05628d8dba3799) " +
                         "AND (event.date >= :date_25db83d7521312b07fa98ca0023df696d1b94ee4fb7c49578c807f5aeb634f7a))) " +
                         "AND (event.hidden <> true) " +
-                        "ORDER BY event.date DESC",
+                        "ORDER BY event.date DESC, event.id DESC",
                 Query.HQL);
     }
 
@@ -250,7 +252,7 @@ public void generateQueryWithUntilDate() throws Exception
         assertEquals("((((DATE >= \"Thu Jan 01 01:00:00 CET 1970\" " +
                 "AND (TYPE = \"create\" AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\")) " +
                 "AND DATE <= \"Sun Sep 09 03:46:40 CEST 2001\") AND HIDDEN <> true) " +
-                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC", node.toString());
+                "AND NOT (LIST_OF_READ_EVENTS)) ORDER BY DATE DESC, ID DESC", node.toString());
 
         // Test 2
         mocker.getComponentUnderTest().generateQuery(
@@ -269,7 +271,7 @@ public void generateQueryWithUntilDate() throws Exception
                         "select status.activityEvent from ActivityEventStatusImpl status " +
                         "where status.activityEvent = event and status.entityId = :userStatusRead " +
                         "and status.read = true))) " +
-                        "ORDER BY event.date DESC",
+                        "ORDER BY event.date DESC, event.id DESC",
                 Query.HQL);
         verify(query).bindValue("date_688218ea2b05763819a1e155109e4bf1e8921dd72e8b43d4c89c89133d4a5357", startDate);
         verify(query).bindValue("date_25db83d7521312b07fa98ca0023df696d1b94ee4fb7c49578c807f5aeb634f7a", pref1StartDate);
@@ -295,11 +297,59 @@ public void generateQueryWithUntilDateAndBlackList() throws Exception
                 "AND DATE <= \"Sun Sep 09 03:46:40 CEST 2001\") " +
                 "AND HIDDEN <> true) " +
                 "AND NOT (LIST_OF_READ_EVENTS)) " +
-                "ORDER BY DATE DESC",
+                "ORDER BY DATE DESC, ID DESC",
                 node.toString()
         );
     }
 
+    @Test
+    public void generateQueryWithLastEvent() throws Exception
+    {
+        Event lastEvent = mock(Event.class);
+        when(lastEvent.getDate()).thenReturn(new Date(1000000000000L));
+        when(lastEvent.getId()).thenReturn("event1");
+
+        // Test
+        ExpressionNode node = mocker.getComponentUnderTest().generateQueryExpression(
+                new DocumentReference("xwiki", "XWiki", "UserA"),
+                NotificationFormat.ALERT,
+                true, null, null, null, lastEvent);
+
+        // Verify
+        assertEquals("((((TYPE = \"create\" " +
+                "AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\") " +
+                "AND BEFORE_EVENT(event1)) " +
+                "AND HIDDEN <> true) " +
+                "AND NOT (LIST_OF_READ_EVENTS)) " +
+                "ORDER BY DATE DESC, ID DESC",
+                node.toString()
+        );
+    }
+
+    @Test
+    public void generateInboxQuery() throws Exception
+    {
+        Event lastEvent = mock(Event.class);
+        when(lastEvent.getDate()).thenReturn(new Date(1000000000000L));
+        when(lastEvent.getId()).thenReturn("event1");
+
+        // Test
+        ExpressionNode node = mocker.getComponentUnderTest().generateInboxQueryExpression(
+                new DocumentReference("xwiki", "XWiki", "UserA"),
+                true, null, null, null, lastEvent);
+
+        // Verify
+        assertEquals("((UNREAD_INBOX " +
+                "AND BEFORE_EVENT(event1)) " +
+                "AND HIDDEN <> true) " +
+                "ORDER BY DATE DESC, ID DESC",
+                node.toString()
+        );
+
+        // The preferences and the filters have been applied when the events were stored in the inbox
+        verifyZeroInteractions(notificationPreferenceManager, notificationFilterManager);
+    }
+
     @Test
     public void generateQueryWithLocalUser() throws Exception
     {
@@ -315,7 +365,7 @@ public void generateQueryWithLocalUser() throws Exception
                 + "AND (TYPE = \"create\" AND DATE >= \"Fri Jan 02 04:46:40 CET 1970\")) AND HIDDEN <> true) "
                 + "AND NOT (LIST_OF_READ_EVENTS)) "
                 + "AND WIKI = \"Wiki xwiki\") "
-                + "ORDER BY DATE DESC",
+                + "ORDER BY DATE DESC, ID DESC",
                 node.toString()
         );
     }
@@ -365,7 +415,7 @@ public void generateQueryWithFilters() throws Exception
                 "AND NOT (ID IN (\"event1\", \"event2\"))) " +
                 "AND HIDDEN <> true) " +
                 "AND NOT (LIST_OF_READ_EVENTS)) " +
-                "ORDER BY DATE DESC", node.toString());
+                "ORDER BY DATE DESC, ID DESC", node.toString());
     }
 
     @Test
@@ -393,7 +443,7 @@ public void generateQueryWithNoRelevantFilters() throws Exception
                 "AND NOT (ID IN (\"event1\", \"event2\"))) " +
                 "AND HIDDEN <> true) " +
                 "AND NOT (LIST_OF_READ_EVENTS)) " +
-                "ORDER BY DATE DESC",
+                "ORDER BY DATE DESC, ID DESC",
                 node.toString()
         );
     }
@@ -94,6 +94,12 @@ public class DefaultRemoteObservationManager implements RemoteObservationManager
     @Inject
     private ComponentManager componentManager;
 
+    /**
+     * Used to send the events to the network without blocking the current thread.
+     */
+    @Inject
+    private RemoteEventSender sender;
+
     /**
      * The logger to log.
      */
@@ -116,6 +122,8 @@ public void initialize() throws InitializationException
                 + this.configuration.getNetworkAdapter() + "]", e);
         }
 
+        this.sender.start(this.networkAdapter);
+
         // Start configured channels and register them against the JMX server
         for (String channelId : this.configuration.getChannels()) {
             try {
@@ -139,10 +147,13 @@ public void notify(LocalEventData localEvent)
 
         // if remote event data is not filled it means the message should not be sent to the network
         if (remoteEvent != null) {
-            this.networkAdapter.send(remoteEvent);
+            this.sender.send(remoteEvent);
         }
 
         if (localEvent.getEvent() instanceof ApplicationStoppedEvent) {
+            // Make sure all the events are sent before stopping the channels
+            this.sender.stop();
+
             try {
                 this.networkAdapter.stopAllChannels();
             } catch (RemoteEventException e) {
@@ -0,0 +1,265 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.observation.remote.NetworkAdapter;
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Send the remote events to the network from a dedicated thread so that the thread which generated the event does not
+ * wait for the network. The events queued at the same time are sent together.
+ * <p>
+ * The events are always sent in the order they are passed to {@link #send(RemoteEventData)}: when stopped, the thread
+ * keeps sending the queued events until the queue is empty, and only then the events are sent synchronously.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = RemoteEventSender.class)
+@Singleton
+public class RemoteEventSender implements Disposable
+{
+    /**
+     * The maximum number of events sent together.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of events waiting to be sent, the threads generating events wait when it's reached.
+     */
+    private static final int QUEUE_CAPACITY = 10000;
+
+    /**
+     * The maximum time to wait for the queued events to be sent when stopping.
+     */
+    private static final long STOP_TIMEOUT = 10000;
+
+    /**
+     * Marker put in the queue to wake up the thread when stopping.
+     */
+    private static final RemoteEventData STOP = new RemoteEventData();
+
+    @Inject
+    private Logger logger;
+
+    private final BlockingQueue<RemoteEventData> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Protects {@link #started}, {@link #running}, {@link #queuing} and {@link #thread}.
+     */
+    private final Object stateLock = new Object();
+
+    /**
+     * Held while sending events, so that the events sent synchronously are not sent before the queued ones.
+     */
+    private final Object sendLock = new Object();
+
+    private NetworkAdapter networkAdapter;
+
+    private boolean started;
+
+    /**
+     * True as long as the thread sends the queued events (it can outlive a stop until the queue is empty).
+     */
+    private boolean running;
+
+    /**
+     * The number of threads currently adding an event to the queue.
+     */
+    private int queuing;
+
+    private Thread thread;
+
+    /**
+     * Start sending the queued events.
+     *
+     * @param networkAdapter the network adapter to use to send the events
+     */
+    public void start(NetworkAdapter networkAdapter)
+    {
+        synchronized (this.stateLock) {
+            this.networkAdapter = networkAdapter;
+            this.started = true;
+
+            // The thread of a stop which did not finish in time keeps running as long as it's started again
+            if (!this.running) {
+                this.running = true;
+
+                this.thread = new Thread(this::run);
+                this.thread.setName("XWiki remote events sender");
+                this.thread.setDaemon(true);
+                this.thread.start();
+            }
+        }
+    }
+
+    /**
+     * Send all the queued events and stop the sending thread. The events sent after that are sent synchronously.
+     */
+    public void stop()
+    {
+        Thread sender;
+        synchronized (this.stateLock) {
+            if (!this.started) {
+                return;
+            }
+
+            this.started = false;
+            sender = this.thread;
+        }
+
+        try {
+            this.queue.put(STOP);
+            sender.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            this.logger.warn("Interrupted while waiting for the remote events to be sent");
+
+            Thread.currentThread().interrupt();
+        }
+
+        if (sender.isAlive()) {
+            // The thread keeps sending the queued events (including the ones queued after the marker) until the
+            // queue is empty
+            this.logger.warn("The remote events sender did not stop after [{}] ms, [{}] events are still queued",
+                STOP_TIMEOUT, this.queue.size());
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        stop();
+    }
+
+    /**
+     * @param remoteEvent the event to send to the network
+     */
+    public void send(RemoteEventData remoteEvent)
+    {
+        boolean queued;
+        synchronized (this.stateLock) {
+            queued = this.running;
+            if (queued) {
+                // Prevent the thread from stopping until the event is queued
+                ++this.queuing;
+            }
+        }
+
+        if (queued) {
+            try {
+                this.queue.put(remoteEvent);
+            } catch (InterruptedException e) {
+                this.logger.warn("Interrupted while queuing the remote event [{}]", remoteEvent);
+
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this.stateLock) {
+                    --this.queuing;
+                    queued = this.running;
+                }
+            }
+
+            if (!queued) {
+                // The thread has been interrupted in the meantime
+                flush();
+            }
+        } else {
+            // Not started (or stopped): send the events which are still queued first
+            synchronized (this.sendLock) {
+                flush();
+
+                this.networkAdapter.send(remoteEvent);
+            }
+        }
+    }
+
+    private void run()
+    {
+        List<RemoteEventData> batch = new ArrayList<>(BATCH_SIZE);
+
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, BATCH_SIZE - 1);
+
+                sendBatch(batch);
+
+                batch.clear();
+
+                synchronized (this.stateLock) {
+                    if (!this.started && this.queuing == 0 && this.queue.isEmpty()) {
+                        this.running = false;
+
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            this.logger.warn("The remote events sender has been interrupted");
+
+            synchronized (this.stateLock) {
+                this.running = false;
+            }
+
+            // Don't leave behind the queued events
+            flush();
+        }
+    }
+
+    /**
+     * Send synchronously all the queued events.
+     */
+    private void flush()
+    {
+        List<RemoteEventData> batch = new ArrayList<>(BATCH_SIZE);
+        while (this.queue.drainTo(batch, BATCH_SIZE) > 0) {
+            sendBatch(batch);
+
+            batch.clear();
+        }
+    }
+
+    private void sendBatch(List<RemoteEventData> batch)
+    {
+        synchronized (this.sendLock) {
+            batch.removeIf(event -> event == STOP);
+
+            if (!batch.isEmpty()) {
+                try {
+                    this.networkAdapter.send(batch);
+                } catch (Exception e) {
+                    this.logger.error("Failed to send remote events [{}]", batch, e);
+                }
+            }
+        }
+    }
+}
@@ -79,10 +79,25 @@ public RemoteObservationManager getRemoteObservationManager()
     @Override
     public void receive(Message msg)
     {
-        RemoteEventData remoteEvent = (RemoteEventData) msg.getObject();
+        Object object = msg.getObject();
 
-        this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+        if (object instanceof RemoteEventDataBatch) {
+            for (RemoteEventData remoteEvent : ((RemoteEventDataBatch) object).getEvents()) {
+                this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
 
-        getRemoteObservationManager().notify(remoteEvent);
+                // Make sure the following events of the batch are not lost
+                try {
+                    getRemoteObservationManager().notify(remoteEvent);
+                } catch (Exception e) {
+                    this.logger.error("Failed to handle remote event [{}]", remoteEvent, e);
+                }
+            }
+        } else {
+            RemoteEventData remoteEvent = (RemoteEventData) object;
+
+            this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+
+            getRemoteObservationManager().notify(remoteEvent);
+        }
     }
 }
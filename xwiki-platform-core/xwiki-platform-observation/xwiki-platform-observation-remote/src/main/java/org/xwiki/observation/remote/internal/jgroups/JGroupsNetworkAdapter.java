@@ -23,6 +23,7 @@
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -100,6 +101,30 @@ public void send(RemoteEventData remoteEvent)
         }
     }
 
+    @Override
+    public void send(List<RemoteEventData> remoteEvents)
+    {
+        if (remoteEvents.size() == 1) {
+            send(remoteEvents.get(0));
+
+            return;
+        }
+
+        this.logger.debug("Send [{}] JGroups remote events", remoteEvents.size());
+
+        // Send all the events in one message to the whole group
+        Message message = new Message(null, new RemoteEventDataBatch(remoteEvents));
+
+        // Send message to JGroups channels
+        for (Map.Entry<String, JChannel> entry : this.channels.entrySet()) {
+            try {
+                entry.getValue().send(message);
+            } catch (Exception e) {
+                this.logger.error("Failed to send messages [{}] to the channel [{}]", remoteEvents, entry.getKey(), e);
+            }
+        }
+    }
+
     @Override
     public void startChannel(String channelId) throws RemoteEventException
     {
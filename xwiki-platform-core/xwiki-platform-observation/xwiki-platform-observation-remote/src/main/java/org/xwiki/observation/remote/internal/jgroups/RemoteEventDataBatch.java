@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Several remote events sent in a single JGroups message.
+ * <p>
+ * The events are written in the same stream (instead of serializing one {@link RemoteEventData} per message) so that
+ * the descriptions of the classes and the objects shared by several events (references, etc.) are written only once.
+ * The format starts with a version to be able to change it later.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class RemoteEventDataBatch implements Externalizable
+{
+    /**
+     * The version of the format.
+     */
+    private static final byte VERSION = 1;
+
+    private static final long serialVersionUID = 1L;
+
+    private List<RemoteEventData> events;
+
+    /**
+     * Used when deserializing.
+     */
+    public RemoteEventDataBatch()
+    {
+    }
+
+    /**
+     * @param events the events to send
+     */
+    public RemoteEventDataBatch(List<RemoteEventData> events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * @return the events, in the order they have been generated
+     */
+    public List<RemoteEventData> getEvents()
+    {
+        return this.events;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        out.writeByte(VERSION);
+
+        out.writeInt(this.events.size());
+        for (RemoteEventData event : this.events) {
+            out.writeObject(event.getEvent());
+            out.writeObject(event.getSource());
+            out.writeObject(event.getData());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+    {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported remote events format version [" + version + "]");
+        }
+
+        int size = in.readInt();
+        this.events = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            RemoteEventData event = new RemoteEventData();
+            event.setEvent((Serializable) in.readObject());
+            event.setSource((Serializable) in.readObject());
+            event.setData((Serializable) in.readObject());
+
+            this.events.add(event);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(this.events);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.observation.remote.NetworkAdapter;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Validate {@link RemoteEventSender}.
+ *
+ * @version $Id$
+ */
+public class RemoteEventSenderTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<RemoteEventSender> mocker =
+        new MockitoComponentMockingRule<>(RemoteEventSender.class);
+
+    private NetworkAdapter networkAdapter;
+
+    /**
+     * The events received by the network adapter, one list per call.
+     */
+    private final List<List<RemoteEventData>> sent = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Released to let the network adapter send the first batch.
+     */
+    private final CountDownLatch firstBatchReleased = new CountDownLatch(1);
+
+    /**
+     * Released when the network adapter starts sending the first batch.
+     */
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.networkAdapter = mock(NetworkAdapter.class);
+        doAnswer(invocation -> {
+            this.firstBatchStarted.countDown();
+            this.firstBatchReleased.await();
+            this.sent.add(new ArrayList<>(invocation.<List<RemoteEventData>>getArgument(0)));
+
+            return null;
+        }).when(this.networkAdapter).send(anyList());
+        doAnswer(invocation -> this.sent.add(Arrays.asList(invocation.<RemoteEventData>getArgument(0))))
+            .when(this.networkAdapter).send(any(RemoteEventData.class));
+    }
+
+    private RemoteEventData event(String data)
+    {
+        RemoteEventData event = new RemoteEventData();
+        event.setData(data);
+
+        return event;
+    }
+
+    @Test
+    public void sendBatches() throws Exception
+    {
+        RemoteEventSender sender = this.mocker.getComponentUnderTest();
+        sender.start(this.networkAdapter);
+
+        RemoteEventData event1 = event("1");
+        RemoteEventData event2 = event("2");
+        RemoteEventData event3 = event("3");
+
+        // The first event is sent alone, the following ones are queued meanwhile and sent together
+        sender.send(event1);
+        assertTrue(this.firstBatchStarted.await(10, TimeUnit.SECONDS));
+        sender.send(event2);
+        sender.send(event3);
+        this.firstBatchReleased.countDown();
+
+        sender.stop();
+
+        assertEquals(Arrays.asList(Arrays.asList(event1), Arrays.asList(event2, event3)), this.sent);
+    }
+
+    @Test
+    public void sendWhenNotStarted() throws Exception
+    {
+        RemoteEventSender sender = this.mocker.getComponentUnderTest();
+        sender.start(this.networkAdapter);
+        sender.stop();
+
+        RemoteEventData event = event("1");
+        sender.send(event);
+
+        assertEquals(Arrays.asList(Arrays.asList(event)), this.sent);
+    }
+
+    @Test
+    public void sendWhileStopping() throws Exception
+    {
+        RemoteEventSender sender = this.mocker.getComponentUnderTest();
+        sender.start(this.networkAdapter);
+
+        RemoteEventData event1 = event("1");
+        RemoteEventData event2 = event("2");
+        RemoteEventData event3 = event("3");
+
+        sender.send(event1);
+        assertTrue(this.firstBatchStarted.await(10, TimeUnit.SECONDS));
+        sender.send(event2);
+
+        // Stop while the first batch is being sent
+        Thread stopThread = new Thread(sender::stop);
+        stopThread.start();
+        while (stopThread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        // Queued after the stop marker: still sent by the thread, after the events queued before it
+        sender.send(event3);
+
+        this.firstBatchReleased.countDown();
+        stopThread.join();
+
+        assertEquals(Arrays.asList(Arrays.asList(event1), Arrays.asList(event2, event3)), this.sent);
+
+        // The thread is stopped once the queue is empty
+        RemoteEventData event4 = event("4");
+        sender.send(event4);
+
+        assertEquals(Arrays.asList(Arrays.asList(event1), Arrays.asList(event2, event3), Arrays.asList(event4)),
+            this.sent);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.test.TestEvent;
+
+/**
+ * Validate {@link RemoteEventDataBatch}.
+ *
+ * @version $Id$
+ */
+public class RemoteEventDataBatchTest
+{
+    private RemoteEventData createRemoteEventData(String source, String data)
+    {
+        RemoteEventData remoteEvent = new RemoteEventData();
+        remoteEvent.setEvent(new TestEvent());
+        remoteEvent.setSource(source);
+        remoteEvent.setData(data);
+
+        return remoteEvent;
+    }
+
+    @Test
+    public void serialize() throws Exception
+    {
+        RemoteEventDataBatch batch = new RemoteEventDataBatch(
+            Arrays.asList(createRemoteEventData("source1", "data1"), createRemoteEventData("source2", null)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(batch);
+        }
+
+        RemoteEventDataBatch result;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            result = (RemoteEventDataBatch) in.readObject();
+        }
+
+        Assert.assertEquals(2, result.getEvents().size());
+        Assert.assertEquals(new TestEvent(), result.getEvents().get(0).getEvent());
+        Assert.assertEquals("source1", result.getEvents().get(0).getSource());
+        Assert.assertEquals("data1", result.getEvents().get(0).getData());
+        Assert.assertEquals("source2", result.getEvents().get(1).getSource());
+        Assert.assertNull(result.getEvents().get(1).getData());
+    }
+}
@@ -37,6 +37,7 @@
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -182,6 +183,7 @@
 import com.xpn.xwiki.internal.XWikiCfgConfigurationSource;
 import com.xpn.xwiki.internal.XWikiConfigDelegate;
 import com.xpn.xwiki.internal.XWikiInitializerJob;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupRecorder;
 import com.xpn.xwiki.internal.event.XObjectPropertyAddedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyEvent;
@@ -376,6 +378,8 @@ public class XWiki implements EventListener
 
     private JobExecutor jobExecutor;
 
+    private CacheWarmupRecorder cacheWarmupRecorder;
+
     private InternalSkinManager internalSkinManager;
 
     private TemplateManager templateManager;
@@ -666,6 +670,15 @@ private ResourceReferenceManager getResourceReferenceManager()
         return this.resourceReferenceManager;
     }
 
+    private CacheWarmupRecorder getCacheWarmupRecorder()
+    {
+        if (this.cacheWarmupRecorder == null) {
+            this.cacheWarmupRecorder = Utils.getComponent(CacheWarmupRecorder.class);
+        }
+
+        return this.cacheWarmupRecorder;
+    }
+
     private JobExecutor getJobExecutor()
     {
         if (this.jobExecutor == null) {
@@ -3896,7 +3909,12 @@ public boolean checkAccess(String action, XWikiDocument doc, XWikiContext contex
             return true;
         }
 
-        return getRightService().checkAccess(action, doc, context);
+        boolean result = getRightService().checkAccess(action, doc, context);
+
+        // Remember the most checked rights to warm up the security cache at startup
+        getCacheWarmupRecorder().recordAccess(context.getUserReference(), doc.getDocumentReference());
+
+        return result;
     }
 
     public String include(String topic, boolean isForm, XWikiContext context) throws XWikiException
@@ -5666,6 +5684,33 @@ public boolean exists(DocumentReference documentReference, XWikiContext context)
         }
     }
 
+    /**
+     * Check the existence of several documents at once, which is a lot cheaper than calling
+     * {@link #exists(DocumentReference, XWikiContext)} for each of them when they are not already cached.
+     *
+     * @param documentReferences the references of the documents to check
+     * @param context the XWiki context
+     * @return the existence of each of the passed documents
+     * @since 9.12RC1
+     */
+    public Map<DocumentReference, Boolean> exists(Collection<DocumentReference> documentReferences,
+        XWikiContext context)
+    {
+        try {
+            return getStore().exists(documentReferences, context);
+        } catch (XWikiException e) {
+            LOGGER.warn("Failed to check the existence of documents [{}]: {}", documentReferences,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            Map<DocumentReference, Boolean> result = new HashMap<>(documentReferences.size());
+            for (DocumentReference documentReference : documentReferences) {
+                result.put(documentReference, Boolean.FALSE);
+            }
+
+            return result;
+        }
+    }
+
     public String getAdType(XWikiContext context)
     {
         String adtype = "";
@@ -6008,6 +6053,16 @@ public boolean hasDynamicCustomMappings()
         return "1".equals(getConfiguration().getProperty("xwiki.store.hibernate.custommapping.dynamic", "0"));
     }
 
+    /**
+     * @return true if the properties of all the objects of a document should be loaded with a fixed number of queries
+     *         instead of one query per object and property
+     * @since 9.12RC1
+     */
+    public boolean hasBatchObjectLoading()
+    {
+        return "1".equals(getConfiguration().getProperty("xwiki.store.hibernate.batchloading", "1"));
+    }
+
     public String getDefaultSpace(XWikiContext context)
     {
         String defaultSpace = getXWikiPreference("defaultweb", "", context);
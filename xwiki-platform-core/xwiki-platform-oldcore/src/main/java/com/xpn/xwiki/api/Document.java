@@ -218,7 +218,8 @@ public XWikiDocument getDocument()
     protected XWikiDocument getDoc()
     {
         if (this.initialDoc == this.doc) {
-            this.doc = this.initialDoc.clone();
+            // The documents shared by the cache are never modified so their objects can be copied only when needed
+            this.doc = this.initialDoc.lazyClone();
         }
 
         return this.doc;
@@ -24,6 +24,8 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItem;
@@ -32,6 +34,7 @@
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.io.output.ProxyOutputStream;
 import org.xwiki.environment.Environment;
+import org.xwiki.stability.Unstable;
 import org.xwiki.store.UnexpectedException;
 
 import com.xpn.xwiki.web.Utils;
@@ -246,6 +249,25 @@ public InputStream getContentInputStream()
         }
     }
 
+    /**
+     * Open a channel to read the binary content of this attachment at any position without reading what is before,
+     * when the content is stored in a file.
+     *
+     * @return a channel to read the binary content of this attachment, or {@code null} if the content is not stored in
+     *         a file, in which case {@link #getContentInputStream()} should be used
+     * @throws IOException when failing to open the file containing the content
+     * @since 9.12RC1
+     */
+    @Unstable
+    public FileChannel getContentChannel() throws IOException
+    {
+        if (this.file instanceof DiskFileItem && !this.file.isInMemory()) {
+            return FileChannel.open(((DiskFileItem) this.file).getStoreLocation().toPath(), StandardOpenOption.READ);
+        }
+
+        return null;
+    }
+
     /**
      * Set the content of the attachment by writing to a provided OutputStream. Content is *not* appended, this method
      * clears the content and creates new content. If you want to append content, you can call
@@ -180,6 +180,7 @@
 import com.xpn.xwiki.objects.classes.StaticListClass;
 import com.xpn.xwiki.objects.classes.TextAreaClass;
 import com.xpn.xwiki.store.XWikiAttachmentStoreInterface;
+import com.xpn.xwiki.store.XWikiCacheStore;
 import com.xpn.xwiki.store.XWikiHibernateAttachmentStore;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.store.XWikiVersioningStoreInterface;
@@ -492,6 +493,12 @@ private static ObjectReferenceResolver<EntityReference> getCurrentReferenceObjec
      */
     private Map<DocumentReference, List<BaseObject>> xObjects = new TreeMap<DocumentReference, List<BaseObject>>();
 
+    /**
+     * The document from which the objects not yet in {@link #xObjects} are cloned when accessed (see
+     * {@link #lazyClone()}), null if all the objects have been copied.
+     */
+    private XWikiDocument xObjectsSource;
+
     // TODO: use a Map instead of a List to store attachment in XWikiDocument
     private final List<XWikiAttachment> attachmentList =
         new AbstractNotifyOnUpdateList<XWikiAttachment>(new ArrayList<XWikiAttachment>())
@@ -512,6 +519,12 @@ protected void added(XWikiAttachment element)
     // Caching
     private boolean fromCache = false;
 
+    /**
+     * Whether this document got its content from another document, in which case it can be modified even if it is
+     * flagged as coming from the cache (see {@link #isFromCache()}), so it can't be the source of a lazy clone.
+     */
+    private boolean copy;
+
     private List<BaseObject> xObjectsToRemove = new ArrayList<BaseObject>();
 
     private List<XWikiAttachmentToRemove> attachmentsToRemove = new ArrayList<XWikiAttachmentToRemove>();
@@ -1159,6 +1172,10 @@ private String display(Syntax targetSyntax, boolean executionContextIsolated, bo
                 // Execute display
                 XDOM contentXDOM = getDocumentDisplayer().display(this, parameters);
 
+                // Make sure the existence of the linked documents (needed to render the links) is known before
+                // rendering them one by one
+                prefetchLinkedDocumentsExistence(contentXDOM, xcontext);
+
                 // Render the result
                 renderedContent = renderXDOM(contentXDOM, targetSyntax);
 
@@ -1173,6 +1190,54 @@ private String display(Syntax targetSyntax, boolean executionContextIsolated, bo
         }
     }
 
+    /**
+     * Check the existence of all the documents targeted by the links of the passed XDOM in one go so that the renderer
+     * find them in the cache instead of asking the storage for each link.
+     *
+     * @param xdom the content to render
+     * @param xcontext the XWiki context
+     */
+    private void prefetchLinkedDocumentsExistence(XDOM xdom, XWikiContext xcontext)
+    {
+        try {
+            // Not needed when the existence of the documents of the current wiki is known without asking the storage
+            XWikiStoreInterface store = xcontext.getWiki().getStore();
+            if (store instanceof XWikiCacheStore
+                && ((XWikiCacheStore) store).isExistenceIndexed(xcontext.getWikiId())) {
+                return;
+            }
+
+            List<LinkBlock> linkBlocks = xdom.getBlocks(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+
+            Set<DocumentReference> linkedReferences = new HashSet<>();
+            for (LinkBlock linkBlock : linkBlocks) {
+                ResourceReference reference = linkBlock.getReference();
+                ResourceType resourceType = reference.getType();
+
+                if ((ResourceType.DOCUMENT.equals(resourceType) || ResourceType.SPACE.equals(resourceType))
+                    && StringUtils.isNotEmpty(reference.getReference())) {
+                    EntityReference entityReference =
+                        getResourceReferenceEntityReferenceResolver().resolve(reference, EntityType.DOCUMENT);
+                    if (entityReference != null && entityReference.getType() == EntityType.SPACE) {
+                        // A space link targets the home page of the space
+                        entityReference = new EntityReference(Utils.getComponent(EntityReferenceProvider.class)
+                            .getDefaultReference(EntityType.DOCUMENT).getName(), EntityType.DOCUMENT, entityReference);
+                    }
+                    if (entityReference != null && entityReference.getType() == EntityType.DOCUMENT) {
+                        linkedReferences.add(new DocumentReference(entityReference));
+                    }
+                }
+            }
+
+            if (linkedReferences.size() > 1) {
+                xcontext.getWiki().exists(linkedReferences, xcontext);
+            }
+        } catch (Exception e) {
+            // This is only an optimization, the links will be checked one by one
+            LOGGER.debug("Failed to check the existence of the documents linked in [{}]", getDocumentReference(), e);
+        }
+    }
+
     public String getRenderedContent(Syntax targetSyntax, XWikiContext context) throws XWikiException
     {
         return getRenderedContent(targetSyntax, true, context);
@@ -2272,9 +2337,52 @@ public void setXClass(BaseClass xwikiClass)
      */
     public Map<DocumentReference, List<BaseObject>> getXObjects()
     {
+        if (this.xObjectsSource != null) {
+            // Don't go through the accessors of the source which must not be modified
+            for (DocumentReference classReference : this.xObjectsSource.xObjects.keySet()) {
+                getXObjectsInternal(classReference);
+            }
+
+            this.xObjectsSource = null;
+        }
+
         return this.xObjects;
     }
 
+    /**
+     * @param classReference the reference of the class
+     * @return the objects of the passed class, cloned from {@link #xObjectsSource} if they were not yet
+     */
+    private List<BaseObject> getXObjectsInternal(DocumentReference classReference)
+    {
+        List<BaseObject> objects = this.xObjects.get(classReference);
+
+        if (objects == null && this.xObjectsSource != null) {
+            List<BaseObject> sourceObjects = this.xObjectsSource.xObjects.get(classReference);
+
+            if (sourceObjects != null) {
+                objects = new ArrayList<>(sourceObjects.size());
+                for (BaseObject sourceObject : sourceObjects) {
+                    BaseObject object = null;
+                    if (sourceObject != null) {
+                        object = sourceObject.clone();
+                        object.setOwnerDocument(this);
+                    }
+                    objects.add(object);
+                }
+
+                this.xObjects.put(classReference, objects);
+
+                // Don't keep the source alive once all its objects have been cloned
+                if (this.xObjects.keySet().containsAll(this.xObjectsSource.xObjects.keySet())) {
+                    this.xObjectsSource = null;
+                }
+            }
+        }
+
+        return objects;
+    }
+
     /**
      * @since 2.2M1
      */
@@ -2301,6 +2409,7 @@ public void setXObjects(Map<DocumentReference, List<BaseObject>> objects)
 
         // Replace the current objects with the provided ones.
         this.xObjects = objects;
+        this.xObjectsSource = null;
     }
 
     /**
@@ -2364,7 +2473,7 @@ public int createXObject(EntityReference classReference, XWikiContext context) t
         BaseObject object = BaseClass.newCustomClassInstance(absoluteClassReference, context);
         object.setOwnerDocument(this);
         object.setXClassReference(classReference);
-        List<BaseObject> objects = this.xObjects.get(absoluteClassReference);
+        List<BaseObject> objects = getXObjectsInternal(absoluteClassReference);
         if (objects == null) {
             objects = new ArrayList<BaseObject>();
             this.xObjects.put(absoluteClassReference, objects);
@@ -2393,7 +2502,7 @@ public int createNewObject(String className, XWikiContext context) throws XWikiE
     public int getXObjectSize(DocumentReference classReference)
     {
         try {
-            return getXObjects().get(classReference).size();
+            return getXObjectsInternal(classReference).size();
         } catch (Exception e) {
             return 0;
         }
@@ -2428,7 +2537,7 @@ public List<BaseObject> getXObjects(DocumentReference classReference)
             return new ArrayList<BaseObject>();
         }
 
-        return getXObjects().get(classReference);
+        return getXObjectsInternal(classReference);
     }
 
     /**
@@ -2451,7 +2560,7 @@ public List<BaseObject> getXObjects(EntityReference reference)
     @Deprecated
     public Vector<BaseObject> getObjects(String className)
     {
-        List<BaseObject> result = this.xObjects.get(resolveClassReference(className));
+        List<BaseObject> result = getXObjectsInternal(resolveClassReference(className));
         return result == null ? null : new Vector<BaseObject>(result);
     }
 
@@ -2461,7 +2570,7 @@ public Vector<BaseObject> getObjects(String className)
     public void setXObjects(DocumentReference classReference, List<BaseObject> objects)
     {
         // Remove existing objects
-        List<BaseObject> existingbjects = this.xObjects.get(classReference);
+        List<BaseObject> existingbjects = getXObjectsInternal(classReference);
         if (existingbjects != null) {
             existingbjects.clear();
         }
@@ -2510,7 +2619,7 @@ public BaseObject getXObject(EntityReference reference)
     public BaseObject getXObject(DocumentReference classReference)
     {
         BaseObject result = null;
-        List<BaseObject> objects = getXObjects().get(classReference);
+        List<BaseObject> objects = getXObjectsInternal(classReference);
         if (objects != null) {
             for (BaseObject object : objects) {
                 if (object != null) {
@@ -2576,7 +2685,7 @@ public BaseObject getObject(String className)
      */
     public BaseObject getXObject(DocumentReference classReference, int nb)
     {
-        List<BaseObject> objects = getXObjects().get(classReference);
+        List<BaseObject> objects = getXObjectsInternal(classReference);
 
         if (objects != null && objects.size() > nb) {
             return objects.get(nb);
@@ -2682,7 +2791,7 @@ public BaseObject getXObject(DocumentReference classReference, String key, Strin
                 }
             }
 
-            List<BaseObject> objects = getXObjects().get(classReference);
+            List<BaseObject> objects = getXObjectsInternal(classReference);
             if ((objects == null) || (objects.size() == 0)) {
                 return null;
             }
@@ -2726,7 +2835,7 @@ public BaseObject getObject(String className, String key, String value, boolean
     @Deprecated
     public void addXObject(DocumentReference classReference, BaseObject object)
     {
-        List<BaseObject> vobj = this.xObjects.get(classReference);
+        List<BaseObject> vobj = getXObjectsInternal(classReference);
         if (vobj == null) {
             setXObject(classReference, 0, object);
         } else {
@@ -2746,7 +2855,7 @@ public void addXObject(BaseObject object)
     {
         object.setOwnerDocument(this);
 
-        List<BaseObject> vobj = this.xObjects.get(object.getXClassReference());
+        List<BaseObject> vobj = getXObjectsInternal(object.getXClassReference());
         if (vobj == null) {
             setXObject(0, object);
         } else {
@@ -2775,7 +2884,7 @@ public void setXObject(DocumentReference classReference, int nb, BaseObject obje
             object.setNumber(nb);
         }
 
-        List<BaseObject> objects = this.xObjects.get(classReference);
+        List<BaseObject> objects = getXObjectsInternal(classReference);
         if (objects == null) {
             objects = new ArrayList<BaseObject>();
             this.xObjects.put(classReference, objects);
@@ -2801,7 +2910,7 @@ public void setXObject(int nb, BaseObject object)
         object.setOwnerDocument(this);
         object.setNumber(nb);
 
-        List<BaseObject> objects = this.xObjects.get(object.getXClassReference());
+        List<BaseObject> objects = getXObjectsInternal(object.getXClassReference());
         if (objects == null) {
             objects = new ArrayList<BaseObject>();
             this.xObjects.put(object.getXClassReference(), objects);
@@ -2920,6 +3029,7 @@ public void duplicateXObjects(XWikiDocument templatedoc)
     private void cloneXObjects(XWikiDocument templatedoc, boolean keepsIdentity)
     {
         // clean map
+        this.xObjectsSource = null;
         this.xObjects.clear();
 
         // fill map
@@ -3914,6 +4024,7 @@ private void clone(XWikiDocument document)
         setTitle(document.getTitle());
         setFormat(document.getFormat());
         setFromCache(document.isFromCache());
+        this.copy = true;
         setElements(document.getElements());
         setMeta(document.getMeta());
         setMostRecent(document.isMostRecent());
@@ -3947,7 +4058,21 @@ private void clone(XWikiDocument document)
     @Override
     public XWikiDocument clone()
     {
-        return cloneInternal(getDocumentReference(), true);
+        return cloneInternal(getDocumentReference(), true, false);
+    }
+
+    /**
+     * Same as {@link #clone()} except that, when this document is the instance shared by the document cache (see
+     * {@link #isFromCache()}), the objects are cloned only when they are accessed, class by class, so that the objects
+     * which are never accessed are never copied. This is only possible because the documents shared by the document
+     * cache are never modified. The clone stops referencing this document once all the objects have been cloned.
+     *
+     * @return a clone of this document
+     * @since 9.12RC1
+     */
+    public XWikiDocument lazyClone()
+    {
+        return cloneInternal(getDocumentReference(), true, true);
     }
 
     /**
@@ -3957,10 +4082,11 @@ public XWikiDocument clone()
      */
     public XWikiDocument duplicate(DocumentReference newDocumentReference)
     {
-        return cloneInternal(newDocumentReference, false);
+        return cloneInternal(newDocumentReference, false, false);
     }
 
-    private XWikiDocument cloneInternal(DocumentReference newDocumentReference, boolean keepsIdentity)
+    private XWikiDocument cloneInternal(DocumentReference newDocumentReference, boolean keepsIdentity,
+        boolean lazyObjects)
     {
         XWikiDocument doc = null;
 
@@ -3982,6 +4108,7 @@ private XWikiDocument cloneInternal(DocumentReference newDocumentReference, bool
             doc.setTitle(getTitle());
             doc.setFormat(getFormat());
             doc.setFromCache(isFromCache());
+            doc.copy = true;
             doc.setElements(getElements());
             doc.setMeta(getMeta());
             doc.setMostRecent(isMostRecent());
@@ -4005,7 +4132,11 @@ private XWikiDocument cloneInternal(DocumentReference newDocumentReference, bool
 
             if (keepsIdentity) {
                 doc.setXClassXML(getXClassXML());
-                doc.cloneXObjects(this);
+                if (lazyObjects && isFromCache() && !this.copy && !this.xObjects.isEmpty()) {
+                    doc.xObjectsSource = this;
+                } else {
+                    doc.cloneXObjects(this);
+                }
                 doc.cloneAttachments(this);
             } else {
                 doc.getXClass().setCustomMapping(null);
@@ -5180,7 +5311,7 @@ public List<String> getChildren(int nb, int start, XWikiContext context) throws
      */
     public void renameProperties(DocumentReference classReference, Map<String, String> fieldsToRename)
     {
-        List<BaseObject> objects = this.xObjects.get(classReference);
+        List<BaseObject> objects = getXObjectsInternal(classReference);
         if (objects == null) {
             return;
         }
@@ -7424,7 +7555,7 @@ public boolean isProgrammaticContent()
      */
     public boolean removeXObject(BaseObject object)
     {
-        List<BaseObject> objects = this.xObjects.get(object.getXClassReference());
+        List<BaseObject> objects = getXObjectsInternal(object.getXClassReference());
         // No objects at all, nothing to remove
         if (objects == null) {
             return false;
@@ -7481,7 +7612,7 @@ public boolean removeObject(BaseObject object)
      */
     public boolean removeXObjects(DocumentReference classReference)
     {
-        List<BaseObject> objects = this.xObjects.get(classReference);
+        List<BaseObject> objects = getXObjectsInternal(classReference);
         // No objects at all, nothing to remove
         if (objects == null) {
             return false;
@@ -24,14 +24,19 @@
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.xwiki.bridge.event.ApplicationReadyEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.job.AbstractJob;
+import org.xwiki.job.JobExecutor;
 import org.xwiki.job.Request;
 import org.xwiki.observation.ObservationManager;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupJob;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupRecorder;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupRequest;
 import com.xpn.xwiki.util.XWikiStubContextProvider;
 
 /**
@@ -59,6 +64,12 @@ public class XWikiInitializerJob extends AbstractJob<XWikiInitializerRequest, XW
     @Inject
     private ObservationManager observation;
 
+    @Inject
+    private Provider<JobExecutor> jobExecutorProvider;
+
+    @Inject
+    private Provider<CacheWarmupRecorder> cacheWarmupRecorderProvider;
+
     private Thread thread;
 
     @Override
@@ -107,7 +118,7 @@ protected void runInternal() throws Exception
     {
         this.logger.info("Start XWiki initialization");
 
-        this.progressManager.pushLevelProgress(2, this);
+        this.progressManager.pushLevelProgress(3, this);
 
         try {
             this.progressManager.startStep(this);
@@ -125,6 +136,14 @@ protected void runInternal() throws Exception
 
             this.progressManager.startStep(this);
 
+            // Fill the caches before the first requests are served (the warm-up stops by itself after
+            // xwiki.cache.warmup.timeout seconds)
+            warmupCaches();
+
+            this.progressManager.endStep(this);
+
+            this.progressManager.startStep(this);
+
             this.logger.info("XWiki initialization done");
 
             // Send Event to signal that the application is ready to service requests.
@@ -137,6 +156,21 @@ protected void runInternal() throws Exception
         }
     }
 
+    private void warmupCaches()
+    {
+        if (this.cacheWarmupRecorderProvider.get().isEnabled()) {
+            try {
+                this.jobExecutorProvider.get().execute(CacheWarmupJob.JOBTYPE, new CacheWarmupRequest()).join();
+            } catch (InterruptedException e) {
+                this.logger.warn("Interrupted while warming up the caches");
+
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                this.logger.warn("Failed to warm up the caches: {}", ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
     @Override
     protected void jobFinished(Throwable exception)
     {
@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Regularly sent to the other members of the cluster with the number of invalidations generated for each wiki so that
+ * a member which missed some of them (for example because it was disconnected) can flush the caches of these wikis.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class CacheInvalidationDigestEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String node;
+
+    private final Map<String, Long> sequences;
+
+    /**
+     * Listen to all digests.
+     */
+    public CacheInvalidationDigestEvent()
+    {
+        this(null, Collections.emptyMap());
+    }
+
+    /**
+     * @param node the identifier of the cluster member which generated the invalidations
+     * @param sequences the number of invalidations generated by the member for each wiki
+     */
+    public CacheInvalidationDigestEvent(String node, Map<String, Long> sequences)
+    {
+        this.node = node;
+        this.sequences = sequences;
+    }
+
+    /**
+     * @return the identifier of the cluster member which generated the invalidations
+     */
+    public String getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * @return the number of invalidations generated by the member for each wiki
+     */
+    public Map<String, Long> getSequences()
+    {
+        return this.sequences;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof CacheInvalidationDigestEvent;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "invalidation digest " + this.sequences + " (node [" + this.node + "])";
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.invalidation;
+
+import java.io.Serializable;
+
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Lightweight event sent to the other members of the cluster to indicate that the cached versions of an entity are not
+ * valid anymore. Contrary to the document events it does not contain the document itself, only its reference and its
+ * new version.
+ * <p>
+ * When the reference is a {@link org.xwiki.model.reference.WikiReference} (only generated locally when invalidations
+ * have been missed) everything cached for the wiki should be forgotten.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class CacheInvalidationEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String node;
+
+    private final long sequence;
+
+    private final EntityReference reference;
+
+    private final String version;
+
+    private final long date;
+
+    /**
+     * Listen to all cache invalidations.
+     */
+    public CacheInvalidationEvent()
+    {
+        this(null, 0, null, null, 0);
+    }
+
+    /**
+     * @param node the identifier of the cluster member which generated the invalidation
+     * @param sequence the number of invalidations generated by the member for the wiki of the entity, including this
+     *            one
+     * @param reference the reference (including the locale) of the invalidated entity
+     * @param version the new version of the entity or null if it's been deleted
+     * @param date the new date of the entity
+     */
+    public CacheInvalidationEvent(String node, long sequence, EntityReference reference, String version, long date)
+    {
+        this.node = node;
+        this.sequence = sequence;
+        this.reference = reference;
+        this.version = version;
+        this.date = date;
+    }
+
+    /**
+     * @return the identifier of the cluster member which generated the invalidation
+     */
+    public String getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * @return the number of invalidations generated by the member for the wiki of the entity, including this one
+     */
+    public long getSequence()
+    {
+        return this.sequence;
+    }
+
+    /**
+     * @return the reference (including the locale) of the invalidated entity
+     */
+    public EntityReference getReference()
+    {
+        return this.reference;
+    }
+
+    /**
+     * @return the new version of the entity or null if it's been deleted
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return the new date of the entity
+     */
+    public long getDate()
+    {
+        return this.date;
+    }
+
+    /**
+     * @return true if the entity has been deleted
+     */
+    public boolean isDeleted()
+    {
+        return this.version == null;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof CacheInvalidationEvent;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "invalidation of [" + this.reference + "] version [" + this.version + "] (node [" + this.node
+            + "], sequence [" + this.sequence + "])";
+    }
+}
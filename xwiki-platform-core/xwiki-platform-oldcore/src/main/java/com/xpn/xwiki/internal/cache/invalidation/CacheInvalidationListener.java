@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.invalidation;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Generate the invalidations of the local document modifications and check the received ones.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@Named(CacheInvalidationListener.NAME)
+@Singleton
+public class CacheInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "CacheInvalidationListener";
+
+    @Inject
+    private CacheInvalidationManager manager;
+
+    @Inject
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    /**
+     * Default constructor.
+     */
+    public CacheInvalidationListener()
+    {
+        super(NAME, new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
+            new CacheInvalidationEvent(), new CacheInvalidationDigestEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.remoteObservationManagerContext.isRemoteState()) {
+            if (event instanceof CacheInvalidationEvent) {
+                this.manager.receive((CacheInvalidationEvent) event);
+            } else if (event instanceof CacheInvalidationDigestEvent) {
+                this.manager.receive((CacheInvalidationDigestEvent) event);
+            }
+        } else if (!(event instanceof CacheInvalidationEvent || event instanceof CacheInvalidationDigestEvent)) {
+            this.manager.invalidate((XWikiDocument) source, event instanceof DocumentDeletedEvent);
+        }
+    }
+}
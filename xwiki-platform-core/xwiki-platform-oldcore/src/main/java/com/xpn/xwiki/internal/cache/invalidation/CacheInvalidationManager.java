@@ -0,0 +1,250 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.invalidation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.LocalEventData;
+import org.xwiki.observation.remote.RemoteObservationManager;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Send a {@link CacheInvalidationEvent} to the other members of the cluster for each modified document and detect the
+ * invalidations missed by the current member.
+ * <p>
+ * The invalidations generated by a member are numbered for each wiki. A gap in the numbers received from a member (or
+ * in the digest it regularly sends) means some invalidations have been lost and a {@link CacheInvalidationEvent} for
+ * the whole wiki is notified locally so that the caches forget everything they know about this wiki.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = CacheInvalidationManager.class)
+@Singleton
+public class CacheInvalidationManager implements Initializable, Disposable
+{
+    /**
+     * The time between two digests.
+     */
+    private static final long DIGEST_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    @Inject
+    private RemoteObservationManagerConfiguration remoteConfiguration;
+
+    /**
+     * Lazily loaded to not initialize the remote observation manager when it's disabled.
+     */
+    @Inject
+    private Provider<RemoteObservationManager> remoteObservationManagerProvider;
+
+    /**
+     * Lazily loaded to avoid a cycle (the observation manager initializes the listeners).
+     */
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Identify the current member of the cluster (a restarted member is a new member).
+     */
+    private final String node = UUID.randomUUID().toString();
+
+    /**
+     * The number of invalidations generated for each wiki.
+     */
+    private final Map<String, Long> sequences = new HashMap<>();
+
+    /**
+     * The last number received for each wiki from each other member.
+     */
+    private final ConcurrentMap<String, Map<String, Long>> received = new ConcurrentHashMap<>();
+
+    private final AtomicLong missedCount = new AtomicLong();
+
+    private boolean enabled;
+
+    private ScheduledExecutorService digestSender;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.enabled = this.remoteConfiguration.isEnabled();
+
+        if (this.enabled) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                .namingPattern("XWiki cache invalidation digest").daemon(true).build();
+            this.digestSender = new ScheduledThreadPoolExecutor(1, threadFactory);
+            this.digestSender.scheduleWithFixedDelay(this::sendDigest, DIGEST_INTERVAL, DIGEST_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.digestSender != null) {
+            this.digestSender.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the identifier of the current member of the cluster
+     */
+    public String getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * @return the number of times invalidations have been missed (and the caches of a wiki flushed)
+     */
+    public long getMissedCount()
+    {
+        return this.missedCount.get();
+    }
+
+    /**
+     * Inform the other members of the cluster that a document has been modified.
+     *
+     * @param document the document which has been saved or deleted
+     * @param deleted true if the document has been deleted
+     */
+    public void invalidate(XWikiDocument document, boolean deleted)
+    {
+        if (!this.enabled) {
+            return;
+        }
+
+        DocumentReference reference = document.getDocumentReferenceWithLocale();
+        String version = deleted ? null : document.getVersion();
+        long date = !deleted && document.getDate() != null ? document.getDate().getTime() : 0;
+
+        // Make sure the invalidations are sent in the order of their numbers
+        synchronized (this.sequences) {
+            long sequence = this.sequences.merge(reference.getWikiReference().getName(), 1L, Long::sum);
+
+            send(new CacheInvalidationEvent(this.node, sequence, reference, version, date));
+        }
+    }
+
+    private void sendDigest()
+    {
+        synchronized (this.sequences) {
+            if (!this.sequences.isEmpty()) {
+                send(new CacheInvalidationDigestEvent(this.node, new HashMap<>(this.sequences)));
+            }
+        }
+    }
+
+    private void send(Event event)
+    {
+        try {
+            // Only the other members are interested in the invalidations
+            this.remoteObservationManagerProvider.get().notify(new LocalEventData(event, null, null));
+        } catch (Exception e) {
+            this.logger.warn("Failed to send [{}] to the cluster: {}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * @param event the invalidation received from another member of the cluster
+     */
+    public void receive(CacheInvalidationEvent event)
+    {
+        // Ignore the invalidations of whole wikis generated locally
+        if (event.getNode() == null || event.getNode().equals(this.node)) {
+            return;
+        }
+
+        check(event.getNode(), event.getReference().extractReference(EntityType.WIKI).getName(),
+            event.getSequence(), true);
+    }
+
+    /**
+     * @param event the digest received from another member of the cluster
+     */
+    public void receive(CacheInvalidationDigestEvent event)
+    {
+        if (event.getNode() == null || event.getNode().equals(this.node)) {
+            return;
+        }
+
+        for (Map.Entry<String, Long> entry : event.getSequences().entrySet()) {
+            check(event.getNode(), entry.getKey(), entry.getValue(), false);
+        }
+    }
+
+    private void check(String sourceNode, String wiki, long sequence, boolean invalidation)
+    {
+        Map<String, Long> nodeSequences = this.received.computeIfAbsent(sourceNode, k -> new ConcurrentHashMap<>());
+
+        Long previous;
+        synchronized (nodeSequences) {
+            previous = nodeSequences.get(wiki);
+            if (previous == null || sequence > previous) {
+                nodeSequences.put(wiki, sequence);
+            }
+        }
+
+        // The first number received from a member is only a starting point: the caches were empty when the current
+        // member joined the cluster
+        if (previous != null) {
+            long expected = invalidation ? previous + 1 : previous;
+
+            if (sequence > expected) {
+                this.missedCount.incrementAndGet();
+
+                this.logger.info("Missed [{}] cache invalidations of wiki [{}] from cluster member [{}], flushing its"
+                    + " caches", sequence - expected, wiki, sourceNode);
+
+                this.observationManagerProvider.get()
+                    .notify(new CacheInvalidationEvent(this.node, 0, new WikiReference(wiki), null, 0), null, null);
+            }
+        }
+    }
+}
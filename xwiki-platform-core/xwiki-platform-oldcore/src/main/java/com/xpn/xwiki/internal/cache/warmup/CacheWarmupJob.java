@@ -0,0 +1,225 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.Request;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+
+/**
+ * Job dedicated to filling the document and security caches with the elements recorded by {@link CacheWarmupRecorder}
+ * before the last shutdown.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+@Named(CacheWarmupJob.JOBTYPE)
+public class CacheWarmupJob extends AbstractJob<CacheWarmupRequest, CacheWarmupJobStatus>
+{
+    /**
+     * The id of the job.
+     */
+    public static final String JOBTYPE = "cache.warmup";
+
+    @Inject
+    private CacheWarmupRecorder recorder;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private AuthorizationManager authorization;
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configuration;
+
+    /**
+     * Warm up the caches for one element.
+     *
+     * @param <T> the type of the element
+     * @version $Id$
+     */
+    @FunctionalInterface
+    private interface Warmer<T>
+    {
+        void warm(T element) throws Exception;
+    }
+
+    /**
+     * Warm up the caches for a list of elements in a dedicated thread.
+     *
+     * @param <T> the type of the elements
+     * @version $Id$
+     */
+    private final class WarmupRunnable<T> extends AbstractXWikiRunnable
+    {
+        private final List<T> elements;
+
+        private final Warmer<T> warmer;
+
+        private final long deadline;
+
+        WarmupRunnable(List<T> elements, Warmer<T> warmer, long deadline)
+        {
+            this.elements = elements;
+            this.warmer = warmer;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void runInternal()
+        {
+            for (T element : this.elements) {
+                if (System.currentTimeMillis() > this.deadline) {
+                    return;
+                }
+
+                try {
+                    this.warmer.warm(element);
+                } catch (Exception e) {
+                    logger.debug("Failed to warm up the caches for [{}]", element, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected CacheWarmupRequest castRequest(Request request)
+    {
+        CacheWarmupRequest warmupRequest;
+        if (request instanceof CacheWarmupRequest) {
+            warmupRequest = (CacheWarmupRequest) request;
+        } else {
+            warmupRequest = new CacheWarmupRequest(request);
+        }
+
+        return warmupRequest;
+    }
+
+    @Override
+    protected CacheWarmupJobStatus createNewStatus(CacheWarmupRequest request)
+    {
+        return new CacheWarmupJobStatus(request, this.observationManager, this.loggerManager);
+    }
+
+    @Override
+    public String getType()
+    {
+        return JOBTYPE;
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        CacheWarmupRecorder.Snapshot snapshot = this.recorder.readSnapshot();
+
+        if (snapshot.isEmpty()) {
+            this.logger.debug("No cache warm-up snapshot");
+
+            return;
+        }
+
+        this.logger.info("Start warming up the caches with [{}] documents and [{}] rights checks",
+            snapshot.getDocuments().size(), snapshot.getAccesses().size());
+
+        int threads = Math.max(1, this.configuration.getProperty("xwiki.cache.warmup.threads", 4));
+        long deadline = System.currentTimeMillis()
+            + TimeUnit.SECONDS.toMillis(this.configuration.getProperty("xwiki.cache.warmup.timeout", 60));
+
+        this.progressManager.pushLevelProgress(2, this);
+
+        try {
+            this.progressManager.startStep(this, "Load documents");
+
+            warmup(snapshot.getDocuments(), this::loadDocument, threads, deadline);
+
+            this.progressManager.startStep(this, "Check rights");
+
+            warmup(snapshot.getAccesses(), this::checkAccess, threads, deadline);
+        } finally {
+            this.progressManager.popLevelProgress(this);
+        }
+
+        this.logger.info("Cache warm-up done");
+    }
+
+    private void loadDocument(DocumentReference reference) throws Exception
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+
+        xcontext.getWiki().getDocument(new XWikiDocument(reference, reference.getLocale()), xcontext);
+    }
+
+    private void checkAccess(Pair<DocumentReference, DocumentReference> access)
+    {
+        // The cached security entry contains all the rights of the user on the document
+        this.authorization.hasAccess(Right.VIEW, access.getLeft(), access.getRight());
+    }
+
+    private <T> void warmup(List<T> elements, Warmer<T> warmer, int threads, long deadline)
+        throws InterruptedException
+    {
+        BasicThreadFactory threadFactory =
+            new BasicThreadFactory.Builder().namingPattern("XWiki cache warm-up %d").daemon(true).build();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+
+        for (int i = 0; i < threads; ++i) {
+            // Interleave the elements so that the most used ones are warmed up first
+            List<T> threadElements = new ArrayList<>();
+            for (int j = i; j < elements.size(); j += threads) {
+                threadElements.add(elements.get(j));
+            }
+
+            executor.execute(new WarmupRunnable<>(threadElements, warmer, deadline));
+        }
+
+        executor.shutdown();
+
+        // The threads stop by themselves when the deadline is reached
+        if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            this.logger.warn("The cache warm-up did not finish before the timeout");
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.LocaleUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Record the most used documents and (user, document) rights checks during normal operation and regularly save them in
+ * a snapshot file which is replayed by {@link CacheWarmupJob} at startup to fill the caches.
+ * <p>
+ * Only a sample of the uses is recorded (see {@code xwiki.cache.warmup.sampling}) to keep the cost for each request
+ * low. The number of uses of each element is halved after each save so that the snapshot follows the evolution of the
+ * traffic.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = CacheWarmupRecorder.class)
+@Singleton
+public class CacheWarmupRecorder implements Initializable, Disposable
+{
+    /**
+     * The time between two saves of the snapshot.
+     */
+    private static final long SAVE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * The maximum number of tracked elements of each kind, relative to the number of elements to save.
+     */
+    private static final int TRACKED_FACTOR = 10;
+
+    private static final String SNAPSHOT_PATH = "cache/warmup.txt";
+
+    private static final String TYPE_DOCUMENT = "document";
+
+    private static final String TYPE_ACCESS = "access";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final char COMMENT = '#';
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    private Logger logger;
+
+    private final ConcurrentMap<DocumentReference, AtomicLong> documents = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Pair<DocumentReference, DocumentReference>, AtomicLong> accesses =
+        new ConcurrentHashMap<>();
+
+    private boolean enabled;
+
+    private int size;
+
+    /**
+     * Record one use out of this number, on average.
+     */
+    private int sampling;
+
+    private ScheduledExecutorService saver;
+
+    /**
+     * The content of a snapshot.
+     *
+     * @version $Id$
+     */
+    public static class Snapshot
+    {
+        private final List<DocumentReference> documents = new ArrayList<>();
+
+        private final List<Pair<DocumentReference, DocumentReference>> accesses = new ArrayList<>();
+
+        /**
+         * @return the documents to load (including their locale), the most used first
+         */
+        public List<DocumentReference> getDocuments()
+        {
+            return this.documents;
+        }
+
+        /**
+         * @return the users (null for guest) and the documents they accessed, the most used first
+         */
+        public List<Pair<DocumentReference, DocumentReference>> getAccesses()
+        {
+            return this.accesses;
+        }
+
+        /**
+         * @return true if there is nothing to warm up
+         */
+        public boolean isEmpty()
+        {
+            return this.documents.isEmpty() && this.accesses.isEmpty();
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.enabled = this.configuration.getProperty("xwiki.cache.warmup", 0) == 1;
+        this.size = this.configuration.getProperty("xwiki.cache.warmup.size", 1000);
+        this.sampling = Math.max(1, this.configuration.getProperty("xwiki.cache.warmup.sampling", 10));
+
+        if (this.enabled) {
+            BasicThreadFactory threadFactory =
+                new BasicThreadFactory.Builder().namingPattern("XWiki cache warm-up snapshot").daemon(true).build();
+            this.saver = new ScheduledThreadPoolExecutor(1, threadFactory);
+            this.saver.scheduleWithFixedDelay(this::save, SAVE_INTERVAL, SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.saver != null) {
+            this.saver.shutdownNow();
+
+            save();
+        }
+    }
+
+    /**
+     * @return true if the caches should be warmed up at startup
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param reference the reference (including the locale) of the document which has been loaded
+     */
+    public void recordDocument(DocumentReference reference)
+    {
+        if (isSampled()) {
+            record(this.documents, reference);
+        }
+    }
+
+    /**
+     * @param user the user (null for guest) whose right have been checked
+     * @param reference the document on which the right have been checked
+     */
+    public void recordAccess(DocumentReference user, DocumentReference reference)
+    {
+        if (isSampled()) {
+            record(this.accesses, Pair.of(user, reference));
+        }
+    }
+
+    private boolean isSampled()
+    {
+        return this.enabled && (this.sampling == 1 || ThreadLocalRandom.current().nextInt(this.sampling) == 0);
+    }
+
+    private <T> void record(ConcurrentMap<T, AtomicLong> counters, T key)
+    {
+        AtomicLong counter = counters.get(key);
+
+        if (counter == null) {
+            // Don't track new elements when already tracking a lot more elements than what will be saved
+            if (counters.size() >= this.size * TRACKED_FACTOR) {
+                return;
+            }
+
+            counter = counters.computeIfAbsent(key, k -> new AtomicLong());
+        }
+
+        counter.incrementAndGet();
+    }
+
+    private File getSnapshotFile()
+    {
+        return new File(this.environment.getPermanentDirectory(), SNAPSHOT_PATH);
+    }
+
+    /**
+     * Select the most used elements and halve the number of uses of the remaining ones.
+     */
+    private <T> List<T> pollHottest(ConcurrentMap<T, AtomicLong> counters)
+    {
+        List<T> hottest = counters.entrySet().stream()
+            .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get())).limit(this.size)
+            .map(Map.Entry::getKey).collect(Collectors.toList());
+
+        counters.keySet().retainAll(new HashSet<>(hottest));
+        for (AtomicLong counter : counters.values()) {
+            counter.updateAndGet(value -> value / 2);
+        }
+
+        return hottest;
+    }
+
+    /**
+     * Save the most used elements in the snapshot file.
+     */
+    public synchronized void save()
+    {
+        // Don't replace the current snapshot with nothing
+        if (this.documents.isEmpty() && this.accesses.isEmpty()) {
+            return;
+        }
+
+        List<DocumentReference> hottestDocuments = pollHottest(this.documents);
+        List<Pair<DocumentReference, DocumentReference>> hottestAccesses = pollHottest(this.accesses);
+
+        File file = getSnapshotFile();
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(COMMENT + " XWiki cache warm-up snapshot");
+                writer.newLine();
+
+                for (DocumentReference reference : hottestDocuments) {
+                    writer.write(TYPE_DOCUMENT + SEPARATOR + this.serializer.serialize(reference) + SEPARATOR
+                        + (reference.getLocale() != null ? reference.getLocale() : ""));
+                    writer.newLine();
+                }
+                for (Pair<DocumentReference, DocumentReference> access : hottestAccesses) {
+                    writer.write(TYPE_ACCESS + SEPARATOR
+                        + (access.getLeft() != null ? this.serializer.serialize(access.getLeft()) : "") + SEPARATOR
+                        + this.serializer.serialize(access.getRight()));
+                    writer.newLine();
+                }
+            }
+
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            this.logger.warn("Failed to save the cache warm-up snapshot in [{}]: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Read the snapshot file saved before the last shutdown. Its elements are recorded again so that they are not lost
+     * if the next save happens before enough traffic.
+     *
+     * @return the content of the snapshot, empty if there is no snapshot
+     */
+    public Snapshot readSnapshot()
+    {
+        Snapshot snapshot = new Snapshot();
+
+        File file = getSnapshotFile();
+        if (file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.isEmpty() && line.charAt(0) != COMMENT) {
+                        readLine(line, snapshot);
+                    }
+                }
+            } catch (Exception e) {
+                this.logger.warn("Failed to read the cache warm-up snapshot in [{}]: {}", file, e.getMessage());
+            }
+        }
+
+        return snapshot;
+    }
+
+    private void readLine(String line, Snapshot snapshot)
+    {
+        String[] elements = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+
+        if (elements.length == 3) {
+            if (elements[0].equals(TYPE_DOCUMENT)) {
+                DocumentReference reference = new DocumentReference(this.resolver.resolve(elements[1]),
+                    elements[2].isEmpty() ? Locale.ROOT : LocaleUtils.toLocale(elements[2]));
+
+                snapshot.getDocuments().add(reference);
+                if (this.enabled) {
+                    record(this.documents, reference);
+                }
+            } else if (elements[0].equals(TYPE_ACCESS)) {
+                DocumentReference user = !elements[1].isEmpty() ? this.resolver.resolve(elements[1]) : null;
+                DocumentReference reference = this.resolver.resolve(elements[2]);
+
+                snapshot.getAccesses().add(Pair.of(user, reference));
+                if (this.enabled) {
+                    record(this.accesses, Pair.of(user, reference));
+                }
+            }
+        }
+    }
+}
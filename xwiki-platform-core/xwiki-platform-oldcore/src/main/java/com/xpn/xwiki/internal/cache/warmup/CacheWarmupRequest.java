@@ -0,0 +1,51 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.warmup;
+
+import java.util.Arrays;
+
+import org.xwiki.job.AbstractRequest;
+import org.xwiki.job.Request;
+
+/**
+ * Request to use with {@link CacheWarmupJob}.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class CacheWarmupRequest extends AbstractRequest
+{
+    /**
+     * Default constructor.
+     */
+    public CacheWarmupRequest()
+    {
+        setId(Arrays.asList("cache", "warmup"));
+        setInteractive(false);
+    }
+
+    /**
+     * @param request the request to copy
+     */
+    public CacheWarmupRequest(Request request)
+    {
+        super(request);
+    }
+}
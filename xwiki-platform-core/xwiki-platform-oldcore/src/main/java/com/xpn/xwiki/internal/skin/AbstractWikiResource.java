@@ -60,6 +60,12 @@ public DocumentReference getAuthorReference()
         return this.authorReference;
     }
 
+    @Override
+    public String getVersion() throws Exception
+    {
+        return getDocument().getVersion();
+    }
+
     protected XWikiDocument getDocument() throws XWikiException
     {
         EntityReference documentReference = this.reference.extractReference(EntityType.DOCUMENT);
@@ -30,4 +30,11 @@
 public interface WikiResource<I extends InputSource> extends Resource<I>
 {
     DocumentReference getAuthorReference();
+
+    /**
+     * @return the version of the document containing the resource, which changes each time the resource is modified
+     * @throws Exception when failing to get the document
+     * @since 9.12RC1
+     */
+    String getVersion() throws Exception;
 }
@@ -0,0 +1,308 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.internal.reference.LocalUidStringEntityReferenceSerializer;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+import com.xpn.xwiki.util.Util;
+
+/**
+ * Index of the identifiers (see {@link com.xpn.xwiki.doc.XWikiDocument#getId()}) of all the documents of each wiki,
+ * used to know if a document exists without asking the database.
+ * <p>
+ * The index of a wiki is loaded in background the first time it's needed and the index can't answer for this wiki
+ * until it's complete. It's then kept up to date through {@link #add(String, long)} and {@link #remove(String, long)}.
+ * The identifiers are stored in a {@link OffHeapLongSet} so that indexing millions of documents costs neither heap nor
+ * garbage collection.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class DocumentExistenceIndex
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentExistenceIndex.class);
+
+    /**
+     * The number of identifiers loaded by each query.
+     */
+    private static final int LOAD_BATCH_SIZE = 10000;
+
+    /**
+     * The time to wait before trying again to load the index of a wiki after a failure.
+     */
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String PROPERTY_LASTID = "lastId";
+
+    private final QueryManager queryManager;
+
+    private final ConcurrentMap<String, WikiIndex> wikis = new ConcurrentHashMap<>();
+
+    private final ExecutorService loader;
+
+    /**
+     * The identifiers of a wiki.
+     *
+     * @version $Id$
+     */
+    private static final class WikiIndex
+    {
+        private final OffHeapLongSet ids = new OffHeapLongSet(LOAD_BATCH_SIZE);
+
+        /**
+         * The changes received while the index is loading, to apply once it's loaded: the identifier of the document
+         * and 1 if it was created or 0 if it was deleted.
+         */
+        private List<long[]> changes = new ArrayList<>();
+
+        private volatile boolean complete;
+
+        private volatile long retryTime;
+
+        /**
+         * True when the wiki contains too many documents to be indexed, in which case the index can't answer anymore.
+         */
+        private volatile boolean full;
+
+        synchronized void change(long id, boolean exists)
+        {
+            if (this.complete) {
+                apply(id, exists);
+            } else {
+                this.changes.add(new long[] { id, exists ? 1 : 0 });
+            }
+        }
+
+        private void apply(long id, boolean exists)
+        {
+            if (exists) {
+                add(id);
+            } else {
+                this.ids.remove(id);
+            }
+        }
+
+        void add(long id)
+        {
+            if (!this.full) {
+                try {
+                    this.ids.add(id);
+                } catch (IllegalStateException e) {
+                    LOGGER.warn("Too many documents to index, the existence index is disabled for this wiki: {}",
+                        e.getMessage());
+
+                    this.full = true;
+                }
+            }
+        }
+
+        synchronized void complete()
+        {
+            // The changes received during the loading are more recent than what was loaded
+            for (long[] change : this.changes) {
+                apply(change[0], change[1] == 1);
+            }
+            this.changes = null;
+
+            this.complete = true;
+        }
+    }
+
+    /**
+     * Load the identifiers of the documents of a wiki.
+     *
+     * @version $Id$
+     */
+    private final class WikiIndexLoader extends AbstractXWikiRunnable
+    {
+        private final String wiki;
+
+        private final WikiIndex index;
+
+        WikiIndexLoader(String wiki, WikiIndex index)
+        {
+            this.wiki = wiki;
+            this.index = index;
+        }
+
+        @Override
+        protected void runInternal()
+        {
+            // Make sure the index was not dropped in the meantime
+            if (wikis.get(this.wiki) != this.index) {
+                return;
+            }
+
+            try {
+                long lastId = Long.MIN_VALUE;
+                List<Long> ids;
+                do {
+                    Query query = queryManager.createQuery(
+                        "select doc.id from XWikiDocument as doc where doc.id > :lastId order by doc.id", Query.HQL);
+                    query.setWiki(this.wiki);
+                    query.bindValue(PROPERTY_LASTID, lastId);
+                    query.setLimit(LOAD_BATCH_SIZE);
+
+                    ids = query.execute();
+                    for (Long id : ids) {
+                        this.index.add(id);
+                        lastId = id;
+                    }
+                } while (ids.size() == LOAD_BATCH_SIZE && !this.index.full && wikis.get(this.wiki) == this.index);
+
+                this.index.complete();
+
+                LOGGER.debug("Loaded the existence index of wiki [{}] ([{}] documents)", this.wiki,
+                    this.index.ids.size());
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load the identifiers of the documents of wiki [{}]: {}", this.wiki,
+                    e.getMessage());
+
+                this.index.retryTime = System.currentTimeMillis() + RETRY_DELAY;
+            }
+        }
+    }
+
+    /**
+     * @param queryManager used to load the identifiers of the documents
+     */
+    public DocumentExistenceIndex(QueryManager queryManager)
+    {
+        this.queryManager = queryManager;
+
+        // A single (daemon) thread, stopped when there is nothing to load
+        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+            .namingPattern("XWiki document existence index loader").daemon(true).build();
+        this.loader = new ThreadPoolExecutor(0, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * @param reference the reference of the document (including its locale)
+     * @return the identifier of the document, as stored in the index
+     */
+    public static long getId(DocumentReference reference)
+    {
+        // Same as XWikiDocument#getId()
+        return Util.getHash(LocalUidStringEntityReferenceSerializer.INSTANCE.serialize(reference));
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @param id the identifier of the document
+     * @return {@link Boolean#TRUE} or {@link Boolean#FALSE} if the index knows about the existence of the document,
+     *         null if the index of the passed wiki is not ready yet
+     */
+    public Boolean exists(String wiki, long id)
+    {
+        WikiIndex index = this.wikis.get(wiki);
+
+        if (index == null) {
+            load(wiki, null);
+        } else if (index.complete && !index.full) {
+            return index.ids.contains(id);
+        } else if (index.retryTime > 0 && index.retryTime < System.currentTimeMillis()) {
+            load(wiki, index);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @return true if the index of the passed wiki is ready, i.e. {@link #exists(String, long)} never returns null for
+     *         this wiki
+     */
+    public boolean isReady(String wiki)
+    {
+        WikiIndex index = this.wikis.get(wiki);
+
+        return index != null && index.complete && !index.full;
+    }
+
+    private void load(String wiki, WikiIndex failedIndex)
+    {
+        WikiIndex index = new WikiIndex();
+
+        boolean registered = failedIndex != null ? this.wikis.replace(wiki, failedIndex, index)
+            : this.wikis.putIfAbsent(wiki, index) == null;
+
+        if (registered) {
+            this.loader.execute(new WikiIndexLoader(wiki, index));
+        }
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @param id the identifier of the created document
+     */
+    public void add(String wiki, long id)
+    {
+        WikiIndex index = this.wikis.get(wiki);
+
+        if (index != null) {
+            index.change(id, true);
+        }
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @param id the identifier of the deleted document
+     */
+    public void remove(String wiki, long id)
+    {
+        WikiIndex index = this.wikis.get(wiki);
+
+        if (index != null) {
+            index.change(id, false);
+        }
+    }
+
+    /**
+     * @param wiki the identifier of the wiki to forget (it will be loaded again when needed)
+     */
+    public void removeWiki(String wiki)
+    {
+        this.wikis.remove(wiki);
+    }
+
+    /**
+     * Forget all the wikis (they will be loaded again when needed).
+     */
+    public void clear()
+    {
+        this.wikis.clear();
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A set of {@code long} values stored outside of the Java heap (in a direct buffer), using open addressing with linear
+ * probing. Each value costs 16 bytes at most and no object is allocated per value.
+ * <p>
+ * Writes are serialized, reads are optimistic and only fall back on a read lock when a write happened concurrently.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class OffHeapLongSet
+{
+    private static final long EMPTY = 0L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The maximum number of slots of the table (the biggest power of 2 whose size in bytes fits in an int).
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final int maxCapacity;
+
+    /**
+     * The maximum number of values, which keeps the table at most 3/4 full so that the probes stay short and always
+     * find a free slot.
+     */
+    private final int maxSize;
+
+    private LongBuffer table;
+
+    private int size;
+
+    /**
+     * {@link #EMPTY} is used to mark free slots so it is stored apart.
+     */
+    private boolean containsEmpty;
+
+    /**
+     * @param expectedSize the expected number of values
+     */
+    public OffHeapLongSet(int expectedSize)
+    {
+        this(expectedSize, MAX_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the expected number of values
+     * @param maxCapacity the maximum number of slots of the table, a power of 2
+     */
+    OffHeapLongSet(int expectedSize, int maxCapacity)
+    {
+        this.maxCapacity = Math.min(maxCapacity, MAX_CAPACITY);
+        this.maxSize = this.maxCapacity / 4 * 3;
+        this.table = allocate(capacityFor(expectedSize));
+    }
+
+    private int capacityFor(int size)
+    {
+        // Keep the table at most half full
+        int capacity = MIN_CAPACITY;
+        while (capacity < this.maxCapacity && capacity < size * 2L) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static LongBuffer allocate(int capacity)
+    {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).asLongBuffer();
+    }
+
+    private static int slot(long value, int mask)
+    {
+        long hash = value * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @param value the value to search
+     * @return true if the set contains the passed value
+     */
+    public boolean contains(long value)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        boolean result = containsInternal(value);
+
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                result = containsInternal(value);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+
+        return result;
+    }
+
+    private boolean containsInternal(long value)
+    {
+        if (value == EMPTY) {
+            return this.containsEmpty;
+        }
+
+        // Work on a single table instance (and its own capacity) since it might be replaced concurrently
+        LongBuffer currentTable = this.table;
+        int capacity = currentTable.capacity();
+        int mask = capacity - 1;
+
+        int index = slot(value, mask);
+        for (int i = 0; i < capacity; ++i) {
+            long current = currentTable.get(index);
+            if (current == value) {
+                return true;
+            } else if (current == EMPTY) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param value the value to add
+     * @return true if the value was not already in the set
+     * @throws IllegalStateException if the set already contains the maximum number of values
+     */
+    public boolean add(long value)
+    {
+        long stamp = this.lock.writeLock();
+        try {
+            if (value == EMPTY) {
+                boolean added = !this.containsEmpty;
+                this.containsEmpty = true;
+
+                return added;
+            }
+
+            if ((this.size + 1) * 2L > this.table.capacity() && this.table.capacity() < this.maxCapacity) {
+                resize(this.table.capacity() << 1);
+            }
+
+            if (this.size >= this.maxSize && !containsInternal(value)) {
+                throw new IllegalStateException(
+                    String.format("The set already contains the maximum number of values (%d)", this.maxSize));
+            }
+
+            if (put(this.table, value)) {
+                ++this.size;
+
+                return true;
+            }
+
+            return false;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static boolean put(LongBuffer table, long value)
+    {
+        int mask = table.capacity() - 1;
+
+        int index = slot(value, mask);
+        while (true) {
+            long current = table.get(index);
+            if (current == value) {
+                return false;
+            } else if (current == EMPTY) {
+                table.put(index, value);
+
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        LongBuffer newTable = allocate(capacity);
+
+        for (int i = 0; i < this.table.capacity(); ++i) {
+            long value = this.table.get(i);
+            if (value != EMPTY) {
+                put(newTable, value);
+            }
+        }
+
+        this.table = newTable;
+    }
+
+    /**
+     * @param value the value to remove
+     * @return true if the value was in the set
+     */
+    public boolean remove(long value)
+    {
+        long stamp = this.lock.writeLock();
+        try {
+            if (value == EMPTY) {
+                boolean removed = this.containsEmpty;
+                this.containsEmpty = false;
+
+                return removed;
+            }
+
+            int mask = this.table.capacity() - 1;
+
+            int index = slot(value, mask);
+            while (true) {
+                long current = this.table.get(index);
+                if (current == EMPTY) {
+                    return false;
+                } else if (current == value) {
+                    break;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            // Shift back the following values of the same cluster so that they stay reachable
+            int free = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                long current = this.table.get(next);
+                if (current == EMPTY) {
+                    break;
+                }
+
+                int ideal = slot(current, mask);
+                boolean reachable = free <= next ? free < ideal && ideal <= next : free < ideal || ideal <= next;
+                if (!reachable) {
+                    this.table.put(free, current);
+                    free = next;
+                }
+            }
+            this.table.put(free, EMPTY);
+
+            --this.size;
+
+            return true;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of values in the set
+     */
+    public int size()
+    {
+        long stamp = this.lock.readLock();
+        try {
+            return this.containsEmpty ? this.size + 1 : this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+}
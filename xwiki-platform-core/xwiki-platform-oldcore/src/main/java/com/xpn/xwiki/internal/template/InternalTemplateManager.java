@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.internal.template;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -33,6 +34,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,9 +45,17 @@
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
 import org.xwiki.filter.input.InputSource;
@@ -98,10 +108,21 @@
  */
 @Component(roles = InternalTemplateManager.class)
 @Singleton
-public class InternalTemplateManager
+public class InternalTemplateManager implements Initializable, Disposable
 {
     private static final Pattern PROPERTY_LINE = Pattern.compile("^##!(.+)=(.*)$\r?\n?", Pattern.MULTILINE);
 
+    /**
+     * The maximum number of template contents kept in memory.
+     */
+    private static final int CONTENT_CACHE_SIZE = 10000;
+
+    /**
+     * The protocol of the resources located in a jar, also used as their version since they never change while the jar
+     * is loaded.
+     */
+    private static final String JAR_VERSION = "jar";
+
     /**
      * The reference of the superadmin user.
      */
@@ -161,10 +182,42 @@
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private CacheManager cacheManager;
+
     @Inject
     private Logger logger;
 
-    private static abstract class AbtractTemplate<T extends TemplateContent, R extends Resource<?>> implements Template
+    /**
+     * The already read and parsed contents of the templates associated with the version of the resource they come from.
+     */
+    private Cache<CachedTemplateContent> contentCache;
+
+    /**
+     * The minimum time between two checks of the version of a filesystem template, in milliseconds.
+     */
+    private long fileCheckInterval;
+
+    private static final class CachedTemplateContent
+    {
+        private final String version;
+
+        private final TemplateContent content;
+
+        /**
+         * The date after which the version of the resource should be checked again.
+         */
+        private volatile long checkDate;
+
+        CachedTemplateContent(String version, TemplateContent content, long checkDate)
+        {
+            this.version = version;
+            this.content = content;
+            this.checkDate = checkDate;
+        }
+    }
+
+    private abstract class AbtractTemplate<T extends TemplateContent, R extends Resource<?>> implements Template
     {
         protected R resource;
 
@@ -191,6 +244,25 @@ public String getPath()
         public TemplateContent getContent() throws Exception
         {
             if (this.content == null) {
+                CachedTemplateContent cachedContent = isCacheable() ? contentCache.get(getId()) : null;
+
+                // Don't check the version of the filesystem templates each time they are used
+                long now = System.currentTimeMillis();
+                if (cachedContent != null && now < cachedContent.checkDate) {
+                    this.content = (T) cachedContent.content;
+
+                    return this.content;
+                }
+
+                String version = getVersion();
+
+                if (version != null && cachedContent != null && cachedContent.version.equals(version)) {
+                    cachedContent.checkDate = now + getCheckInterval();
+                    this.content = (T) cachedContent.content;
+
+                    return this.content;
+                }
+
                 // TODO: work with streams instead of forcing String
                 String strinContent;
 
@@ -210,6 +282,11 @@ public TemplateContent getContent() throws Exception
                 }
 
                 this.content = getContentInternal(strinContent);
+
+                if (version != null) {
+                    contentCache.set(getId(),
+                        new CachedTemplateContent(version, this.content, now + getCheckInterval()));
+                }
             }
 
             return this.content;
@@ -217,6 +294,31 @@ public TemplateContent getContent() throws Exception
 
         protected abstract T getContentInternal(String content) throws Exception;
 
+        /**
+         * @return true if the content of the resource can be cached according to its version
+         */
+        protected boolean isCacheable()
+        {
+            return false;
+        }
+
+        /**
+         * @return the version of the resource (any change to the resource produce a different version), null if it's
+         *         unknown and the content should not be cached
+         */
+        protected String getVersion()
+        {
+            return null;
+        }
+
+        /**
+         * @return the time during which the version of the resource is not checked again, in milliseconds
+         */
+        protected long getCheckInterval()
+        {
+            return 0;
+        }
+
         @Override
         public String toString()
         {
@@ -236,6 +338,28 @@ protected FilesystemTemplateContent getContentInternal(String content)
         {
             return new FilesystemTemplateContent(content);
         }
+
+        @Override
+        protected boolean isCacheable()
+        {
+            return true;
+        }
+
+        @Override
+        protected String getVersion()
+        {
+            try {
+                return getURLVersion(environment.getResource(this.resource.getPath()));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected long getCheckInterval()
+        {
+            return fileCheckInterval;
+        }
     }
 
     private class DefaultTemplate extends AbtractTemplate<DefaultTemplateContent, Resource<?>>
@@ -254,6 +378,35 @@ protected DefaultTemplateContent getContentInternal(String content)
                 return new DefaultTemplateContent(content);
             }
         }
+
+        @Override
+        protected boolean isCacheable()
+        {
+            return this.resource instanceof WikiResource || this.resource instanceof ClassloaderResource;
+        }
+
+        @Override
+        protected String getVersion()
+        {
+            try {
+                if (this.resource instanceof WikiResource) {
+                    // The document is taken from the document cache so it's cheap to check its version each time
+                    return ((WikiResource<?>) this.resource).getVersion();
+                } else if (this.resource instanceof ClassloaderResource) {
+                    return getURLVersion(new URL(this.resource.getId()));
+                }
+            } catch (Exception e) {
+                logger.debug("Failed to get the version of template [{}]", getId(), e);
+            }
+
+            return null;
+        }
+
+        @Override
+        protected long getCheckInterval()
+        {
+            return this.resource instanceof ClassloaderResource ? fileCheckInterval : 0;
+        }
     }
 
     private class StringTemplate extends DefaultTemplate
@@ -284,6 +437,11 @@ private class DefaultTemplateContent implements RawProperties, TemplateContent
 
         protected Map<String, Object> properties = new HashMap<>();
 
+        /**
+         * The parsed content, kept with the content since the content is cached.
+         */
+        private volatile XDOM xdom;
+
         DefaultTemplateContent(String content)
         {
             this.content = content;
@@ -359,6 +517,19 @@ public String getContent()
             return this.content;
         }
 
+        /**
+         * @return a copy of the parsed content
+         */
+        XDOM getXDOM() throws Exception
+        {
+            if (this.xdom == null) {
+                this.xdom = InternalTemplateManager.this.parser.parse(this.content, this.sourceSyntax);
+            }
+
+            // The transformations modify the XDOM
+            return this.xdom.clone();
+        }
+
         @PropertyHidden
         @Override
         public boolean isAuthorProvided()
@@ -442,6 +613,46 @@ public void setPrivileged(boolean privileged)
         }
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.fileCheckInterval =
+            TimeUnit.SECONDS.toMillis(this.xwikicfg.getProperty("xwiki.render.template.checkInterval", 2L));
+
+        try {
+            this.contentCache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration("xwiki.template.content", CONTENT_CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the template content cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.contentCache.dispose();
+    }
+
+    /**
+     * @param url the URL of a filesystem or classloader resource
+     * @return the version of the resource, null if it can't be known
+     */
+    private String getURLVersion(URL url) throws Exception
+    {
+        if (url != null) {
+            if (url.getProtocol().equals("file")) {
+                File file = new File(url.toURI());
+
+                return file.exists() ? String.valueOf(file.lastModified()) + '/' + file.length() : null;
+            } else if (url.getProtocol().equals(JAR_VERSION)) {
+                // The content of a jar does not change while it's loaded
+                return JAR_VERSION;
+            }
+        }
+
+        return null;
+    }
+
     private String getResourcePath(String suffixPath, String templateName, boolean testExist)
     {
         String templatePath = suffixPath + templateName;
@@ -565,7 +776,11 @@ private XDOM getXDOM(Template template, TemplateContent content) throws Exceptio
         XDOM xdom;
 
         if (content.getSourceSyntax() != null) {
-            xdom = this.parser.parse(content.getContent(), content.getSourceSyntax());
+            if (content instanceof DefaultTemplateContent) {
+                xdom = ((DefaultTemplateContent) content).getXDOM();
+            } else {
+                xdom = this.parser.parse(content.getContent(), content.getSourceSyntax());
+            }
         } else {
             String result = evaluateContent(template, content);
             xdom = new XDOM(Arrays.asList(new RawBlock(result,
@@ -0,0 +1,313 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.user;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.user.api.XWikiRightService;
+import com.xpn.xwiki.user.impl.xwiki.XWikiGroupServiceImpl;
+
+/**
+ * In memory index of the members of all the groups of each wiki (the {@code XWiki.XWikiGroups} objects), used to get
+ * the groups of a user or a group without querying the database.
+ * <p>
+ * The index of a wiki is loaded with a single query the first time it's needed and is then updated from each saved or
+ * deleted group document (see {@link #update(XWikiDocument)}).
+ * <p>
+ * The members are matched ignoring case, like the queries used before on MySQL (where the default collation is case
+ * insensitive).
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = GroupMembershipIndex.class)
+@Singleton
+public class GroupMembershipIndex
+{
+    private static final String MEMBERS_QUERY = "select obj.name, prop.value from BaseObject as obj, "
+        + "StringProperty as prop where obj.className = 'XWiki.XWikiGroups' and obj.id = prop.id.id "
+        + "and prop.id.name = 'member'";
+
+    private static final String FIELD_MEMBER = "member";
+
+    private static final String DEFAULT_MEMBER_SPACE = "XWiki";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configuration;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private final ConcurrentMap<String, WikiIndex> wikis = new ConcurrentHashMap<>();
+
+    /**
+     * The groups of a wiki.
+     *
+     * @version $Id$
+     */
+    private final class WikiIndex
+    {
+        private final String wiki;
+
+        /**
+         * The members (as stored in the group objects, in lower case) of each group.
+         */
+        private final Map<DocumentReference, Set<String>> members = new ConcurrentHashMap<>();
+
+        /**
+         * The groups directly containing each member (as stored in the group objects, in lower case).
+         */
+        private final Map<String, Set<DocumentReference>> groups = new ConcurrentHashMap<>();
+
+        private volatile boolean loaded;
+
+        /**
+         * Incremented for each change received, to know if the changes happened while loading.
+         */
+        private volatile int modifications;
+
+        WikiIndex(String wiki)
+        {
+            this.wiki = wiki;
+        }
+
+        void load() throws QueryException
+        {
+            while (!this.loaded) {
+                int loadedModifications;
+                synchronized (this) {
+                    if (this.loaded) {
+                        return;
+                    }
+                    loadedModifications = this.modifications;
+                }
+
+                Query query = queryManager.createQuery(MEMBERS_QUERY, Query.HQL);
+                query.setWiki(this.wiki);
+                List<Object[]> rows = query.execute();
+
+                synchronized (this) {
+                    // Changes were received while loading which might not be part of the result
+                    if (loadedModifications == this.modifications) {
+                        WikiReference wikiReference = new WikiReference(this.wiki);
+                        for (Object[] row : rows) {
+                            addMember(resolver.resolve((String) row[0], wikiReference), (String) row[1]);
+                        }
+
+                        this.loaded = true;
+                    }
+                }
+            }
+        }
+
+        private void addMember(DocumentReference group, String member)
+        {
+            if (StringUtils.isNotEmpty(member)) {
+                String key = normalize(member);
+                this.members.computeIfAbsent(group, k -> ConcurrentHashMap.newKeySet()).add(key);
+                this.groups.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(group);
+            }
+        }
+
+        synchronized void setMembers(DocumentReference group, Set<String> newMembers)
+        {
+            ++this.modifications;
+
+            if (this.loaded) {
+                Set<String> currentMembers = this.members.getOrDefault(group, Collections.emptySet());
+
+                // Only touch the members which changed so that readers never miss the others
+                for (String member : currentMembers) {
+                    if (!newMembers.contains(member)) {
+                        currentMembers.remove(member);
+
+                        Set<DocumentReference> memberGroups = this.groups.get(member);
+                        if (memberGroups != null) {
+                            memberGroups.remove(group);
+                        }
+                    }
+                }
+                for (String member : newMembers) {
+                    addMember(group, member);
+                }
+
+                if (newMembers.isEmpty()) {
+                    this.members.remove(group);
+                }
+            }
+        }
+
+        boolean isGroup(DocumentReference reference)
+        {
+            return this.members.containsKey(reference);
+        }
+
+        Set<DocumentReference> getGroups(Collection<String> memberNames)
+        {
+            Set<DocumentReference> result = new HashSet<>();
+            for (String memberName : memberNames) {
+                Set<DocumentReference> memberGroups = this.groups.get(normalize(memberName));
+                if (memberGroups != null) {
+                    result.addAll(memberGroups);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * @return true if the index should be used, false to query the database instead
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.getProperty("xwiki.authentication.group.index", 1) == 1;
+    }
+
+    private static String normalize(String member)
+    {
+        return member.toLowerCase(Locale.ROOT);
+    }
+
+    private WikiIndex getWikiIndex(WikiReference wiki) throws QueryException
+    {
+        WikiIndex index = this.wikis.computeIfAbsent(wiki.getName(), WikiIndex::new);
+
+        index.load();
+
+        return index;
+    }
+
+    /**
+     * The member strings stored in a group object matching the passed user or group (same as the
+     * {@code listGroupsForUser} and {@code listGroupsForUserInOtherWiki} queries).
+     */
+    private Collection<String> getMemberNames(DocumentReference member, WikiReference wiki)
+    {
+        String prefixedFullName = this.serializer.serialize(member);
+
+        if (member.getWikiReference().equals(wiki)
+            || (member.getLastSpaceReference().getName().equals(DEFAULT_MEMBER_SPACE)
+                && member.getName().equals(XWikiRightService.GUEST_USER))) {
+            return Arrays.asList(prefixedFullName, this.localSerializer.serialize(member), member.getName());
+        }
+
+        return Collections.singletonList(prefixedFullName);
+    }
+
+    /**
+     * @param member the user or group
+     * @param wiki the wiki where to search for groups
+     * @return the groups of the passed wiki directly containing the passed user or group
+     * @throws QueryException when failing to load the index of the wiki
+     */
+    public Set<DocumentReference> getGroups(DocumentReference member, WikiReference wiki) throws QueryException
+    {
+        return getWikiIndex(wiki).getGroups(getMemberNames(member, wiki));
+    }
+
+    /**
+     * Update the index with the current members of the passed document.
+     *
+     * @param document the document which has been saved or deleted
+     */
+    public void update(XWikiDocument document)
+    {
+        // Translations don't have objects
+        if (document.getTranslation() == 1) {
+            return;
+        }
+
+        DocumentReference reference = document.getDocumentReference();
+        WikiIndex index = this.wikis.get(reference.getWikiReference().getName());
+
+        if (index != null) {
+            List<BaseObject> groupObjects = document.getXObjects(XWikiGroupServiceImpl.GROUPCLASS_REFERENCE);
+
+            if (!groupObjects.isEmpty() || index.isGroup(reference) || !index.loaded) {
+                Set<String> members = new HashSet<>();
+                for (BaseObject groupObject : groupObjects) {
+                    if (groupObject != null) {
+                        String member = groupObject.getStringValue(FIELD_MEMBER);
+                        if (StringUtils.isNotEmpty(member)) {
+                            members.add(normalize(member));
+                        }
+                    }
+                }
+
+                index.setMembers(reference, members);
+            }
+        }
+    }
+
+    /**
+     * @param wiki the identifier of the wiki to forget
+     */
+    public void removeWiki(String wiki)
+    {
+        this.wikis.remove(wiki);
+    }
+
+    /**
+     * Forget everything (the indexes will be loaded again when needed).
+     */
+    public void clear()
+    {
+        this.wikis.clear();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.user;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.invalidation.CacheInvalidationEvent;
+
+/**
+ * Keep {@link GroupMembershipIndex} up to date (local and remote events).
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component
+@Named(GroupMembershipIndexListener.NAME)
+@Singleton
+public class GroupMembershipIndexListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "GroupMembershipIndexListener";
+
+    @Inject
+    private GroupMembershipIndex index;
+
+    /**
+     * Default constructor.
+     */
+    public GroupMembershipIndexListener()
+    {
+        super(NAME, new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
+            new WikiDeletedEvent(), new CacheInvalidationEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WikiDeletedEvent) {
+            this.index.removeWiki(((WikiDeletedEvent) event).getWikiId());
+        } else if (event instanceof CacheInvalidationEvent) {
+            // Some group modifications might have been missed
+            EntityReference reference = ((CacheInvalidationEvent) event).getReference();
+            if (reference.getType() == EntityType.WIKI) {
+                this.index.removeWiki(reference.getName());
+            }
+        } else {
+            this.index.update((XWikiDocument) source);
+        }
+    }
+}
@@ -20,18 +20,24 @@
 package com.xpn.xwiki.store;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xwiki.bridge.event.DocumentCreatedEvent;
-import org.xwiki.bridge.event.DocumentDeletedEvent;
-import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.observation.EventListener;
@@ -45,6 +51,9 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
+import com.xpn.xwiki.internal.cache.invalidation.CacheInvalidationEvent;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupRecorder;
+import com.xpn.xwiki.internal.store.DocumentExistenceIndex;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
 
@@ -64,6 +73,11 @@ public class XWikiCacheStore implements XWikiCacheStoreInterface, EventListener
 
     private Cache<Boolean> pageExistCache;
 
+    /**
+     * The identifiers of all the existing documents, null if disabled.
+     */
+    private DocumentExistenceIndex existenceIndex;
+
     /**
      * Used to know if a received event is a local or remote one.
      */
@@ -76,16 +90,69 @@ public class XWikiCacheStore implements XWikiCacheStoreInterface, EventListener
      */
     private ObservationManager observationManager;
 
+    /**
+     * Used to remember the most used documents to load them at startup.
+     */
+    private CacheWarmupRecorder cacheWarmupRecorder;
+
+    /**
+     * The documents currently loaded from the persistent storage, indexed by cache key.
+     */
+    private final ConcurrentMap<String, InflightLoad> inflightLoads = new ConcurrentHashMap<>();
+
+    private final AtomicLong storeLoadCount = new AtomicLong();
+
+    private final AtomicLong coalescedLoadCount = new AtomicLong();
+
+    /**
+     * A document being loaded from the persistent storage, shared by the threads asking for the same document at the
+     * same time.
+     *
+     * @version $Id$
+     */
+    private static final class InflightLoad
+    {
+        private final Thread thread = Thread.currentThread();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile XWikiDocument document;
+
+        void complete(XWikiDocument loadedDocument)
+        {
+            this.document = loadedDocument;
+            this.done.countDown();
+        }
+
+        /**
+         * @return the loaded document or null if the load failed, if the document was modified during the load or if
+         *         the wait was interrupted
+         */
+        XWikiDocument await()
+        {
+            try {
+                this.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return null;
+            }
+
+            return this.document;
+        }
+    }
+
     public XWikiCacheStore(XWikiStoreInterface store, XWikiContext context) throws XWikiException
     {
         setStore(store);
         initCache(context);
 
-        // register XWikiCacheStore as listener to remote document events
+        // register XWikiCacheStore as listener to remote cache invalidations
         this.remoteObservationManagerContext = Utils.getComponent(RemoteObservationManagerContext.class);
         this.observationManager = Utils.getComponent(ObservationManager.class);
         this.observationManager.addListener(this);
         this.uidStringEntityReferenceSerializer = Utils.getComponent(EntityReferenceSerializer.TYPE_STRING, "uid");
+        this.cacheWarmupRecorder = Utils.getComponent(CacheWarmupRecorder.class);
     }
 
     @Override
@@ -97,8 +164,7 @@ public String getName()
     @Override
     public List<Event> getEvents()
     {
-        return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
-            new WikiDeletedEvent());
+        return Arrays.<Event>asList(new CacheInvalidationEvent(), new WikiDeletedEvent());
     }
 
     public void initCache(XWikiContext context) throws XWikiException
@@ -114,6 +180,10 @@ public void initCache(XWikiContext context) throws XWikiException
                 (int) context.getWiki().ParamAsLong("xwiki.store.cache.pageexistcapacity", 10000);
             this.pageExistCache = cacheManager
                 .createNewCache(new LRUCacheConfiguration("xwiki.store.pageexistcache", pageExistCacheCapacity));
+
+            if (context.getWiki().ParamAsLong("xwiki.store.cache.existindex", 1) == 1) {
+                this.existenceIndex = new DocumentExistenceIndex(getStore().getQueryManager());
+            }
         } catch (CacheException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_CACHE, XWikiException.ERROR_CACHE_INITIALIZING,
                 "Failed to initialize cache", e);
@@ -157,6 +227,11 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext context, boolean bTrans
         String key = getKey(doc, context);
         getCache().remove(key);
         getPageExistCache().remove(key);
+        this.inflightLoads.remove(key);
+
+        if (this.existenceIndex != null) {
+            this.existenceIndex.add(context.getWikiId(), doc.getId());
+        }
 
         /*
          * We do not want to save the document in the cache at this time. If we did, this would introduce the
@@ -171,6 +246,11 @@ public void flushCache()
     {
         getCache().removeAll();
         getPageExistCache().removeAll();
+        this.inflightLoads.clear();
+
+        if (this.existenceIndex != null) {
+            this.existenceIndex.clear();
+        }
     }
 
     @Override
@@ -181,20 +261,61 @@ public void onEvent(Event event, Object source, Object data)
             if (event instanceof WikiDeletedEvent) {
                 flushCache();
             } else {
-                XWikiDocument doc = (XWikiDocument) source;
-
-                String key = doc.getKey();
+                CacheInvalidationEvent invalidation = (CacheInvalidationEvent) event;
 
-                if (getCache() != null) {
-                    getCache().remove(key);
-                }
-                if (getPageExistCache() != null) {
-                    getPageExistCache().remove(key);
+                if (invalidation.getReference().getType() == EntityType.WIKI) {
+                    flushWiki(invalidation.getReference().getName());
+                } else {
+                    invalidate((DocumentReference) invalidation.getReference(), invalidation);
                 }
             }
         }
     }
 
+    private void invalidate(DocumentReference reference, CacheInvalidationEvent invalidation)
+    {
+        String key = this.uidStringEntityReferenceSerializer.serialize(reference);
+
+        if (getCache() != null) {
+            // Keep the cached document if it's already the new version
+            XWikiDocument cachedDocument = getCache().get(key);
+            if (cachedDocument != null && (invalidation.isDeleted()
+                || !invalidation.getVersion().equals(cachedDocument.getVersion())
+                || cachedDocument.getDate() == null || invalidation.getDate() != cachedDocument.getDate().getTime())) {
+                getCache().remove(key);
+            }
+        }
+        this.inflightLoads.remove(key);
+        if (getPageExistCache() != null) {
+            getPageExistCache().remove(key);
+        }
+
+        if (this.existenceIndex != null) {
+            String wiki = reference.getWikiReference().getName();
+            if (invalidation.isDeleted()) {
+                this.existenceIndex.remove(wiki, DocumentExistenceIndex.getId(reference));
+            } else {
+                this.existenceIndex.add(wiki, DocumentExistenceIndex.getId(reference));
+            }
+        }
+    }
+
+    /**
+     * Forget everything cached about the passed wiki, after missing some of its invalidations.
+     */
+    private void flushWiki(String wiki)
+    {
+        // The document caches can't be flushed partially
+        getCache().removeAll();
+        getPageExistCache().removeAll();
+        this.inflightLoads.clear();
+
+        // The indexes of the other wikis, which are the most expensive to load, are still valid
+        if (this.existenceIndex != null) {
+            this.existenceIndex.removeWiki(wiki);
+        }
+    }
+
     /**
      * @deprecated since 4.0M1, use {@link com.xpn.xwiki.doc.XWikiDocument#getKey()}
      */
@@ -206,7 +327,12 @@ public String getKey(XWikiDocument doc)
 
     public String getKey(XWikiDocument doc, XWikiContext context)
     {
-        DocumentReference reference = doc.getDocumentReferenceWithLocale();
+        return getKey(doc.getDocumentReferenceWithLocale(), context);
+    }
+
+    private String getKey(DocumentReference documentReference, XWikiContext context)
+    {
+        DocumentReference reference = documentReference;
 
         // The current wiki might be different from the reference wiki so fix it before calculating the key
         if (!reference.getWikiReference().equals(context.getWikiReference())) {
@@ -264,6 +390,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
             LOGGER.debug("Cache: got doc {} from cache", key);
         } else {
             Boolean result = getPageExistCache().get(key);
+            if (result == null) {
+                result = getIndexedExistence(context.getWikiId(), doc.getId());
+            }
 
             if (result == Boolean.FALSE) {
                 LOGGER.debug("Cache: The document {} does not exist, return an empty one", key);
@@ -275,30 +404,107 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
                 // Allow writing more generic code.
                 cachedoc.setOriginalDocument(new XWikiDocument(cachedoc.getDocumentReference(), cachedoc.getLocale()));
             } else {
-                LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
+                cachedoc = loadFromStore(key, doc, context);
+            }
 
-                cachedoc = this.store.loadXWikiDoc(doc, context);
+            cachedoc.setStore(this.store);
+        }
+
+        LOGGER.debug("Cache: end for doc {} in cache", key);
+
+        this.cacheWarmupRecorder.recordDocument(doc.getDocumentReferenceWithLocale());
 
-                LOGGER.debug("Cache: Got doc {} from storage", key);
+        return cachedoc;
+    }
+
+    /**
+     * Load the document from the persistent storage, or wait for the same document to be loaded by another thread.
+     */
+    private XWikiDocument loadFromStore(String key, XWikiDocument doc, XWikiContext context) throws XWikiException
+    {
+        InflightLoad load = new InflightLoad();
+
+        for (InflightLoad currentLoad = this.inflightLoads.putIfAbsent(key, load); currentLoad != null;
+            currentLoad = this.inflightLoads.putIfAbsent(key, load)) {
+            // Don't wait for itself (the load of a document might need the same document) or after an interruption
+            if (currentLoad.thread == Thread.currentThread() || Thread.currentThread().isInterrupted()) {
+                return this.store.loadXWikiDoc(doc, context);
+            }
+
+            XWikiDocument loadedDocument = currentLoad.await();
+
+            // Try again when the other load failed (or when the document was modified during the load)
+            if (loadedDocument != null) {
+                this.coalescedLoadCount.incrementAndGet();
+
+                LOGGER.debug("Cache: Got doc {} from a concurrent load", key);
+
+                if (loadedDocument.isNew()) {
+                    doc.setNew(true);
+                    doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference(), doc.getLocale()));
+
+                    return doc;
+                }
 
-                if (cachedoc.isNew()) {
+                // Same instance as the one found in the cache by the next loads
+                loadedDocument.setFromCache(true);
+
+                return loadedDocument;
+            }
+        }
+
+        XWikiDocument loadedDocument = null;
+        boolean cached = false;
+        try {
+            LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
+
+            loadedDocument = this.store.loadXWikiDoc(doc, context);
+
+            this.storeLoadCount.incrementAndGet();
+
+            LOGGER.debug("Cache: Got doc {} from storage", key);
+
+            // Don't cache a document which has been modified during the load
+            if (this.inflightLoads.get(key) == load) {
+                if (loadedDocument.isNew()) {
                     getPageExistCache().set(key, Boolean.FALSE);
                 } else {
-                    getCache().set(key, cachedoc);
+                    getCache().set(key, loadedDocument);
 
                     // Also update exist cache
                     getPageExistCache().set(key, Boolean.TRUE);
                 }
 
+                cached = true;
+
                 LOGGER.debug("Cache: put doc {} in cache", key);
             }
+        } finally {
+            this.inflightLoads.remove(key, load);
 
-            cachedoc.setStore(this.store);
+            load.complete(cached ? loadedDocument : null);
         }
 
-        LOGGER.debug("Cache: end for doc {} in cache", key);
+        return loadedDocument;
+    }
 
-        return cachedoc;
+    /**
+     * @return the number of documents loaded from the persistent storage
+     * @since 9.12RC1
+     */
+    public long getStoreLoadCount()
+    {
+        return this.storeLoadCount.get();
+    }
+
+    /**
+     * @return the number of documents which were not loaded from the persistent storage because the same document was
+     *         already being loaded by another thread
+     * @since 9.12RC1
+     */
+    public long getCoalescedLoadCount()
+    {
+        return this.coalescedLoadCount.get();
     }
 
     @Override
@@ -312,6 +518,11 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWiki
         getCache().remove(key);
         getPageExistCache().remove(key);
         getPageExistCache().set(key, Boolean.FALSE);
+        this.inflightLoads.remove(key);
+
+        if (this.existenceIndex != null) {
+            this.existenceIndex.remove(context.getWikiId(), doc.getId());
+        }
     }
 
     @Override
@@ -627,12 +838,115 @@ public boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiExcep
         } catch (Exception e) {
         }
 
+        Boolean indexed = getIndexedExistence(context.getWikiId(), doc.getId());
+        if (indexed != null) {
+            return indexed;
+        }
+
         boolean result = this.store.exists(doc, context);
         getPageExistCache().set(key, Boolean.valueOf(result));
 
         return result;
     }
 
+    @Override
+    public Map<DocumentReference, Boolean> exists(Collection<DocumentReference> references, XWikiContext context)
+        throws XWikiException
+    {
+        Map<DocumentReference, Boolean> result = new HashMap<>(references.size());
+
+        // Resolve what can be from the caches and gather the cache keys of the others
+        Map<DocumentReference, String> missingKeys = new HashMap<>();
+        String currentWiki = context.getWikiId();
+        try {
+            for (DocumentReference reference : references) {
+                context.setWikiId(reference.getWikiReference().getName());
+
+                String key = getKey(reference, context);
+
+                Boolean exists = getCachedExistence(key);
+                if (exists == null) {
+                    exists = getIndexedExistence(context.getWikiId(), DocumentExistenceIndex.getId(reference));
+                }
+                if (exists != null) {
+                    result.put(reference, exists);
+                } else {
+                    missingKeys.put(reference, key);
+                }
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        // Ask the storage for all the others at once
+        if (!missingKeys.isEmpty()) {
+            Map<DocumentReference, Boolean> storeResult = this.store.exists(missingKeys.keySet(), context);
+
+            for (Map.Entry<DocumentReference, String> entry : missingKeys.entrySet()) {
+                Boolean exists = Boolean.TRUE.equals(storeResult.get(entry.getKey()));
+
+                getPageExistCache().set(entry.getValue(), exists);
+                result.put(entry.getKey(), exists);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param wiki the identifier of a wiki
+     * @return true if the existence of the documents of the passed wiki is known without asking the persistent storage
+     * @since 9.12RC1
+     */
+    public boolean isExistenceIndexed(String wiki)
+    {
+        return this.existenceIndex != null && this.existenceIndex.isReady(wiki);
+    }
+
+    private Boolean getIndexedExistence(String wiki, long id)
+    {
+        return this.existenceIndex != null ? this.existenceIndex.exists(wiki, id) : null;
+    }
+
+    private Boolean getCachedExistence(String key)
+    {
+        try {
+            if (getCache().get(key) != null) {
+                return Boolean.TRUE;
+            }
+
+            return getPageExistCache().get(key);
+        } catch (Exception e) {
+            LOGGER.error("Failed to get document existence from the cache", e);
+
+            return null;
+        }
+    }
+
+    @Override
+    public Map<DocumentReference, XWikiDocument> loadXWikiDocs(Collection<DocumentReference> references,
+        XWikiContext context) throws XWikiException
+    {
+        // Find out in one go which of the documents not already in the cache actually exist so that the storage is
+        // only asked to load the existing ones
+        exists(references, context);
+
+        Map<DocumentReference, XWikiDocument> result = new LinkedHashMap<>(references.size());
+
+        String currentWiki = context.getWikiId();
+        try {
+            for (DocumentReference reference : references) {
+                context.setWikiId(reference.getWikiReference().getName());
+
+                result.put(reference, loadXWikiDoc(new XWikiDocument(reference, reference.getLocale()), context));
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        return result;
+    }
+
     public Cache<XWikiDocument> getCache()
     {
         return this.cache;
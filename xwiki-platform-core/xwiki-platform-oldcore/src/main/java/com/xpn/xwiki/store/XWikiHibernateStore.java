@@ -116,6 +116,12 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface
 {
+    /**
+     * The maximum number of document names passed to a single existence query (some databases limit the number of
+     * elements in a {@code in} clause).
+     */
+    private static final int EXISTS_BATCH_SIZE = 1000;
+
     @Inject
     private Logger logger;
 
@@ -501,6 +507,105 @@ public boolean exists(XWikiDocument doc, XWikiContext inputxcontext) throws XWik
         }
     }
 
+    @Override
+    public Map<DocumentReference, Boolean> exists(Collection<DocumentReference> references,
+        XWikiContext inputxcontext) throws XWikiException
+    {
+        XWikiContext context = getXWikiContext(inputxcontext);
+
+        // Each wiki has its own database
+        Map<String, List<DocumentReference>> referencesByWiki = new HashMap<>();
+        for (DocumentReference reference : references) {
+            referencesByWiki.computeIfAbsent(reference.getWikiReference().getName(), k -> new ArrayList<>())
+                .add(reference);
+        }
+
+        Map<DocumentReference, Boolean> result = new HashMap<>(references.size());
+
+        String currentWiki = context.getWikiId();
+        try {
+            for (Map.Entry<String, List<DocumentReference>> entry : referencesByWiki.entrySet()) {
+                context.setWikiId(entry.getKey());
+
+                existsInCurrentWiki(entry.getValue(), result, context);
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        return result;
+    }
+
+    private void existsInCurrentWiki(List<DocumentReference> references, Map<DocumentReference, Boolean> result,
+        XWikiContext context) throws XWikiException
+    {
+        // Several references can share the same name (different locales)
+        Map<String, List<DocumentReference>> referencesByName = new HashMap<>();
+        for (DocumentReference reference : references) {
+            referencesByName
+                .computeIfAbsent(this.localEntityReferenceSerializer.serialize(reference), k -> new ArrayList<>())
+                .add(reference);
+            result.put(reference, Boolean.FALSE);
+        }
+
+        boolean bTransaction = true;
+        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        try {
+            checkHibernate(context);
+
+            // Start monitoring timer
+            if (monitor != null) {
+                monitor.startTimer(HINT);
+            }
+
+            bTransaction = bTransaction && beginTransaction(null, context);
+            Session session = getSession(context);
+
+            String sql =
+                "select doc.fullName, doc.language from XWikiDocument as doc where doc.fullName in (:fullNames)";
+            if (monitor != null) {
+                monitor.setTimerDesc(HINT, sql);
+            }
+
+            List<String> fullNames = new ArrayList<>(referencesByName.keySet());
+            for (int i = 0; i < fullNames.size(); i += EXISTS_BATCH_SIZE) {
+                Query query = session.createQuery(sql);
+                query.setParameterList("fullNames",
+                    fullNames.subList(i, Math.min(i + EXISTS_BATCH_SIZE, fullNames.size())));
+
+                for (Object[] row : (List<Object[]>) query.list()) {
+                    // The database might not be case sensitive
+                    List<DocumentReference> candidates = referencesByName.get(row[0]);
+                    if (candidates != null) {
+                        for (DocumentReference candidate : candidates) {
+                            Locale locale = candidate.getLocale();
+                            if (locale == null || locale.equals(Locale.ROOT) || locale.toString().equals(row[1])) {
+                                result.put(candidate, Boolean.TRUE);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Object[] args = { references };
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_CHECK_EXISTS_DOC,
+                "Exception while checking the existence of documents {0}", e, args);
+        } finally {
+            // End monitoring timer
+            if (monitor != null) {
+                monitor.endTimer(HINT);
+            }
+
+            try {
+                if (bTransaction) {
+                    endTransaction(context, false);
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+
     @Override
     public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean bTransaction) throws XWikiException
     {
@@ -929,6 +1034,13 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                 DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
                     localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
 
+                // Load the properties of all the objects of the document at once instead of doing it object per
+                // object and property per property
+                DocumentPropertiesBatch batch = null;
+                if (context.getWiki().hasBatchObjectLoading()) {
+                    batch = loadDocumentPropertiesBatch(doc, session);
+                }
+
                 boolean hasGroups = false;
                 while (it.hasNext()) {
                     BaseObject object = it.next();
@@ -963,7 +1075,7 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                         // Groups objects are handled differently.
                         hasGroups = true;
                     } else {
-                        loadXWikiCollectionInternal(object, doc, context, false, true);
+                        loadXWikiCollectionInternal(object, doc, context, false, true, batch);
                     }
                     doc.setXObject(object.getNumber(), object);
                 }
@@ -1298,11 +1410,84 @@ public void loadXWikiCollection(BaseCollection object, XWikiContext context, boo
     private void loadXWikiCollectionInternal(BaseCollection object, XWikiContext context, boolean bTransaction,
         boolean alreadyLoaded) throws XWikiException
     {
-        loadXWikiCollectionInternal(object, null, context, bTransaction, alreadyLoaded);
+        loadXWikiCollectionInternal(object, null, context, bTransaction, alreadyLoaded, null);
+    }
+
+    /**
+     * Properties of all the objects of a document, loaded with a fixed number of queries: one for the property headers
+     * and one per property type actually used by the document.
+     */
+    static final class DocumentPropertiesBatch
+    {
+        /**
+         * The name and class type of each property, indexed by object id.
+         */
+        private final Map<Long, List<Object[]>> headers = new HashMap<>();
+
+        /**
+         * The loaded properties, indexed by object id and property name.
+         */
+        private final Map<Long, Map<String, BaseProperty>> properties = new HashMap<>();
+
+        List<Object[]> getHeaders(long objectId)
+        {
+            List<Object[]> objectHeaders = this.headers.get(objectId);
+
+            return objectHeaders != null ? objectHeaders : Collections.<Object[]>emptyList();
+        }
+
+        BaseProperty getProperty(long objectId, String name)
+        {
+            Map<String, BaseProperty> objectProperties = this.properties.get(objectId);
+
+            return objectProperties != null ? objectProperties.get(name) : null;
+        }
+    }
+
+    DocumentPropertiesBatch loadDocumentPropertiesBatch(XWikiDocument doc, Session session)
+    {
+        DocumentPropertiesBatch batch = new DocumentPropertiesBatch();
+
+        Query headersQuery = session.createQuery("select prop.id.id, prop.name, prop.classType "
+            + "from BaseProperty as prop, BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id");
+        headersQuery.setText("name", doc.getFullName());
+
+        Set<String> classTypes = new LinkedHashSet<>();
+        for (Object[] result : (List<Object[]>) headersQuery.list()) {
+            Long objectId = (Long) result[0];
+            List<Object[]> objectHeaders = batch.headers.get(objectId);
+            if (objectHeaders == null) {
+                objectHeaders = new ArrayList<>();
+                batch.headers.put(objectId, objectHeaders);
+            }
+            objectHeaders.add(new Object[] { result[1], result[2] });
+            classTypes.add((String) result[2]);
+        }
+
+        // Several property types share the same table (e.g. LargeStringProperty and StringListProperty) so we need to
+        // filter on the class type
+        for (String classType : classTypes) {
+            Query propertiesQuery = session.createQuery("select prop from " + classType
+                + " as prop, BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id"
+                + " and prop.classType = :classType");
+            propertiesQuery.setText("name", doc.getFullName());
+            propertiesQuery.setText("classType", classType);
+
+            for (BaseProperty property : (List<BaseProperty>) propertiesQuery.list()) {
+                Map<String, BaseProperty> objectProperties = batch.properties.get(property.getId());
+                if (objectProperties == null) {
+                    objectProperties = new HashMap<>();
+                    batch.properties.put(property.getId(), objectProperties);
+                }
+                objectProperties.put(property.getName(), property);
+            }
+        }
+
+        return batch;
     }
 
     private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument doc, XWikiContext inputxcontext,
-        boolean bTransaction, boolean alreadyLoaded) throws XWikiException
+        boolean bTransaction, boolean alreadyLoaded, DocumentPropertiesBatch batch) throws XWikiException
     {
         XWikiContext context = getXWikiContext(inputxcontext);
 
@@ -1360,10 +1545,16 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
                 // Load strings, integers, dates all at once
 
-                Query query = session
-                    .createQuery("select prop.name, prop.classType from BaseProperty as prop where prop.id.id = :id");
-                query.setLong("id", object.getId());
-                for (Object[] result : (List<Object[]>) query.list()) {
+                List<Object[]> headers;
+                if (batch != null) {
+                    headers = batch.getHeaders(object.getId());
+                } else {
+                    Query query = session.createQuery(
+                        "select prop.name, prop.classType from BaseProperty as prop where prop.id.id = :id");
+                    query.setLong("id", object.getId());
+                    headers = query.list();
+                }
+                for (Object[] result : headers) {
                     String name = (String) result[0];
                     // No need to load fields already loaded from
                     // custom mapping
@@ -1371,7 +1562,15 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                         continue;
                     }
                     String classType = (String) result[1];
-                    BaseProperty property = null;
+                    BaseProperty property = batch != null ? batch.getProperty(object.getId(), name) : null;
+
+                    if (property != null) {
+                        // Already loaded with the other properties of the document
+                        property.setObject(object);
+                        initLoadedProperty(property);
+                        object.addField(name, property);
+                        continue;
+                    }
 
                     try {
                         property = (BaseProperty) Class.forName(classType).newInstance();
@@ -1541,26 +1740,12 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
 
             try {
                 session.load(property, (Serializable) property);
-                // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
-                // safe to assume that a retrieved NULL value should actually be an empty string.
-                if (property instanceof BaseStringProperty) {
-                    BaseStringProperty stringProperty = (BaseStringProperty) property;
-                    if (stringProperty.getValue() == null) {
-                        stringProperty.setValue("");
-                    }
-                }
-                ((BaseProperty) property).setValueDirty(false);
+                initLoadedProperty((BaseProperty) property);
             } catch (ObjectNotFoundException e) {
                 // Let's accept that there is no data in property tables but log it
                 this.logger.error("No data for property [{}] of object id [{}]", property.getName(), property.getId());
-            }
 
-            // TODO: understand why collections are lazy loaded
-            // Let's force reading lists if there is a list
-            // This seems to be an issue since Hibernate 3.0
-            // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
-            if (property instanceof ListProperty) {
-                ((ListProperty) property).getList();
+                loadListValues(property);
             }
 
             if (bTransaction) {
@@ -1583,6 +1768,32 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
         }
     }
 
+    private void initLoadedProperty(BaseProperty property)
+    {
+        // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
+        // safe to assume that a retrieved NULL value should actually be an empty string.
+        if (property instanceof BaseStringProperty) {
+            BaseStringProperty stringProperty = (BaseStringProperty) property;
+            if (stringProperty.getValue() == null) {
+                stringProperty.setValue("");
+            }
+        }
+        property.setValueDirty(false);
+
+        loadListValues(property);
+    }
+
+    private void loadListValues(PropertyInterface property)
+    {
+        // TODO: understand why collections are lazy loaded
+        // Let's force reading lists if there is a list
+        // This seems to be an issue since Hibernate 3.0
+        // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
+        if (property instanceof ListProperty) {
+            ((ListProperty) property).getList();
+        }
+    }
+
     private void saveXWikiPropertyInternal(final PropertyInterface property, final XWikiContext context,
         final boolean runInOwnTransaction) throws XWikiException
     {
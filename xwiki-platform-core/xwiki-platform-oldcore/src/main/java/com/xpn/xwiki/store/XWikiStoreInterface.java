@@ -19,11 +19,16 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.query.QueryManager;
+import org.xwiki.stability.Unstable;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -500,6 +505,66 @@ <T> List<T> search(String sql, int nb, int start, Object[][] whereParams, List<?
 
     boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
+    /**
+     * Check the existence of several documents at once. The locale of each reference is taken into account: a
+     * reference without locale (or with {@link java.util.Locale#ROOT}) targets the default document.
+     *
+     * @param references the references of the documents to check
+     * @param context the XWiki context
+     * @return the existence of each of the passed documents
+     * @throws XWikiException when failing to check the existence of the documents
+     * @since 9.12RC1
+     */
+    @Unstable
+    default Map<DocumentReference, Boolean> exists(Collection<DocumentReference> references, XWikiContext context)
+        throws XWikiException
+    {
+        Map<DocumentReference, Boolean> result = new HashMap<>(references.size());
+
+        String currentWiki = context.getWikiId();
+        try {
+            for (DocumentReference reference : references) {
+                context.setWikiId(reference.getWikiReference().getName());
+
+                result.put(reference, exists(new XWikiDocument(reference, reference.getLocale()), context));
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        return result;
+    }
+
+    /**
+     * Load several documents at once. The locale of each reference is taken into account.
+     *
+     * @param references the references of the documents to load
+     * @param context the XWiki context
+     * @return the loaded documents, in the order of the passed references; a document which does not exist is
+     *         returned as a new empty document
+     * @throws XWikiException when failing to load the documents
+     * @since 9.12RC1
+     */
+    @Unstable
+    default Map<DocumentReference, XWikiDocument> loadXWikiDocs(Collection<DocumentReference> references,
+        XWikiContext context) throws XWikiException
+    {
+        Map<DocumentReference, XWikiDocument> result = new LinkedHashMap<>(references.size());
+
+        String currentWiki = context.getWikiId();
+        try {
+            for (DocumentReference reference : references) {
+                context.setWikiId(reference.getWikiReference().getName());
+
+                result.put(reference, loadXWikiDoc(new XWikiDocument(reference, reference.getLocale()), context));
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        return result;
+    }
+
     boolean isCustomMappingValid(BaseClass bclass, String custommapping1, XWikiContext context) throws XWikiException;
 
     boolean injectCustomMapping(BaseClass doc1class, XWikiContext xWikiContext) throws XWikiException;
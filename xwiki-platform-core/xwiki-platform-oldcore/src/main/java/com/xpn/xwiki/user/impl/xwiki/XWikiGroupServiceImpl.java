@@ -21,10 +21,12 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -54,6 +56,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.user.GroupMembershipIndex;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.user.api.XWikiGroupService;
@@ -148,6 +151,8 @@ public class XWikiGroupServiceImpl implements XWikiGroupService, EventListener
     private EntityReferenceSerializer<String> localWikiEntityReferenceSerializer = Utils.getComponent(
         EntityReferenceSerializer.TYPE_STRING, "local");
 
+    private GroupMembershipIndex groupMembershipIndex = Utils.getComponent(GroupMembershipIndex.class);
+
     @Override
     public synchronized void init(XWiki xwiki, XWikiContext context) throws XWikiException
     {
@@ -729,40 +734,10 @@ public Collection<DocumentReference> getAllGroupsReferencesForMember(DocumentRef
             }
 
             if (groupReferences == null) {
-                List<String> groupNames;
-                try {
-                    Query query;
-                    if (memberReference.getWikiReference().getName().equals(context.getWikiId())
-                        || (memberReference.getLastSpaceReference().getName().equals("XWiki") && memberReference
-                            .getName().equals(XWikiRightService.GUEST_USER))) {
-                        query =
-                            context
-                                .getWiki()
-                                .getStore()
-                                .getQueryManager()
-                                .getNamedQuery("listGroupsForUser")
-                                .bindValue("username", prefixedFullName)
-                                .bindValue("shortname",
-                                    this.localWikiEntityReferenceSerializer.serialize(memberReference))
-                                .bindValue("veryshortname", memberReference.getName());
-                    } else {
-                        query =
-                            context.getWiki().getStore().getQueryManager()
-                                .getNamedQuery("listGroupsForUserInOtherWiki")
-                                .bindValue("prefixedmembername", prefixedFullName);
-                    }
-
-                    query.setOffset(offset);
-                    query.setLimit(limit);
-
-                    groupNames = query.execute();
-                } catch (QueryException ex) {
-                    throw new XWikiException(0, 0, ex.getMessage(), ex);
-                }
-
-                groupReferences = new HashSet<DocumentReference>(groupNames.size());
-                for (String groupName : groupNames) {
-                    groupReferences.add(this.currentMixedDocumentReferenceResolver.resolve(groupName));
+                if (this.groupMembershipIndex.isEnabled()) {
+                    groupReferences = getIndexedGroupsReferencesForMember(memberReference, limit, offset, context);
+                } else {
+                    groupReferences = searchGroupsReferencesForMember(memberReference, limit, offset, context);
                 }
 
                 // If the 'XWiki.XWikiAllGroup' is implicit, all users/groups except XWikiGuest and XWikiAllGroup
@@ -787,6 +762,74 @@ public Collection<DocumentReference> getAllGroupsReferencesForMember(DocumentRef
         return groupReferences;
     }
 
+    private Collection<DocumentReference> searchGroupsReferencesForMember(DocumentReference memberReference,
+        int limit, int offset, XWikiContext context) throws XWikiException
+    {
+        String prefixedFullName = this.entityReferenceSerializer.serialize(memberReference);
+
+        List<String> groupNames;
+        try {
+            Query query;
+            if (memberReference.getWikiReference().getName().equals(context.getWikiId())
+                || (memberReference.getLastSpaceReference().getName().equals("XWiki") && memberReference
+                    .getName().equals(XWikiRightService.GUEST_USER))) {
+                query =
+                    context
+                        .getWiki()
+                        .getStore()
+                        .getQueryManager()
+                        .getNamedQuery("listGroupsForUser")
+                        .bindValue("username", prefixedFullName)
+                        .bindValue("shortname",
+                            this.localWikiEntityReferenceSerializer.serialize(memberReference))
+                        .bindValue("veryshortname", memberReference.getName());
+            } else {
+                query =
+                    context.getWiki().getStore().getQueryManager()
+                        .getNamedQuery("listGroupsForUserInOtherWiki")
+                        .bindValue("prefixedmembername", prefixedFullName);
+            }
+
+            query.setOffset(offset);
+            query.setLimit(limit);
+
+            groupNames = query.execute();
+        } catch (QueryException ex) {
+            throw new XWikiException(0, 0, ex.getMessage(), ex);
+        }
+
+        Collection<DocumentReference> groupReferences = new HashSet<DocumentReference>(groupNames.size());
+        for (String groupName : groupNames) {
+            groupReferences.add(this.currentMixedDocumentReferenceResolver.resolve(groupName));
+        }
+
+        return groupReferences;
+    }
+
+    private Collection<DocumentReference> getIndexedGroupsReferencesForMember(DocumentReference memberReference,
+        int limit, int offset, XWikiContext context) throws XWikiException
+    {
+        Set<DocumentReference> groups;
+        try {
+            groups = this.groupMembershipIndex.getGroups(memberReference, context.getWikiReference());
+        } catch (QueryException e) {
+            throw new XWikiException(0, 0, e.getMessage(), e);
+        }
+
+        if (limit <= 0 && offset <= 0) {
+            return new HashSet<>(groups);
+        }
+
+        // Sort the groups to get stable pages
+        List<DocumentReference> sortedGroups = new ArrayList<>(groups);
+        sortedGroups.sort(Comparator.comparing(this.entityReferenceSerializer::serialize));
+
+        int from = Math.min(Math.max(offset, 0), sortedGroups.size());
+        int to = limit > 0 ? Math.min(from + limit, sortedGroups.size()) : sortedGroups.size();
+
+        return new HashSet<>(sortedGroups.subList(from, to));
+    }
+
     @Override
     public Collection<String> getAllMembersNamesForGroup(String group, int nb, int start, XWikiContext context)
         throws XWikiException
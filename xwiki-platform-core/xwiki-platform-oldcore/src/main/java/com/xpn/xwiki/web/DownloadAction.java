@@ -19,26 +19,34 @@
  */
 package com.xpn.xwiki.web;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
@@ -53,6 +61,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.plugin.XWikiPluginManager;
 import com.xpn.xwiki.util.Util;
@@ -90,8 +99,38 @@ public class DownloadAction extends XWikiAction
     /** The name of the HTTP Header that signals a byte-range request. */
     private static final String RANGE_HEADER_NAME = "Range";
 
-    /** The format of a valid range header. */
-    private static final Pattern RANGE_HEADER_PATTERN = Pattern.compile("bytes=([0-9]+)?-([0-9]+)?");
+    /** The format of a valid byte range in the Range header. */
+    private static final Pattern RANGE_PATTERN = Pattern.compile("([0-9]+)?-([0-9]+)?");
+
+    /** The prefix of the value of the Range header. */
+    private static final String RANGE_UNIT = "bytes=";
+
+    /** The maximum number of ranges accepted in a single request. */
+    private static final int MAX_RANGES = 20;
+
+    /** The name of the Content-Range header. */
+    private static final String CONTENT_RANGE_HEADER_NAME = "Content-Range";
+
+    /** The name of the ETag header. */
+    private static final String ETAG_HEADER_NAME = "ETag";
+
+    /** The name of the If-None-Match header. */
+    private static final String IF_NONE_MATCH_HEADER_NAME = "If-None-Match";
+
+    /** The prefix of a weak entity tag. */
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    /** The line separator of the multipart responses. */
+    private static final String CRLF = "\r\n";
+
+    /** The size of the buffer used to read the attachment content from a file. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Used to generate the boundaries of the multipart responses. */
+    private static final Random RANDOM = new SecureRandom();
+
+    /** Logging helper object. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadAction.class);
 
     /**
      * Default constructor.
@@ -163,24 +202,40 @@ public String render(XWikiContext context) throws XWikiException
                     "Attachment content {0} not found", null, args);
             }
 
-            long lastModifiedOnClient = request.getDateHeader("If-Modified-Since");
-            long lastModifiedOnServer = attachment.getDate().getTime();
-            if (lastModifiedOnClient != -1 && lastModifiedOnClient >= lastModifiedOnServer) {
-                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                return null;
+            String etag = getETag(attachment);
+            String etagsOnClient = request.getHeader(IF_NONE_MATCH_HEADER_NAME);
+            if (etagsOnClient != null) {
+                // If-None-Match takes precedence over If-Modified-Since
+                if (matchesETag(etagsOnClient, etag)) {
+                    response.setHeader(ETAG_HEADER_NAME, etag);
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
+            } else {
+                long lastModifiedOnClient = request.getDateHeader("If-Modified-Since");
+                long lastModifiedOnServer = attachment.getDate().getTime();
+                if (lastModifiedOnClient != -1 && lastModifiedOnClient >= lastModifiedOnServer) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
             }
 
             // Sending the content of the attachment
-            if (request.getHeader(RANGE_HEADER_NAME) != null) {
-                try {
-                    if (sendPartialContent(attachment, request, response, context)) {
-                        return null;
+            FileChannel channel = getContentChannel(attachment);
+            try {
+                if (request.getHeader(RANGE_HEADER_NAME) != null && isRangeApplicable(attachment, etag, request)) {
+                    try {
+                        if (sendPartialContent(attachment, channel, request, response, context)) {
+                            return null;
+                        }
+                    } catch (IOException ex) {
+                        // Broken response...
                     }
-                } catch (IOException ex) {
-                    // Broken response...
                 }
+                sendContent(attachment, channel, request, response, filename, context);
+            } finally {
+                IOUtils.closeQuietly(channel);
             }
-            sendContent(attachment, request, response, filename, context);
             return null;
         } finally {
             if (backwardCompatibilityContextObjects != null) {
@@ -199,11 +254,13 @@ private void throwNotFoundException(String filename) throws XWikiException
 
     /**
      * Respond to a range request, either with the requested bytes, or with a {@code 416 REQUESTED RANGE NOT
-     * SATISFIABLE} response if the requested byte range falls outside the length of the attachment. If the range
+     * SATISFIABLE} response if the requested byte ranges fall outside the length of the attachment. If the range
      * request header is syntactically invalid, nothing is written, and instead {@code false} is returned, letting the
      * action handler ignore the Range header and treat this as a normal (full) download request.
      *
      * @param attachment the attachment to get content from
+     * @param channel the channel to read the attachment content from, or {@code null} if the content is not stored in
+     *            a file
      * @param request the current client request
      * @param response the response to write to.
      * @param context the current request context
@@ -213,76 +270,209 @@ private void throwNotFoundException(String filename) throws XWikiException
      * @throws IOException if the response cannot be written
      */
     private boolean sendPartialContent(final XWikiAttachment attachment,
+        final FileChannel channel,
         final XWikiRequest request,
         final XWikiResponse response,
         final XWikiContext context)
         throws XWikiException, IOException
     {
-        String range = request.getHeader(RANGE_HEADER_NAME);
-        Matcher m = RANGE_HEADER_PATTERN.matcher(range);
-        if (m.matches()) {
-            String startStr = m.group(1);
-            String endStr = m.group(2);
-            Long start = NumberUtils.createLong(startStr);
-            Long end = NumberUtils.createLong(endStr);
+        long contentSize = attachment.getContentLongSize(context);
+        List<Pair<Long, Long>> ranges = getRanges(request.getHeader(RANGE_HEADER_NAME), contentSize);
+        if (ranges == null) {
+            return false;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setHeader(CONTENT_RANGE_HEADER_NAME, "bytes */" + contentSize);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        } else if (ranges.size() == 1) {
+            writeByteRange(attachment, channel, ranges.get(0), request, response, context);
+        } else {
+            writeByteRanges(attachment, channel, ranges, request, response, context);
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse the ranges requested by the client.
+     *
+     * @param rangeHeader the value of the Range header
+     * @param contentSize the size of the attachment content
+     * @return the first and last bytes of the satisfiable ranges, sorted and without overlap, or {@code null} if the
+     *         header is syntactically invalid or requests too many ranges
+     */
+    private List<Pair<Long, Long>> getRanges(String rangeHeader, long contentSize)
+    {
+        if (!rangeHeader.startsWith(RANGE_UNIT)) {
+            return null;
+        }
+
+        String[] rangeSpecs = StringUtils.split(rangeHeader.substring(RANGE_UNIT.length()), ',');
+        // Avoid being used to amplify the amount of data sent by a server
+        if (rangeSpecs.length == 0 || rangeSpecs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<Pair<Long, Long>> ranges = new ArrayList<>(rangeSpecs.length);
+        for (String rangeSpec : rangeSpecs) {
+            Matcher m = RANGE_PATTERN.matcher(rangeSpec.trim());
+            if (!m.matches()) {
+                return null;
+            }
+            Long start = NumberUtils.createLong(m.group(1));
+            Long end = NumberUtils.createLong(m.group(2));
             if (start == null && end != null && end > 0) {
                 // Tail request, output the last <end> bytes
-                start = Math.max(attachment.getContentSize(context) - end, 0L);
-                end = attachment.getContentSize(context) - 1L;
+                start = Math.max(contentSize - end, 0L);
+                end = contentSize - 1L;
             }
             if (!isValidRange(start, end)) {
-                return false;
+                return null;
             }
             if (end == null) {
-                end = attachment.getContentSize(context) - 1L;
+                end = contentSize - 1L;
+            }
+            end = Math.min(end, contentSize - 1L);
+            // Ranges starting after the end of the content can't be satisfied, but the other ranges still can
+            if (start != null && start >= 0 && start < contentSize) {
+                ranges.add(new ImmutablePair<>(start, end));
             }
-            end = Math.min(end, attachment.getContentSize(context) - 1L);
-            writeByteRange(attachment, start, end, request, response, context);
-            return true;
         }
-        return false;
+
+        return mergeRanges(ranges);
     }
 
     /**
-     * Write a byte range from the attachment to the response, if the requested range is valid and falls within the file
-     * limits.
+     * Coalesce the overlapping or adjacent ranges (as allowed by RFC 7233 section 4.1), so that a client can't make
+     * the server send the same bytes several times by repeating a range.
+     *
+     * @param ranges the first and last bytes of the requested ranges
+     * @return the merged ranges, sorted by their first byte
+     */
+    private List<Pair<Long, Long>> mergeRanges(List<Pair<Long, Long>> ranges)
+    {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        List<Pair<Long, Long>> sortedRanges = new ArrayList<>(ranges);
+        Collections.sort(sortedRanges);
+
+        List<Pair<Long, Long>> mergedRanges = new ArrayList<>(sortedRanges.size());
+        Pair<Long, Long> current = sortedRanges.get(0);
+        for (Pair<Long, Long> range : sortedRanges.subList(1, sortedRanges.size())) {
+            if (range.getLeft() <= current.getRight() + 1) {
+                current = new ImmutablePair<>(current.getLeft(), Math.max(current.getRight(), range.getRight()));
+            } else {
+                mergedRanges.add(current);
+                current = range;
+            }
+        }
+        mergedRanges.add(current);
+
+        return mergedRanges;
+    }
+
+    /**
+     * Write a byte range from the attachment to the response.
      *
      * @param attachment the attachment to get content from
-     * @param start the first byte to write
-     * @param end the last byte to write
+     * @param channel the channel to read the attachment content from, or {@code null} if the content is not stored in
+     *            a file
+     * @param range the first and last bytes to write
      * @param request the current client request
      * @param response the response to write to.
      * @param context the current request context
      * @throws XWikiException if the attachment content cannot be retrieved
      * @throws IOException if the response cannot be written
      */
-    private void writeByteRange(final XWikiAttachment attachment, Long start, Long end,
+    private void writeByteRange(final XWikiAttachment attachment, final FileChannel channel,
+        final Pair<Long, Long> range,
         final XWikiRequest request,
         final XWikiResponse response,
         final XWikiContext context)
         throws XWikiException, IOException
     {
-        if (start >= 0 && start < attachment.getContentSize(context)) {
-            InputStream data = attachment.getContentInputStream(context);
-            data = new BoundedInputStream(data, end + 1);
-            data.skip(start);
-            setCommonHeaders(attachment, request, response, context);
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            if ((end - start + 1L) < Integer.MAX_VALUE) {
-                response.setContentLength((int) (end - start + 1));
-            }
-            response.setHeader("Content-Range", "bytes " + start + "-" + end + SEPARATOR
-                + attachment.getContentSize(context));
-            IOUtils.copyLarge(data, response.getOutputStream());
-        } else {
-            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        long start = range.getLeft();
+        long end = range.getRight();
+        setCommonHeaders(attachment, request, response, context);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        setContentLength(response, end - start + 1);
+        response.setHeader(CONTENT_RANGE_HEADER_NAME, getContentRange(range, attachment, context));
+        writeContent(attachment, channel, start, end - start + 1, response.getOutputStream(), context);
+    }
+
+    /**
+     * Write several byte ranges from the attachment to the response, as a {@code multipart/byteranges} content.
+     *
+     * @param attachment the attachment to get content from
+     * @param channel the channel to read the attachment content from, or {@code null} if the content is not stored in
+     *            a file
+     * @param ranges the first and last bytes of each range to write
+     * @param request the current client request
+     * @param response the response to write to.
+     * @param context the current request context
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the response cannot be written
+     */
+    private void writeByteRanges(final XWikiAttachment attachment, final FileChannel channel,
+        final List<Pair<Long, Long>> ranges,
+        final XWikiRequest request,
+        final XWikiResponse response,
+        final XWikiContext context)
+        throws XWikiException, IOException
+    {
+        String boundary = Long.toHexString(RANDOM.nextLong()) + Long.toHexString(RANDOM.nextLong());
+        String mimetype = attachment.getMimeType(context);
+
+        // Compute the headers of each part first, to know the length of the response
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (Pair<Long, Long> range : ranges) {
+            byte[] partHeader = String.format("%s--%s%sContent-Type: %s%sContent-Range: %s%s%s", CRLF, boundary, CRLF,
+                mimetype, CRLF, getContentRange(range, attachment, context), CRLF, CRLF)
+                .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.getRight() - range.getLeft() + 1;
+        }
+        byte[] end = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        setCommonHeaders(attachment, request, response, context);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        setContentLength(response, contentLength);
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); ++i) {
+            Pair<Long, Long> range = ranges.get(i);
+            out.write(partHeaders.get(i));
+            writeContent(attachment, channel, range.getLeft(), range.getRight() - range.getLeft() + 1, out, context);
         }
+        out.write(end);
+    }
+
+    /**
+     * @param range the first and last bytes of the range
+     * @param attachment the attachment
+     * @param context the current request context
+     * @return the value of the Content-Range header for the passed range
+     * @throws XWikiException if the attachment content cannot be retrieved
+     */
+    private String getContentRange(Pair<Long, Long> range, XWikiAttachment attachment, XWikiContext context)
+        throws XWikiException
+    {
+        return "bytes " + range.getLeft() + "-" + range.getRight() + SEPARATOR
+            + attachment.getContentLongSize(context);
     }
 
     /**
      * Send the attachment content in the response.
      *
      * @param attachment the attachment to get content from
+     * @param channel the channel to read the attachment content from, or {@code null} if the content is not stored in
+     *            a file
      * @param request the current client request
      * @param response the response to write to.
      * @param filename the filename to show in the message in case an exception needs to be thrown
@@ -290,29 +480,158 @@ private void writeByteRange(final XWikiAttachment attachment, Long start, Long e
      * @throws XWikiException if something goes wrong
      */
     private void sendContent(final XWikiAttachment attachment,
+        final FileChannel channel,
         final XWikiRequest request,
         final XWikiResponse response,
         final String filename,
         final XWikiContext context)
         throws XWikiException
     {
-        InputStream stream = null;
         try {
             setCommonHeaders(attachment, request, response, context);
-            response.setContentLength(attachment.getContentSize(context));
-            stream = attachment.getContentInputStream(context);
-            IOUtils.copy(stream, response.getOutputStream());
+            long contentSize = attachment.getContentLongSize(context);
+            setContentLength(response, contentSize);
+            writeContent(attachment, channel, 0, contentSize, response.getOutputStream(), context);
         } catch (IOException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_APP,
                 XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION,
                 "Exception while sending response", e);
-        } finally {
-            if (stream != null) {
+        }
+    }
+
+    /**
+     * Write a part of the attachment content. When the content is stored in a file, the requested bytes are read
+     * directly at their position, without reading what is before them.
+     *
+     * @param attachment the attachment to get content from
+     * @param channel the channel to read the attachment content from, or {@code null} if the content is not stored in
+     *            a file
+     * @param start the first byte to write
+     * @param length the number of bytes to write
+     * @param out the stream to write to
+     * @param context the current request context
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the content cannot be read or written
+     */
+    private void writeContent(final XWikiAttachment attachment, final FileChannel channel, long start, long length,
+        OutputStream out, XWikiContext context) throws XWikiException, IOException
+    {
+        if (channel != null) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(length, 1L)));
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    // The file has been truncated in the meantime
+                    throw new EOFException(String.format("Unexpected end of the content of attachment [%s]",
+                        attachment.getReference()));
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+        } else {
+            InputStream stream = attachment.getContentInputStream(context);
+            try {
+                IOUtils.copyLarge(stream, out, start, length);
+            } finally {
                 IOUtils.closeQuietly(stream);
             }
         }
     }
 
+    /**
+     * @param response the response
+     * @param contentLength the length of the response content
+     */
+    private void setContentLength(XWikiResponse response, long contentLength)
+    {
+        if (contentLength < Integer.MAX_VALUE) {
+            response.setContentLength((int) contentLength);
+        } else {
+            response.setHeader("Content-Length", String.valueOf(contentLength));
+        }
+    }
+
+    /**
+     * @param attachment the attachment
+     * @return a channel to read the attachment content, or {@code null} if the content is not stored in a file
+     */
+    private FileChannel getContentChannel(XWikiAttachment attachment)
+    {
+        XWikiAttachmentContent content = attachment.getAttachment_content();
+        if (content != null) {
+            try {
+                return content.getContentChannel();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to open a channel to the content of attachment [{}], using a stream instead.",
+                    attachment.getReference(), e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param attachment the attachment
+     * @return the entity tag identifying the current content of the attachment
+     */
+    private String getETag(XWikiAttachment attachment)
+    {
+        return "\"" + attachment.getVersion() + '-' + attachment.getDate().getTime() + '"';
+    }
+
+    /**
+     * @param etags the value of a If-None-Match header
+     * @param etag the entity tag of the attachment
+     * @return {@code true} if one of the passed entity tags matches the attachment one
+     */
+    private boolean matchesETag(String etags, String etag)
+    {
+        for (String clientETag : StringUtils.split(etags, ',')) {
+            // If-None-Match uses the weak comparison
+            String trimmedETag = StringUtils.removeStart(clientETag.trim(), WEAK_ETAG_PREFIX);
+            if (trimmedETag.equals("*") || trimmedETag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check the If-Range header, which asks to send the requested ranges only if the attachment didn't change.
+     *
+     * @param attachment the attachment
+     * @param etag the entity tag of the attachment
+     * @param request the current client request
+     * @return {@code true} if the Range header should be taken into account, {@code false} if the whole content should
+     *         be sent
+     */
+    private boolean isRangeApplicable(XWikiAttachment attachment, String etag, XWikiRequest request)
+    {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith(WEAK_ETAG_PREFIX)) {
+            // If-Range uses the strong comparison
+            return ifRange.equals(etag);
+        }
+
+        try {
+            // HTTP dates have a precision of one second
+            return request.getDateHeader("If-Range") / 1000 == attachment.getDate().getTime() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * @return the filename of the attachment or null if the URL didn't point to an attachment
      */
@@ -477,6 +796,7 @@ private void setCommonHeaders(final XWikiAttachment attachment,
         response.addHeader("Content-disposition", dispType + "; filename*=utf-8''" + ofilename);
 
         response.setDateHeader("Last-Modified", attachment.getDate().getTime());
+        response.setHeader(ETAG_HEADER_NAME, getETag(attachment));
         // Advertise that downloads can be resumed
         response.setHeader("Accept-Ranges", "bytes");
     }
@@ -93,7 +93,8 @@ public boolean save(XWikiContext context) throws XWikiException
         // We need to clone this document first, since a cached storage would return the same object for the
         // following requests, so concurrent request might get a partially modified object, or worse, if an error
         // occurs during the save, the cached object will not reflect the actual document at all.
-        doc = doc.clone();
+        // The objects of a cached document are copied only when accessed since it is never modified.
+        doc = doc.lazyClone();
 
         String language = form.getLanguage();
         // FIXME Which one should be used: doc.getDefaultLanguage or
@@ -116,7 +117,7 @@ public boolean save(XWikiContext context) throws XWikiException
             } else if (tdoc != doc) {
                 // Saving an existing document translation (but not the default one).
                 // Same as above, clone the object retrieved from the store cache.
-                tdoc = tdoc.clone();
+                tdoc = tdoc.lazyClone();
             }
         }
 
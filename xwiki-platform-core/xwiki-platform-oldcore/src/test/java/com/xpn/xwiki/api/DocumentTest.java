@@ -36,6 +36,8 @@
 
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.anyXWikiContext;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -120,6 +122,49 @@ public void testRemoveObjectDoesntCauseDataLoss() throws XWikiException
         }
     }
 
+    @Test
+    public void getDocDoesNotModifyCachedDocument() throws XWikiException
+    {
+        XWikiContext xcontext = this.oldcore.getXWikiContext();
+        XWikiDocument classDocument = new XWikiDocument(new DocumentReference("wiki", "Space", "Class"));
+        classDocument.getXClass().addTextField("prop", "prop", 30);
+        this.oldcore.getSpyXWiki().saveDocument(classDocument, xcontext);
+        DocumentReference classReference = classDocument.getDocumentReference();
+
+        XWikiDocument cachedDocument = new XWikiDocument(new DocumentReference("wiki", "Space", "Page"));
+        cachedDocument.newXObject(classReference, xcontext).setStringValue("prop", "value");
+        cachedDocument.newXObject(classReference, xcontext).setStringValue("prop", "value");
+        // Simulate the instance shared by the document cache
+        cachedDocument.setFromCache(true);
+
+        Document document = new Document(cachedDocument, xcontext);
+        Document sibling = new Document(cachedDocument, xcontext);
+
+        XWikiDocument clone = document.getDoc();
+        assertNotSame(cachedDocument, clone);
+        assertFalse(clone.isFromCache());
+        clone.getXObject(classReference).setStringValue("prop", "modified");
+        clone.removeXObject(clone.getXObject(classReference, 1));
+
+        // The cached document is unchanged
+        assertTrue(cachedDocument.isFromCache());
+        assertEquals(2, cachedDocument.getXObjects(classReference).size());
+        assertEquals("value", cachedDocument.getXObject(classReference, 0).getStringValue("prop"));
+        assertEquals("value", cachedDocument.getXObject(classReference, 1).getStringValue("prop"));
+
+        // The clone of a sibling is unchanged
+        XWikiDocument siblingClone = sibling.getDoc();
+        assertNotSame(clone, siblingClone);
+        assertEquals(2, siblingClone.getXObjects(classReference).size());
+        assertEquals("value", siblingClone.getXObject(classReference, 0).getStringValue("prop"));
+
+        // A clone of a modified clone is a full copy
+        XWikiDocument cloneOfClone = new Document(clone, xcontext).getDoc();
+        cloneOfClone.getXObject(classReference).setStringValue("prop", "again");
+        assertEquals("modified", clone.getXObject(classReference).getStringValue("prop"));
+        assertNull(cloneOfClone.getXObject(classReference, 1));
+    }
+
     @Test
     public void testSaveAsAuthorUsesGuestIfDroppedPermissions() throws XWikiException
     {
@@ -72,6 +72,7 @@
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -1105,6 +1106,47 @@ public void testCloneObjectsHaveCorrectReference()
         }
     }
 
+    @Test
+    public void lazyClone()
+    {
+        // Only the instance shared by the document cache is lazily cloned
+        this.document.setFromCache(true);
+
+        XWikiDocument clonedDocument = this.document.lazyClone();
+        assertTrue(clonedDocument.isFromCache());
+
+        // The objects are cloned when accessed
+        BaseObject clonedObject = clonedDocument.getXObject(CLASS_REFERENCE);
+        assertNotSame(this.baseObject, clonedObject);
+        assertEquals(this.baseObject, clonedObject);
+        assertSame(clonedDocument, clonedObject.getOwnerDocument());
+
+        // Modifying the clone does not modify the original document
+        clonedObject.setStringValue("string", "modified");
+        clonedDocument.removeXObject(clonedDocument.getXObject(CLASS_REFERENCE, 1));
+        assertEquals("string", this.baseObject.getStringValue("string"));
+        assertSame(this.baseObject2, this.document.getXObject(CLASS_REFERENCE, 1));
+
+        assertEquals(this.document.getXObjects().keySet(), clonedDocument.getXObjects().keySet());
+        assertNull(clonedDocument.getXObject(CLASS_REFERENCE, 1));
+
+        // The source objects are not touched when accessed through the clone
+        assertSame(this.baseObject, this.document.getXObject(CLASS_REFERENCE));
+        assertEquals(2, this.document.getXObjects(CLASS_REFERENCE).size());
+
+        // The clone doesn't depend on the source anymore once all the objects have been cloned
+        BaseObject otherObject = new BaseObject();
+        otherObject.setXClassReference(new DocumentReference("wiki", "space", "otherclass"));
+        this.document.addXObject(otherObject);
+        assertEquals(1, clonedDocument.getXObjects().size());
+
+        // A clone of the clone is not lazy, even if it's flagged as coming from the cache
+        XWikiDocument secondClone = clonedDocument.lazyClone();
+        assertTrue(secondClone.isFromCache());
+        secondClone.getXObject(CLASS_REFERENCE).setStringValue("string", "second");
+        assertEquals("modified", clonedDocument.getXObject(CLASS_REFERENCE).getStringValue("string"));
+    }
+
     /**
      * Verify that merging objects modify their references to point to the document in which they are cloned into and
      * that GUID for merged objects are different from the original GUIDs.
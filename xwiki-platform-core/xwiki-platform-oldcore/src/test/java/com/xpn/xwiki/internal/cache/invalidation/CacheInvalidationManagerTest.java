@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.invalidation;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.remote.LocalEventData;
+import org.xwiki.observation.remote.RemoteObservationManager;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link CacheInvalidationManager}.
+ *
+ * @version $Id$
+ */
+public class CacheInvalidationManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<CacheInvalidationManager> mocker =
+        new MockitoComponentMockingRule<>(CacheInvalidationManager.class);
+
+    private DocumentReference reference = new DocumentReference("wiki", "Space", "Page", Locale.ROOT);
+
+    private ObservationManager observationManager;
+
+    @Before
+    public void before() throws Exception
+    {
+        RemoteObservationManagerConfiguration configuration =
+            this.mocker.getInstance(RemoteObservationManagerConfiguration.class);
+        when(configuration.isEnabled()).thenReturn(true);
+
+        this.observationManager = this.mocker.getInstance(ObservationManager.class);
+    }
+
+    private XWikiDocument mockDocument()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReferenceWithLocale()).thenReturn(this.reference);
+        when(document.getVersion()).thenReturn("2.1");
+        when(document.getDate()).thenReturn(new Date(42));
+
+        return document;
+    }
+
+    private void verifyWikiInvalidated(int times)
+    {
+        verify(this.observationManager, times(times)).notify(
+            argThat(event -> ((CacheInvalidationEvent) event).getReference().equals(new WikiReference("wiki"))),
+            any(), any());
+    }
+
+    @Test
+    public void invalidate() throws Exception
+    {
+        XWikiDocument document = mockDocument();
+
+        this.mocker.getComponentUnderTest().invalidate(document, false);
+        this.mocker.getComponentUnderTest().invalidate(document, true);
+
+        RemoteObservationManager remoteObservationManager = this.mocker.getInstance(RemoteObservationManager.class);
+        ArgumentCaptor<LocalEventData> eventCaptor = ArgumentCaptor.forClass(LocalEventData.class);
+        verify(remoteObservationManager, times(2)).notify(eventCaptor.capture());
+
+        List<LocalEventData> events = eventCaptor.getAllValues();
+
+        CacheInvalidationEvent event = (CacheInvalidationEvent) events.get(0).getEvent();
+        assertEquals(this.mocker.getComponentUnderTest().getNode(), event.getNode());
+        assertEquals(1, event.getSequence());
+        assertEquals(this.reference, event.getReference());
+        assertEquals("2.1", event.getVersion());
+        assertEquals(42, event.getDate());
+        assertNull(events.get(0).getSource());
+
+        event = (CacheInvalidationEvent) events.get(1).getEvent();
+        assertEquals(2, event.getSequence());
+        assertNull(event.getVersion());
+    }
+
+    @Test
+    public void receiveWithMissedInvalidations() throws Exception
+    {
+        CacheInvalidationManager manager = this.mocker.getComponentUnderTest();
+
+        // The first invalidation is only a starting point
+        manager.receive(new CacheInvalidationEvent("other", 5, this.reference, "1.1", 0));
+        manager.receive(new CacheInvalidationEvent("other", 6, this.reference, "2.1", 0));
+        verifyWikiInvalidated(0);
+
+        // The invalidation 7 has been missed
+        manager.receive(new CacheInvalidationEvent("other", 8, this.reference, "4.1", 0));
+        verifyWikiInvalidated(1);
+
+        // Same sequence in the digest
+        manager.receive(new CacheInvalidationDigestEvent("other", Collections.singletonMap("wiki", 8L)));
+        verifyWikiInvalidated(1);
+
+        // The invalidations 9 and 10 have been missed
+        manager.receive(new CacheInvalidationDigestEvent("other", Collections.singletonMap("wiki", 10L)));
+        verifyWikiInvalidated(2);
+
+        assertEquals(2, manager.getMissedCount());
+    }
+
+    @Test
+    public void receiveOwnInvalidations() throws Exception
+    {
+        CacheInvalidationManager manager = this.mocker.getComponentUnderTest();
+
+        manager.receive(new CacheInvalidationEvent(manager.getNode(), 1, this.reference, "1.1", 0));
+        manager.receive(new CacheInvalidationEvent(manager.getNode(), 3, this.reference, "1.1", 0));
+
+        verify(this.observationManager, never()).notify(any(), any(), any());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link CacheWarmupRecorder}.
+ *
+ * @version $Id$
+ */
+public class CacheWarmupRecorderTest
+{
+    @Rule
+    public MockitoComponentMockingRule<CacheWarmupRecorder> mocker =
+        new MockitoComponentMockingRule<>(CacheWarmupRecorder.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DocumentReference user = new DocumentReference("wiki", "XWiki", "user");
+
+    private DocumentReference document1 = new DocumentReference("wiki", "Space", "document1");
+
+    private DocumentReference document2 = new DocumentReference("wiki", "Space", "document2");
+
+    @Before
+    public void before() throws Exception
+    {
+        ConfigurationSource configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikicfg");
+        when(configuration.getProperty("xwiki.cache.warmup", 0)).thenReturn(1);
+        when(configuration.getProperty("xwiki.cache.warmup.size", 1000)).thenReturn(2);
+        when(configuration.getProperty("xwiki.cache.warmup.sampling", 10)).thenReturn(1);
+
+        Environment environment = this.mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.folder.getRoot());
+
+        EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any()))
+            .thenAnswer(invocation -> ((DocumentReference) invocation.getArgument(0)).getName());
+        DocumentReferenceResolver<String> resolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(resolver.resolve(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            return new DocumentReference("wiki", name.equals("user") ? "XWiki" : "Space", name);
+        });
+    }
+
+    @Test
+    public void saveAndReadSnapshot() throws Exception
+    {
+        CacheWarmupRecorder recorder = this.mocker.getComponentUnderTest();
+
+        assertTrue(recorder.readSnapshot().isEmpty());
+
+        DocumentReference document1Root = new DocumentReference(this.document1, Locale.ROOT);
+        DocumentReference document2French = new DocumentReference(this.document2, Locale.FRENCH);
+        DocumentReference document3Root = new DocumentReference("wiki", "Space", "document3", Locale.ROOT);
+
+        recorder.recordDocument(document1Root);
+        recorder.recordDocument(document1Root);
+        recorder.recordDocument(document2French);
+        recorder.recordDocument(document2French);
+        recorder.recordDocument(document2French);
+        recorder.recordDocument(document3Root);
+        recorder.recordAccess(null, this.document1);
+        recorder.recordAccess(this.user, this.document2);
+        recorder.recordAccess(this.user, this.document2);
+
+        recorder.save();
+
+        CacheWarmupRecorder.Snapshot snapshot = recorder.readSnapshot();
+
+        // Only the most used elements are saved, the most used first
+        assertEquals(Arrays.asList(document2French, document1Root), snapshot.getDocuments());
+        assertEquals(Arrays.asList(Pair.of(this.user, this.document2), Pair.of(null, this.document1)),
+            snapshot.getAccesses());
+    }
+
+    @Test
+    public void disabled() throws Exception
+    {
+        ConfigurationSource configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikicfg");
+        when(configuration.getProperty("xwiki.cache.warmup", 0)).thenReturn(0);
+
+        CacheWarmupRecorder recorder = this.mocker.getComponentUnderTest();
+
+        recorder.recordDocument(this.document1);
+        recorder.save();
+
+        assertEquals(Collections.emptyList(), recorder.readSnapshot().getDocuments());
+    }
+}
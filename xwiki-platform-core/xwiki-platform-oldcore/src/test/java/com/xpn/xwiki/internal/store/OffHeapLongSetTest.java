@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Validate {@link OffHeapLongSet}.
+ *
+ * @version $Id$
+ */
+public class OffHeapLongSetTest
+{
+    @Test
+    public void addContainsRemove()
+    {
+        OffHeapLongSet set = new OffHeapLongSet(0);
+
+        assertFalse(set.contains(42));
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+
+        // 0 is used internally to mark free slots
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertFalse(set.contains(42));
+        assertTrue(set.remove(0));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void sameAsHashSet()
+    {
+        OffHeapLongSet set = new OffHeapLongSet(0);
+        Set<Long> expected = new HashSet<>();
+
+        // Use a small range of values to get collisions and removals of existing values
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; ++i) {
+            long value = random.nextInt(5000) - 2500;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value = -2500; value < 2500; ++value) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    public void addWhenFull()
+    {
+        OffHeapLongSet set = new OffHeapLongSet(0, 16);
+
+        // The table is kept at most 3/4 full
+        for (long value = 1; value <= 12; ++value) {
+            assertTrue(set.add(value));
+        }
+        assertFalse(set.add(12));
+
+        try {
+            set.add(13);
+            fail("Should have failed");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        assertEquals(12, set.size());
+        assertFalse(set.contains(13));
+        for (long value = 1; value <= 12; ++value) {
+            assertTrue(set.contains(value));
+        }
+
+        // Removing a value makes room for another one
+        assertTrue(set.remove(1));
+        assertTrue(set.add(13));
+        assertTrue(set.contains(13));
+    }
+}
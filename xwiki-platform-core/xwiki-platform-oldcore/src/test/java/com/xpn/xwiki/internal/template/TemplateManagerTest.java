@@ -20,18 +20,27 @@
 package com.xpn.xwiki.internal.template;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.velocity.VelocityContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.configuration.internal.MemoryConfigurationSource;
 import org.xwiki.environment.Environment;
@@ -48,7 +57,12 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -63,6 +77,9 @@
     public final MockitoComponentMockingRule<TemplateManager> mocker =
         new MockitoComponentMockingRule<TemplateManager>(DefaultTemplateManager.class);
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private Environment environmentMock;
 
     private VelocityManager velocityManagerMock;
@@ -85,6 +102,19 @@ public void afterComponent() throws Exception
         this.velocityManagerMock = this.mocker.registerMockComponent(VelocityManager.class);
         this.mocker.registerMockComponent(ConfigurationSource.class);
         this.mocker.registerMockComponent(TransformationManager.class);
+
+        MemoryConfigurationSource xwikicfg = new MemoryConfigurationSource();
+        xwikicfg.setProperty("xwiki.render.template.checkInterval", 0L);
+        this.mocker.registerComponent(MockConfigurationSource.getDescriptor("xwikicfg"), xwikicfg);
+
+        // Simple cache keeping all the entries
+        Map<String, Object> entries = new HashMap<>();
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        CacheManager cacheManager = this.mocker.registerMockComponent(CacheManager.class);
+        when(cacheManager.createNewCache(any())).thenReturn(cache);
     }
 
     private void setTemplateContent(String content) throws UnsupportedEncodingException, MalformedURLException
@@ -138,4 +168,68 @@ public void testRenderClassloaderTemplate() throws ComponentLookupException, Exc
 
         assertEquals("OK", this.mocker.getComponentUnderTest().render("classloader_template.vm"));
     }
+
+    @Test
+    public void testRenderFilesystemTemplateIsCached() throws Exception
+    {
+        mockVelocity("source", "OK");
+        mockVelocity("new source", "NEW");
+
+        File file = this.folder.newFile("template");
+        FileUtils.write(file, "source", StandardCharsets.UTF_8);
+        file.setLastModified(1000);
+        when(this.environmentMock.getResource("/templates/template")).thenReturn(file.toURI().toURL());
+        when(this.environmentMock.getResourceAsStream("/templates/template"))
+            .thenReturn(new ByteArrayInputStream("source".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("OK", this.mocker.getComponentUnderTest().render("template"));
+        assertEquals("OK", this.mocker.getComponentUnderTest().render("template"));
+
+        // The file is read only once as long as it's not modified
+        verify(this.environmentMock, times(1)).getResourceAsStream("/templates/template");
+
+        FileUtils.write(file, "new source", StandardCharsets.UTF_8);
+        file.setLastModified(2000);
+        when(this.environmentMock.getResourceAsStream("/templates/template"))
+            .thenReturn(new ByteArrayInputStream("new source".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("NEW", this.mocker.getComponentUnderTest().render("template"));
+    }
+
+    @Test
+    public void testRenderFilesystemTemplateIsNotCheckedBeforeInterval() throws Exception
+    {
+        ReflectionUtils.setFieldValue(this.mocker.getInstance(InternalTemplateManager.class), "fileCheckInterval",
+            60000L);
+
+        mockVelocity("source", "OK");
+
+        File file = this.folder.newFile("template");
+        FileUtils.write(file, "source", StandardCharsets.UTF_8);
+        when(this.environmentMock.getResource("/templates/template")).thenReturn(file.toURI().toURL());
+        when(this.environmentMock.getResourceAsStream("/templates/template"))
+            .thenReturn(new ByteArrayInputStream("source".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("OK", this.mocker.getComponentUnderTest().render("template"));
+
+        FileUtils.write(file, "new source", StandardCharsets.UTF_8);
+
+        // The modification is not seen before the end of the interval
+        assertEquals("OK", this.mocker.getComponentUnderTest().render("template"));
+        verify(this.environmentMock, times(1)).getResourceAsStream("/templates/template");
+    }
+
+    @Test
+    public void testRenderCachedWiki() throws Exception
+    {
+        File file = this.folder.newFile("template");
+        FileUtils.write(file, "##!source.syntax=xwiki/2.1\nfirst line", StandardCharsets.UTF_8);
+        when(this.environmentMock.getResource("/templates/template")).thenReturn(file.toURI().toURL());
+        when(this.environmentMock.getResourceAsStream("/templates/template")).thenReturn(
+            new ByteArrayInputStream("##!source.syntax=xwiki/2.1\nfirst line".getBytes(StandardCharsets.UTF_8)));
+
+        // The parsed content is copied before being transformed and rendered
+        assertEquals("<p>first line</p>", this.mocker.getComponentUnderTest().render("template"));
+        assertEquals("<p>first line</p>", this.mocker.getComponentUnderTest().render("template"));
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.user.impl.xwiki.XWikiGroupServiceImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link GroupMembershipIndex}.
+ *
+ * @version $Id$
+ */
+public class GroupMembershipIndexTest
+{
+    @Rule
+    public MockitoComponentMockingRule<GroupMembershipIndex> mocker =
+        new MockitoComponentMockingRule<>(GroupMembershipIndex.class);
+
+    private WikiReference wiki = new WikiReference("wiki");
+
+    private DocumentReference user = new DocumentReference("wiki", "XWiki", "user");
+
+    private DocumentReference group1 = new DocumentReference("wiki", "XWiki", "group1");
+
+    private DocumentReference group2 = new DocumentReference("wiki", "XWiki", "group2");
+
+    private DocumentReference group3 = new DocumentReference("wiki", "XWiki", "group3");
+
+    private QueryManager queryManager;
+
+    @Before
+    public void before() throws Exception
+    {
+        EntityReferenceSerializer<String> serializer =
+            this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any())).thenAnswer(
+            invocation -> "wiki:XWiki." + ((DocumentReference) invocation.getArgument(0)).getName());
+        EntityReferenceSerializer<String> localSerializer =
+            this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(localSerializer.serialize(any()))
+            .thenAnswer(invocation -> "XWiki." + ((DocumentReference) invocation.getArgument(0)).getName());
+        DocumentReferenceResolver<String> resolver =
+            this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "current");
+        when(resolver.resolve(anyString(), eq(this.wiki))).thenAnswer(invocation -> new DocumentReference("wiki",
+            "XWiki", ((String) invocation.getArgument(0)).substring("XWiki.".length())));
+
+        // group1 contains user and group3, group2 contains group1, group3 contains group2
+        Query query = mock(Query.class);
+        when(query.execute()).thenReturn(Arrays.<Object>asList(new Object[] { "XWiki.group1", "XWiki.user" },
+            new Object[] { "XWiki.group1", "group3" }, new Object[] { "XWiki.group2", "XWiki.group1" },
+            new Object[] { "XWiki.group3", "wiki:XWiki.group2" }));
+
+        this.queryManager = this.mocker.getInstance(QueryManager.class);
+        when(this.queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query);
+    }
+
+    @Test
+    public void getGroups() throws Exception
+    {
+        assertEquals(Collections.singleton(this.group1), this.mocker.getComponentUnderTest().getGroups(this.user,
+            this.wiki));
+        assertEquals(Collections.singleton(this.group2), this.mocker.getComponentUnderTest().getGroups(this.group1,
+            this.wiki));
+
+        // The index of the wiki is loaded only once
+        verify(this.queryManager, times(1)).createQuery(anyString(), eq(Query.HQL));
+    }
+
+    @Test
+    public void getGroupsIgnoresCase() throws Exception
+    {
+        this.mocker.getComponentUnderTest().getGroups(this.user, this.wiki);
+        this.mocker.getComponentUnderTest().update(mockGroupDocument(this.group2, "XWiki.USER"));
+
+        assertEquals(new HashSet<>(Arrays.asList(this.group1, this.group2)),
+            this.mocker.getComponentUnderTest().getGroups(this.user, this.wiki));
+        assertEquals(new HashSet<>(Arrays.asList(this.group1, this.group2)), this.mocker.getComponentUnderTest()
+            .getGroups(new DocumentReference("wiki", "XWiki", "User"), this.wiki));
+    }
+
+    @Test
+    public void update() throws Exception
+    {
+        assertEquals(Collections.singleton(this.group1), this.mocker.getComponentUnderTest().getGroups(this.user,
+            this.wiki));
+
+        this.mocker.getComponentUnderTest().update(mockGroupDocument(this.group2, "XWiki.group1", "XWiki.user"));
+        assertEquals(new HashSet<>(Arrays.asList(this.group1, this.group2)),
+            this.mocker.getComponentUnderTest().getGroups(this.user, this.wiki));
+
+        this.mocker.getComponentUnderTest().update(mockGroupDocument(this.group1));
+        assertEquals(Collections.singleton(this.group2), this.mocker.getComponentUnderTest().getGroups(this.user,
+            this.wiki));
+        assertEquals(Collections.emptySet(), this.mocker.getComponentUnderTest().getGroups(this.group3, this.wiki));
+    }
+
+    private XWikiDocument mockGroupDocument(DocumentReference reference, String... members)
+    {
+        List<BaseObject> groupObjects = new ArrayList<>();
+        for (String member : members) {
+            BaseObject groupObject = mock(BaseObject.class);
+            when(groupObject.getStringValue("member")).thenReturn(member);
+            groupObjects.add(groupObject);
+        }
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(reference);
+        when(document.getXObjects(XWikiGroupServiceImpl.GROUPCLASS_REFERENCE)).thenReturn(groupObjects);
+
+        return document;
+    }
+}
@@ -19,6 +19,13 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -30,11 +37,15 @@
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
 import org.xwiki.test.annotation.ComponentList;
 
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.warmup.CacheWarmupRecorder;
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.isCacheConfiguration;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -64,6 +75,7 @@ public void before() throws Exception
     {
         this.oldcore.getMocker().registerMockComponent(RemoteObservationManagerContext.class);
         this.oldcore.getMocker().registerMockComponent(ObservationManager.class);
+        this.oldcore.getMocker().registerMockComponent(CacheWarmupRecorder.class);
 
         CacheManager cacheManager = this.oldcore.getMocker().registerMockComponent(CacheManager.class);
         cache = mock(Cache.class);
@@ -115,4 +127,86 @@ public void testLoadXWikiDoc() throws Exception
         verifyNoMoreInteractions(this.cache);
         verifyNoMoreInteractions(this.existCache);
     }
+
+    @Test
+    public void existsBatch() throws Exception
+    {
+        XWikiStoreInterface backend = mock(XWikiStoreInterface.class);
+        XWikiCacheStore store = new XWikiCacheStore(backend, this.oldcore.getXWikiContext());
+
+        DocumentReference cached = new DocumentReference("wiki", "space", "cached");
+        DocumentReference existing = new DocumentReference("wiki", "space", "existing");
+        DocumentReference missing = new DocumentReference("otherwiki", "space", "missing");
+
+        when(this.existCache.get("4:wiki5:space6:cached")).thenReturn(Boolean.TRUE);
+        when(backend.exists(new HashSet<>(Arrays.asList(existing, missing)), this.oldcore.getXWikiContext()))
+            .thenReturn(Collections.singletonMap(existing, Boolean.TRUE));
+
+        Map<DocumentReference, Boolean> result =
+            store.exists(Arrays.asList(cached, existing, missing), this.oldcore.getXWikiContext());
+
+        assertEquals(Boolean.TRUE, result.get(cached));
+        assertEquals(Boolean.TRUE, result.get(existing));
+        assertEquals(Boolean.FALSE, result.get(missing));
+
+        // Only the documents not found in the cache are asked to the storage, in one call
+        verify(backend).exists(any(Collection.class), any());
+        verify(this.existCache).set("4:wiki5:space8:existing", Boolean.TRUE);
+        verify(this.existCache).set("9:otherwiki5:space7:missing", Boolean.FALSE);
+    }
+
+    @Test
+    public void loadXWikiDocConcurrently() throws Exception
+    {
+        XWikiStoreInterface backend = mock(XWikiStoreInterface.class);
+        XWikiCacheStore store = new XWikiCacheStore(backend, this.oldcore.getXWikiContext());
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        when(backend.loadXWikiDoc(any(XWikiDocument.class), any())).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            loadReleased.await();
+
+            XWikiDocument document = invocation.getArgument(0);
+            document.setNew(false);
+
+            return document;
+        });
+
+        XWikiDocument[] documents = new XWikiDocument[2];
+        Thread thread1 = new Thread(() -> documents[0] = loadXWikiDoc(store, reference));
+        Thread thread2 = new Thread(() -> documents[1] = loadXWikiDoc(store, reference));
+
+        thread1.start();
+        loadStarted.await();
+        thread2.start();
+        // Wait for the second thread to wait for the first load
+        while (thread2.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        loadReleased.countDown();
+        thread1.join();
+        thread2.join();
+
+        // The document is loaded only once from the storage and shared like a cached document
+        verify(backend).loadXWikiDoc(any(XWikiDocument.class), any());
+        assertEquals(1, store.getStoreLoadCount());
+        assertEquals(1, store.getCoalescedLoadCount());
+        assertFalse(documents[0].isNew());
+        assertFalse(documents[1].isNew());
+        assertSame(documents[0], documents[1]);
+        assertTrue(documents[1].isFromCache());
+        assertEquals(reference, documents[1].getDocumentReference());
+    }
+
+    private XWikiDocument loadXWikiDoc(XWikiCacheStore store, DocumentReference reference)
+    {
+        try {
+            return store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext());
+        } catch (XWikiException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -47,11 +47,14 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.StringProperty;
 import com.xpn.xwiki.store.migration.DataMigrationManager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -330,4 +333,69 @@ public void getTranslationList() throws Exception
         verify(query).bindValue("space", "Path.To");
         verify(query).bindValue("name", documentReference.getName());
     }
+
+    @Test
+    public void loadDocumentPropertiesBatch() throws Exception
+    {
+        XWikiDocument doc = mock(XWikiDocument.class);
+        when(doc.getFullName()).thenReturn("Space.Page");
+
+        // Two objects of different classes, with properties stored in different tables
+        Query headersQuery = mock(Query.class);
+        when(session.createQuery("select prop.id.id, prop.name, prop.classType from BaseProperty as prop, "
+            + "BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id")).thenReturn(headersQuery);
+        when(headersQuery.list()).thenReturn(Arrays.asList(
+            new Object[] { 1L, "title", StringProperty.class.getName() },
+            new Object[] { 1L, "count", IntegerProperty.class.getName() },
+            new Object[] { 2L, "title", StringProperty.class.getName() },
+            new Object[] { 2L, "content", LargeStringProperty.class.getName() }));
+
+        StringProperty title1 = createProperty(new StringProperty(), 1L, "title");
+        StringProperty title2 = createProperty(new StringProperty(), 2L, "title");
+        IntegerProperty count1 = createProperty(new IntegerProperty(), 1L, "count");
+        LargeStringProperty content2 = createProperty(new LargeStringProperty(), 2L, "content");
+
+        Query stringQuery = mockPropertiesQuery(StringProperty.class, title1, title2);
+        Query integerQuery = mockPropertiesQuery(IntegerProperty.class, count1);
+        Query largeStringQuery = mockPropertiesQuery(LargeStringProperty.class, content2);
+
+        XWikiHibernateStore.DocumentPropertiesBatch batch = store.loadDocumentPropertiesBatch(doc, session);
+
+        assertEquals(2, batch.getHeaders(1L).size());
+        assertEquals(2, batch.getHeaders(2L).size());
+        assertTrue(batch.getHeaders(3L).isEmpty());
+
+        assertSame(title1, batch.getProperty(1L, "title"));
+        assertSame(count1, batch.getProperty(1L, "count"));
+        assertSame(title2, batch.getProperty(2L, "title"));
+        assertSame(content2, batch.getProperty(2L, "content"));
+        assertNull(batch.getProperty(1L, "content"));
+        assertNull(batch.getProperty(3L, "title"));
+
+        // One query per property type, whatever the number of objects
+        verify(headersQuery).setText("name", "Space.Page");
+        verify(stringQuery).setText("classType", StringProperty.class.getName());
+        verify(integerQuery).setText("classType", IntegerProperty.class.getName());
+        verify(largeStringQuery).setText("classType", LargeStringProperty.class.getName());
+        verify(session, times(4)).createQuery(any(String.class));
+    }
+
+    private <P extends BaseProperty> P createProperty(P property, long objectId, String name)
+    {
+        property.setId(objectId);
+        property.setName(name);
+
+        return property;
+    }
+
+    private Query mockPropertiesQuery(Class<? extends BaseProperty> propertyClass, BaseProperty... properties)
+    {
+        Query query = mock(Query.class);
+        when(session.createQuery("select prop from " + propertyClass.getName()
+            + " as prop, BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id"
+            + " and prop.classType = :classType")).thenReturn(query);
+        when(query.list()).thenReturn(Arrays.asList(properties));
+
+        return query;
+    }
 }
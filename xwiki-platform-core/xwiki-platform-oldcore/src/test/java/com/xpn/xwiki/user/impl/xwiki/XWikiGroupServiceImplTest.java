@@ -30,6 +30,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.user.GroupMembershipIndex;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
@@ -57,6 +58,8 @@
     @Before
     public void before() throws Exception
     {
+        this.oldcore.getMocker().registerMockComponent(GroupMembershipIndex.class);
+
         this.groupService = new XWikiGroupServiceImpl();
 
         doReturn(0).when(this.oldcore.getSpyXWiki()).getMaxRecursiveSpaceChecks(any(XWikiContext.class));
@@ -22,6 +22,7 @@
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import javax.servlet.ServletOutputStream;
@@ -52,8 +53,10 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -590,12 +593,162 @@ public void downloadWhenEmptyRange() throws XWikiException, IOException
         verifyResponseExpectations(d.getTime(), this.fileContent.length);
     }
 
-    private void createAttachment(Date d, String name) throws IOException
+    @Test
+    public void downloadWhenMultipleRanges() throws XWikiException, IOException
+    {
+        // This test expects bytes 0 and 1, then bytes 4, 5 and 6 from the file
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-1, 4-6", -1l, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setContentType(startsWith("multipart/byteranges; boundary="));
+        verify(this.out).write(argThat(new ArgumentMatcher<byte[]>()
+        {
+            @Override
+            public boolean matches(byte[] argument)
+            {
+                return new String(argument, StandardCharsets.US_ASCII).endsWith("\r\nContent-Type: text/plain\r\n"
+                    + "Content-Range: bytes 4-6/" + DownloadActionTest.this.fileContent.length + "\r\n\r\n");
+            }
+        }));
+        verifyOutputExpectations(0, 2);
+        verifyOutputExpectations(4, 7);
+    }
+
+    @Test
+    public void downloadWhenRepeatedRanges() throws XWikiException, IOException
+    {
+        // The repeated ranges are merged so the content is sent only once
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-,0-,0-,0-,0-", -1l, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setHeader("Content-Range", "bytes 0-13/" + this.fileContent.length);
+        verify(this.response, never()).setContentType(startsWith("multipart/byteranges"));
+        verifyOutputExpectations(0, this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenOverlappingRanges() throws XWikiException, IOException
+    {
+        // This test expects bytes 0 to 6 and bytes 9 to 10 from the file: 4-6 overlaps 0-4 and 5-6 is adjacent to it
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=9-10, 4-6, 0-4, 5-6", -1l, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setContentType(startsWith("multipart/byteranges; boundary="));
+        verifyOutputExpectations(0, 7);
+        verifyOutputExpectations(9, 11);
+    }
+
+    @Test
+    public void downloadWhenOutsideMultipleRanges() throws XWikiException, IOException
+    {
+        // This test expects a 416 response
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=129-145,200-", -1l, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(this.response).setHeader("Content-Range", "bytes */" + this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenIfNoneMatchSame() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        XWikiAttachment attachment = createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, null, -1l, DEFAULT_FILE_NAME);
+        String etag = "\"" + attachment.getVersion() + '-' + d.getTime() + '"';
+        when(this.request.getHeader("If-None-Match")).thenReturn("\"other\", " + etag);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(this.response).setHeader("ETag", etag);
+    }
+
+    @Test
+    public void downloadWhenIfNoneMatchDifferent() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        // If-None-Match takes precedence over If-Modified-Since
+        setRequestExpectations(DEFAULT_URI, null, null, null, d.getTime(), DEFAULT_FILE_NAME);
+        when(this.request.getHeader("If-None-Match")).thenReturn("\"other\"");
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verifyResponseExpectations(d.getTime(), this.fileContent.length);
+        verifyOutputExpectations(0, this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenIfRangeDifferent() throws XWikiException, IOException
+    {
+        // The attachment changed since the client got the first part of it, so the whole file is expected
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=3-5", -1l, DEFAULT_FILE_NAME);
+        when(this.request.getHeader("If-Range")).thenReturn("\"other\"");
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verifyResponseExpectations(d.getTime(), this.fileContent.length);
+        verifyOutputExpectations(0, this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenRangeInFile() throws XWikiException, IOException
+    {
+        // Big enough to be stored in a file, so that it's read with a channel
+        final byte[] bigContent = new byte[20000];
+        for (int i = 0; i < bigContent.length; ++i) {
+            bigContent[i] = (byte) i;
+        }
+        Date d = new Date();
+        XWikiAttachment attachment = createAttachment(d, DEFAULT_FILE_NAME);
+        attachment.setContent(new ByteArrayInputStream(bigContent));
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=15000-15099", -1l, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setHeader("Content-Range", "bytes 15000-15099/20000");
+        verify(this.response).setContentLength(100);
+        verify(this.out).write(argThat(new ArgumentMatcher<byte[]>()
+        {
+            @Override
+            public boolean matches(byte[] argument)
+            {
+                for (int i = 0; i < 100; ++i) {
+                    if (argument[i] != bigContent[15000 + i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }), eq(0), eq(100));
+    }
+
+    private XWikiAttachment createAttachment(Date d, String name) throws IOException
     {
         XWikiAttachment filetxt = new XWikiAttachment(this.document, name);
         filetxt.setContent(new ByteArrayInputStream(this.fileContent));
         filetxt.setDate(d);
         this.document.getAttachmentList().add(filetxt);
+        return filetxt;
     }
 
     private void setRequestExpectations(String uri, String id, String forceDownload, String range, long modifiedSince,
@@ -19,6 +19,9 @@
  */
 package org.xwiki.rendering.internal.macro.cache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,11 +30,29 @@
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.macro.AbstractMacro;
 import org.xwiki.rendering.macro.MacroContentParser;
@@ -52,7 +73,7 @@
 @Component
 @Named("cache")
 @Singleton
-public class CacheMacro extends AbstractMacro<CacheMacroParameters>
+public class CacheMacro extends AbstractMacro<CacheMacroParameters> implements Initializable
 {
     /**
      * The description of the macro.
@@ -64,6 +85,71 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
      */
     private static final String CONTENT_DESCRIPTION = "the content to cache.";
 
+    /**
+     * The identifier of the cache and event listener used to follow the dependencies of the cached contents.
+     */
+    private static final String DEPENDENCIES_NAME = "cacheMacro.dependencies";
+
+    /**
+     * Events invalidating the cached contents depending on a document (a content can depend on a document which does
+     * not exist yet).
+     */
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Used to discard the cached contents depending on a modified document.
+     *
+     * @version $Id$
+     */
+    private class DependencyListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return DEPENDENCIES_NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            removeAll(((DocumentModelBridge) source).getDocumentReference());
+        }
+    }
+
+    /**
+     * Used to discard the cached contents depending on a document when the dependencies of this document are evicted
+     * from the cache, since they could not be discarded anymore when the document is modified.
+     *
+     * @version $Id$
+     */
+    private class DependencyEvictionListener implements CacheEntryListener<Collection<Pair<CacheKey, String>>>
+    {
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<Collection<Pair<CacheKey, String>>> event)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<Collection<Pair<CacheKey, String>>> event)
+        {
+            removeContents(event.getEntry().getValue());
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<Collection<Pair<CacheKey, String>>> event)
+        {
+            // Nothing to do
+        }
+    }
+
     /**
      * Used to create the macro content cache.
      */
@@ -83,12 +169,42 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
     @Named("plain/1.0")
     private BlockRenderer plainTextBlockRenderer;
 
+    /**
+     * Used to get the current user when the content is cached per user.
+     */
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
+    /**
+     * Used to resolve the dependencies relatively to the current document.
+     */
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> currentDocumentReferenceResolver;
+
+    /**
+     * Used to serialize the user and the dependencies in the cache keys.
+     */
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    /**
+     * Used to listen to the modifications of the dependencies.
+     */
+    @Inject
+    private ObservationManager observationManager;
+
     /**
      * Map of all caches. There's one cache per timeToLive/maxEntry combination since currently we cannot set these
      * configuration values at the cache entry level but only for the whole cache.
      */
     private Map<CacheKey, Cache<List<Block>>> contentCacheMap = new ConcurrentHashMap<>();
 
+    /**
+     * The cache used to follow the cached contents depending on the same document.
+     */
+    private Cache<Collection<Pair<CacheKey, String>>> dependencyCache;
+
     /**
      * Create and initialize the descriptor of the macro.
      */
@@ -98,6 +214,21 @@ public CacheMacro()
         setDefaultCategory(DEFAULT_CATEGORY_DEVELOPMENT);
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.dependencyCache =
+                this.cacheManager.createNewLocalCache(new LRUCacheConfiguration(DEPENDENCIES_NAME, 10000));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the cache macro dependencies cache", e);
+        }
+
+        this.dependencyCache.addCacheEntryListener(new DependencyEvictionListener());
+
+        this.observationManager.addListener(new DependencyListener());
+    }
+
     @Override
     public boolean supportsInlineMode()
     {
@@ -122,6 +253,9 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             cacheKey = content;
         }
 
+        List<DocumentReference> dependencies = getDependencies(parameters);
+        cacheKey = getKey(cacheKey, parameters.getScope(), dependencies);
+
         Cache<List<Block>> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
         List<Block> result = contentCache.get(cacheKey);
         if (result == null) {
@@ -130,11 +264,122 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             // the XDOM resulting from the execution of Macros because that's where lengthy processing happens.
             result = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
             contentCache.set(cacheKey, result);
+
+            CacheKey contentCacheKey = new CacheKey(parameters.getTimeToLive(), parameters.getMaxEntries());
+            for (DocumentReference dependency : dependencies) {
+                addDependency(dependency, contentCacheKey, cacheKey);
+            }
         }
 
         return result;
     }
 
+    /**
+     * @param parameters the parameters of the macro
+     * @return the documents the cached content depends on
+     */
+    private List<DocumentReference> getDependencies(CacheMacroParameters parameters)
+    {
+        List<DocumentReference> dependencies = new ArrayList<>();
+        for (String dependency : StringUtils.split(StringUtils.defaultString(parameters.getDependencies()), ',')) {
+            if (StringUtils.isNotBlank(dependency)) {
+                dependencies.add(this.currentDocumentReferenceResolver.resolve(dependency.trim()));
+            }
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * @param id the identifier of the content (the content itself when no id is provided)
+     * @param scope who shares the cached content
+     * @param dependencies the documents the cached content depends on
+     * @return the key of the content in the cache
+     */
+    private String getKey(String id, CacheMacroParameters.Scope scope, List<DocumentReference> dependencies)
+    {
+        // Escape each element so that different elements can't produce the same key (and a content cached for a user
+        // can't be obtained by another one)
+        StringBuilder key = new StringBuilder();
+        if (scope == CacheMacroParameters.Scope.USER) {
+            DocumentReference userReference = this.documentAccessBridge.getCurrentUserReference();
+            key.append('u').append(escape(userReference != null ? this.serializer.serialize(userReference) : ""));
+        } else {
+            key.append('g');
+        }
+        key.append(':');
+        for (DocumentReference dependency : dependencies) {
+            key.append(escape(this.serializer.serialize(dependency))).append(':');
+        }
+        key.append(escape(id));
+
+        return key.toString();
+    }
+
+    /**
+     * @param str the element of the key to escape
+     * @return the escaped key element
+     */
+    private String escape(String str)
+    {
+        return str.replace("\\", "\\\\").replace(":", "\\:");
+    }
+
+    /**
+     * Remember that a cached content should be discarded when the passed document is modified.
+     *
+     * @param dependency the document the cached content depends on
+     * @param contentCacheKey the key of the cache containing the content
+     * @param key the key of the content in the cache
+     */
+    private void addDependency(DocumentReference dependency, CacheKey contentCacheKey, String key)
+    {
+        String dependencyString = this.serializer.serialize(dependency);
+
+        synchronized (this.dependencyCache) {
+            Collection<Pair<CacheKey, String>> keys = this.dependencyCache.get(dependencyString);
+            if (keys == null) {
+                keys = ConcurrentHashMap.newKeySet();
+                this.dependencyCache.set(dependencyString, keys);
+            }
+
+            keys.add(new ImmutablePair<>(contentCacheKey, key));
+        }
+    }
+
+    /**
+     * Discard the cached contents depending on the passed document.
+     *
+     * @param documentReference the reference of the modified document
+     */
+    private void removeAll(DocumentReference documentReference)
+    {
+        String documentReferenceString = this.serializer.serialize(documentReference);
+
+        Collection<Pair<CacheKey, String>> keys;
+        synchronized (this.dependencyCache) {
+            keys = this.dependencyCache.get(documentReferenceString);
+            this.dependencyCache.remove(documentReferenceString);
+        }
+
+        removeContents(keys);
+    }
+
+    /**
+     * @param keys the keys of the cached contents to discard
+     */
+    private void removeContents(Collection<Pair<CacheKey, String>> keys)
+    {
+        if (keys != null) {
+            for (Pair<CacheKey, String> key : keys) {
+                Cache<List<Block>> contentCache = this.contentCacheMap.get(key.getLeft());
+                if (contentCache != null) {
+                    contentCache.remove(key.getRight());
+                }
+            }
+        }
+    }
+
     /**
      * Get a cache matching the passed time to live and max entries.
      * <p>
@@ -20,6 +20,7 @@
 package org.xwiki.rendering.macro.cache;
 
 import org.xwiki.properties.annotation.PropertyDescription;
+import org.xwiki.stability.Unstable;
 
 /**
  * Parameters for the Cache macro.
@@ -29,6 +30,26 @@
  */
 public class CacheMacroParameters
 {
+    /**
+     * Defines who shares the cached content.
+     *
+     * @version $Id$
+     * @since 9.12RC1
+     */
+    @Unstable
+    public enum Scope
+    {
+        /**
+         * The cached content is the same for all users.
+         */
+        GLOBAL,
+
+        /**
+         * Each user has its own cached content, for content depending on the current user or on its rights.
+         */
+        USER
+    }
+
     /**
      * @see #getId()
      */
@@ -44,6 +65,16 @@
      */
     private int maxEntries = 1000;
 
+    /**
+     * @see #getDependencies()
+     */
+    private String dependencies;
+
+    /**
+     * @see #getScope()
+     */
+    private Scope scope = Scope.GLOBAL;
+
     /**
      * @return the optional unique id to use to cache the content. If not defined then use the content itself as the id
      *         but this doesn't guarantee unicity since the same content could be located on several pages with
@@ -97,4 +128,48 @@ public void setMaxEntries(int maxEntries)
     {
         this.maxEntries = maxEntries;
     }
+
+    /**
+     * @return the comma separated references of the documents the cached content depends on, the cached content being
+     *         discarded when one of these documents is modified or deleted
+     * @since 9.12RC1
+     */
+    @Unstable
+    public String getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * @param dependencies refer to {@link #getDependencies()}
+     * @since 9.12RC1
+     */
+    @Unstable
+    @PropertyDescription("the comma separated references of the documents whose modification discards the cached "
+        + "content")
+    public void setDependencies(String dependencies)
+    {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @return who shares the cached content
+     * @since 9.12RC1
+     */
+    @Unstable
+    public Scope getScope()
+    {
+        return this.scope;
+    }
+
+    /**
+     * @param scope refer to {@link #getScope()}
+     * @since 9.12RC1
+     */
+    @Unstable
+    @PropertyDescription("who shares the cached content: all the users (global) or only the current user (user)")
+    public void setScope(Scope scope)
+    {
+        this.scope = scope;
+    }
 }
@@ -22,7 +22,13 @@
 import java.io.StringWriter;
 import java.util.List;
 
+import org.jmock.Expectations;
 import org.junit.Test;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
 import org.xwiki.rendering.macro.Macro;
@@ -215,6 +221,92 @@ public void executeWithDifferentMaxEntries() throws Exception
         assertFalse(result2.equals(result1));
     }
 
+    @Test
+    public void executeWithDependencyWhenDependencyIsModified() throws Exception
+    {
+        final DocumentReference dependency = new DocumentReference("wiki", "Space", "Page");
+        final DocumentModelBridge dependencyDocument = getMockery().mock(DocumentModelBridge.class);
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockSetup.documentReferenceResolver).resolve("Space.Page");
+            will(returnValue(dependency));
+            allowing(dependencyDocument).getDocumentReference();
+            will(returnValue(dependency));
+        }});
+
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        params.setId("id");
+        params.setDependencies("Space.Page");
+        List<Block> result1 = this.cacheMacro.execute(params, "content1", context);
+
+        // The content is cached as long as the dependency is not modified
+        List<Block> result2 = this.cacheMacro.execute(params, "content2", context);
+        assertEquals(result1, result2);
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(dependency), dependencyDocument, null);
+
+        List<Block> result3 = this.cacheMacro.execute(params, "content3", context);
+        assertFalse(result3.equals(result1));
+    }
+
+    @Test
+    public void executeWithDependencyWhenDependencyIsCreated() throws Exception
+    {
+        final DocumentReference dependency = new DocumentReference("wiki", "Space", "NewPage");
+        final DocumentModelBridge dependencyDocument = getMockery().mock(DocumentModelBridge.class);
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockSetup.documentReferenceResolver).resolve("Space.NewPage");
+            will(returnValue(dependency));
+            allowing(dependencyDocument).getDocumentReference();
+            will(returnValue(dependency));
+        }});
+
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        params.setId("id");
+        params.setDependencies("Space.NewPage");
+        List<Block> result1 = this.cacheMacro.execute(params, "content1", context);
+
+        // The content can depend on the existence of the dependency
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentCreatedEvent(dependency), dependencyDocument, null);
+
+        List<Block> result2 = this.cacheMacro.execute(params, "content2", context);
+        assertFalse(result2.equals(result1));
+    }
+
+    @Test
+    public void executeWithUserScope() throws Exception
+    {
+        final DocumentReference user1 = new DocumentReference("wiki", "XWiki", "User1");
+        final DocumentReference user2 = new DocumentReference("wiki", "XWiki", "User2");
+        getMockery().checking(new Expectations()
+        {{
+            exactly(2).of(mockSetup.bridge).getCurrentUserReference();
+            will(returnValue(user1));
+            oneOf(mockSetup.bridge).getCurrentUserReference();
+            will(returnValue(user2));
+        }});
+
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        params.setId("id");
+        params.setScope(CacheMacroParameters.Scope.USER);
+        List<Block> result1 = this.cacheMacro.execute(params, "content1", context);
+
+        // Same user: the cached content is returned
+        assertEquals(result1, this.cacheMacro.execute(params, "content2", context));
+
+        // Another user: the content is not shared
+        assertFalse(result1.equals(this.cacheMacro.execute(params, "content3", context)));
+    }
+
     private MacroTransformationContext createMacroTransformationContext() throws Exception
     {
         MacroTransformation macroTransformation = getComponentManager().getInstance(Transformation.class, "macro");
@@ -19,14 +19,28 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -41,13 +55,17 @@
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.environment.Environment;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
+import org.xwiki.search.solr.internal.api.SolrIndexerStatistics;
 import org.xwiki.search.solr.internal.api.SolrInstance;
 import org.xwiki.search.solr.internal.job.IndexerJob;
 import org.xwiki.search.solr.internal.job.IndexerRequest;
@@ -63,6 +81,13 @@
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
  * processes the queue.
+ * <p>
+ * The extraction of the metadata of the entities to index can be distributed on several extractor threads (see
+ * {@link SolrConfiguration#getIndexerExtractorThreads()}) but the resulting documents are always sent to the Solr
+ * instance by the index thread in the order the operations were queued.
+ * <p>
+ * The queued operations are recorded in a {@link SolrIndexerJournal} until they are committed so that they are not lost
+ * when XWiki is stopped before the end of the indexing.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -97,6 +122,20 @@ public class DefaultSolrIndexer implements SolrIndexer, Initializable, Disposabl
          */
         public IndexOperation operation;
 
+        /**
+         * The identifier of the journaled operation which is fully queued, for {@link IndexOperation#CHECKPOINT}.
+         */
+        public long journalId;
+
+        /**
+         * @param journalId the identifier of the journaled operation which is fully queued
+         */
+        public IndexQueueEntry(long journalId)
+        {
+            this.journalId = journalId;
+            this.operation = IndexOperation.CHECKPOINT;
+        }
+
         /**
          * @param indexReference the reference of the entity to index.
          * @param operation the indexing operation to perform.
@@ -132,6 +171,9 @@ public String toString()
                 case STOP:
                     str = "STOP";
                     break;
+                case CHECKPOINT:
+                    str = "CHECKPOINT " + this.journalId;
+                    break;
                 default:
                     str = "";
                     break;
@@ -163,16 +205,86 @@ public String toString()
          */
         public IndexOperation operation;
 
+        /**
+         * The identifier of the operation in the journal, 0 if it's not journaled.
+         */
+        public long journalId;
+
         /**
          * @param reference the reference of the entity to index.
          * @param recurse also apply operation to reference children.
          * @param operation the indexing operation to perform.
+         * @param journalId the identifier of the operation in the journal, 0 if it's not journaled
          */
-        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation)
+        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation,
+            long journalId)
         {
             this.reference = reference;
             this.recurse = recurse;
             this.operation = operation;
+            this.journalId = journalId;
+        }
+    }
+
+    /**
+     * An index operation for which the Solr document is being extracted.
+     * 
+     * @version $Id$
+     */
+    private static class PendingIndexEntry
+    {
+        /**
+         * The index queue entry.
+         */
+        public final IndexQueueEntry entry;
+
+        /**
+         * The extracted Solr document, {@code null} for a {@link IndexOperation#CHECKPOINT}.
+         */
+        public final Future<LengthSolrInputDocument> document;
+
+        /**
+         * @param entry the index queue entry
+         * @param document the extracted Solr document
+         */
+        PendingIndexEntry(IndexQueueEntry entry, Future<LengthSolrInputDocument> document)
+        {
+            this.entry = entry;
+            this.document = document;
+        }
+    }
+
+    /**
+     * Extract the Solr document of an entity.
+     * 
+     * @version $Id$
+     */
+    private class Extractor implements Callable<LengthSolrInputDocument>
+    {
+        private final EntityReference reference;
+
+        /**
+         * @param reference the reference of the entity to index
+         */
+        Extractor(EntityReference reference)
+        {
+            this.reference = reference;
+        }
+
+        @Override
+        public LengthSolrInputDocument call() throws Exception
+        {
+            long start = System.nanoTime();
+
+            try {
+                ecim.initialize(new ExecutionContext());
+
+                return getSolrDocument(this.reference);
+            } finally {
+                execution.removeContext();
+
+                statistics.onExtracted(System.nanoTime() - start);
+            }
         }
     }
 
@@ -215,6 +327,7 @@ public void runInternal()
 
                         for (EntityReference reference : references) {
                             indexQueue.put(new IndexQueueEntry(reference, queueEntry.operation));
+                            statistics.onResolved(1);
                         }
                     } else {
                         if (queueEntry.recurse) {
@@ -228,6 +341,16 @@ public void runInternal()
                     logger.warn("Failed to apply operation [{}] on root reference [{}]", queueEntry.operation,
                         queueEntry.reference, e);
                 }
+
+                if (queueEntry.journalId > 0) {
+                    // Remove the operation from the journal once everything queued before the checkpoint is committed
+                    try {
+                        indexQueue.put(new IndexQueueEntry(queueEntry.journalId));
+                    } catch (InterruptedException e) {
+                        logger.warn("The SOLR resolve thread has been interrupted", e);
+                        Thread.currentThread().interrupt();
+                    }
+                }
             }
 
             logger.debug("Stop SOLR resolver thread");
@@ -238,7 +361,7 @@ public void runInternal()
      * Stop resolver thread.
      */
     private static final ResolveQueueEntry RESOLVE_QUEUE_ENTRY_STOP =
-        new ResolveQueueEntry(null, false, IndexOperation.STOP);
+        new ResolveQueueEntry(null, false, IndexOperation.STOP, 0);
 
     /**
      * Stop indexer thread.
@@ -285,6 +408,33 @@ public void runInternal()
     @Inject
     private JobExecutor jobs;
 
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("explicit")
+    private EntityReferenceResolver<String> resolver;
+
+    /**
+     * The journal of the queued operations, {@code null} if disabled.
+     */
+    private SolrIndexerJournal journal;
+
+    /**
+     * The journaled operations which are fully sent to the Solr instance and will be removed from the journal with the
+     * next commit.
+     */
+    private final List<Long> journalIdsToCommit = new ArrayList<>();
+
+    /**
+     * {@code true} when a commit failed since the last journaled operation fully sent to the Solr instance, in which
+     * case this operation is kept in the journal to be replayed at next startup.
+     */
+    private boolean commitFailed;
+
     /**
      * The queue of index operation to perform.
      */
@@ -305,6 +455,16 @@ public void runInternal()
      */
     private Thread resolveThread;
 
+    /**
+     * The threads extracting the Solr documents, {@code null} when the extraction is done by the index thread.
+     */
+    private ExecutorService extractorPool;
+
+    /**
+     * The maximum number of operations being extracted in advance by the extractor threads.
+     */
+    private int maxPendingSize;
+
     /**
      * Indicate of the component has been disposed.
      */
@@ -315,6 +475,13 @@ public void runInternal()
      */
     private volatile int batchSize;
 
+    /**
+     * The number of operations taken from the index queue but not yet sent.
+     */
+    private volatile int pendingSize;
+
+    private final SolrIndexerStatistics statistics = new SolrIndexerStatistics();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -322,6 +489,21 @@ public void initialize() throws InitializationException
         this.resolveQueue = new LinkedBlockingQueue<>();
         this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
 
+        // Replay the operations which were not committed before the last stop
+        if (this.configuration.isIndexerJournalEnabled()) {
+            openJournal();
+        }
+
+        // Create the extractor threads
+        int extractorThreads = this.configuration.getIndexerExtractorThreads();
+        if (extractorThreads > 1) {
+            BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                .namingPattern("XWiki Solr extractor thread %d").daemon(true).priority(Thread.NORM_PRIORITY - 1).build();
+            this.extractorPool = Executors.newFixedThreadPool(extractorThreads, factory);
+            // Extract a bit in advance so that the extractor threads don't wait for the index thread
+            this.maxPendingSize = extractorThreads * 2;
+        }
+
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
         this.resolveThread.setName("XWiki Solr resolve thread");
@@ -337,6 +519,31 @@ public void initialize() throws InitializationException
         this.indexThread.setPriority(Thread.NORM_PRIORITY - 1);
     }
 
+    private void openJournal()
+    {
+        File file = new File(this.environment.getPermanentDirectory(), "solr-indexer/queue.journal");
+        SolrIndexerJournal newJournal = new SolrIndexerJournal(file, this.serializer, this.resolver, this.logger);
+
+        try {
+            for (SolrIndexerJournal.Entry entry : newJournal.open()) {
+                this.resolveQueue.add(new ResolveQueueEntry(entry.getReference(), entry.isRecurse(),
+                    entry.getOperation(), entry.getId()));
+            }
+
+            this.journal = newJournal;
+
+            if (!this.resolveQueue.isEmpty()) {
+                this.logger.info("Replaying [{}] Solr indexing operations which were not committed",
+                    this.resolveQueue.size());
+            }
+        } catch (IOException e) {
+            this.logger.error("Failed to open the Solr indexer journal [{}], the queued operations won't be journaled",
+                file, e);
+
+            newJournal.close();
+        }
+    }
+
     @Override
     public void dispose() throws ComponentLifecycleException
     {
@@ -379,6 +586,15 @@ public void run()
             }
         }
 
+        if (this.extractorPool != null) {
+            this.extractorPool.shutdownNow();
+        }
+
+        // The operations which were not committed remain in the journal
+        if (this.journal != null) {
+            this.journal.close();
+        }
+
         this.logger.debug("Stop SOLR indexer thread");
     }
 
@@ -391,58 +607,197 @@ public void run()
      */
     private boolean processBatch(IndexQueueEntry queueEntry)
     {
+        // Write the operations queued since the previous batch
+        if (this.journal != null) {
+            this.journal.write();
+        }
+
         SolrInstance solrInstance = this.solrInstanceProvider.get();
 
+        Deque<PendingIndexEntry> pending = new ArrayDeque<>();
         int length = 0;
 
         for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = this.indexQueue.poll()) {
             if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
                 // Discard the current batch and stop the indexing thread.
+                dropPending(pending);
+
                 return false;
             }
 
-            IndexOperation operation = batchEntry.operation;
+            if (IndexOperation.INDEX.equals(batchEntry.operation)
+                || IndexOperation.CHECKPOINT.equals(batchEntry.operation)) {
+                // A checkpoint is kept with the pending operations to not wait for the extraction of the previous ones
+                pending.add(new PendingIndexEntry(batchEntry,
+                    IndexOperation.INDEX.equals(batchEntry.operation) ? extract(batchEntry.reference) : null));
+                this.pendingSize = pending.size();
+
+                // Send the documents which are not needed anymore to keep the extractor threads busy
+                length = sendPending(pending, this.maxPendingSize, solrInstance, length);
+            } else {
+                // Operations have to be applied in the order they were queued
+                length = sendPending(pending, 0, solrInstance, length);
+
+                if (IndexOperation.DELETE.equals(batchEntry.operation)) {
+                    delete(batchEntry, solrInstance);
+                    length = commitIfNeeded(length);
+                }
+            }
+        }
 
-            // For the current contiguous operations queue, group the changes
-            try {
-                this.ecim.initialize(new ExecutionContext());
-
-                if (IndexOperation.INDEX.equals(operation)) {
-                    LengthSolrInputDocument solrDocument = getSolrDocument(batchEntry.reference);
-                    if (solrDocument != null) {
-                        solrInstance.add(solrDocument);
-                        length += solrDocument.getLength();
-                        ++this.batchSize;
-                    }
-                } else if (IndexOperation.DELETE.equals(operation)) {
-                    if (batchEntry.reference == null) {
-                        solrInstance.deleteByQuery(batchEntry.deleteQuery);
-                    } else {
-                        solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
-                    }
+        // Send what's left
+        sendPending(pending, 0, solrInstance, length);
+
+        // Commit what's left
+        if (this.batchSize > 0) {
+            commit();
+        } else {
+            removeCommittedFromJournal();
+        }
 
+        return true;
+    }
+
+    /**
+     * @param reference the reference of the entity to index
+     * @return the Solr document of the entity, extracted by the extractor threads if any, or directly otherwise
+     */
+    private Future<LengthSolrInputDocument> extract(EntityReference reference)
+    {
+        Extractor extractor = new Extractor(reference);
+
+        if (this.extractorPool != null) {
+            return this.extractorPool.submit(extractor);
+        }
+
+        FutureTask<LengthSolrInputDocument> task = new FutureTask<>(extractor);
+        task.run();
+
+        return task;
+    }
+
+    /**
+     * Send to the Solr instance the oldest pending documents until there is no more than the provided number of
+     * pending documents.
+     * 
+     * @param pending the pending documents
+     * @param maxSize the number of pending documents to keep
+     * @param solrInstance the Solr instance
+     * @param length the current length of the batch
+     * @return the new length of the batch
+     */
+    private int sendPending(Deque<PendingIndexEntry> pending, int maxSize, SolrInstance solrInstance, int length)
+    {
+        int currentLength = length;
+
+        while (pending.size() > maxSize) {
+            PendingIndexEntry pendingEntry = pending.poll();
+            this.pendingSize = pending.size();
+
+            if (pendingEntry.document == null) {
+                if (this.commitFailed) {
+                    // Part of the operation might have been rolled back
+                    this.commitFailed = false;
+                } else {
+                    this.journalIdsToCommit.add(pendingEntry.entry.journalId);
+                }
+
+                continue;
+            }
+
+            try {
+                LengthSolrInputDocument solrDocument = pendingEntry.document.get();
+                if (solrDocument != null) {
+                    solrInstance.add(solrDocument);
+                    currentLength += solrDocument.getLength();
                     ++this.batchSize;
                 }
+            } catch (InterruptedException e) {
+                this.statistics.onFailed();
+                this.logger.warn("Interrupted while waiting for the extraction of entry [{}]", pendingEntry.entry);
+
+                // Let the index thread stop
+                Thread.currentThread().interrupt();
+                dropPending(pending);
+            } catch (ExecutionException e) {
+                this.statistics.onFailed();
+                this.logger.error("Failed to process entry [{}]", pendingEntry.entry, e.getCause());
             } catch (Throwable e) {
-                this.logger.error("Failed to process entry [{}]", batchEntry, e);
-            } finally {
-                this.execution.removeContext();
+                this.statistics.onFailed();
+                this.logger.error("Failed to process entry [{}]", pendingEntry.entry, e);
             }
 
-            // Commit the index changes so that they become available to queries. This is a costly operation and that is
-            // the reason why we perform it at the end of the batch.
-            if (shouldCommit(length, this.batchSize)) {
-                commit();
-                length = 0;
+            currentLength = commitIfNeeded(currentLength);
+        }
+
+        return currentLength;
+    }
+
+    /**
+     * Cancel the extraction of the pending documents which won't be sent to the Solr instance.
+     * 
+     * @param pending the pending documents
+     */
+    private void dropPending(Deque<PendingIndexEntry> pending)
+    {
+        int dropped = 0;
+        for (PendingIndexEntry pendingEntry : pending) {
+            if (pendingEntry.document != null) {
+                pendingEntry.document.cancel(true);
+                this.logger.debug("Dropped entry [{}]", pendingEntry.entry);
+                ++dropped;
             }
         }
 
-        // Commit what's left
-        if (this.batchSize > 0) {
+        if (dropped > 0) {
+            this.logger.warn("[{}] entries have been dropped from the Solr index queue", dropped);
+        }
+
+        pending.clear();
+        this.pendingSize = 0;
+    }
+
+    /**
+     * @param batchEntry the delete operation
+     * @param solrInstance the Solr instance
+     */
+    private void delete(IndexQueueEntry batchEntry, SolrInstance solrInstance)
+    {
+        try {
+            this.ecim.initialize(new ExecutionContext());
+
+            if (batchEntry.reference == null) {
+                solrInstance.deleteByQuery(batchEntry.deleteQuery);
+            } else {
+                solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
+            }
+
+            ++this.batchSize;
+            this.statistics.onDeleted();
+        } catch (Throwable e) {
+            this.statistics.onFailed();
+            this.logger.error("Failed to process entry [{}]", batchEntry, e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    /**
+     * Commit the index changes so that they become available to queries. This is a costly operation and that is the
+     * reason why we perform it only when the batch is big enough.
+     * 
+     * @param length the current length of the batch
+     * @return the new length of the batch
+     */
+    private int commitIfNeeded(int length)
+    {
+        if (shouldCommit(length, this.batchSize)) {
             commit();
+
+            return 0;
         }
 
-        return true;
+        return length;
     }
 
     /**
@@ -454,6 +809,10 @@ private void commit()
 
         try {
             solrInstance.commit();
+
+            this.statistics.onCommitted(this.batchSize);
+
+            removeCommittedFromJournal();
         } catch (Exception e) {
             this.logger.error("Failed to commit index changes to the Solr server. Rolling back.", e);
 
@@ -463,11 +822,32 @@ private void commit()
                 // Just log the failure.
                 this.logger.error("Failed to rollback index changes.", ex);
             }
+
+            // Keep the operations in the journal so that they are replayed at next startup
+            if (this.journal != null) {
+                this.commitFailed = true;
+                if (!this.journalIdsToCommit.isEmpty()) {
+                    this.logger.warn("[{}] indexing operations will be replayed at next startup",
+                        this.journalIdsToCommit.size());
+                    this.journalIdsToCommit.clear();
+                }
+            }
         }
 
         this.batchSize = 0;
     }
 
+    /**
+     * Remove from the journal the operations which have been committed.
+     */
+    private void removeCommittedFromJournal()
+    {
+        if (!this.journalIdsToCommit.isEmpty()) {
+            this.journal.done(this.journalIdsToCommit);
+            this.journalIdsToCommit.clear();
+        }
+    }
+
     /**
      * Check various constraints to know if the batch should be committed.
      * 
@@ -545,9 +925,11 @@ public void delete(EntityReference reference, boolean recurse)
     private void addToQueue(EntityReference reference, boolean recurse, IndexOperation operation)
     {
         if (!this.disposed) {
+            long journalId = this.journal != null ? this.journal.add(reference, recurse, operation) : 0;
+
             // Don't block because the capacity of the resolver queue is not limited.
             try {
-                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation));
+                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation, journalId));
             } catch (InterruptedException e) {
                 this.logger.error("Failed to add reference [{}] to Solr indexing queue", reference, e);
             }
@@ -557,7 +939,13 @@ private void addToQueue(EntityReference reference, boolean recurse, IndexOperati
     @Override
     public int getQueueSize()
     {
-        return this.indexQueue.size() + this.resolveQueue.size() + this.batchSize;
+        return this.indexQueue.size() + this.resolveQueue.size() + this.pendingSize + this.batchSize;
+    }
+
+    @Override
+    public SolrIndexerStatistics getStatistics()
+    {
+        return this.statistics;
     }
 
     @Override
@@ -42,5 +42,12 @@
     /**
      * Stop indexing thread.
      */
-    STOP
+    STOP,
+
+    /**
+     * Mark the end of the operations resolved from a journaled entry.
+     * 
+     * @since 9.12RC1
+     */
+    CHECKPOINT
 }
@@ -0,0 +1,433 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Append-only journal of the operations queued in {@link DefaultSolrIndexer} so that the operations which were not yet
+ * committed to the Solr instance when XWiki stopped can be replayed at startup.
+ * <p>
+ * Two kinds of records are appended to the journal file: the queued operations and the identifiers of the operations
+ * which have been committed. The file is compacted (rewritten with only the pending operations) when it gets too big
+ * and at startup, where an operation is also dropped when a more recent operation targets the same reference.
+ * <p>
+ * Adding an operation doesn't write anything to the disk: the added operations are written in batches by
+ * {@link #write()} (and {@link #done(Collection)}), which is expected to be called by the index thread.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class SolrIndexerJournal
+{
+    /**
+     * A pending operation.
+     *
+     * @version $Id$
+     */
+    public static class Entry
+    {
+        private final long id;
+
+        private final EntityReference reference;
+
+        private final boolean recurse;
+
+        private final IndexOperation operation;
+
+        /**
+         * @param id the identifier of the operation in the journal
+         * @param reference the reference of the entity
+         * @param recurse also apply operation to reference children
+         * @param operation the operation
+         */
+        public Entry(long id, EntityReference reference, boolean recurse, IndexOperation operation)
+        {
+            this.id = id;
+            this.reference = reference;
+            this.recurse = recurse;
+            this.operation = operation;
+        }
+
+        /**
+         * @return the identifier of the operation in the journal
+         */
+        public long getId()
+        {
+            return this.id;
+        }
+
+        /**
+         * @return the reference of the entity
+         */
+        public EntityReference getReference()
+        {
+            return this.reference;
+        }
+
+        /**
+         * @return true if the operation should also be applied to reference children
+         */
+        public boolean isRecurse()
+        {
+            return this.recurse;
+        }
+
+        /**
+         * @return the operation
+         */
+        public IndexOperation getOperation()
+        {
+            return this.operation;
+        }
+
+        /**
+         * @return an object identifying the entities targeted by this operation
+         */
+        Target getTarget()
+        {
+            return new Target(this.reference, this.recurse);
+        }
+    }
+
+    /**
+     * Key identifying the set of entities targeted by an operation.
+     *
+     * @version $Id$
+     */
+    private static final class Target
+    {
+        private final EntityReference reference;
+
+        private final boolean recurse;
+
+        Target(EntityReference reference, boolean recurse)
+        {
+            this.reference = reference;
+            this.recurse = recurse;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.reference, this.recurse);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof Target) {
+                Target other = (Target) obj;
+
+                return this.recurse == other.recurse && Objects.equals(this.reference, other.reference);
+            }
+
+            return false;
+        }
+    }
+
+    private static final byte RECORD_ADD = 1;
+
+    private static final byte RECORD_DONE = 2;
+
+    private static final String NULL_TYPE = "";
+
+    /**
+     * The minimum size of the file before trying to compact it.
+     */
+    private static final long COMPACT_THRESHOLD = 10L * 1024 * 1024;
+
+    private final File file;
+
+    private final EntityReferenceSerializer<String> serializer;
+
+    private final EntityReferenceResolver<String> resolver;
+
+    private final Logger logger;
+
+    /**
+     * The operations not yet committed, in the order they were added.
+     */
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+
+    /**
+     * The added operations not yet written to the file, in the order they were added.
+     */
+    private final Map<Long, Entry> unwritten = new LinkedHashMap<>();
+
+    private DataOutputStream output;
+
+    private long nextId = 1;
+
+    /**
+     * The size of the file above which it should be compacted.
+     */
+    private long compactSize = COMPACT_THRESHOLD;
+
+    private long size;
+
+    /**
+     * @param file the journal file
+     * @param serializer used to store the references
+     * @param resolver used to read the stored references
+     * @param logger the logger
+     */
+    public SolrIndexerJournal(File file, EntityReferenceSerializer<String> serializer,
+        EntityReferenceResolver<String> resolver, Logger logger)
+    {
+        this.file = file;
+        this.serializer = serializer;
+        this.resolver = resolver;
+        this.logger = logger;
+    }
+
+    /**
+     * Read the existing journal (if any), compact it and open it for writing.
+     *
+     * @return the operations which were not committed, to replay
+     * @throws IOException when failing to read or write the journal
+     */
+    public synchronized List<Entry> open() throws IOException
+    {
+        if (this.file.exists()) {
+            read();
+        }
+
+        // Only keep the most recent operation on the same set of entities since it overwrites the previous ones
+        Map<Target, Entry> latest = new HashMap<>();
+        for (Entry entry : this.pending.values()) {
+            latest.put(entry.getTarget(), entry);
+        }
+        this.pending.values().removeIf(entry -> latest.get(entry.getTarget()) != entry);
+
+        compact();
+
+        return new ArrayList<>(this.pending.values());
+    }
+
+    private void read() throws IOException
+    {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+        try {
+            while (true) {
+                byte type = input.readByte();
+                long id = input.readLong();
+
+                if (type == RECORD_ADD) {
+                    IndexOperation operation = IndexOperation.values()[input.readByte()];
+                    boolean recurse = input.readBoolean();
+                    EntityReference reference = readReference(input);
+                    this.pending.put(id, new Entry(id, reference, recurse, operation));
+                } else {
+                    this.pending.remove(id);
+                }
+
+                this.nextId = Math.max(this.nextId, id + 1);
+            }
+        } catch (EOFException e) {
+            // End of the journal (possibly a record partially written before a crash)
+        } catch (Exception e) {
+            this.logger.warn("Failed to read the Solr indexer journal [{}], ignoring the rest of it", this.file, e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private EntityReference readReference(DataInputStream input) throws IOException
+    {
+        String type = input.readUTF();
+        String reference = input.readUTF();
+
+        if (NULL_TYPE.equals(type)) {
+            return null;
+        }
+
+        return this.resolver.resolve(reference, EntityType.valueOf(type));
+    }
+
+    private void writeReference(EntityReference reference) throws IOException
+    {
+        if (reference == null) {
+            this.output.writeUTF(NULL_TYPE);
+            this.output.writeUTF(NULL_TYPE);
+        } else {
+            this.output.writeUTF(reference.getType().name());
+            this.output.writeUTF(this.serializer.serialize(reference));
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the pending operations.
+     */
+    private void compact() throws IOException
+    {
+        IOUtils.closeQuietly(this.output);
+        this.unwritten.clear();
+
+        File tmpFile = new File(this.file.getPath() + ".tmp");
+        tmpFile.getParentFile().mkdirs();
+
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        this.size = 0;
+        for (Entry entry : this.pending.values()) {
+            writeAdd(entry);
+        }
+        this.output.close();
+
+        Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)));
+
+        // Don't compact again before the file doubled
+        this.compactSize = Math.max(COMPACT_THRESHOLD, this.size * 2);
+    }
+
+    private void writeAdd(Entry entry) throws IOException
+    {
+        int before = this.output.size();
+
+        this.output.writeByte(RECORD_ADD);
+        this.output.writeLong(entry.getId());
+        this.output.writeByte(entry.getOperation().ordinal());
+        this.output.writeBoolean(entry.isRecurse());
+        writeReference(entry.getReference());
+
+        this.size += this.output.size() - before;
+    }
+
+    /**
+     * @param reference the reference of the entity
+     * @param recurse also apply operation to reference children
+     * @param operation the operation
+     * @return the identifier of the operation in the journal, 0 if it could not be recorded
+     */
+    public synchronized long add(EntityReference reference, boolean recurse, IndexOperation operation)
+    {
+        if (this.output == null) {
+            return 0;
+        }
+
+        Entry entry = new Entry(this.nextId++, reference, recurse, operation);
+        this.pending.put(entry.getId(), entry);
+        this.unwritten.put(entry.getId(), entry);
+
+        return entry.getId();
+    }
+
+    /**
+     * Write to the file the operations added since the last call.
+     */
+    public synchronized void write()
+    {
+        if (this.output == null || this.unwritten.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeUnwritten();
+            this.output.flush();
+        } catch (IOException e) {
+            this.logger.error("Failed to write [{}] operations to the Solr indexer journal", this.unwritten.size(), e);
+        }
+    }
+
+    private void writeUnwritten() throws IOException
+    {
+        for (Iterator<Entry> it = this.unwritten.values().iterator(); it.hasNext();) {
+            writeAdd(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * @param ids the identifiers of the operations which have been committed
+     */
+    public synchronized void done(Collection<Long> ids)
+    {
+        if (this.output == null) {
+            return;
+        }
+
+        try {
+            // The operations which were never written don't need to be marked as done
+            for (Long id : ids) {
+                if (this.unwritten.remove(id) != null) {
+                    this.pending.remove(id);
+                }
+            }
+            writeUnwritten();
+
+            int before = this.output.size();
+            for (Long id : ids) {
+                if (this.pending.remove(id) != null) {
+                    this.output.writeByte(RECORD_DONE);
+                    this.output.writeLong(id);
+                }
+            }
+            this.output.flush();
+            this.size += this.output.size() - before;
+
+            if (this.size > this.compactSize) {
+                compact();
+            }
+        } catch (IOException e) {
+            this.logger.error("Failed to update the Solr indexer journal", e);
+        }
+    }
+
+    /**
+     * Close the journal, the pending operations remain in the file to be replayed at next startup.
+     */
+    public synchronized void close()
+    {
+        write();
+
+        IOUtils.closeQuietly(this.output);
+
+        this.output = null;
+    }
+}
@@ -73,6 +73,19 @@
      */
     int getIndexerQueueCapacity();
 
+    /**
+     * @return the number of threads extracting in parallel the metadata of the entities to index
+     * @since 9.12RC1
+     */
+    int getIndexerExtractorThreads();
+
+    /**
+     * @return true if the indexing operations should be journaled on disk until they are committed, in order to replay
+     *         them after a restart
+     * @since 9.12RC1
+     */
+    boolean isIndexerJournalEnabled();
+
     /**
      * @return true if a full synchronization job between the database and SOLR index should be run when XWiki starts
      * @since 6.1M2
@@ -60,6 +60,12 @@
      */
     int getQueueSize();
 
+    /**
+     * @return the counters of the different stages of the indexing pipeline
+     * @since 9.12RC1
+     */
+    SolrIndexerStatistics getStatistics();
+
     /**
      * Start an indexing with specific criteria.
      * 
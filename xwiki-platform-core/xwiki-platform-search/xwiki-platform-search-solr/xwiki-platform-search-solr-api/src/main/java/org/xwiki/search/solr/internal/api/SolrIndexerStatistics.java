@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the different stages of the indexing pipeline (resolve, extract, commit) since the indexer started.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class SolrIndexerStatistics
+{
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong resolved = new AtomicLong();
+
+    private final AtomicLong extracted = new AtomicLong();
+
+    private final AtomicLong extractionTime = new AtomicLong();
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private final AtomicLong committed = new AtomicLong();
+
+    private final AtomicLong commits = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param count the number of references produced by the resolver
+     */
+    public void onResolved(long count)
+    {
+        this.resolved.addAndGet(count);
+    }
+
+    /**
+     * @param nanoseconds the time spent extracting the metadata of one entity
+     */
+    public void onExtracted(long nanoseconds)
+    {
+        this.extracted.incrementAndGet();
+        this.extractionTime.addAndGet(nanoseconds);
+    }
+
+    /**
+     * An entity (or a set of entities matching a query) has been deleted from the index.
+     */
+    public void onDeleted()
+    {
+        this.deleted.incrementAndGet();
+    }
+
+    /**
+     * @param size the number of operations sent in the committed batch
+     */
+    public void onCommitted(int size)
+    {
+        this.commits.incrementAndGet();
+        this.committed.addAndGet(size);
+    }
+
+    /**
+     * An operation failed.
+     */
+    public void onFailed()
+    {
+        this.failed.incrementAndGet();
+    }
+
+    /**
+     * @return the number of references produced by the resolver and pushed to the index queue
+     */
+    public long getResolvedCount()
+    {
+        return this.resolved.get();
+    }
+
+    /**
+     * @return the number of entities for which metadata have been extracted
+     */
+    public long getExtractedCount()
+    {
+        return this.extracted.get();
+    }
+
+    /**
+     * @return the average time in milliseconds spent extracting the metadata of one entity
+     */
+    public double getAverageExtractionTime()
+    {
+        long count = this.extracted.get();
+
+        return count > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(this.extractionTime.get()) / count / 1000 : 0;
+    }
+
+    /**
+     * @return the number of delete operations sent to the Solr instance
+     */
+    public long getDeletedCount()
+    {
+        return this.deleted.get();
+    }
+
+    /**
+     * @return the number of operations committed to the Solr instance
+     */
+    public long getCommittedCount()
+    {
+        return this.committed.get();
+    }
+
+    /**
+     * @return the number of commits sent to the Solr instance
+     */
+    public long getCommitCount()
+    {
+        return this.commits.get();
+    }
+
+    /**
+     * @return the number of operations which failed
+     */
+    public long getFailedCount()
+    {
+        return this.failed.get();
+    }
+
+    /**
+     * @return the average number of operations committed per second since the indexer started
+     */
+    public double getCommitThroughput()
+    {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.startTime);
+
+        return seconds > 0 ? (double) this.committed.get() / seconds : this.committed.get();
+    }
+}
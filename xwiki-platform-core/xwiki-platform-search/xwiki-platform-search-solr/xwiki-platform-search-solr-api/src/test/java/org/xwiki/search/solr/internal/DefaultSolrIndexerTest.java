@@ -20,13 +20,27 @@
 package org.xwiki.search.solr.internal;
 
 import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import javax.inject.Provider;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.api.SolrIndexerStatistics;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
+import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
+import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.XWiki;
@@ -34,9 +48,16 @@
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
 import com.xpn.xwiki.web.Utils;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -57,6 +78,26 @@
 
     private SolrConfiguration mockConfig;
 
+    private SolrInstance solrInstance = mock(SolrInstance.class);
+
+    private SolrMetadataExtractor extractor;
+
+    private SolrReferenceResolver solrReferenceResolver;
+
+    private CountDownLatch extractionLatch = new CountDownLatch(1);
+
+    private DocumentReference document1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private DocumentReference document2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private DocumentReference document3 = new DocumentReference("wiki", "Space", "Page3");
+
+    private LengthSolrInputDocument solrDocument1 = new LengthSolrInputDocument();
+
+    private LengthSolrInputDocument solrDocument2 = new LengthSolrInputDocument();
+
+    private LengthSolrInputDocument solrDocument3 = new LengthSolrInputDocument();
+
     @Before
     public void configure() throws Exception
     {
@@ -78,6 +119,43 @@ public void configure() throws Exception
         this.mockConfig = this.mocker.getInstance(SolrConfiguration.class);
         when(this.mockConfig.getInstanceConfiguration(eq(EmbeddedSolrInstance.TYPE), eq("home"), any()))
             .thenReturn(url.getPath());
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(2);
+        when(this.mockConfig.getIndexerBatchMaxLengh()).thenReturn(10000);
+        when(this.mockConfig.getIndexerQueueCapacity()).thenReturn(100);
+
+        Provider<SolrInstance> solrInstanceProvider =
+            this.mocker.getInstance(new DefaultParameterizedType(null, Provider.class, SolrInstance.class));
+        when(solrInstanceProvider.get()).thenReturn(this.solrInstance);
+
+        this.solrReferenceResolver = this.mocker.getInstance(SolrReferenceResolver.class);
+        when(this.solrReferenceResolver.getId(this.document2)).thenReturn("id2");
+
+        this.solrDocument1.setField("id", "id1");
+        this.solrDocument2.setField("id", "id2");
+        this.solrDocument3.setField("id", "id3");
+
+        // The extraction of the first document is blocked until the other operations are queued
+        this.extractor = this.mocker.registerMockComponent(SolrMetadataExtractor.class, "document");
+        when(this.extractor.getSolrDocument(this.document1)).thenAnswer(invocation -> {
+            this.extractionLatch.await();
+            return this.solrDocument1;
+        });
+        when(this.extractor.getSolrDocument(this.document2)).thenReturn(this.solrDocument2);
+        when(this.extractor.getSolrDocument(this.document3)).thenReturn(this.solrDocument3);
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && !condition.getAsBoolean(); ++i) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private void dispose(SolrIndexer indexer) throws ComponentLifecycleException
+    {
+        ((Disposable) indexer).dispose();
     }
 
     @Test
@@ -91,4 +169,84 @@ public void testIndexEmptyWiki() throws Exception
 
         // index.index(wikiReference);
     }
+
+    @Test
+    public void indexInBatches() throws Exception
+    {
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        SolrIndexerStatistics statistics = indexer.getStatistics();
+
+        indexer.index(this.document1, false);
+        indexer.index(this.document2, false);
+        indexer.index(this.document3, false);
+
+        waitFor(() -> statistics.getResolvedCount() == 3);
+        this.extractionLatch.countDown();
+        waitFor(() -> statistics.getCommittedCount() == 3);
+
+        verify(this.solrInstance).add(this.solrDocument1);
+        verify(this.solrInstance).add(this.solrDocument2);
+        verify(this.solrInstance).add(this.solrDocument3);
+        // One commit for the full batch and one for what's left
+        verify(this.solrInstance, times(2)).commit();
+
+        assertEquals(3, statistics.getExtractedCount());
+        assertEquals(2, statistics.getCommitCount());
+        assertEquals(0, statistics.getFailedCount());
+        waitFor(() -> indexer.getQueueSize() == 0);
+
+        dispose(indexer);
+    }
+
+    @Test
+    public void sendExtractedDocumentsBeforeDelete() throws Exception
+    {
+        when(this.mockConfig.getIndexerExtractorThreads()).thenReturn(2);
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(100);
+
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        SolrIndexerStatistics statistics = indexer.getStatistics();
+
+        indexer.index(this.document1, false);
+        indexer.delete(this.document2, false);
+        indexer.index(this.document3, false);
+
+        waitFor(() -> statistics.getResolvedCount() == 2);
+        this.extractionLatch.countDown();
+        waitFor(() -> statistics.getCommittedCount() == 3);
+
+        InOrder inOrder = inOrder(this.solrInstance);
+        inOrder.verify(this.solrInstance).add(this.solrDocument1);
+        inOrder.verify(this.solrInstance).delete("id2");
+        inOrder.verify(this.solrInstance).add(this.solrDocument3);
+        inOrder.verify(this.solrInstance).commit();
+
+        assertEquals(1, statistics.getDeletedCount());
+
+        dispose(indexer);
+    }
+
+    @Test
+    public void disposeDropsQueuedOperations() throws Exception
+    {
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        SolrIndexerStatistics statistics = indexer.getStatistics();
+
+        indexer.index(this.document1, false);
+        indexer.index(this.document2, false);
+
+        waitFor(() -> statistics.getResolvedCount() == 2);
+        dispose(indexer);
+        this.extractionLatch.countDown();
+
+        verify(this.solrInstance, timeout(10000)).add(this.solrDocument1);
+
+        // Operations added after the dispose are ignored
+        indexer.index(this.document3, false);
+
+        verify(this.extractor, never()).getSolrDocument(this.document2);
+        verify(this.extractor, never()).getSolrDocument(this.document3);
+        verify(this.solrInstance, never()).add(this.solrDocument2);
+        verify(this.solrInstance, never()).commit();
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SolrIndexerJournal}.
+ *
+ * @version $Id$
+ */
+public class SolrIndexerJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EntityReferenceSerializer<String> serializer = mock(EntityReferenceSerializer.class);
+
+    private EntityReferenceResolver<String> resolver = mock(EntityReferenceResolver.class);
+
+    private DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+
+    private WikiReference wikiReference = new WikiReference("wiki");
+
+    private File file;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.file = new File(this.folder.getRoot(), "queue.journal");
+
+        when(this.serializer.serialize(this.documentReference)).thenReturn("wiki:Space.Page");
+        when(this.resolver.resolve("wiki:Space.Page", EntityType.DOCUMENT)).thenReturn(this.documentReference);
+        when(this.serializer.serialize(this.wikiReference)).thenReturn("wiki");
+        when(this.resolver.resolve("wiki", EntityType.WIKI)).thenReturn(this.wikiReference);
+    }
+
+    private SolrIndexerJournal newJournal()
+    {
+        return new SolrIndexerJournal(this.file, this.serializer, this.resolver, mock(Logger.class));
+    }
+
+    @Test
+    public void replayNotCommittedOperations() throws Exception
+    {
+        SolrIndexerJournal journal = newJournal();
+        assertTrue(journal.open().isEmpty());
+
+        long id1 = journal.add(this.documentReference, false, IndexOperation.INDEX);
+        long id2 = journal.add(this.wikiReference, true, IndexOperation.INDEX);
+        long id3 = journal.add(null, true, IndexOperation.DELETE);
+        journal.done(Arrays.asList(id2));
+        journal.close();
+
+        List<SolrIndexerJournal.Entry> entries = newJournal().open();
+
+        assertEquals(2, entries.size());
+        assertEquals(id1, entries.get(0).getId());
+        assertEquals(this.documentReference, entries.get(0).getReference());
+        assertFalse(entries.get(0).isRecurse());
+        assertSame(IndexOperation.INDEX, entries.get(0).getOperation());
+        assertEquals(id3, entries.get(1).getId());
+        assertNull(entries.get(1).getReference());
+        assertTrue(entries.get(1).isRecurse());
+        assertSame(IndexOperation.DELETE, entries.get(1).getOperation());
+    }
+
+    @Test
+    public void compactSupersededOperations() throws Exception
+    {
+        SolrIndexerJournal journal = newJournal();
+        journal.open();
+
+        journal.add(this.documentReference, false, IndexOperation.INDEX);
+        long id2 = journal.add(this.wikiReference, true, IndexOperation.INDEX);
+        long id3 = journal.add(this.documentReference, false, IndexOperation.DELETE);
+        journal.close();
+
+        journal = newJournal();
+        List<SolrIndexerJournal.Entry> entries = journal.open();
+
+        assertEquals(2, entries.size());
+        assertEquals(id2, entries.get(0).getId());
+        assertEquals(id3, entries.get(1).getId());
+
+        // New identifiers don't conflict with the replayed ones
+        long id4 = journal.add(this.wikiReference, false, IndexOperation.INDEX);
+        assertTrue(id4 > id3);
+
+        journal.done(Arrays.asList(id2, id3, id4));
+        journal.close();
+
+        assertEquals(Collections.emptyList(), newJournal().open());
+    }
+
+    @Test
+    public void writeAddedOperationsInBatch() throws Exception
+    {
+        SolrIndexerJournal journal = newJournal();
+        journal.open();
+        long emptySize = this.file.length();
+
+        journal.add(this.documentReference, false, IndexOperation.INDEX);
+        journal.add(this.wikiReference, true, IndexOperation.INDEX);
+
+        assertEquals(emptySize, this.file.length());
+
+        journal.write();
+
+        assertTrue(this.file.length() > emptySize);
+
+        journal.close();
+
+        assertEquals(2, newJournal().open().size());
+    }
+
+    @Test
+    public void doneBeforeWrite() throws Exception
+    {
+        SolrIndexerJournal journal = newJournal();
+        journal.open();
+
+        long id1 = journal.add(this.documentReference, false, IndexOperation.INDEX);
+        long id2 = journal.add(this.wikiReference, true, IndexOperation.INDEX);
+        journal.done(Arrays.asList(id1));
+        journal.close();
+
+        List<SolrIndexerJournal.Entry> entries = newJournal().open();
+
+        assertEquals(1, entries.size());
+        assertEquals(id2, entries.get(0).getId());
+    }
+
+    @Test
+    public void addWhenClosed()
+    {
+        assertEquals(0, newJournal().add(this.documentReference, false, IndexOperation.INDEX));
+    }
+}
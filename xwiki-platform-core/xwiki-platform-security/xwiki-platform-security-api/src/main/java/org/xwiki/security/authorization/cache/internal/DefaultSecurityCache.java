@@ -26,8 +26,8 @@
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -54,6 +54,14 @@
 
 /**
  * Default implementation of the security cache.
+ * <p>
+ * Reads are lock-free: the underlying cache is thread safe and the parent links of an entry are never modified once
+ * published (they are replaced by a new collection instead), so readers never wait for a writer. Insertions and
+ * invalidations, which need to maintain the parent/child links consistently, are serialized by a single write lock.
+ * An entry being invalidated is marked as disposed before its children are removed, which is not atomic: a reader
+ * could still reach a disposed parent through a child which is not removed yet. So a counter is incremented when an
+ * invalidation starts and when it ends, and a read which overlapped an invalidation is done again under the write
+ * lock. A reader thus either sees the state before the invalidation or after it.
  *
  * @version $Id$
  * @since 4.0M2 
@@ -72,14 +80,8 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
     @Inject
     private Logger logger;
 
-    /** Fair read-write lock used for fair scheduling of cache access. */
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
-
-    /** Fair read lock. */
-    private final Lock readLock = readWriteLock.readLock();
-
-    /** Fair write lock. */
-    private final Lock writeLock = readWriteLock.writeLock();
+    /** Lock serializing the modifications of the cache, reads don't need it. */
+    private final Lock writeLock = new ReentrantLock();
 
     /** The keys in the cache are generated from instances of {@link org.xwiki.model.reference.EntityReference}. */
     @Inject
@@ -94,6 +96,15 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
 
     /** The new entry being added */
     private SecurityCacheEntry newEntry;
+
+    /**
+     * Incremented when an invalidation starts and when it ends (so it's odd while entries are being disposed), to know
+     * if a lock-free read might have seen a partially invalidated cache.
+     */
+    private volatile long invalidations;
+
+    /** The depth of the current (cascading) invalidation, only modified with the write lock. */
+    private int invalidationDepth;
    
     /**
      * @return a new configured security cache
@@ -129,12 +140,13 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * The cached security entry.
          */
-        private SecurityEntry entry;
+        private volatile SecurityEntry entry;
 
         /**
-         * Parents of this cached entry.
+         * Parents of this cached entry. The collection is never modified once this entry has been published in the
+         * cache, it's replaced instead, so that it can be safely iterated without lock.
          */
-        private Collection<SecurityCacheEntry> parents;
+        private volatile Collection<SecurityCacheEntry> parents;
 
         /**
          * Children of this cached entry.
@@ -144,7 +156,7 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * True if this entry has been removed.
          */
-        private boolean disposed;
+        private volatile boolean disposed;
 
         /**
          * Create a new cache entry for a security rule, linking it to its parent.
@@ -262,16 +274,17 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
             this.entry = entry;
             int parentSize = groups.size() + ((parentReference == null) ? 0 : 1);
             if (parentSize > 0) {
-                this.parents = new ArrayList<SecurityCacheEntry>(parentSize);
+                Collection<SecurityCacheEntry> newParents = new ArrayList<SecurityCacheEntry>(parentSize);
                 if (parentReference != null) {
                     SecurityCacheEntry parent = DefaultSecurityCache.this.getEntry(parentReference);
                     if (parent == null) {
                         throw new ParentEntryEvictedException();
                     }
-                    this.parents.add(parent);
+                    newParents.add(parent);
                     parent.addChild(this);
                 }
-                addParentGroups(groups, parentReference);
+                addParentGroups(newParents, groups, parentReference);
+                this.parents = newParents;
                 logNewEntry();
             } else {
                 this.parents = null;
@@ -282,12 +295,14 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
         /**
          * Add provided groups as parent of this entry, excluding the main parent reference.
          *
+         * @param newParents the collection of parents being built, not yet published.
          * @param groups the list of groups to add.
          * @param parentReference the main parent reference to exclude.
          * @throws ParentEntryEvictedException if the parents required are no more available in the cache.
          */
-        private void addParentGroups(Collection<GroupSecurityReference> groups,
-            SecurityReference parentReference) throws ParentEntryEvictedException
+        private void addParentGroups(Collection<SecurityCacheEntry> newParents,
+            Collection<GroupSecurityReference> groups, SecurityReference parentReference)
+            throws ParentEntryEvictedException
         {
             for (GroupSecurityReference group : groups) {
                 if (group.equals(parentReference)) {
@@ -300,7 +315,7 @@ private void addParentGroups(Collection<GroupSecurityReference> groups,
                 if (parent == null) {
                     throw new ParentEntryEvictedException();
                 }
-                this.parents.add(parent);
+                newParents.add(parent);
                 parent.addChild(this);
             }
         }
@@ -319,15 +334,18 @@ boolean updateParentGroups(Collection<GroupSecurityReference> groups)
             }
 
             if (groups != null && !groups.isEmpty()) {
+                // Build the new parents before publishing them since they could be read concurrently
+                Collection<SecurityCacheEntry> newParents;
                 if (this.parents == null) {
-                    this.parents = new ArrayList<SecurityCacheEntry>(groups.size());
-                    addParentGroups(groups, null);
+                    newParents = new ArrayList<SecurityCacheEntry>(groups.size());
+                    addParentGroups(newParents, groups, null);
                 } else {
                     SecurityCacheEntry parent = this.parents.iterator().next();
-                    this.parents = new ArrayList<SecurityCacheEntry>(groups.size() + 1);
-                    this.parents.add(parent);
-                    addParentGroups(groups, parent.entry.getReference());
+                    newParents = new ArrayList<SecurityCacheEntry>(groups.size() + 1);
+                    newParents.add(parent);
+                    addParentGroups(newParents, groups, parent.entry.getReference());
                 }
+                this.parents = newParents;
             }
 
             return true;
@@ -377,16 +395,21 @@ String getKey()
 
         /**
          * Dispose this entry from the cache, removing all children relation in its parents, and removing
-         * all its children recursively. This method is not thread safe in regards to the cache, proper
-         * locking should be done externally.
+         * all its children recursively. This method is not thread safe in regards to the cache, the write
+         * lock should be held by the caller.
          */
         @Override
         public void dispose()
         {
             if (!disposed) {
-                disposed = true;
-                disconnectFromParents();
-                disposeChildren();
+                startInvalidation();
+                try {
+                    disposed = true;
+                    disconnectFromParents();
+                    disposeChildren();
+                } finally {
+                    endInvalidation();
+                }
             }
         }
 
@@ -539,12 +562,7 @@ private String getEntryKey(SecurityAccessEntry entry)
      */
     private SecurityCacheEntry getEntry(SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(reference));
-        } finally {
-            readLock.unlock();
-        }
+        return getLiveEntry(getEntryKey(reference));
     }
 
     /**
@@ -555,12 +573,7 @@ private SecurityCacheEntry getEntry(SecurityReference reference)
      */
     private SecurityCacheEntry getEntry(UserSecurityReference userReference, SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(userReference, reference));
-        } finally {
-            readLock.unlock();
-        }
+        return getLiveEntry(getEntryKey(userReference, reference));
     }
 
     /**
@@ -571,14 +584,62 @@ private SecurityCacheEntry getEntry(UserSecurityReference userReference, Securit
      */
     private SecurityCacheEntry getShadowEntry(SecurityReference userReference, SecurityReference wiki)
     {
-        readLock.lock();
+        return getLiveEntry(getShadowEntryKey(userReference, wiki));
+    }
+
+    private void startInvalidation()
+    {
+        if (this.invalidationDepth++ == 0) {
+            ++this.invalidations;
+        }
+    }
+
+    private void endInvalidation()
+    {
+        if (--this.invalidationDepth == 0) {
+            ++this.invalidations;
+        }
+    }
+
+    /**
+     * Execute a lock-free read, and execute it again with the write lock if an invalidation was in progress or happened
+     * in the meantime, since it might have reached entries which are being disposed.
+     *
+     * @param reader the read to execute
+     * @param <T> the type of the result
+     * @return the result of the read
+     */
+    private <T> T read(Supplier<T> reader)
+    {
+        long stamp = this.invalidations;
+        if ((stamp & 1) == 0) {
+            T result = reader.get();
+            if (stamp == this.invalidations) {
+                return result;
+            }
+        }
+
+        // Wait for the end of the invalidation
+        writeLock.lock();
         try {
-            return cache.get(getShadowEntryKey(userReference, wiki));
+            return reader.get();
         } finally {
-            readLock.unlock();
+            writeLock.unlock();
         }
     }
 
+    /**
+     * @param key the key of the entry
+     * @return the cache entry corresponding to the given key, null if none is available in the cache or if it is being
+     *         disposed
+     */
+    private SecurityCacheEntry getLiveEntry(String key)
+    {
+        SecurityCacheEntry entry = cache.get(key);
+
+        return (entry != null && !entry.disposed) ? entry : null;
+    }
+
     /**
      * @param key the key of the cache slot to check.
      * @param entry the entry to compare to.
@@ -773,7 +834,7 @@ SecurityEntry get(String entryKey) {
     @Override
     public SecurityAccessEntry get(UserSecurityReference user, SecurityReference entity)
     {
-        SecurityCacheEntry entry = getEntry(user, entity);
+        SecurityCacheEntry entry = read(() -> getEntry(user, entity));
         if (entry == null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Miss read access entry for [{}].", getEntryKey(user, entity));
@@ -789,7 +850,7 @@ public SecurityAccessEntry get(UserSecurityReference user, SecurityReference ent
     @Override
     public SecurityRuleEntry get(SecurityReference entity)
     {
-        SecurityCacheEntry entry = getEntry(entity);
+        SecurityCacheEntry entry = read(() -> getEntry(entity));
         if (entry == null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Miss read rule entry for [{}].", getEntryKey(entity));
@@ -838,6 +899,11 @@ public void remove(SecurityReference entity)
 
     @Override
     public Collection<GroupSecurityReference> getImmediateGroupsFor(UserSecurityReference user)
+    {
+        return read(() -> getImmediateGroupsForInternal(user));
+    }
+
+    private Collection<GroupSecurityReference> getImmediateGroupsForInternal(UserSecurityReference user)
     {
         Collection<GroupSecurityReference> groups = new HashSet<>();
 
@@ -860,6 +926,12 @@ public Collection<GroupSecurityReference> getImmediateGroupsFor(UserSecurityRefe
 
     @Override
     public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference user, SecurityReference entityWiki)
+    {
+        return read(() -> getGroupsForInternal(user, entityWiki));
+    }
+
+    private Collection<GroupSecurityReference> getGroupsForInternal(UserSecurityReference user,
+        SecurityReference entityWiki)
     {
         Collection<GroupSecurityReference> groups = new HashSet<>();
         
@@ -878,7 +950,10 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         // Special case if the user is a shadow.
         if (entityWiki != null) {
             // We start with the parents of the original entry, and the parent of this shadow (excluding the original)
-            addParentsWhenEntryIsShadow(userEntry, user, groups, entriesToExplore);
+            if (!addParentsWhenEntryIsShadow(userEntry, user, groups, entriesToExplore)) {
+                // The original entry has been invalidated in the meantime
+                return null;
+            }
         } else {
             // We start with the current user
             entriesToExplore.add(userEntry);
@@ -906,16 +981,21 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         return groups;
     }
     
-    private void addParentsWhenEntryIsShadow(SecurityCacheEntry shadow, UserSecurityReference user,
+    private boolean addParentsWhenEntryIsShadow(SecurityCacheEntry shadow, UserSecurityReference user,
             Collection<GroupSecurityReference> groups,
             Deque<SecurityCacheEntry> entriesToExplore)
     {
         SecurityCacheEntry originalEntry = getEntry(user);
+        if (originalEntry == null) {
+            return false;
+        }
 
         // We add the parents of the original (but not the original, otherwise we could have the same group twice)
         addParentsToTheListOfEntriesToExplore(originalEntry.parents, groups, entriesToExplore);
         // And we add the parent groups of the shadow
         addParentsToTheListOfEntriesToExplore(shadow.parents, groups, entriesToExplore, originalEntry);
+
+        return true;
     }
 
     /**
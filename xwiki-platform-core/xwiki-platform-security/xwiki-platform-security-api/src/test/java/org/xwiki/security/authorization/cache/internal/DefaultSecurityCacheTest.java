@@ -26,6 +26,13 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -59,6 +66,7 @@
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
@@ -809,4 +817,44 @@ public boolean keepAccess(SecurityAccessEntry entry) {
             }
         });
     }
+
+    @Test
+    public void testGetGroupsDuringInvalidation() throws Exception
+    {
+        InsertUsers();
+
+        assertThat(securityCache.getGroupsFor(groupUserRef, null).contains(groupRef), is(true));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger removals = new AtomicInteger();
+            AtomicReference<Future<Collection<GroupSecurityReference>>> read = new AtomicReference<>();
+            boolean[] readDuringInvalidation = new boolean[1];
+
+            cache.setBeforeRemove(key -> {
+                // The first removal is the group itself, the next ones are the cascade to its children: read the
+                // groups of a member from another thread while the group is disposed but the member is not yet
+                if (removals.incrementAndGet() == 2) {
+                    read.set(executor.submit(() -> securityCache.getGroupsFor(groupUserRef, null)));
+                    try {
+                        read.get().get(100, TimeUnit.MILLISECONDS);
+                        readDuringInvalidation[0] = true;
+                    } catch (TimeoutException e) {
+                        // Expected, the read waits for the end of the invalidation
+                    } catch (Exception e) {
+                        readDuringInvalidation[0] = true;
+                    }
+                }
+            });
+
+            securityCache.remove(groupRef);
+            cache.setBeforeRemove(null);
+
+            assertFalse("The groups were read from a partially invalidated cache", readDuringInvalidation[0]);
+            // The member has been invalidated with the group
+            assertThat(read.get().get(), is(nullValue()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -37,6 +37,7 @@
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
@@ -49,6 +50,8 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.invalidation.CacheInvalidationEvent;
+import com.xpn.xwiki.internal.user.GroupMembershipIndex;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.user.api.XWikiGroupService;
 
@@ -64,7 +67,7 @@
 public class DefaultSecurityCacheRulesInvalidatorListener implements EventListener
 {
     private static final List<Event> EVENTS = Arrays.<Event> asList(new DocumentCreatedEvent(),
-        new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent(), new CacheInvalidationEvent());
 
     /**
      * Fair read-write lock to suspend the delivery of cache updates while there are loads in progress.
@@ -102,6 +105,10 @@ public class DefaultSecurityCacheRulesInvalidatorListener implements EventListen
     @Inject
     private Provider<XWikiContext> xcontextProvider;
 
+    /** The index of the group members, used to reload the invalidated entries. */
+    @Inject
+    private GroupMembershipIndex groupMembershipIndex;
+
     @Override
     public String getName()
     {
@@ -181,10 +188,42 @@ public void invalidateGroupMembers(DocumentReference group, SecurityCache securi
 
     @Override
     public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof CacheInvalidationEvent) {
+            // The document events are enough to invalidate the documents, only the missed invalidations matter here
+            EntityReference reference = ((CacheInvalidationEvent) event).getReference();
+            if (reference.getType() == EntityType.WIKI) {
+                invalidateWiki(new WikiReference(reference));
+            }
+        } else {
+            onDocumentEvent(source);
+        }
+    }
+
+    /**
+     * Drop from the cache everything related to a wiki for which some invalidations have been missed.
+     *
+     * @param wiki the wiki to invalidate
+     */
+    private void invalidateWiki(WikiReference wiki)
+    {
+        readWriteLock.writeLock().lock();
+        try {
+            securityCache.remove(securityReferenceFactory.newEntityReference(wiki));
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void onDocumentEvent(Object source)
     {
         DocumentReference ref = getDocumentReference(source);
         readWriteLock.writeLock().lock();
         try {
+            // Make sure the groups index is up to date before the invalidated entries can be loaded again, whatever
+            // the order in which the listeners are called (updating the index twice with the same members is harmless)
+            groupMembershipIndex.update((XWikiDocument) source);
+
             deliverUpdateEvent(ref);
             if (isGroupDocument(source)) {
                 // When a group receive a new member, the update event is triggered and the above invalidate the group
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.security.authorization.internal;
+
+import java.util.Collections;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.EventListener;
+import org.xwiki.security.SecurityReference;
+import org.xwiki.security.SecurityReferenceFactory;
+import org.xwiki.security.authorization.cache.SecurityCache;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.user.GroupMembershipIndex;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.user.api.XWikiGroupService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultSecurityCacheRulesInvalidatorListener}.
+ *
+ * @version $Id$
+ */
+public class DefaultSecurityCacheRulesInvalidatorListenerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<>(DefaultSecurityCacheRulesInvalidatorListener.class);
+
+    private DocumentReference groupReference = new DocumentReference("wiki", "XWiki", "group");
+
+    private SecurityReference groupSecurityReference = mock(SecurityReference.class);
+
+    private XWikiDocument groupDocument;
+
+    @Before
+    public void before() throws Exception
+    {
+        ReadWriteLock lock = this.mocker.getInstance(ReadWriteLock.class, DefaultSecurityCacheRulesInvalidator.NAME);
+        when(lock.writeLock()).thenReturn(new ReentrantReadWriteLock().writeLock());
+
+        DocumentReference groupClassReference = new DocumentReference("wiki", "XWiki", "XWikiGroups");
+        DocumentReferenceResolver<String> resolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(resolver.resolve(eq("XWiki.XWikiGroups"), any())).thenReturn(groupClassReference);
+
+        this.groupDocument = mock(XWikiDocument.class);
+        when(this.groupDocument.getDocumentReference()).thenReturn(this.groupReference);
+        when(this.groupDocument.getXObjects(groupClassReference))
+            .thenReturn(Collections.singletonList(mock(BaseObject.class)));
+
+        SecurityReferenceFactory securityReferenceFactory = this.mocker.getInstance(SecurityReferenceFactory.class);
+        when(securityReferenceFactory.newEntityReference(this.groupReference)).thenReturn(this.groupSecurityReference);
+
+        XWikiContext xcontext = mock(XWikiContext.class);
+        XWiki xwiki = mock(XWiki.class);
+        XWikiGroupService groupService = mock(XWikiGroupService.class);
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+        when(xwiki.getGroupService(xcontext)).thenReturn(groupService);
+        when(groupService.getAllMembersNamesForGroup(anyString(), anyInt(), anyInt(), eq(xcontext)))
+            .thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void onGroupUpdated() throws Exception
+    {
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.groupReference), this.groupDocument,
+            null);
+
+        // The members of the group are up to date before the invalidated entries can be loaded again by a rights
+        // check, whatever the order in which the listeners are called
+        GroupMembershipIndex index = this.mocker.getInstance(GroupMembershipIndex.class);
+        SecurityCache securityCache = this.mocker.getInstance(SecurityCache.class);
+        InOrder inOrder = inOrder(index, securityCache);
+        inOrder.verify(index).update(this.groupDocument);
+        inOrder.verify(securityCache).remove(this.groupSecurityReference);
+    }
+}
@@ -23,10 +23,13 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -45,6 +48,7 @@
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.skinx.internal.SkinExtensionBundleStore;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -52,6 +56,10 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.sx.Extension;
+import com.xpn.xwiki.web.sx.JsExtension;
+import com.xpn.xwiki.web.sx.SxDocumentSource;
+import com.xpn.xwiki.web.sx.SxSource.CachePolicy;
 
 /**
  * Abstract SX plugin for wiki-document-based extensions (Extensions written as object of a XWiki Extension class).
@@ -70,11 +78,30 @@ public abstract class AbstractDocumentSkinExtensionPlugin extends AbstractSkinEx
      */
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractDocumentSkinExtensionPlugin.class);
 
+    /**
+     * The name of the preference (in the configuration file) specifying if the static extensions used in a page should
+     * be combined in a single bundle.
+     *
+     * @since 9.12RC1
+     */
+    public static final String AGGREGATE_PARAM = "xwiki.plugins.skinx.aggregate";
+
     /**
      * The name of the field that indicates whether an extension should always be used, or only when explicitly pulled.
      */
     private static final String USE_FIELDNAME = "use";
 
+    /**
+     * Matches the beginning of the URLs which are absolute, relative to the root of the server, or a fragment.
+     */
+    private static final String NON_RELATIVE_CSS_URL = "[a-z][a-z0-9+.\\-]*:|/|#";
+
+    /**
+     * Matches the relative URLs used in a style sheet, either quoted (groups 1 and 2) or not (group 3).
+     */
+    private static final Pattern RELATIVE_CSS_URL = Pattern.compile("url\\(\\s*(?:(['\"])(?!" + NON_RELATIVE_CSS_URL
+        + ")([^'\"]+)\\1|(?!['\"]|" + NON_RELATIVE_CSS_URL + ")([^\\)\\s]+))\\s*\\)", Pattern.CASE_INSENSITIVE);
+
     /**
      * A Map with wiki/database name as keys and sets of extensions to use always for this wiki as values.
      */
@@ -124,6 +151,27 @@ public List<Event> getEvents()
      */
     protected abstract String getExtensionName();
 
+    /**
+     * @return the type of extension handled by this plugin, or null if the extensions of this plugin can't be combined
+     *         in bundles
+     * @since 9.12RC1
+     */
+    protected Extension getExtensionType()
+    {
+        return null;
+    }
+
+    /**
+     * @param url the URL of a bundle of extensions
+     * @param context the current request context
+     * @return the linking element to the bundle that should be printed in the generated HTML
+     * @since 9.12RC1
+     */
+    protected String getBundleLink(String url, XWikiContext context)
+    {
+        return "";
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -284,6 +332,158 @@ public String endParsing(String content, XWikiContext context)
         return super.endParsing(content, context);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When enabled in the configuration, the extensions whose content doesn't depend on the context (i.e. not parsed
+     * with Velocity or LESS, and used without parameters) are combined in a single bundle, imported in place of the
+     * first of them. This way a page needs a single request for most of its extensions.
+     * </p>
+     */
+    @Override
+    protected String getImportString(Set<String> extensions, XWikiContext context)
+    {
+        if (getExtensionType() == null || !"1".equals(context.getWiki().Param(AGGREGATE_PARAM, "0"))) {
+            return super.getImportString(extensions, context);
+        }
+
+        StringBuilder result = new StringBuilder();
+        int bundlePosition = -1;
+        List<String> bundledNames = new ArrayList<>();
+        List<XWikiDocument> bundledDocuments = new ArrayList<>();
+        for (String documentName : extensions) {
+            XWikiDocument document = getStaticExtensionDocument(documentName, context);
+            if (document != null) {
+                if (bundlePosition < 0) {
+                    bundlePosition = result.length();
+                }
+                bundledNames.add(documentName);
+                bundledDocuments.add(document);
+            } else {
+                result.append(getLink(documentName, context));
+            }
+        }
+
+        if (!bundledDocuments.isEmpty()) {
+            String bundleURL = bundledDocuments.size() > 1 ? getBundleURL(bundledDocuments, context) : null;
+            if (bundleURL != null) {
+                result.insert(bundlePosition, getBundleLink(bundleURL, context));
+            } else {
+                result.insert(bundlePosition, super.getImportString(new LinkedHashSet<>(bundledNames), context));
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * @param documentName the name of a used extension
+     * @param context the current request context
+     * @return the document of the extension if it can be put in a bundle, null otherwise
+     */
+    private XWikiDocument getStaticExtensionDocument(String documentName, XWikiContext context)
+    {
+        if (!getParametersForResource(documentName, context).isEmpty()) {
+            return null;
+        }
+
+        DocumentReference documentReference = getCurrentDocumentReferenceResolver().resolve(documentName);
+        if (!isAccessible(documentReference, context)) {
+            return null;
+        }
+
+        try {
+            XWikiDocument document = context.getWiki().getDocument(documentReference, context);
+            SxDocumentSource source = new SxDocumentSource(document, context, getExtensionType());
+            if (!document.isNew() && source.isStatic() && source.getCachePolicy() != CachePolicy.FORBID) {
+                return document;
+            }
+        } catch (XWikiException e) {
+            LOGGER.error("Failed to load document [{}].", documentReference, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param documents the documents of the extensions to combine
+     * @param context the current request context
+     * @return the URL of the bundle combining the extensions, or null if it can't be created
+     */
+    private String getBundleURL(List<XWikiDocument> documents, XWikiContext context)
+    {
+        EntityReferenceSerializer<String> serializer = getDefaultEntityReferenceSerializer();
+
+        // The bundle needs to be generated again only when one of the extensions is modified
+        StringBuilder descriptor = new StringBuilder(getExtensionClassName());
+        for (XWikiDocument document : documents) {
+            descriptor.append('|').append(serializer.serialize(document.getDocumentReference()));
+            descriptor.append('@').append(document.getVersion());
+        }
+
+        SkinExtensionBundleStore bundleStore = Utils.getComponent(SkinExtensionBundleStore.class);
+        String bundleId = bundleStore.getBundleId(descriptor.toString());
+        if (bundleId == null) {
+            StringBuilder content = new StringBuilder();
+            for (XWikiDocument document : documents) {
+                String extensionContent = new SxDocumentSource(document, context, getExtensionType()).getContent();
+                if (getExtensionType() instanceof JsExtension) {
+                    content.append(extensionContent);
+                    // Make sure a script missing its final semicolon doesn't merge with the next one
+                    content.append(";\n");
+                } else {
+                    content.append(resolveRelativeURLs(extensionContent, document.getDocumentReference(), context));
+                    content.append('\n');
+                }
+            }
+            bundleId = bundleStore.store(descriptor.toString(), content.toString());
+        }
+
+        if (bundleId == null) {
+            return null;
+        }
+
+        StringBuilder queryString = new StringBuilder("bundle=").append(bundleId);
+        // If the main page is requested unminified, also send unminified extensions
+        if (context.getRequest() != null && "false".equals(context.getRequest().getParameter("minify"))) {
+            queryString.append("&amp;minify=false");
+        }
+
+        DocumentReference classReference = getCurrentDocumentReferenceResolver().resolve(getExtensionClassName());
+        return context.getWiki().getURL(classReference, getName(), queryString.toString(), "", context);
+    }
+
+    /**
+     * The browser resolves the relative URLs of a style sheet against the URL of the style sheet, which is not the same
+     * for the bundle and for the extension alone.
+     *
+     * @param content the content of a style sheet extension
+     * @param documentReference the document of the extension
+     * @param context the current request context
+     * @return the content of the extension with its relative URLs resolved against the URL of the extension
+     */
+    private String resolveRelativeURLs(String content, DocumentReference documentReference, XWikiContext context)
+    {
+        Matcher matcher = RELATIVE_CSS_URL.matcher(content);
+        if (!matcher.find()) {
+            return content;
+        }
+
+        String extensionURL = context.getWiki().getURL(documentReference, getName(), context);
+        String baseURL = extensionURL.substring(0, extensionURL.lastIndexOf('/') + 1);
+
+        StringBuffer result = new StringBuffer();
+        do {
+            // Either a quoted URL or an unquoted one
+            String quote = StringUtils.defaultString(matcher.group(1));
+            String url = matcher.group(1) != null ? matcher.group(2) : matcher.group(3);
+            matcher.appendReplacement(result, Matcher.quoteReplacement("url(" + quote + baseURL + url + quote + ')'));
+        } while (matcher.find());
+        matcher.appendTail(result);
+
+        return result.toString();
+    }
+
     /**
      * Creates or updates the XClass used for this type of extension. Usually called on {@link #init(XWikiContext)} and
      * {@link #virtualInit(XWikiContext)}.
@@ -228,7 +228,6 @@ protected void initializeRequestListIfNeeded(XWikiContext context)
      */
     public String getImportString(XWikiContext context)
     {
-        StringBuilder result = new StringBuilder();
         // Using LinkedHashSet to preserve the extensions order.
         Set<String> extensions = new LinkedHashSet<String>();
         // First, we add to the import string the extensions that should always be used.
@@ -249,6 +248,20 @@ public String getImportString(XWikiContext context)
             extensions.add(serializedCurrentDocumentName);
         }
 
+        return getImportString(extensions, context);
+    }
+
+    /**
+     * Composes the links to the given resources.
+     *
+     * @param extensions the resources used in the current request, in the order in which they should be imported
+     * @param context The current request context.
+     * @return a XHMTL fragment with the imports statements of the given extensions
+     * @since 9.12RC1
+     */
+    protected String getImportString(Set<String> extensions, XWikiContext context)
+    {
+        StringBuilder result = new StringBuilder();
         for (String documentName : extensions) {
             result.append(getLink(documentName, context));
         }
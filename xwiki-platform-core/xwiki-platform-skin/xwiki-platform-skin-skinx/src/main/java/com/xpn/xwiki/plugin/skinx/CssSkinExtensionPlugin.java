@@ -23,6 +23,8 @@
 import org.xwiki.model.reference.LocalDocumentReference;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.web.SsxAction;
+import com.xpn.xwiki.web.sx.Extension;
 
 /**
  * Skin Extension plugin that allows pulling CSS code stored inside wiki documents as
@@ -87,6 +89,18 @@ public String getLink(String documentName, XWikiContext context)
                 getDocumentSkinExtensionURL(documentReference, documentName, PLUGIN_NAME, context));
     }
 
+    @Override
+    protected Extension getExtensionType()
+    {
+        return SsxAction.CSSX;
+    }
+
+    @Override
+    protected String getBundleLink(String url, XWikiContext context)
+    {
+        return String.format("<link rel=\"stylesheet\" type=\"text/css\" href=\"%s\" />", url);
+    }
+
     @Override
     protected String getExtensionClassName()
     {
@@ -25,6 +25,8 @@
 import org.xwiki.model.reference.LocalDocumentReference;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.web.JsxAction;
+import com.xpn.xwiki.web.sx.Extension;
 
 /**
  * Skin Extension plugin that allows pulling javascript code stored inside wiki documents as
@@ -103,6 +105,25 @@ public String getLink(String documentName, XWikiContext context)
         return result.toString();
     }
 
+    @Override
+    protected Extension getExtensionType()
+    {
+        return JsxAction.JSX;
+    }
+
+    @Override
+    protected String getBundleLink(String url, XWikiContext context)
+    {
+        StringBuilder result = new StringBuilder("<script type='text/javascript' src='").append(url);
+        // Only the extensions used without parameters are bundled, so the default defer preference applies
+        String defaultDeferString = context.getWiki().Param(DEFER_DEFAULT_PARAM);
+        if (StringUtils.isEmpty(defaultDeferString) || Boolean.valueOf(defaultDeferString)) {
+            result.append("' defer='defer");
+        }
+        result.append("'></script>\n");
+        return result.toString();
+    }
+
     @Override
     protected String getExtensionClassName()
     {
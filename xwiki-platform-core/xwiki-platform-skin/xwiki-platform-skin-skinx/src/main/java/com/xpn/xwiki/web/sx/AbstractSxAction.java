@@ -27,9 +27,12 @@
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.xwiki.skinx.internal.SkinExtensionContentCache;
+import org.xwiki.skinx.internal.SkinExtensionContentCache.CompressedContent;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiAction;
 import com.xpn.xwiki.web.XWikiRequest;
 import com.xpn.xwiki.web.XWikiResponse;
@@ -59,12 +62,24 @@ public abstract class AbstractSxAction extends XWikiAction
     /** What http header parameter is used to specify when the cache should expire. */
     private static final String CACHE_EXPIRES_HEADER = "Expires";
 
-    /** The response will be sent to the browser as a byte array in this character set. */
-    private static final String RESPONSE_CHARACTER_SET = "UTF-8";
+    /** What http header parameter is used to specify the entity tag of the response. */
+    private static final String ETAG_HEADER = "ETag";
+
+    /** What http header parameter is used by the browser to send the entity tags it has in cache. */
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    /** What http header parameter is used by the browser to specify the encodings it supports. */
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+    /** The gzip content encoding. */
+    private static final String GZIP_ENCODING = "gzip";
 
     /** If the user passes this parameter in the URL, we will look for the script in the jar files. */
     private static final String JAR_RESOURCE_REQUEST_PARAMETER = "resource";
 
+    /** If the user passes this parameter in the URL, we will send the content of a bundle of skin extensions. */
+    private static final String BUNDLE_REQUEST_PARAMETER = "bundle";
+
     /** If the user specifies this url parameter equals false, we will send uncompressed script content. */
     private static final String COMPRESS_SCRIPT_REQUEST_PARAMETER = "minify";
 
@@ -109,18 +124,52 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
             response.setHeader(CACHE_CONTROL_HEADER, "no-cache, no-store, must-revalidate");
         }
 
-        if (BooleanUtils.toBoolean(StringUtils.defaultIfEmpty(
-            request.get(COMPRESS_SCRIPT_REQUEST_PARAMETER), "true"))) {
-            extensionContent = sxType.getCompressor().compress(extensionContent);
+        boolean compress =
+            BooleanUtils.toBoolean(StringUtils.defaultIfEmpty(request.get(COMPRESS_SCRIPT_REQUEST_PARAMETER), "true"));
+
+        // The minification is costly so we reuse the result as long as the content doesn't change
+        CompressedContent content = Utils.getComponent(SkinExtensionContentCache.class).get(extensionContent, sxType,
+            compress, cachePolicy != CachePolicy.FORBID);
+
+        byte[] body = content.getContent();
+        String tag = content.getTag();
+        response.addHeader("Vary", ACCEPT_ENCODING_HEADER);
+        if (content.getGzipContent() != null
+            && StringUtils.contains(request.getHeader(ACCEPT_ENCODING_HEADER), GZIP_ENCODING)) {
+            body = content.getGzipContent();
+            tag += '-' + GZIP_ENCODING;
+            response.setHeader("Content-Encoding", GZIP_ENCODING);
+        }
+
+        // The entity tag depends only on the content: the browser doesn't need to download it again if it didn't change
+        String etag = '"' + tag + '"';
+        response.setHeader(ETAG_HEADER, etag);
+        if (matches(request.getHeader(IF_NONE_MATCH_HEADER), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
         }
 
         try {
-            response.setContentLength(extensionContent.getBytes(RESPONSE_CHARACTER_SET).length);
-            response.getOutputStream().write(extensionContent.getBytes(RESPONSE_CHARACTER_SET));
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
         } catch (IOException ex) {
             getLogger().warn("Failed to send SX content: [{}]", ex.getMessage());
         }
+    }
+
+    private boolean matches(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch != null) {
+            for (String value : StringUtils.split(ifNoneMatch, ',')) {
+                // Weak comparison, as specified for If-None-Match
+                String requestedTag = StringUtils.removeStart(value.trim(), "W/");
+                if (requestedTag.equals(etag) || requestedTag.equals("*")) {
+                    return true;
+                }
+            }
+        }
 
+        return false;
     }
 
     @Override
@@ -128,7 +177,9 @@ public String render(XWikiContext context) throws XWikiException
     {
         SxSource sxSource;
 
-        if (context.getRequest().getParameter(JAR_RESOURCE_REQUEST_PARAMETER) != null) {
+        if (context.getRequest().getParameter(BUNDLE_REQUEST_PARAMETER) != null) {
+            sxSource = new SxBundleSource(context.getRequest().getParameter(BUNDLE_REQUEST_PARAMETER));
+        } else if (context.getRequest().getParameter(JAR_RESOURCE_REQUEST_PARAMETER) != null) {
             sxSource = new SxResourceSource(context.getRequest().getParameter(JAR_RESOURCE_REQUEST_PARAMETER));
         } else {
             if (context.getDoc().isNew()) {
@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.web.sx;
+
+import org.xwiki.skinx.internal.SkinExtensionBundleStore;
+
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Bundle source for Skin Extensions: the combined content of several static skin extensions.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class SxBundleSource implements SxSource
+{
+    /** The identifier of the bundle. */
+    private String bundleId;
+
+    /**
+     * Constructor of this source.
+     *
+     * @param bundleId the identifier of the bundle
+     */
+    public SxBundleSource(String bundleId)
+    {
+        this.bundleId = bundleId;
+    }
+
+    @Override
+    public CachePolicy getCachePolicy()
+    {
+        // The identifier of a bundle changes with its content
+        return CachePolicy.LONG;
+    }
+
+    @Override
+    public String getContent()
+    {
+        String content = Utils.getComponent(SkinExtensionBundleStore.class).load(this.bundleId);
+        if (content == null) {
+            // Forward an IAE so that the sx action returns 404
+            throw new IllegalArgumentException(String.format("Unknown skin extension bundle [%s]", this.bundleId));
+        }
+
+        return content;
+    }
+
+    @Override
+    public long getLastModifiedDate()
+    {
+        // The bundles never change
+        return 0;
+    }
+}
@@ -55,6 +55,9 @@ public class SxDocumentSource implements SxSource
     /** The name of the property in the script extension object which contains the content type. */
     private static final String CONTENT_TYPE_PROPERTY_NAME = "contentType";
 
+    /** The content type of the extensions which are compiled with LESS. */
+    private static final String LESS_CONTENT_TYPE = "LESS";
+
     /** The name of the property in the script extension object which tells us if the content should be parsed. */
     private static final String PARSE_CONTENT_PROPERTY_NAME = "parse";
 
@@ -83,12 +86,45 @@ public class SxDocumentSource implements SxSource
      * @param extension The Extension type
      */
     public SxDocumentSource(XWikiContext context, Extension extension)
+    {
+        this(context.getDoc(), context, extension);
+    }
+
+    /**
+     * Constructor for this extension source.
+     *
+     * @param document the document containing the extension
+     * @param context The XWikiContext
+     * @param extension The Extension type
+     * @since 9.12RC1
+     */
+    public SxDocumentSource(XWikiDocument document, XWikiContext context, Extension extension)
     {
         this.context = context;
-        this.document = context.getDoc();
+        this.document = document;
         this.extension = extension;
     }
 
+    /**
+     * @return true if the content of the extension is the same whatever the context, i.e. none of its objects is parsed
+     *         with Velocity or compiled with LESS
+     * @since 9.12RC1
+     */
+    public boolean isStatic()
+    {
+        List<BaseObject> objects = this.document.getObjects(this.extension.getClassName());
+        if (objects != null) {
+            for (BaseObject sxObj : objects) {
+                if (sxObj != null && (sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME) == 1
+                    || LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME)))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public CachePolicy getCachePolicy()
     {
@@ -129,7 +165,7 @@ public String getContent()
                 }
                 String sxContent = sxObj.getLargeStringValue(CONTENT_PROPERTY_NAME);
                 int parse = sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME);
-                if ("LESS".equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
+                if (LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
                     LESSCompiler lessCompiler = Utils.getComponent(LESSCompiler.class);
                     LESSResourceReferenceFactory lessResourceReferenceFactory =
                         Utils.getComponent(LESSResourceReferenceFactory.class);
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+
+/**
+ * Store the bundles combining the content of several skin extensions. A bundle is identified by a digest of its
+ * content, so that its URL changes when its content changes and it can be cached forever by the browsers. Bundles are
+ * stored in the permanent directory so that the pages kept by the browsers still work after a restart.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = SkinExtensionBundleStore.class)
+@Singleton
+public class SkinExtensionBundleStore implements Initializable
+{
+    /**
+     * The maximum number of bundle descriptors to remember.
+     */
+    private static final int MAX_DESCRIPTORS = 1000;
+
+    private static final Pattern BUNDLE_ID = Pattern.compile("[0-9a-f]{64}");
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    private File directory;
+
+    /**
+     * The identifier of the bundle of each combination of skin extension versions.
+     */
+    private final Map<String, String> bundles = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.directory = new File(this.environment.getPermanentDirectory(), "cache/skinx");
+    }
+
+    /**
+     * @param descriptor the identifier of the skin extensions to combine (including their versions)
+     * @return the identifier of the bundle previously stored for these skin extensions, or null if there's none
+     */
+    public String getBundleId(String descriptor)
+    {
+        return this.bundles.get(descriptor);
+    }
+
+    /**
+     * @param descriptor the identifier of the skin extensions to combine (including their versions)
+     * @param content the combined content of the skin extensions
+     * @return the identifier of the bundle, or null if it could not be stored
+     */
+    public String store(String descriptor, String content)
+    {
+        String bundleId = DigestUtils.sha256Hex(content);
+
+        File file = new File(this.directory, bundleId);
+        if (!file.exists()) {
+            try {
+                write(file, content);
+            } catch (IOException e) {
+                this.logger.error("Failed to store the skin extension bundle [{}]", bundleId, e);
+
+                return null;
+            }
+        }
+
+        if (this.bundles.size() >= MAX_DESCRIPTORS) {
+            this.bundles.clear();
+        }
+        this.bundles.put(descriptor, bundleId);
+
+        return bundleId;
+    }
+
+    private void write(File file, String content) throws IOException
+    {
+        // Write in a temporary file first so that a bundle is never read partially written (the temporary file is
+        // unique so that threads storing the same bundle at the same time don't write in the same file)
+        FileUtils.forceMkdir(this.directory);
+        File temporaryFile = File.createTempFile(file.getName(), ".tmp", this.directory);
+        try {
+            FileUtils.writeStringToFile(temporaryFile, content, StandardCharsets.UTF_8);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another thread stored the same bundle meanwhile (some file systems don't support replacing the
+            // existing file atomically)
+            if (!file.exists()) {
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * @param bundleId the identifier of the bundle
+     * @return the content of the bundle, or null if there's no such bundle
+     */
+    public String load(String bundleId)
+    {
+        if (bundleId != null && BUNDLE_ID.matcher(bundleId).matches()) {
+            File file = new File(this.directory, bundleId);
+            if (file.exists()) {
+                try {
+                    return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    this.logger.error("Failed to read the skin extension bundle [{}]", bundleId, e);
+                }
+            }
+        }
+
+        return null;
+    }
+}
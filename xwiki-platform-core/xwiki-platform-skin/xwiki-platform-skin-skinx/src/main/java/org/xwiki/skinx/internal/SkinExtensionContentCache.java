@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+import com.xpn.xwiki.web.sx.Extension;
+
+/**
+ * Cache the result of the (CPU intensive) compression of the skin extensions content. The cache key is a digest of the
+ * content so it never needs to be invalidated: when a skin extension (or anything used to generate its content) is
+ * modified, the new content simply gets a new entry.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+@Component(roles = SkinExtensionContentCache.class)
+@Singleton
+public class SkinExtensionContentCache implements Initializable, Disposable
+{
+    /**
+     * Identifier of the cache.
+     */
+    private static final String NAME = "skinx.content";
+
+    /**
+     * The maximum number of skin extension contents to keep.
+     */
+    private static final int CACHE_SIZE = 500;
+
+    /**
+     * The content of a skin extension as it should be sent to the client.
+     *
+     * @version $Id$
+     */
+    public static class CompressedContent
+    {
+        private final byte[] content;
+
+        private final byte[] gzipContent;
+
+        private final String tag;
+
+        CompressedContent(byte[] content, byte[] gzipContent, String tag)
+        {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.tag = tag;
+        }
+
+        /**
+         * @return the (minified) content encoded in UTF-8
+         */
+        public byte[] getContent()
+        {
+            return this.content;
+        }
+
+        /**
+         * @return the content compressed with gzip, or null if gzip does not make it smaller
+         */
+        public byte[] getGzipContent()
+        {
+            return this.gzipContent;
+        }
+
+        /**
+         * @return a value identifying this content, to be used as (part of) an entity tag
+         */
+        public String getTag()
+        {
+            return this.tag;
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<CompressedContent> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(CACHE_SIZE);
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the skin extensions content cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param source the content of the skin extension
+     * @param extension the type of skin extension
+     * @param compress true if the content should be minified with the compressor of the skin extension type
+     * @param cached false if the result should not be put in the cache (e.g. for a skin extension which must not be
+     *            cached at all)
+     * @return the content to send to the client
+     */
+    public CompressedContent get(String source, Extension extension, boolean compress, boolean cached)
+    {
+        String digest = DigestUtils.sha256Hex(source);
+        String key = extension.getClassName() + ':' + compress + ':' + digest;
+
+        CompressedContent content = cached ? this.cache.get(key) : null;
+        if (content == null) {
+            String result = compress ? extension.getCompressor().compress(source) : source;
+            byte[] bytes = result.getBytes(StandardCharsets.UTF_8);
+            content = new CompressedContent(bytes, gzip(bytes), compress ? digest + "-min" : digest);
+
+            if (cached) {
+                this.cache.set(key, content);
+            }
+        }
+
+        return content;
+    }
+
+    private byte[] gzip(byte[] bytes)
+    {
+        ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream(bytes.length / 2);
+        try (OutputStream stream = new GZIPOutputStream(gzipBytes)) {
+            stream.write(bytes);
+        } catch (IOException e) {
+            // Not supposed to happen when writing in memory
+            return null;
+        }
+
+        return gzipBytes.size() < bytes.length ? gzipBytes.toByteArray() : null;
+    }
+}
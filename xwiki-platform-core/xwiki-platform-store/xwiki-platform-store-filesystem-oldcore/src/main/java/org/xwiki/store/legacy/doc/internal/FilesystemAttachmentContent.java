@@ -23,6 +23,8 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.AutoCloseInputStream;
@@ -108,6 +110,26 @@ public InputStream getContentInputStream()
         }
     }
 
+    /**
+     * @return the file containing the content, or {@code null} if the content was modified since it was loaded from
+     *         this file
+     * @since 9.12RC1
+     */
+    public File getStorageFile()
+    {
+        return this.getFileItem() == null ? this.storageFile : null;
+    }
+
+    @Override
+    public FileChannel getContentChannel() throws IOException
+    {
+        if (this.getFileItem() != null) {
+            return super.getContentChannel();
+        }
+
+        return FileChannel.open(this.storageFile.toPath(), StandardOpenOption.READ);
+    }
+
     @Override
     public long getLongSize()
     {
@@ -31,6 +31,7 @@
 
 import org.suigeneris.jrcs.rcs.Version;
 import org.xwiki.store.FileSaveTransactionRunnable;
+import org.xwiki.store.FileSerializer;
 import org.xwiki.store.StartableTransactionRunnable;
 import org.xwiki.store.StreamProvider;
 import org.xwiki.store.filesystem.internal.AttachmentFileProvider;
@@ -68,6 +69,34 @@ public AttachmentArchiveSaveRunnable(final XWikiAttachmentArchive archive,
             List<XWikiAttachment>> serializer,
         final XWikiContext context)
         throws XWikiException
+    {
+        this(archive, fileTools, provider, serializer, null, context);
+    }
+
+    /**
+     * The Constructor.
+     *
+     * @param archive the attachment archive to save.
+     * @param fileTools a set of tools for getting the file corrisponding to each version of the
+     * attachment content and the file for the meta data, as well as temporary
+     * and backup files corrisponding to each. Also for getting locks.
+     * @param provider the means to get the files to store each version of the attachment.
+     * @param serializer an attachment list metadata serializer for serializing the metadata of each
+     * version of the attachment.
+     * @param currentContentFile a file which will contain the content of the current version of the attachment when
+     * this runnable is run (e.g. the temporary file of the attachment content saved in the same transaction), or null
+     * @param context the XWikiContext used to get the revisions of the attachment.
+     * @throws XWikiException if it is unable to get a revision of an attachment using archive.getRevision()
+     * @since 9.12RC1
+     */
+    public AttachmentArchiveSaveRunnable(final XWikiAttachmentArchive archive,
+        final FilesystemStoreTools fileTools,
+        final AttachmentFileProvider provider,
+        final Serializer<List<XWikiAttachment>,
+            List<XWikiAttachment>> serializer,
+        final File currentContentFile,
+        final XWikiContext context)
+        throws XWikiException
     {
         if (archive instanceof VoidAttachmentVersioningStore.VoidAttachmentArchive) {
             return;
@@ -90,9 +119,19 @@ public AttachmentArchiveSaveRunnable(final XWikiAttachmentArchive archive,
             if (attachVer.isContentDirty()
                 || !provider.getAttachmentVersionContentFile(versionName).exists())
             {
-                final StreamProvider contentProvider =
-                    new AttachmentContentStreamProvider(attachVer, context);
-                addSaver(contentProvider, fileTools, provider.getAttachmentVersionContentFile(versionName));
+                // Store only once the content which is identical to the current content or to the previous version
+                final List<File> candidates = new ArrayList<File>();
+                if (currentContentFile != null && versionName.equals(archive.getAttachment().getVersion())) {
+                    candidates.add(currentContentFile);
+                }
+                candidates.add(provider.getAttachmentContentFile());
+                if (i + 1 < versions.length) {
+                    candidates.add(provider.getAttachmentVersionContentFile(versions[i + 1].toString()));
+                }
+
+                final FileSerializer contentSerializer =
+                    new AttachmentContentFileSerializer(attachVer, candidates, context);
+                addSaver(contentSerializer, fileTools, provider.getAttachmentVersionContentFile(versionName));
             }
         }
 
@@ -119,4 +158,22 @@ private void addSaver(final StreamProvider provider,
             fileTools.getLockForFile(saveHere),
             provider).runIn(this);
     }
+
+    /**
+     * Save some content safely in this runnable.
+     *
+     * @param serializer the means to write the content to save.
+     * @param fileTools the means to get the backup file, temporary file, and lock.
+     * @param saveHere the location to save the data.
+     */
+    private void addSaver(final FileSerializer serializer,
+        final FilesystemStoreTools fileTools,
+        final File saveHere)
+    {
+        new FileSaveTransactionRunnable(saveHere,
+            fileTools.getTempFile(saveHere),
+            fileTools.getBackupFile(saveHere),
+            fileTools.getLockForFile(saveHere),
+            serializer).runIn(this);
+    }
 }
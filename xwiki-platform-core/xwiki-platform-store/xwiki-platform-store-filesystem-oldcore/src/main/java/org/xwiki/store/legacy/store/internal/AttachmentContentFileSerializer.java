@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.legacy.store.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.store.FileSerializer;
+import org.xwiki.store.legacy.doc.internal.FilesystemAttachmentContent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+
+/**
+ * Serialize the content of an attachment to a file, storing it only once on the disk when an identical content is
+ * already stored in another file: the new file is then a hard link to the existing one.
+ * <p>
+ * This relies on the stored files never being modified in place (they are always replaced by renaming a new file).
+ * <p>
+ * Only the given candidate files are looked at (in practice the current content and the adjacent revision of the same
+ * attachment): no digest of the contents is stored, a candidate is compared byte by byte only when it has the same size.
+ *
+ * @version $Id$
+ * @since 9.12RC1
+ */
+public class AttachmentContentFileSerializer implements FileSerializer
+{
+    /**
+     * Logging helper object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachmentContentFileSerializer.class);
+
+    /**
+     * The attachment to save content of.
+     */
+    private final XWikiAttachment attachment;
+
+    /**
+     * The files which might contain the same content as the attachment.
+     */
+    private final List<File> candidates;
+
+    /**
+     * The XWikiContext for getting the content of the attachment.
+     */
+    private final XWikiContext context;
+
+    /**
+     * @param attachment the attachment whose content should be saved
+     * @param candidates the files which might contain the same content as the attachment
+     * @param context the XWikiContext needed to get the content from the attachment
+     */
+    public AttachmentContentFileSerializer(XWikiAttachment attachment, List<File> candidates, XWikiContext context)
+    {
+        this.attachment = attachment;
+        this.candidates = candidates;
+        this.context = context;
+    }
+
+    @Override
+    public void serialize(File file) throws Exception
+    {
+        File identicalFile = getIdenticalFile();
+        if (identicalFile != null) {
+            try {
+                Files.createLink(file.toPath(), identicalFile.toPath());
+
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("Failed to link [{}] to [{}], copying the content instead.", file, identicalFile, e);
+            }
+        }
+
+        try (InputStream in = this.attachment.getContentInputStream(this.context)) {
+            try (OutputStream out = new FileOutputStream(file)) {
+                IOUtils.copy(in, out);
+            }
+        }
+    }
+
+    /**
+     * @return a file already containing the content of the attachment, or null if there is none
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the content of a candidate file cannot be read
+     */
+    private File getIdenticalFile() throws XWikiException, IOException
+    {
+        long size = this.attachment.getContentLongSize(this.context);
+        if (size == 0) {
+            return null;
+        }
+
+        // The content was not modified since it was loaded from a file (e.g. when copying a document)
+        XWikiAttachmentContent content = this.attachment.getAttachment_content();
+        if (content instanceof FilesystemAttachmentContent) {
+            File storageFile = ((FilesystemAttachmentContent) content).getStorageFile();
+            if (storageFile != null && storageFile.isFile()) {
+                return storageFile;
+            }
+        }
+
+        for (File candidate : this.candidates) {
+            if (candidate.isFile() && candidate.length() == size && hasSameContent(candidate)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param candidate a file with the same size as the attachment content
+     * @return true if the file contains the attachment content
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the content of the file cannot be read
+     */
+    private boolean hasSameContent(File candidate) throws XWikiException, IOException
+    {
+        try (InputStream contentStream = this.attachment.getContentInputStream(this.context)) {
+            try (InputStream candidateStream = new FileInputStream(candidate)) {
+                return IOUtils.contentEquals(contentStream, candidateStream);
+            }
+        }
+    }
+}
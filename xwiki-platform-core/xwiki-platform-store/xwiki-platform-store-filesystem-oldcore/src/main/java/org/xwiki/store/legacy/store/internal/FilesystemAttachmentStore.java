@@ -20,6 +20,7 @@
 package org.xwiki.store.legacy.store.internal;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -34,7 +35,7 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.store.FileDeleteTransactionRunnable;
 import org.xwiki.store.FileSaveTransactionRunnable;
-import org.xwiki.store.StreamProvider;
+import org.xwiki.store.FileSerializer;
 import org.xwiki.store.TransactionRunnable;
 import org.xwiki.store.filesystem.internal.FilesystemStoreTools;
 import org.xwiki.store.internal.FileSystemStoreUtils;
@@ -288,8 +289,9 @@ private class AttachmentSaveTransactionRunnable extends TransactionRunnable<XWik
             final XWikiContext context, final File attachFile, final File tempFile, final File backupFile,
             final ReadWriteLock lock) throws XWikiException
         {
-            final StreamProvider provider = new AttachmentContentStreamProvider(attachment, context);
-            new FileSaveTransactionRunnable(attachFile, tempFile, backupFile, lock, provider).runIn(this);
+            final FileSerializer serializer =
+                new AttachmentContentFileSerializer(attachment, Collections.<File>emptyList(), context);
+            new FileSaveTransactionRunnable(attachFile, tempFile, backupFile, lock, serializer).runIn(this);
 
             // If the versioning store supports TransactionRunnable then use it, otherwise don't.
             AttachmentVersioningStore avs = resolveAttachmentVersioningStore(attachment, context);
@@ -300,9 +302,10 @@ private class AttachmentSaveTransactionRunnable extends TransactionRunnable<XWik
 
                 // If first save then create a new archive.
                 if (archive == null) {
-                    favs.getArchiveSaveRunnable(new ListAttachmentArchive(attachment), context).runIn(this);
+                    favs.getArchiveSaveRunnable(new ListAttachmentArchive(attachment), tempFile, context).runIn(this);
                 } else {
-                    favs.getArchiveSaveRunnable(archive, context).runIn(this);
+                    // The temporary file contains the current content when the archive is saved
+                    favs.getArchiveSaveRunnable(archive, tempFile, context).runIn(this);
                 }
             } else {
                 new TransactionRunnable<XWikiHibernateTransaction>()
@@ -185,10 +185,29 @@ public void saveArchive(final XWikiAttachmentArchive archive, final XWikiContext
      */
     public StartableTransactionRunnable getArchiveSaveRunnable(final XWikiAttachmentArchive archive,
         final XWikiContext context) throws XWikiException
+    {
+        return getArchiveSaveRunnable(archive, null, context);
+    }
+
+    /**
+     * Get a TransactionRunnable for saving or updating the current attachment. this runnable can be run with any
+     * transaction including a VoidTransaction.
+     *
+     * @param archive The attachment archive to save.
+     * @param currentContentFile a file which will contain the content of the current version of the attachment when
+     *            the runnable is run, so that this content is not stored twice, or null
+     * @param context An XWikiContext used for getting the attachments from the archive with getRevision() and for
+     *            getting the content from the attachments with getContentInputStream().
+     * @return a new StartableTransactionRunnable for saving this attachment archive.
+     * @throws XWikiException if versions of the attachment cannot be loaded form the archive.
+     * @since 9.12RC1
+     */
+    public StartableTransactionRunnable getArchiveSaveRunnable(final XWikiAttachmentArchive archive,
+        final File currentContentFile, final XWikiContext context) throws XWikiException
     {
         return new AttachmentArchiveSaveRunnable(archive, this.fileTools,
             this.fileTools.getAttachmentFileProvider(archive.getAttachment().getReference()), this.metaSerializer,
-            context);
+            currentContentFile, context);
     }
 
     /**
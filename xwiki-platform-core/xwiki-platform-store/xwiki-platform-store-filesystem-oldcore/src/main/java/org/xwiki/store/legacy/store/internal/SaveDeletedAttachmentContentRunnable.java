@@ -20,9 +20,11 @@
 package org.xwiki.store.legacy.store.internal;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 
 import org.xwiki.store.FileSaveTransactionRunnable;
+import org.xwiki.store.FileSerializer;
 import org.xwiki.store.StartableTransactionRunnable;
 import org.xwiki.store.StreamProvider;
 import org.xwiki.store.filesystem.internal.DeletedAttachmentFileProvider;
@@ -71,9 +73,12 @@ class SaveDeletedAttachmentContentRunnable extends StartableTransactionRunnable
         }
         new AttachmentArchiveSaveRunnable(archive, fileTools, provider, versionSerializer, context).runIn(this);
 
-        // Save the attachment's content.
-        final StreamProvider contentProvider = new AttachmentContentStreamProvider(attachment, context);
-        this.addSaver(contentProvider, fileTools, provider.getAttachmentContentFile());
+        // Save the attachment's content (linked to the attachment content file when possible instead of a copy)
+        final File contentFile = provider.getAttachmentContentFile();
+        final FileSerializer contentSerializer =
+            new AttachmentContentFileSerializer(attachment, Collections.<File>emptyList(), context);
+        new FileSaveTransactionRunnable(contentFile, fileTools.getTempFile(contentFile),
+            fileTools.getBackupFile(contentFile), fileTools.getLockForFile(contentFile), contentSerializer).runIn(this);
     }
 
     /**
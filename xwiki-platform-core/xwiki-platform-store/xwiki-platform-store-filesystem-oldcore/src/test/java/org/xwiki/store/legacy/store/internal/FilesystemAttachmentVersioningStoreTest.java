@@ -23,7 +23,9 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
@@ -197,6 +199,38 @@ public void deleteArchiveTest() throws Exception
         Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.3").exists());
     }
 
+    @Test
+    public void saveArchiveStoresIdenticalContentOnce() throws Exception
+    {
+        final XWikiDocument doc = this.archive.getAttachment().getDoc();
+
+        final XWikiAttachment version1 = new XWikiAttachment();
+        version1.setVersion("1.1");
+        version1.setFilename("attachment.txt");
+        version1.setDoc(doc);
+        version1.setAttachment_content(new StringAttachmentContent("same content"));
+        this.versionStore.saveArchive(new ListAttachmentArchive(Arrays.asList(version1)), null, false);
+
+        final XWikiAttachment savedVersion1 = new XWikiAttachment();
+        savedVersion1.setVersion("1.1");
+        savedVersion1.setFilename("attachment.txt");
+        savedVersion1.setDoc(doc);
+        savedVersion1.setAttachment_content(new StringAttachmentContent("same content", false));
+
+        final XWikiAttachment version2 = new XWikiAttachment();
+        version2.setVersion("1.2");
+        version2.setFilename("attachment.txt");
+        version2.setDoc(doc);
+        version2.setAttachment_content(new StringAttachmentContent("same content"));
+        this.versionStore.saveArchive(new ListAttachmentArchive(Arrays.asList(savedVersion1, version2)), null,
+            false);
+
+        final File file1 = this.provider.getAttachmentVersionContentFile("1.1");
+        final File file2 = this.provider.getAttachmentVersionContentFile("1.2");
+        Assert.assertEquals("same content", IOUtils.toString(file2.toURI()));
+        Assert.assertTrue(Files.isSameFile(file1.toPath(), file2.toPath()));
+    }
+
     /* -------------------- Helpers -------------------- */
 
     private static void resursiveDelete(final File toDelete) throws IOException
@@ -217,9 +251,17 @@ private static class StringAttachmentContent extends XWikiAttachmentContent
     {
         private final String content;
 
+        private final boolean dirty;
+
         public StringAttachmentContent(final String content)
+        {
+            this(content, true);
+        }
+
+        public StringAttachmentContent(final String content, final boolean dirty)
         {
             this.content = content;
+            this.dirty = dirty;
         }
 
         @Override
@@ -228,10 +270,16 @@ public InputStream getContentInputStream()
             return new ByteArrayInputStream(this.content.getBytes());
         }
 
+        @Override
+        public long getLongSize()
+        {
+            return this.content.getBytes().length;
+        }
+
         @Override
         public boolean isContentDirty()
         {
-            return true;
+            return this.dirty;
         }
 
         @Override